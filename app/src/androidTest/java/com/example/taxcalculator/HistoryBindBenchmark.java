@@ -0,0 +1,149 @@
+package com.example.taxcalculator;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.taxcalculator.adapters.HistoryAdapter;
+import com.example.taxcalculator.models.HistoryPager;
+import com.example.taxcalculator.models.HistoryRowCache;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.Money;
+import com.example.taxcalculator.utils.TaxManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark: history row binding
+ * Binds a page of history rows through HistoryAdapter, with the rows formatted when the page
+ * loaded, and compares it with the old bind that computed the tax and formatted the price for
+ * every row scrolled past. Logs the objects allocated and the time per bind, counted with the
+ * runtime's allocation counter on the binding thread.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class HistoryBindBenchmark {
+
+    private static final String TAG = "HistoryBindBenchmark";
+    private static final int ROWS = 500;
+    private static final int PAGE = HistoryPager.DEFAULT_PAGE_SIZE;
+    private static final int ROUNDS = 200;
+    private static final String[] CATEGORIES = {
+            TaxManager.CAT_EXEMPT, TaxManager.CAT_ESSENTIAL, TaxManager.CAT_STANDARD, TaxManager.CAT_LUXURY
+    };
+
+    /**
+     * Allocations and time of one way of binding.
+     */
+    private static final class Result {
+        long objects;
+        long nanos;
+    }
+
+    /**
+     * Binds one page of rows per round.
+     */
+    private interface Binder {
+        void bind(int position);
+    }
+
+    private static List<ProductItem> history() {
+        List<ProductItem> items = new ArrayList<>(ROWS);
+        for (int id = ROWS; id > 0; id--) {
+            ProductItem item = new ProductItem("Item " + id, "Brand", 10 + id % 500 + 0.99, CATEGORIES[id & 3], "b" + id);
+            item.id = id;
+            item.setScannedAt(1_700_000_000_000L + id);
+            items.add(item);
+        }
+        return items;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Result measure(Binder binder) {
+        // Warm up the code paths and the text views' buffers
+        for (int position = 0; position < PAGE; position++) binder.bind(position);
+
+        Result result = new Result();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int position = 0; position < PAGE; position++) binder.bind(position);
+        }
+        result.nanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        result.objects = Debug.getThreadAllocCount();
+        return result;
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void benchmarkBindAllocations() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = ApplicationProvider.getApplicationContext();
+            List<ProductItem> history = history();
+            HistoryRowCache rowCache = new HistoryRowCache(HistoryRowCache.DEFAULT_CAPACITY,
+                    context.getString(R.string.history_tax_label));
+            // Pages load inline and are formatted as they load, as the repository's page source does
+            HistoryPager pager = new HistoryPager(new HistoryPager.PageSource() {
+                @Override
+                public List<ProductItem> loadPage(int beforeId, int limit) {
+                    List<ProductItem> rows = new ArrayList<>();
+                    for (ProductItem item : history) {
+                        if (item.id < beforeId && rows.size() < limit) rows.add(item);
+                    }
+                    rowCache.prepare(rows);
+                    return rows;
+                }
+
+                @Override
+                public List<ProductItem> loadNewer(int afterId, int limit) {
+                    return new ArrayList<>();
+                }
+            }, Runnable::run, Runnable::run, PAGE, HistoryPager.DEFAULT_MAX_PAGES);
+            pager.start();
+
+            RecyclerView.Adapter adapter = new HistoryAdapter(pager, rowCache);
+            RecyclerView.ViewHolder holder = adapter.createViewHolder(new FrameLayout(context), 0);
+            TextView name = holder.itemView.findViewById(R.id.txtItemName);
+            TextView price = holder.itemView.findViewById(R.id.txtItemPrice);
+            TextView tax = holder.itemView.findViewById(R.id.txtItemTax);
+            String label = context.getString(R.string.history_tax_label) + " ";
+
+            Result prepared = measure(position -> adapter.bindViewHolder(holder, position));
+            assertEquals(history.get(PAGE - 1).getName(), name.getText().toString());
+            String preparedPrice = price.getText().toString();
+
+            // Old bind: compute the tax and format the strings for every row
+            Result formatted = measure(position -> {
+                ProductItem p = pager.getItem(position);
+                name.setText(p.getName());
+                price.setText(Money.format(p.getNetPricePaise()));
+                tax.setText(label + Money.format(p.getTaxAmountPaise()));
+            });
+            assertEquals(preparedPrice, price.getText().toString());
+
+            double binds = (double) ROUNDS * PAGE;
+            Log.i(TAG, String.format("%d binds: format on bind %.1f objects, %.2f us; prepared rows %.1f objects, %.2f us "
+                            + "(%.2f us and %.1f objects saved per bind)",
+                    (long) binds, formatted.objects / binds, formatted.nanos / binds / 1e3,
+                    prepared.objects / binds, prepared.nanos / binds / 1e3,
+                    (formatted.nanos - prepared.nanos) / binds / 1e3, (formatted.objects - prepared.objects) / binds));
+        });
+    }
+}
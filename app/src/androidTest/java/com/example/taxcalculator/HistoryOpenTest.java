@@ -0,0 +1,93 @@
+package com.example.taxcalculator;
+
+import static androidx.test.espresso.Espresso.onView;
+import static androidx.test.espresso.action.ViewActions.click;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.example.taxcalculator.activities.MainActivity;
+import com.example.taxcalculator.database.AppDatabase;
+import com.example.taxcalculator.database.ProductDao;
+import com.example.taxcalculator.models.HistoryPager;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.TaxManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History Open Test: navigation with a large history
+ * Verifies that opening the history screen with 50k saved rows shows the first rows within a
+ * fixed time budget and only materializes the first page. Runs against the test database set by
+ * TaxCalculatorTestRunner, never the user's history.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class HistoryOpenTest {
+
+    private static final int ROWS = 50_000;
+    private static final long BUDGET_MS = 1000;
+
+    private ProductDao productDao;
+
+    @Before
+    public void fillHistory() {
+        Context context = ApplicationProvider.getApplicationContext();
+        AppDatabase db = AppDatabase.getInstance(context);
+        // Refuse to clear anything but the test database
+        assertEquals(TaxCalculatorTestRunner.TEST_DATABASE, db.getOpenHelper().getDatabaseName());
+        productDao = db.productDao();
+        productDao.deleteAll();
+        List<ProductItem> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            ProductItem item = new ProductItem("Item " + i, "Brand", 10 + i % 500, TaxManager.CAT_STANDARD, "b" + i);
+            item.setScannedAt(1_700_000_000_000L + i);
+            items.add(item);
+        }
+        productDao.insertAll(items);
+    }
+
+    @After
+    public void clearHistory() {
+        productDao.deleteAll();
+    }
+
+    @Test
+    public void testOpenLargeHistoryWithinBudget() {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            long start = SystemClock.elapsedRealtime();
+            onView(withId(R.id.btnHistory)).perform(click());
+
+            int[] shown = new int[2];
+            while (SystemClock.elapsedRealtime() - start < 5 * BUDGET_MS) {
+                scenario.onActivity(activity -> {
+                    RecyclerView list = activity.findViewById(R.id.recyclerHistory);
+                    shown[0] = list != null ? list.getChildCount() : 0;
+                    shown[1] = list != null && list.getAdapter() != null ? list.getAdapter().getItemCount() : 0;
+                });
+                if (shown[0] > 0) break;
+                SystemClock.sleep(10);
+            }
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            assertTrue("No rows shown", shown[0] > 0);
+            assertTrue("Opened in " + elapsed + " ms", elapsed < BUDGET_MS);
+            assertTrue("Loaded " + shown[1] + " rows up front", shown[1] <= 2 * HistoryPager.DEFAULT_PAGE_SIZE);
+        }
+    }
+}
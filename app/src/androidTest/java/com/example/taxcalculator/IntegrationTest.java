@@ -58,7 +58,7 @@ public class IntegrationTest {
         productDao.insert(item);
 
         // 3. Retrieve from DB
-        List<ProductItem> allItems = productDao.getAll();
+        List<ProductItem> allItems = productDao.getPageBefore(Integer.MAX_VALUE, 10);
         
         // 4. Verify list size
         assertEquals(1, allItems.size());
@@ -0,0 +1,186 @@
+package com.example.taxcalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.taxcalculator.database.AppDatabase;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.TaxManager;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+/**
+ * Migration Test: Database upgrades
+ * Creates each database version from its exported schema in app/schemas, runs one migration
+ * step and lets MigrationTestHelper validate the result against the next version's schema.
+ * Checks the data each step must keep or rewrite, and that a version 3 database, the last one
+ * built without migrations, opens as the current database with its scan history intact.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String DB_NAME = "migration_test_db";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    @After
+    public void tearDown() {
+        Context context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    private static void insertProduct(SupportSQLiteDatabase db, String name, String barcode) {
+        ContentValues values = new ContentValues();
+        values.put("name", name);
+        values.put("brand", "Old Brand");
+        values.put("price", 105.0);
+        values.put("taxCategory", TaxManager.CAT_ESSENTIAL);
+        values.put("barcode", barcode);
+        db.insert("product_table", SQLiteDatabase.CONFLICT_NONE, values);
+    }
+
+    private static long insertOutbox(SupportSQLiteDatabase db, String barcode, String name, long createdAt) {
+        ContentValues values = new ContentValues();
+        values.put("barcode", barcode);
+        values.put("name", name);
+        values.put("price", 12.0);
+        values.put("taxCategory", TaxManager.CAT_STANDARD);
+        values.put("createdAt", createdAt);
+        return db.insert("upload_outbox", SQLiteDatabase.CONFLICT_NONE, values);
+    }
+
+    private static int count(SupportSQLiteDatabase db, String query) {
+        try (Cursor cursor = db.query(query)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        }
+    }
+
+    // --- Single Steps (5 Tests) ---
+
+    @Test
+    public void testMigrate3To4AddsLookupCache() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DB_NAME, 3);
+        insertProduct(db, "Old Soap", "8901234567890");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DB_NAME, 4, true, AppDatabase.MIGRATIONS);
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM product_table"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM lookup_cache"));
+        db.close();
+    }
+
+    @Test
+    public void testMigrate4To5DefaultsScanTime() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DB_NAME, 4);
+        insertProduct(db, "Old Soap", "8901234567890");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DB_NAME, 5, true, AppDatabase.MIGRATIONS);
+        // Rows saved before scan times existed are taxed at the current rate
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM product_table WHERE scannedAt = 0"));
+        db.close();
+    }
+
+    @Test
+    public void testMigrate5To6AddsIndices() throws Exception {
+        helper.createDatabase(DB_NAME, 5).close();
+
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(DB_NAME, 6, true, AppDatabase.MIGRATIONS);
+        assertEquals(3, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' "
+                + "AND tbl_name = 'product_table' AND name LIKE 'index_product_table_%'"));
+        db.close();
+    }
+
+    @Test
+    public void testMigrate6To7AddsEmptyOutbox() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DB_NAME, 6);
+        insertProduct(db, "Old Soap", "8901234567890");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DB_NAME, 7, true, AppDatabase.MIGRATIONS);
+        // Products saved before the outbox existed are not uploaded again
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM upload_outbox"));
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM product_table"));
+        db.close();
+    }
+
+    @Test
+    public void testMigrate7To8KeepsNewestEntryPerBarcode() throws Exception {
+        SupportSQLiteDatabase db = helper.createDatabase(DB_NAME, 7);
+        insertOutbox(db, "890", "First name", 1_000);
+        long other = insertOutbox(db, "400", "Other", 2_000);
+        long newest = insertOutbox(db, "890", "Second name", 3_000);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(DB_NAME, 8, true, AppDatabase.MIGRATIONS);
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM upload_outbox"));
+        try (Cursor cursor = db.query("SELECT id, name, attempts, nextAttemptAt, lastError FROM upload_outbox "
+                + "WHERE barcode = '890'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(newest, cursor.getLong(0));
+            assertEquals("Second name", cursor.getString(1));
+            assertEquals(0, cursor.getInt(2));
+            assertEquals(0, cursor.getLong(3));
+            assertTrue(cursor.isNull(4));
+            assertFalse(cursor.moveToNext());
+        }
+        assertEquals(1, count(db, "SELECT COUNT(*) FROM upload_outbox WHERE id = " + other));
+
+        // The barcode is unique from now on
+        ContentValues duplicate = new ContentValues();
+        duplicate.put("barcode", "890");
+        duplicate.put("price", 1.0);
+        duplicate.put("createdAt", 4_000);
+        assertEquals(-1, db.insert("upload_outbox", SQLiteDatabase.CONFLICT_IGNORE, duplicate));
+        db.close();
+    }
+
+    // --- Full Upgrade (1 Test) ---
+
+    @Test
+    public void testMigrateFrom3KeepsHistory() throws Exception {
+        SupportSQLiteDatabase old = helper.createDatabase(DB_NAME, 3);
+        insertProduct(old, "Old Soap", "8901234567890");
+        old.close();
+
+        // Room runs every step on open and validates the result against the current entities
+        AppDatabase db = Room.databaseBuilder(ApplicationProvider.getApplicationContext(), AppDatabase.class, DB_NAME)
+                .allowMainThreadQueries()
+                .addMigrations(AppDatabase.MIGRATIONS)
+                .build();
+        helper.closeWhenFinished(db);
+        List<ProductItem> items = db.productDao().getPageBefore(Integer.MAX_VALUE, 10);
+        assertEquals(1, items.size());
+        ProductItem item = items.get(0);
+        assertEquals("Old Soap", item.getName());
+        assertEquals(0, item.getScannedAt());
+        assertEquals(5.0, item.getTaxAmount(), 0.01);
+
+        assertNotNull(db.productDao().findByBarcode("8901234567890"));
+        assertNull(db.lookupDao().find("8901234567890"));
+        assertEquals(0, db.outboxDao().count());
+    }
+}
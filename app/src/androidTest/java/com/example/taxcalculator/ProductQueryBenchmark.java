@@ -0,0 +1,152 @@
+package com.example.taxcalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.example.taxcalculator.database.AppDatabase;
+import com.example.taxcalculator.database.ProductDao;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.TaxManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark: history queries at scale
+ * Fills the history with 100k rows and pages through it with the queries the history screen
+ * runs: all rows, one tax category and one day. Checks the query plans use the indices and logs
+ * the time with the indices dropped (the old schema) and with them in place.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ProductQueryBenchmark {
+
+    private static final String TAG = "ProductQueryBenchmark";
+    private static final int ROWS = 100_000;
+    private static final int PAGE = 50;
+    private static final int PAGES = 20;
+    private static final long START = 1_700_000_000_000L;
+    private static final long STEP = 60_000;
+    private static final long DAY = 24 * 60 * STEP;
+
+    /**
+     * Common categories; every 50th row is a luxury item, so the category filter is selective.
+     */
+    private static final String[] CATEGORIES = {
+            TaxManager.CAT_EXEMPT, TaxManager.CAT_ESSENTIAL, TaxManager.CAT_STANDARD
+    };
+    private static final String[] INDEXED_COLUMNS = {"barcode", "scannedAt", "taxCategory"};
+
+    private AppDatabase db;
+    private ProductDao productDao;
+
+    @Before
+    public void createDb() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        productDao = db.productDao();
+
+        List<ProductItem> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            String category = i % 50 == 0 ? TaxManager.CAT_LUXURY : CATEGORIES[i % CATEGORIES.length];
+            ProductItem item = new ProductItem("Item " + i, "Brand", 10 + i % 500, category,
+                    String.valueOf(8_900_000_000_000L + i * 7919L));
+            item.setScannedAt(START + i * STEP);
+            items.add(item);
+        }
+        productDao.insertAll(items);
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    /**
+     * Pages through the history as the history screen does, checking each result.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    private long timeQueries() {
+        long start = System.nanoTime();
+        int before = Integer.MAX_VALUE;
+        for (int page = 0; page < PAGES; page++) {
+            List<ProductItem> rows = productDao.getPageBefore(before, PAGE);
+            assertEquals(PAGE, rows.size());
+            before = rows.get(rows.size() - 1).id;
+        }
+        before = Integer.MAX_VALUE;
+        for (int page = 0; page < PAGES; page++) {
+            List<ProductItem> rows = productDao.getCategoryPageBefore(before, TaxManager.CAT_LUXURY, 0, Long.MAX_VALUE, PAGE);
+            assertEquals(PAGE, rows.size());
+            before = rows.get(rows.size() - 1).id;
+        }
+        // The oldest day, at the far end of the ID order
+        before = Integer.MAX_VALUE;
+        int dayRows = 0;
+        List<ProductItem> rows;
+        do {
+            rows = productDao.getRangePageBefore(before, START, START + DAY, PAGE);
+            dayRows += rows.size();
+            if (!rows.isEmpty()) before = rows.get(rows.size() - 1).id;
+        } while (rows.size() == PAGE);
+        assertEquals(DAY / STEP, dayRows);
+        // New scans above the anchor
+        assertEquals(PAGE, productDao.getPageAfter(ROWS - 2 * PAGE, Integer.MAX_VALUE, PAGE).size());
+        return System.nanoTime() - start;
+    }
+
+    private String queryPlan(SupportSQLiteDatabase sql, String query) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = sql.query("EXPLAIN QUERY PLAN " + query)) {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) plan.append(cursor.getString(detail)).append('\n');
+        }
+        return plan.toString();
+    }
+
+    @Test
+    public void testCategoryPageUsesIndexWithoutSorting() {
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        String plan = queryPlan(sql, "SELECT * FROM product_table WHERE taxCategory = '" + TaxManager.CAT_LUXURY + "' "
+                + "AND id < 1000 AND scannedAt >= 0 AND scannedAt < 9223372036854775807 ORDER BY id DESC LIMIT 50");
+        assertTrue(plan, plan.contains("index_product_table_taxCategory"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void benchmarkHistoryQueries() {
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        for (String column : INDEXED_COLUMNS) {
+            sql.execSQL("DROP INDEX `index_product_table_" + column + "`");
+        }
+        timeQueries(); // Warm up the page cache
+        long withoutIndices = timeQueries();
+
+        for (String column : INDEXED_COLUMNS) {
+            sql.execSQL("CREATE INDEX `index_product_table_" + column + "` ON `product_table` (`" + column + "`)");
+        }
+        timeQueries();
+        long withIndices = timeQueries();
+
+        Log.i(TAG, String.format("%d rows, %d pages each of all rows and one category, plus one day: "
+                        + "%.1f ms without indices, %.1f ms with",
+                ROWS, PAGES, withoutIndices / 1e6, withIndices / 1e6));
+    }
+}
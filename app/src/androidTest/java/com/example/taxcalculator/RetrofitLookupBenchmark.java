@@ -0,0 +1,90 @@
+package com.example.taxcalculator;
+
+import static org.junit.Assert.assertNotNull;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import com.example.taxcalculator.api.OpenFoodFactsApi;
+import com.example.taxcalculator.api.RetrofitClient;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Benchmark: API client lookup
+ * Looks up the Open Food Facts client through RetrofitClient's per-host registry and compares it
+ * with the old lookup that built a new Retrofit and converter for every call. Logs the objects
+ * allocated and the time per lookup, counted with the runtime's allocation counter on the test
+ * thread, and the time and allocations the registry saves.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class RetrofitLookupBenchmark {
+
+    private static final String TAG = "RetrofitLookupBenchmark";
+    private static final String FOOD_URL = "https://world.openfoodfacts.org/";
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Allocations and time of one way of looking up the client.
+     */
+    private static final class Result {
+        long objects;
+        long nanos;
+    }
+
+    /**
+     * Looks up the client once.
+     */
+    private interface Lookup {
+        OpenFoodFactsApi get();
+    }
+
+    /**
+     * The lookup before the registry: a new Retrofit and converter per call.
+     */
+    private static OpenFoodFactsApi buildUncached() {
+        return new Retrofit.Builder()
+                .baseUrl(FOOD_URL)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(OpenFoodFactsApi.class);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Result measure(Lookup lookup) {
+        for (int i = 0; i < WARMUP; i++) assertNotNull(lookup.get());
+
+        Result result = new Result();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) lookup.get();
+        result.nanos = SystemClock.elapsedRealtimeNanos() - start;
+        Debug.stopAllocCounting();
+        result.objects = Debug.getThreadAllocCount();
+        return result;
+    }
+
+    @Test
+    public void benchmarkLookupCost() {
+        Result rebuilt = measure(RetrofitLookupBenchmark::buildUncached);
+        Result cached = measure(() -> RetrofitClient.getApi("food"));
+
+        double lookups = ITERATIONS;
+        Log.i(TAG, String.format("%d lookups: rebuilt %.1f objects, %.2f us; cached %.1f objects, %.2f us "
+                        + "(%.2f us and %.1f objects saved per lookup)",
+                ITERATIONS, rebuilt.objects / lookups, rebuilt.nanos / lookups / 1e3,
+                cached.objects / lookups, cached.nanos / lookups / 1e3,
+                (rebuilt.nanos - cached.nanos) / lookups / 1e3, (rebuilt.objects - cached.objects) / lookups));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.taxcalculator;
+
+import android.os.Bundle;
+
+import androidx.test.runner.AndroidJUnitRunner;
+
+import com.example.taxcalculator.database.AppDatabase;
+
+/**
+ * Test runner for the instrumented tests.
+ * Points the app at a separate database before the application starts, so tests that drive the
+ * real screens fill and clear their own history instead of the user's.
+ */
+public class TaxCalculatorTestRunner extends AndroidJUnitRunner {
+
+    /**
+     * The database file the app uses while instrumented tests run.
+     */
+    public static final String TEST_DATABASE = "tax_history_test_db";
+
+    @Override
+    public void onCreate(Bundle arguments) {
+        AppDatabase.setDatabaseName(TEST_DATABASE);
+        super.onCreate(arguments);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.taxcalculator.activities;
 
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageButton;
@@ -16,13 +17,23 @@ import com.example.taxcalculator.fragments.HistoryFragment;
 import com.example.taxcalculator.fragments.ProductDialogFragment;
 import com.example.taxcalculator.fragments.ScanFragment;
 import com.example.taxcalculator.fragments.SettingsFragment;
+import com.example.taxcalculator.models.HistoryQuery;
 import com.example.taxcalculator.models.ProductItem;
 import com.example.taxcalculator.models.ProductRepository;
+import com.example.taxcalculator.models.ScanBasket;
+import com.example.taxcalculator.utils.LookupMetrics;
+import com.example.taxcalculator.utils.Money;
+import com.example.taxcalculator.utils.ScanSettings;
+import com.example.taxcalculator.utils.TaxRateSync;
 import com.example.taxcalculator.utils.ThemeHelper;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The main entry point of the application.
@@ -45,7 +56,7 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
     /**
      * Buttons for triggering scanning and history operations.
      */
-    private Button btnScan, btnHistory;
+    private Button btnScan, btnScanBasket, btnHistory;
 
     /**
      * Button for opening the settings menu.
@@ -62,6 +73,22 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
      */
     private ProductRepository repository;
 
+    /**
+     * Time (elapsed realtime nanos) at which the barcode currently being looked up was scanned,
+     * or 0 if no scan is waiting for its dialog.
+     */
+    private long scanStartedAt;
+
+    /**
+     * Searches this activity started and still waits for, by callback, with their barcodes.
+     */
+    private final Map<ProductRepository.ScanCallback, String> searches = new ConcurrentHashMap<>();
+
+    /**
+     * Basket lines from a continuous scan that still need details, shown one dialog at a time.
+     */
+    private final ArrayDeque<ScanBasket.Line> pendingDetails = new ArrayDeque<>();
+
     /**
      * Called when the activity is first created.
      * Initializes the theme, sets up the content view, repository, and UI components.
@@ -73,10 +100,17 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         ThemeHelper.applyTheme(this);
+        // Rates must be in place before anything is taxed; the cloud delta follows in the background
+        TaxRateSync rateSync = TaxRateSync.getInstance(this);
+        rateSync.loadLocal();
+        rateSync.sync();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        repository = new ProductRepository(getApplication());
+        repository = ProductRepository.getInstance(getApplication());
+        if (savedInstanceState == null) {
+            repository.prefetchCatalog(ScanSettings.getPrefetchPrefixes(this));
+        }
 
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
             @Override
@@ -95,6 +129,28 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
         setupListeners();
     }
 
+    /**
+     * Writes buffered scans and starts their upload when the app leaves the foreground,
+     * where the process may be killed without further notice.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        repository.flushWrites();
+    }
+
+    /**
+     * Cancels this activity's lookups still in flight so their callbacks do not outlive it.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (Map.Entry<ProductRepository.ScanCallback, String> search : searches.entrySet()) {
+            repository.cancelSearch(search.getValue(), search.getKey());
+        }
+        searches.clear();
+    }
+
     /**
      * Binds UI components to their respective XML IDs.
      */
@@ -109,6 +165,7 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
 
         btnSettings = findViewById(R.id.settingBtn);
         btnScan = findViewById(R.id.scanBtn);
+        btnScanBasket = findViewById(R.id.scanBasketBtn);
         btnHistory = findViewById(R.id.btnHistory);
     }
 
@@ -116,45 +173,40 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
      * Sets up click listeners for the main buttons.
      */
     private void setupListeners() {
-        btnScan.setOnClickListener(v -> {
-            ScanFragment fragment = new ScanFragment();
+        btnScan.setOnClickListener(v -> openScanner(false));
+        btnScanBasket.setOnClickListener(v -> openScanner(true));
+
+        // The history fragment pages its rows in itself; nothing is loaded up front
+        btnHistory.setOnClickListener(v -> {
             findViewById(R.id.fragmentContainer).setVisibility(View.VISIBLE);
             getSupportFragmentManager()
                     .beginTransaction()
-                    .replace(R.id.fragmentContainer, fragment)
+                    .replace(R.id.fragmentContainer, HistoryFragment.newInstance(HistoryQuery.ALL))
                     .addToBackStack(null)
                     .commit();
         });
 
-        btnHistory.setOnClickListener(v -> {
-            repository.getAllProducts(new ProductRepository.DataCallback<List<ProductItem>>() {
-                @Override
-                public void onSuccess(List<ProductItem> data) {
-                    runOnUiThread(() -> {
-                        ArrayList<ProductItem> historyList = new ArrayList<>(data);
-                        HistoryFragment fragment = HistoryFragment.newInstance(historyList);
-                        findViewById(R.id.fragmentContainer).setVisibility(View.VISIBLE);
-                        getSupportFragmentManager()
-                                .beginTransaction()
-                                .replace(R.id.fragmentContainer, fragment)
-                                .addToBackStack(null)
-                                .commit();
-                    });
-                }
-
-                @Override
-                public void onFailure(String error) {
-                    runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error loading history", Toast.LENGTH_SHORT).show());
-                }
-            });
-        });
-
         btnSettings.setOnClickListener(view -> {
             SettingsFragment fragment = new SettingsFragment();
             fragment.show(getSupportFragmentManager(), "settingsBottomSheet");
         });
     }
 
+    /**
+     * Opens the camera scanner.
+     *
+     * @param continuous True to scan several items into a basket, false for a single item.
+     */
+    private void openScanner(boolean continuous) {
+        ScanFragment fragment = ScanFragment.newInstance(continuous);
+        findViewById(R.id.fragmentContainer).setVisibility(View.VISIBLE);
+        getSupportFragmentManager()
+                .beginTransaction()
+                .replace(R.id.fragmentContainer, fragment)
+                .addToBackStack(null)
+                .commit();
+    }
+
     /**
      * Updates the UI with the details of the selected product.
      * Calculates and displays tax details based on the product's tax category.
@@ -168,12 +220,14 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
 
         tvProductName.setText(selectedProduct.getName());
         tvBrandName.setText(selectedProduct.getBrand());
-        tvTotalPrice.setText(String.format(Locale.getDefault(), "₹ %.2f", selectedProduct.getTotalPrice()));
+        long pricePaise = selectedProduct.getPricePaise();
+        long taxPaise = selectedProduct.getTaxAmountPaise();
+        tvTotalPrice.setText(Money.format(pricePaise));
 
         tvTaxRate.setText(String.format(Locale.getDefault(), "%.0f%%(GST)", selectedProduct.getTaxRate()));
 
-        tvTaxAmount.setText(String.format(Locale.getDefault(), "₹ %.2f", selectedProduct.getTaxAmount()));
-        tvNetPrice.setText(String.format(Locale.getDefault(), "₹ %.2f", selectedProduct.getNetPrice()));
+        tvTaxAmount.setText(Money.format(taxPaise));
+        tvNetPrice.setText(Money.format(pricePaise - taxPaise));
     }
 
     /**
@@ -204,9 +258,11 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
      * @param barcodeValue The scanned barcode string.
      */
     public void onProductScanned(String barcodeValue) {
-        repository.searchProduct(barcodeValue, new ProductRepository.ScanCallback() {
+        scanStartedAt = SystemClock.elapsedRealtimeNanos();
+        ProductRepository.ScanCallback callback = new ProductRepository.ScanCallback() {
             @Override
             public void onCloudFound(ProductItem item) {
+                searches.remove(this);
                 runOnUiThread(() -> {
                     Toast.makeText(MainActivity.this, "Found in Cloud!", Toast.LENGTH_SHORT).show();
                     showProductDialog(item.getName(), item.getBrand(), barcodeValue, item.getPrice(), item.getTaxCategory());
@@ -215,11 +271,13 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
 
             @Override
             public void onApiFound(String name, String brand, String barcode) {
+                searches.remove(this);
                 runOnUiThread(() -> showProductDialog(name, brand, barcode, 0.0, null));
             }
 
             @Override
             public void onManualEntryRequired(String barcode) {
+                searches.remove(this);
                 runOnUiThread(() -> {
                     Toast.makeText(MainActivity.this, "Not found. Please add details.", Toast.LENGTH_SHORT).show();
                     showProductDialog("", "", barcode, 0.0, null);
@@ -228,6 +286,7 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
 
             @Override
             public void onBookDetected(String barcode) {
+                searches.remove(this);
                 runOnUiThread(() -> {
                     Toast.makeText(MainActivity.this, "Book detected!", Toast.LENGTH_SHORT).show();
                     showProductDialog("", "", barcode, 0.0, null);
@@ -238,7 +297,48 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
             public void onSearchStatus(String status) {
                 runOnUiThread(() -> Toast.makeText(MainActivity.this, status, Toast.LENGTH_SHORT).show());
             }
-        });
+        };
+        if (barcodeValue != null) searches.put(callback, barcodeValue);
+        repository.searchProduct(barcodeValue, callback);
+    }
+
+    /**
+     * Handles the basket of a continuous scan session.
+     * Priced items were already saved while scanning; the last one is shown on the product card.
+     * Items that still need details are then presented one dialog at a time.
+     *
+     * @param basket The finished basket.
+     */
+    public void onBasketScanned(ScanBasket basket) {
+        List<ScanBasket.Line> priced = basket.getPricedLines();
+        if (!priced.isEmpty()) {
+            selectedProduct = priced.get(priced.size() - 1).getItem();
+            updateProductCard();
+            StringBuilder message = new StringBuilder().append(basket.getItemCount()).append(" items · ");
+            Money.appendTo(message, basket.getTotalPaise()).append(" (tax ");
+            Money.appendTo(message, basket.getTaxTotalPaise()).append(')');
+            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        }
+        pendingDetails.addAll(basket.getPendingLines());
+        showNextPendingDetails();
+    }
+
+    /**
+     * Shows the dialog for the next basket line that needs details, if any.
+     */
+    private void showNextPendingDetails() {
+        ScanBasket.Line line = pendingDetails.poll();
+        if (line != null) {
+            showProductDialog(line.getName(), line.getBrand(), line.getBarcode(), 0.0, null, line.getQuantity());
+        }
+    }
+
+    /**
+     * Called when a product dialog is closed; moves on to the next basket line needing details.
+     */
+    @Override
+    public void onProductDialogClosed() {
+        showNextPendingDetails();
     }
 
     /**
@@ -251,33 +351,66 @@ public class MainActivity extends AppCompatActivity implements ProductDialogFrag
      * @param categoryId The tax category ID of the product (optional).
      */
     private void showProductDialog(String name, String brand, String barcode, double price, String categoryId) {
-        ProductDialogFragment dialog = ProductDialogFragment.newInstance(name, brand, barcode, price, categoryId);
+        showProductDialog(name, brand, barcode, price, categoryId, 1);
+    }
+
+    /**
+     * Displays the product details dialog for a product that was scanned several times.
+     *
+     * @param name       The name of the product (optional).
+     * @param brand      The brand of the product (optional).
+     * @param barcode    The barcode of the product.
+     * @param price      The price of the product (optional).
+     * @param categoryId The tax category ID of the product (optional).
+     * @param quantity   How many times the product was scanned; that many scans are saved.
+     */
+    private void showProductDialog(String name, String brand, String barcode, double price, String categoryId,
+                                   int quantity) {
+        if (scanStartedAt != 0) {
+            LookupMetrics.getInstance().recordScanToDialog((SystemClock.elapsedRealtimeNanos() - scanStartedAt) / 1000);
+            scanStartedAt = 0;
+        }
+        ProductDialogFragment dialog = ProductDialogFragment.newInstance(name, brand, barcode, price, categoryId, quantity);
         dialog.setListener(this);
         dialog.show(getSupportFragmentManager(), "ProductDialog");
     }
 
     /**
      * Callback method invoked when a product is saved from the dialog.
-     * Saves the product to the repository and updates the UI.
+     * Saves one scan per unit, as a continuous scan saves priced items, and updates the UI once
+     * all of them are stored.
      *
-     * @param item The product item to be saved.
+     * @param item     The product item to be saved.
+     * @param quantity How many of the product were scanned.
      */
     @Override
-    public void onProductSaved(ProductItem item) {
-        repository.insertProduct(item, new ProductRepository.DataCallback<Void>() {
+    public void onProductSaved(ProductItem item, int quantity) {
+        AtomicInteger remaining = new AtomicInteger(quantity);
+        AtomicBoolean failed = new AtomicBoolean();
+        ProductRepository.DataCallback<Void> callback = new ProductRepository.DataCallback<Void>() {
             @Override
             public void onSuccess(Void data) {
-                runOnUiThread(() -> {
-                    selectedProduct = item;
-                    updateProductCard();
-                    Toast.makeText(MainActivity.this, "Saved!", Toast.LENGTH_SHORT).show();
-                });
+                if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                    runOnUiThread(() -> {
+                        selectedProduct = item;
+                        updateProductCard();
+                        Toast.makeText(MainActivity.this, "Saved!", Toast.LENGTH_SHORT).show();
+                    });
+                }
             }
 
             @Override
             public void onFailure(String error) {
-                runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error saving product", Toast.LENGTH_SHORT).show());
+                remaining.decrementAndGet();
+                if (failed.compareAndSet(false, true)) {
+                    runOnUiThread(() -> Toast.makeText(MainActivity.this, "Error saving product", Toast.LENGTH_SHORT).show());
+                }
             }
-        });
+        };
+        repository.insertProduct(item, callback);
+        for (int i = 1; i < quantity; i++) {
+            repository.insertProduct(new ProductItem(item.getName(), item.getBrand(), item.getPrice(),
+                    item.getTaxCategory(), item.getBarcode()), callback);
+        }
     }
-}
\ No newline at end of file
+}
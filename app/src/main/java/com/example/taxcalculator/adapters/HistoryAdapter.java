@@ -9,28 +9,43 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.taxcalculator.R;
+import com.example.taxcalculator.models.HistoryPager;
+import com.example.taxcalculator.models.HistoryRow;
+import com.example.taxcalculator.models.HistoryRowCache;
 import com.example.taxcalculator.models.ProductItem;
 
-import java.util.List;
-
 /**
  * RecyclerView Adapter for displaying the history of scanned products.
- * Binds product data to the view items in the history list.
+ * Binds product data to the view items in the history list. Rows come from a HistoryPager,
+ * which loads pages as they are bound and keeps only a few of them in memory.
+ * Row IDs are stable, and the pager reports exactly which rows were inserted, reloaded or
+ * removed, so a new scan animates in at the top without rebinding the rest of the list.
+ * Price and tax strings are formatted when a page loads, so binding a row only sets text.
  */
-public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHolder> {
+public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHolder>
+        implements HistoryPager.Listener {
+
+    /**
+     * Pager supplying the products to be displayed.
+     */
+    private final HistoryPager pager;
 
     /**
-     * List of products to be displayed.
+     * Cache of the formatted rows, filled as the pager loads pages.
      */
-    private final List<ProductItem> list;
+    private final HistoryRowCache rowCache;
 
     /**
-     * Constructs a new HistoryAdapter.
+     * Constructs a new HistoryAdapter and registers it for the pager's changes.
      *
-     * @param list The list of ProductItem objects to display.
+     * @param pager    The pager supplying the ProductItem objects to display.
+     * @param rowCache The cache the pager formats loaded rows into.
      */
-    public HistoryAdapter(List<ProductItem> list) {
-        this.list = list;
+    public HistoryAdapter(HistoryPager pager, HistoryRowCache rowCache) {
+        this.pager = pager;
+        this.rowCache = rowCache;
+        setHasStableIds(true);
+        pager.setListener(this);
     }
 
     /**
@@ -57,20 +72,73 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
      */
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        ProductItem p = list.get(position);
-        holder.name.setText(p.getName());
-        // Display the net price formatted as currency
-        holder.price.setText(String.format(java.util.Locale.getDefault(), "₹ %.2f", p.getNetPrice()));
+        ProductItem p = pager.getItem(position);
+        if (p == null) {
+            // Page is being reloaded; the row is rebound once it arrives
+            holder.name.setText(null);
+            holder.price.setText(null);
+            holder.tax.setText(null);
+            return;
+        }
+        HistoryRow row = rowCache.get(p);
+        holder.name.setText(row.getName());
+        holder.price.setText(row.getPriceText());
+        holder.tax.setText(row.getTaxText());
     }
 
     /**
      * Returns the total number of items in the data set held by the adapter.
      *
-     * @return The total number of items in the list.
+     * @return The number of items loaded so far.
      */
     @Override
     public int getItemCount() {
-        return list.size();
+        return pager.getItemCount();
+    }
+
+    /**
+     * Returns the database ID of the row at a position, so RecyclerView can track rows
+     * across inserts. The pager keeps the IDs of dropped pages, so the ID never changes while
+     * a row's page is reloaded.
+     *
+     * @param position The position of the row.
+     * @return The product ID.
+     */
+    @Override
+    public long getItemId(int position) {
+        return pager.getItemId(position);
+    }
+
+    /**
+     * Shows newly loaded rows: a page at the end of the list or new scans at the top.
+     *
+     * @param position The position of the first new row.
+     * @param count    The number of new rows.
+     */
+    @Override
+    public void onItemsInserted(int position, int count) {
+        notifyItemRangeInserted(position, count);
+    }
+
+    /**
+     * Rebinds the rows of a page that was reloaded.
+     *
+     * @param position The position of the first reloaded row.
+     * @param count    The number of reloaded rows.
+     */
+    @Override
+    public void onItemsChanged(int position, int count) {
+        notifyItemRangeChanged(position, count);
+    }
+
+    /**
+     * Removes every row when the pager starts over.
+     *
+     * @param count The number of rows removed.
+     */
+    @Override
+    public void onItemsRemoved(int count) {
+        notifyItemRangeRemoved(0, count);
     }
 
     /**
@@ -78,7 +146,7 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
      * Prevents repeated calls to findViewById during scrolling.
      */
     static class ViewHolder extends RecyclerView.ViewHolder {
-        TextView name, price;
+        TextView name, price, tax;
 
         /**
          * Constructor for the ViewHolder.
@@ -89,6 +157,7 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
             super(v);
             name = v.findViewById(R.id.txtItemName);
             price = v.findViewById(R.id.txtItemPrice);
+            tax = v.findViewById(R.id.txtItemTax);
         }
     }
 }
\ No newline at end of file
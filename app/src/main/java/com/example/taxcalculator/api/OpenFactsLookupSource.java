@@ -0,0 +1,60 @@
+package com.example.taxcalculator.api;
+
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.LookupSource;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Lookup source backed by one of the Open Food/Beauty/Products Facts databases.
+ * These services only provide a name and brand, so resolved items carry no price or tax category.
+ */
+public class OpenFactsLookupSource implements LookupSource {
+
+    /**
+     * The API type passed to {@link RetrofitClient#getApi(String)} ("food", "beauty" or "product").
+     */
+    private final String type;
+
+    /**
+     * Constructs a new OpenFactsLookupSource.
+     *
+     * @param type The API type ("food", "beauty" or "product").
+     */
+    public OpenFactsLookupSource(String type) {
+        this.type = type;
+    }
+
+    @Override
+    public String getName() {
+        return "openfacts_" + type;
+    }
+
+    @Override
+    public Cancellable lookup(String barcode, Listener listener) {
+        Call<ProductResponse> call = RetrofitClient.getApi(type).getProduct(barcode);
+        call.enqueue(new Callback<ProductResponse>() {
+            @Override
+            public void onResponse(Call<ProductResponse> call, Response<ProductResponse> response) {
+                ProductResponse body = response.body();
+                if (response.isSuccessful() && body != null && body.status == 1 && body.product != null) {
+                    listener.onFound(new ProductItem(body.product.getBestName(), body.product.brands, 0.0, null, barcode));
+                } else if (response.isSuccessful() || response.code() == 404) {
+                    listener.onMiss(MISS_NOT_FOUND);
+                } else {
+                    listener.onMiss("http_" + response.code());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ProductResponse> call, Throwable t) {
+                if (!call.isCanceled()) {
+                    listener.onMiss(MISS_ERROR);
+                }
+            }
+        });
+        return call::cancel;
+    }
+}
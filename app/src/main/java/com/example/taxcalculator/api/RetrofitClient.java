@@ -1,35 +1,82 @@
 package com.example.taxcalculator.api;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Singleton client for creating Retrofit API instances.
  * Manages the connection endpoints for various external product databases.
+ * All APIs share a single OkHttp client so that connections (and their TLS sessions)
+ * to each host are pooled and reused across lookups instead of being rebuilt per scan.
  */
 public class RetrofitClient {
 
+    /**
+     * Base URL of the Open Food Facts service (default for unknown types).
+     */
+    static final String FOOD_URL = "https://world.openfoodfacts.org/";
+
+    /**
+     * Base URL of the Open Beauty Facts service.
+     */
+    static final String BEAUTY_URL = "https://world.openbeautyfacts.org/";
+
+    /**
+     * Base URL of the Open Products Facts service.
+     */
+    static final String PRODUCT_URL = "https://world.openproductsfacts.org/";
+
+    /**
+     * Base URL of the UPCitemdb service.
+     */
+    static final String UPC_URL = "https://api.upcitemdb.com/";
+
+    /**
+     * Shared HTTP client. One connection pool keeps idle keep-alive connections to each of the
+     * four hosts warm, and HTTP/2 lets concurrent calls to the same host multiplex on one socket.
+     */
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(8, 5, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true)
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(8, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * Shared Gson converter, so the Gson type adapters are only built once.
+     */
+    private static final GsonConverterFactory CONVERTER = GsonConverterFactory.create();
+
+    /**
+     * Registry of created Open*Facts API instances, keyed by base URL.
+     */
+    private static final Map<String, OpenFoodFactsApi> OPEN_FACTS_APIS = new ConcurrentHashMap<>();
+
+    /**
+     * Lazily created UPCitemdb API instance.
+     */
+    private static volatile UpcItemDbApi upcApi;
+
     /**
      * Creates an API instance for the Open Food Facts network (Food, Beauty, or Products).
      * Automatically selects the correct base URL based on the requested type.
+     * Instances are cached per host, so repeated calls return the same object.
      *
      * @param type The type of database to query ("food", "beauty", or "product").
      * @return An implementation of the OpenFoodFactsApi interface.
      */
     public static OpenFoodFactsApi getApi(String type) {
-        String baseUrl = "https://world.openfoodfacts.org/"; // Default to Food Facts
-
-        if ("beauty".equals(type)) {
-            baseUrl = "https://world.openbeautyfacts.org/";
-        } else if ("product".equals(type)) {
-            baseUrl = "https://world.openproductsfacts.org/";
-        }
-
-        return new Retrofit.Builder()
-                .baseUrl(baseUrl)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build()
-                .create(OpenFoodFactsApi.class);
+        return OPEN_FACTS_APIS.computeIfAbsent(resolveBaseUrl(type),
+                baseUrl -> buildRetrofit(baseUrl).create(OpenFoodFactsApi.class));
     }
 
     /**
@@ -39,10 +86,51 @@ public class RetrofitClient {
      * @return An implementation of the UpcItemDbApi interface.
      */
     public static UpcItemDbApi getUpcApi() {
+        UpcItemDbApi api = upcApi;
+        if (api == null) {
+            synchronized (RetrofitClient.class) {
+                api = upcApi;
+                if (api == null) {
+                    api = buildRetrofit(UPC_URL).create(UpcItemDbApi.class);
+                    upcApi = api;
+                }
+            }
+        }
+        return api;
+    }
+
+    /**
+     * Returns the shared OkHttp client used by every API instance.
+     *
+     * @return The shared OkHttpClient.
+     */
+    public static OkHttpClient getHttpClient() {
+        return HTTP_CLIENT;
+    }
+
+    /**
+     * Maps an API type to the base URL of its host.
+     *
+     * @param type The type of database ("food", "beauty", or "product").
+     * @return The base URL, defaulting to Open Food Facts.
+     */
+    static String resolveBaseUrl(String type) {
+        if ("beauty".equals(type)) return BEAUTY_URL;
+        if ("product".equals(type)) return PRODUCT_URL;
+        return FOOD_URL;
+    }
+
+    /**
+     * Builds a Retrofit instance for the given host on top of the shared client and converter.
+     *
+     * @param baseUrl The base URL of the service.
+     * @return A configured Retrofit instance.
+     */
+    static Retrofit buildRetrofit(String baseUrl) {
         return new Retrofit.Builder()
-                .baseUrl("https://api.upcitemdb.com/")
-                .addConverterFactory(GsonConverterFactory.create())
-                .build()
-                .create(UpcItemDbApi.class);
+                .baseUrl(baseUrl)
+                .client(HTTP_CLIENT)
+                .addConverterFactory(CONVERTER)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.example.taxcalculator.api;
+
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.LookupSource;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Lookup source backed by the UPCitemdb trial API.
+ * Used as the deep lookup when the Open*Facts databases do not know a barcode.
+ */
+public class UpcLookupSource implements LookupSource {
+
+    /**
+     * Name of this source.
+     */
+    public static final String NAME = "upcitemdb";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Cancellable lookup(String barcode, Listener listener) {
+        Call<UpcItemResponse> call = RetrofitClient.getUpcApi().getProduct(barcode);
+        call.enqueue(new Callback<UpcItemResponse>() {
+            @Override
+            public void onResponse(Call<UpcItemResponse> call, Response<UpcItemResponse> response) {
+                UpcItemResponse body = response.body();
+                if (response.isSuccessful() && body != null && body.total > 0
+                        && body.items != null && !body.items.isEmpty()) {
+                    UpcItemResponse.UpcItem item = body.items.get(0);
+                    listener.onFound(new ProductItem(item.title, item.brand, 0.0, null, barcode));
+                } else if (response.isSuccessful() || response.code() == 404) {
+                    listener.onMiss(MISS_NOT_FOUND);
+                } else {
+                    listener.onMiss("http_" + response.code());
+                }
+            }
+
+            @Override
+            public void onFailure(Call<UpcItemResponse> call, Throwable t) {
+                if (!call.isCanceled()) {
+                    listener.onMiss(MISS_ERROR);
+                }
+            }
+        });
+        return call::cancel;
+    }
+}
@@ -4,14 +4,20 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import com.example.taxcalculator.models.LookupEntry;
+import com.example.taxcalculator.models.OutboxEntry;
 import com.example.taxcalculator.models.ProductItem;
 
 /**
  * The Room Database class for the application.
  * Manages the SQLite database instance and provides access to the Data Access Objects (DAOs).
  * Uses the Singleton pattern to ensure only one instance of the database exists.
+ * Every schema change since version 3 comes with a migration so saved history survives upgrades;
+ * the schema of each version is exported to app/schemas.
  */
-@Database(entities = {ProductItem.class}, version = 3, exportSchema = false)
+@Database(entities = {ProductItem.class, LookupEntry.class, OutboxEntry.class}, version = 8)
 public abstract class AppDatabase extends RoomDatabase {
 
     /**
@@ -20,14 +26,113 @@ public abstract class AppDatabase extends RoomDatabase {
      */
     public abstract ProductDao productDao();
 
+    /**
+     * Provides the Data Access Object (DAO) for the barcode lookup cache table.
+     * @return The LookupDao instance.
+     */
+    public abstract LookupDao lookupDao();
+
+    /**
+     * Provides the Data Access Object (DAO) for the upload outbox table.
+     * @return The OutboxDao instance.
+     */
+    public abstract OutboxDao outboxDao();
+
+    /**
+     * Adds the barcode lookup cache table.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `lookup_cache` (`barcode` TEXT NOT NULL, `name` TEXT, "
+                    + "`brand` TEXT, `price` REAL NOT NULL, `taxCategory` TEXT, `source` TEXT, "
+                    + "`found` INTEGER NOT NULL, `resolvedAt` INTEGER NOT NULL, `expiresAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`barcode`))");
+        }
+    };
+
+    /**
+     * Adds the scan time to saved products. Existing rows get 0 and are taxed at the current rate.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE product_table ADD COLUMN scannedAt INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Indexes saved products by barcode, scan time and tax category.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_product_table_barcode` ON `product_table` (`barcode`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_product_table_scannedAt` ON `product_table` (`scannedAt`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_product_table_taxCategory` ON `product_table` (`taxCategory`)");
+        }
+    };
+
+    /**
+     * Adds the outbox of contributions waiting to be uploaded to the cloud.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `upload_outbox` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`barcode` TEXT NOT NULL, `name` TEXT, `brand` TEXT, `price` REAL NOT NULL, "
+                    + "`taxCategory` TEXT, `createdAt` INTEGER NOT NULL)");
+        }
+    };
+
+    /**
+     * Adds retry state to the outbox and keeps only the newest entry per barcode.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE upload_outbox ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE upload_outbox ADD COLUMN nextAttemptAt INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE upload_outbox ADD COLUMN lastError TEXT");
+            db.execSQL("DELETE FROM upload_outbox WHERE id NOT IN (SELECT MAX(id) FROM upload_outbox GROUP BY barcode)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_upload_outbox_barcode` ON `upload_outbox` (`barcode`)");
+        }
+    };
+
+    /**
+     * All migrations, in version order.
+     */
+    public static final Migration[] MIGRATIONS = {MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+            MIGRATION_7_8};
+
     /**
      * Volatile instance variable to ensure atomic access to the singleton.
      */
     private static volatile AppDatabase INSTANCE;
 
+    /**
+     * The file name of the database; only changed by instrumented tests.
+     */
+    private static volatile String databaseName = "tax_history_db";
+
+    /**
+     * Opens the database under another file name, so instrumented tests that drive the app never
+     * read or clear the user's history. Must be called before the database is first opened.
+     *
+     * @param name The database file name.
+     * @throws IllegalStateException If the database is already open.
+     */
+    public static void setDatabaseName(String name) {
+        synchronized (AppDatabase.class) {
+            if (INSTANCE != null) throw new IllegalStateException("Database already opened as " + databaseName);
+            databaseName = name;
+        }
+    }
+
     /**
      * Retrieves the singleton instance of the AppDatabase.
-     * Creates the database if it doesn't exist, using a destructive migration strategy.
+     * Creates the database if it doesn't exist and migrates older versions in place.
+     * Only versions older than 3, whose schemas are unknown, are rebuilt destructively.
      *
      * @param context The application context.
      * @return The singleton AppDatabase instance.
@@ -37,11 +142,11 @@ public abstract class AppDatabase extends RoomDatabase {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    AppDatabase.class, "tax_history_db")
+                                    AppDatabase.class, databaseName)
                             // Allows database queries on the main thread (Note: Not recommended for large operations in production)
                             .allowMainThreadQueries()
-                            // Wipes and rebuilds the database if the schema version changes, preventing crashes during development
-                            .fallbackToDestructiveMigration()
+                            .addMigrations(MIGRATIONS)
+                            .fallbackToDestructiveMigrationFrom(true, 1, 2)
                             .build();
                 }
             }
@@ -0,0 +1,66 @@
+package com.example.taxcalculator.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import com.example.taxcalculator.models.LookupEntry;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the persisted barcode lookup cache.
+ * Stores one entry per barcode; newer lookups replace older ones.
+ */
+@Dao
+public interface LookupDao {
+
+    /**
+     * Inserts a lookup entry, replacing any existing entry for the same barcode.
+     *
+     * @param entry The LookupEntry to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(LookupEntry entry);
+
+    /**
+     * Inserts several lookup entries in one transaction, replacing existing entries for the
+     * same barcodes. Used to store prefetched catalog pages.
+     *
+     * @param entries The entries to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertAll(List<LookupEntry> entries);
+
+    /**
+     * Finds the cached lookup for a barcode.
+     *
+     * @param barcode The barcode string to search for.
+     * @return The matching LookupEntry, or null if none is stored.
+     */
+    @Query("SELECT * FROM lookup_cache WHERE barcode = :barcode LIMIT 1")
+    LookupEntry find(String barcode);
+
+    /**
+     * Deletes the cached lookup for a barcode.
+     *
+     * @param barcode The barcode string to remove.
+     */
+    @Query("DELETE FROM lookup_cache WHERE barcode = :barcode")
+    void delete(String barcode);
+
+    /**
+     * Deletes all entries that have expired at the given time.
+     *
+     * @param now The current time in epoch millis.
+     * @return The number of deleted entries.
+     */
+    @Query("DELETE FROM lookup_cache WHERE expiresAt <= :now")
+    int deleteExpired(long now);
+
+    /**
+     * Deletes every cached lookup.
+     */
+    @Query("DELETE FROM lookup_cache")
+    void deleteAll();
+}
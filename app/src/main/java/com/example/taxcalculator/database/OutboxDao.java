@@ -0,0 +1,95 @@
+package com.example.taxcalculator.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import com.example.taxcalculator.models.OutboxEntry;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the upload outbox.
+ * Entries are queued with the saved products and removed once the cloud accepted them.
+ * Queuing a barcode that is already waiting replaces its entry, so the last write wins.
+ */
+@Dao
+public interface OutboxDao {
+
+    /**
+     * Queues several entries, replacing any entry already waiting for the same barcode.
+     *
+     * @param entries The OutboxEntry objects to queue.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<OutboxEntry> entries);
+
+    /**
+     * Retrieves the oldest entries that are due for an upload attempt.
+     *
+     * @param now   The current time in epoch millis.
+     * @param limit The maximum number of entries.
+     * @return The due entries, oldest first.
+     */
+    @Query("SELECT * FROM upload_outbox WHERE nextAttemptAt <= :now ORDER BY id LIMIT :limit")
+    List<OutboxEntry> getDue(long now, int limit);
+
+    /**
+     * Records a failed upload attempt and when to try again.
+     *
+     * @param ids           The IDs of the entries that failed.
+     * @param nextAttemptAt The earliest time of the next attempt, in epoch millis.
+     * @param error         The error of the attempt.
+     */
+    @Query("UPDATE upload_outbox SET attempts = attempts + 1, nextAttemptAt = :nextAttemptAt, lastError = :error "
+            + "WHERE id IN (:ids)")
+    void markFailed(List<Integer> ids, long nextAttemptAt, String error);
+
+    /**
+     * Finds when the next entry becomes due.
+     *
+     * @return The earliest next attempt time in epoch millis, or null if no entry is waiting
+     *         apart from parked ones.
+     */
+    @Query("SELECT MIN(nextAttemptAt) FROM upload_outbox WHERE nextAttemptAt < " + OutboxEntry.PARKED)
+    Long getNextAttemptAt();
+
+    /**
+     * Makes the parked entries due again. Their attempt counts are kept.
+     *
+     * @param now The current time in epoch millis.
+     */
+    @Query("UPDATE upload_outbox SET nextAttemptAt = :now WHERE nextAttemptAt = " + OutboxEntry.PARKED)
+    void unpark(long now);
+
+    /**
+     * Counts the parked entries.
+     *
+     * @return The number of entries that are not retried until they are unparked.
+     */
+    @Query("SELECT COUNT(*) FROM upload_outbox WHERE nextAttemptAt = " + OutboxEntry.PARKED)
+    int countParked();
+
+    /**
+     * Finds when the oldest waiting entry was queued.
+     *
+     * @return The queue time in epoch millis, or null if the outbox is empty.
+     */
+    @Query("SELECT MIN(createdAt) FROM upload_outbox")
+    Long getOldestCreatedAt();
+
+    /**
+     * Removes uploaded entries.
+     *
+     * @param ids The IDs of the entries to remove.
+     */
+    @Query("DELETE FROM upload_outbox WHERE id IN (:ids)")
+    void deleteByIds(List<Integer> ids);
+
+    /**
+     * Counts the queued entries.
+     *
+     * @return The number of entries waiting to be uploaded.
+     */
+    @Query("SELECT COUNT(*) FROM upload_outbox")
+    int count();
+}
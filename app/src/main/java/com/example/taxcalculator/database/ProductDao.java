@@ -23,13 +23,93 @@ public interface ProductDao {
     void insert(ProductItem product);
 
     /**
-     * Retrieves all products from the database.
-     * The results are ordered by ID in descending order (newest first).
+     * Inserts several products in a single transaction.
      *
-     * @return A list of all ProductItem objects.
+     * @param products The ProductItem objects to be inserted.
      */
-    @Query("SELECT * FROM product_table ORDER BY id DESC")
-    List<ProductItem> getAll();
+    @Insert
+    void insertAll(List<ProductItem> products);
+
+    /**
+     * Retrieves one page of history with keyset pagination: the newest products with an ID
+     * below the given one. Seeks on the primary key, so every page costs the same.
+     *
+     * @param beforeId The ID of the last product of the previous page, or Integer.MAX_VALUE for the first page.
+     * @param limit    The maximum number of products.
+     * @return The products, newest first.
+     */
+    @Query("SELECT * FROM product_table WHERE id < :beforeId ORDER BY id DESC LIMIT :limit")
+    List<ProductItem> getPageBefore(int beforeId, int limit);
+
+    /**
+     * Retrieves one page of the history within a scan-time range, with keyset pagination.
+     *
+     * @param beforeId The ID of the last product of the previous page, or Integer.MAX_VALUE for the first page.
+     * @param from     The start of the scan-time range in epoch millis, inclusive.
+     * @param to       The end of the scan-time range in epoch millis, exclusive.
+     * @param limit    The maximum number of products.
+     * @return The matching products, newest first.
+     */
+    @Query("SELECT * FROM product_table WHERE id < :beforeId "
+            + "AND scannedAt >= :from AND scannedAt < :to ORDER BY id DESC LIMIT :limit")
+    List<ProductItem> getRangePageBefore(int beforeId, long from, long to, int limit);
+
+    /**
+     * Retrieves one page of one tax category's history with keyset pagination.
+     * The category is matched directly, so the category index serves the query: its entries are
+     * ordered by ID within a category, which also gives the page order without sorting.
+     *
+     * @param beforeId The ID of the last product of the previous page, or Integer.MAX_VALUE for the first page.
+     * @param category The tax category ID.
+     * @param from     The start of the scan-time range in epoch millis, inclusive.
+     * @param to       The end of the scan-time range in epoch millis, exclusive.
+     * @param limit    The maximum number of products.
+     * @return The matching products, newest first.
+     */
+    @Query("SELECT * FROM product_table WHERE taxCategory = :category AND id < :beforeId "
+            + "AND scannedAt >= :from AND scannedAt < :to ORDER BY id DESC LIMIT :limit")
+    List<ProductItem> getCategoryPageBefore(int beforeId, String category, long from, long to, int limit);
+
+    /**
+     * Retrieves the products saved after a given one, newest first, below an upper bound.
+     * Used to pick up new scans without reloading the rows already shown.
+     *
+     * @param afterId  The ID of the newest product already shown.
+     * @param beforeId The exclusive upper bound of the IDs, or Integer.MAX_VALUE for none.
+     * @param limit    The maximum number of products.
+     * @return The products, newest first.
+     */
+    @Query("SELECT * FROM product_table WHERE id > :afterId AND id < :beforeId ORDER BY id DESC LIMIT :limit")
+    List<ProductItem> getPageAfter(int afterId, int beforeId, int limit);
+
+    /**
+     * Retrieves the products within a scan-time range saved after a given one, newest first.
+     *
+     * @param afterId  The ID of the newest product already shown.
+     * @param beforeId The exclusive upper bound of the IDs, or Integer.MAX_VALUE for none.
+     * @param from     The start of the scan-time range in epoch millis, inclusive.
+     * @param to       The end of the scan-time range in epoch millis, exclusive.
+     * @param limit    The maximum number of products.
+     * @return The matching products, newest first.
+     */
+    @Query("SELECT * FROM product_table WHERE id > :afterId AND id < :beforeId "
+            + "AND scannedAt >= :from AND scannedAt < :to ORDER BY id DESC LIMIT :limit")
+    List<ProductItem> getRangePageAfter(int afterId, int beforeId, long from, long to, int limit);
+
+    /**
+     * Retrieves the products of one tax category saved after a given one, newest first.
+     *
+     * @param afterId  The ID of the newest product already shown.
+     * @param beforeId The exclusive upper bound of the IDs, or Integer.MAX_VALUE for none.
+     * @param category The tax category ID.
+     * @param from     The start of the scan-time range in epoch millis, inclusive.
+     * @param to       The end of the scan-time range in epoch millis, exclusive.
+     * @param limit    The maximum number of products.
+     * @return The matching products, newest first.
+     */
+    @Query("SELECT * FROM product_table WHERE taxCategory = :category AND id > :afterId AND id < :beforeId "
+            + "AND scannedAt >= :from AND scannedAt < :to ORDER BY id DESC LIMIT :limit")
+    List<ProductItem> getCategoryPageAfter(int afterId, int beforeId, String category, long from, long to, int limit);
 
     /**
      * Deletes all products from the database.
@@ -47,4 +127,4 @@ public interface ProductDao {
      */
     @Query("SELECT * FROM product_table WHERE barcode = :code LIMIT 1")
     ProductItem findByBarcode(String code);
-}
\ No newline at end of file
+}
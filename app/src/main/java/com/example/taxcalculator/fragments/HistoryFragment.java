@@ -9,29 +9,36 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.taxcalculator.R;
 import com.example.taxcalculator.adapters.HistoryAdapter;
-import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.models.HistoryPager;
+import com.example.taxcalculator.models.HistoryQuery;
+import com.example.taxcalculator.models.HistoryRowCache;
 import com.example.taxcalculator.models.ProductRepository;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Fragment responsible for displaying the scan history.
- * Fetches data from the ProductRepository and displays it in a RecyclerView.
+ * Pages the history in from the ProductRepository as the RecyclerView scrolls, so only the rows
+ * near the visible ones are held in memory, and inserts new scans at the top as they are saved.
  * Also provides functionality to clear the scan history.
  */
 public class HistoryFragment extends Fragment {
 
-    private static final String ARG_HISTORY = "history";
+    private static final String ARG_CATEGORY = "category";
+    private static final String ARG_SCANNED_FROM = "scanned_from";
+    private static final String ARG_SCANNED_TO = "scanned_to";
+    private static final String ARG_ANCHOR_ID = "anchor_id";
     private ProductRepository repository;
-    private HistoryAdapter adapter;
-    private final ArrayList<ProductItem> historyList = new ArrayList<>();
+    private HistoryQuery query = HistoryQuery.ALL;
+    private HistoryPager pager;
+    private Runnable historyObserver;
 
     /**
      * Required empty public constructor.
@@ -40,30 +47,41 @@ public class HistoryFragment extends Fragment {
 
     /**
      * Factory method to create a new instance of this fragment.
-     * While data is primarily fetched from the repository, this method allows passing an initial list if needed.
+     * Only the query is put in the arguments; the rows are paged in from the repository, so
+     * opening the history costs the same whatever its size.
      *
-     * @param history The initial list of product items.
+     * @param query The part of the history to show.
      * @return A new instance of HistoryFragment.
      */
-    public static HistoryFragment newInstance(ArrayList<ProductItem> history) {
+    public static HistoryFragment newInstance(HistoryQuery query) {
         HistoryFragment fragment = new HistoryFragment();
         Bundle args = new Bundle();
-        args.putSerializable(ARG_HISTORY, history);
+        args.putString(ARG_CATEGORY, query.getCategory());
+        args.putLong(ARG_SCANNED_FROM, query.getScannedFrom());
+        args.putLong(ARG_SCANNED_TO, query.getScannedTo());
+        args.putInt(ARG_ANCHOR_ID, query.getAnchorId());
         fragment.setArguments(args);
         return fragment;
     }
 
     /**
      * Called to do initial creation of a fragment.
-     * Initializes the ProductRepository.
+     * Reads the history query and initializes the ProductRepository.
      *
      * @param savedInstanceState If the fragment is being re-created from a previous saved state, this is the state.
      */
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Bundle args = getArguments();
+        if (args != null) {
+            query = new HistoryQuery(args.getString(ARG_CATEGORY),
+                    args.getLong(ARG_SCANNED_FROM, 0),
+                    args.getLong(ARG_SCANNED_TO, Long.MAX_VALUE),
+                    args.getInt(ARG_ANCHOR_ID, HistoryPager.FIRST_PAGE_KEY));
+        }
         if (getActivity() != null) {
-            repository = new ProductRepository(getActivity().getApplication());
+            repository = ProductRepository.getInstance(getActivity().getApplication());
         }
     }
 
@@ -95,43 +113,42 @@ public class HistoryFragment extends Fragment {
         RecyclerView recyclerView = view.findViewById(R.id.recyclerHistory);
         Button btnClear = view.findViewById(R.id.btnClearHistory);
 
-        adapter = new HistoryAdapter(historyList);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        recyclerView.setAdapter(adapter);
 
         // Load data from repository
-        loadHistory();
+        loadHistory(recyclerView);
 
         btnClear.setOnClickListener(v -> clearHistory());
     }
 
     /**
-     * Fetches the full scan history from the repository and updates the UI.
+     * Attaches a pager over the queried part of the scan history to the list and loads its first page.
+     *
+     * @param recyclerView The list showing the history.
      */
-    private void loadHistory() {
+    private void loadHistory(RecyclerView recyclerView) {
         if (repository == null) return;
-        
-        repository.getAllProducts(new ProductRepository.DataCallback<>() {
-            @Override
-            public void onSuccess(List<ProductItem> data) {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        historyList.clear();
-                        historyList.addAll(data);
-                        adapter.notifyDataSetChanged();
-                    });
-                }
-            }
 
-            @Override
-            public void onFailure(String error) {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> 
-                        Toast.makeText(getActivity(), "Error loading history", Toast.LENGTH_SHORT).show()
-                    );
-                }
-            }
-        });
+        Executor mainExecutor = ContextCompat.getMainExecutor(requireContext());
+        HistoryRowCache rowCache = new HistoryRowCache(HistoryRowCache.DEFAULT_CAPACITY, getString(R.string.history_tax_label));
+        HistoryPager created = repository.createHistoryPager(query, mainExecutor, rowCache);
+        pager = created;
+        recyclerView.setAdapter(new HistoryAdapter(created, rowCache));
+        created.start();
+        historyObserver = () -> mainExecutor.execute(created::refresh);
+        repository.observeHistory(historyObserver);
+    }
+
+    /**
+     * Called when the view previously created by onCreateView() has been detached from the fragment.
+     * Stops listening for history changes.
+     */
+    @Override
+    public void onDestroyView() {
+        if (repository != null && historyObserver != null) repository.stopObservingHistory(historyObserver);
+        historyObserver = null;
+        pager = null;
+        super.onDestroyView();
     }
 
     /**
@@ -145,8 +162,7 @@ public class HistoryFragment extends Fragment {
             public void onSuccess(Void data) {
                 if (getActivity() != null) {
                     getActivity().runOnUiThread(() -> {
-                        historyList.clear();
-                        adapter.notifyDataSetChanged();
+                        if (pager != null) pager.reset();
                         Toast.makeText(getActivity(), "History Cleared", Toast.LENGTH_SHORT).show();
                     });
                 }
@@ -1,6 +1,7 @@
 package com.example.taxcalculator.fragments;
 
 import android.app.Dialog;
+import android.content.DialogInterface;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -30,6 +31,7 @@ public class ProductDialogFragment extends DialogFragment {
     private static final String ARG_BARCODE = "barcode";
     private static final String ARG_PRICE = "price";
     private static final String ARG_CATEGORY_ID = "category_id";
+    private static final String ARG_QUANTITY = "quantity";
 
     /**
      * Listener for communicating dialog events back to the hosting activity or fragment.
@@ -40,7 +42,18 @@ public class ProductDialogFragment extends DialogFragment {
      * Interface definition for a callback to be invoked when a product is saved.
      */
     public interface ProductDialogListener {
-        void onProductSaved(ProductItem item);
+        /**
+         * Called when the user saves the product.
+         *
+         * @param item     The entered product.
+         * @param quantity How many of the product were scanned, each saved as its own scan.
+         */
+        void onProductSaved(ProductItem item, int quantity);
+
+        /**
+         * Called when the dialog goes away, whether the product was saved or not.
+         */
+        default void onProductDialogClosed() { }
     }
 
     /**
@@ -63,6 +76,22 @@ public class ProductDialogFragment extends DialogFragment {
      * @return A new instance of ProductDialogFragment.
      */
     public static ProductDialogFragment newInstance(String name, String brand, String barcode, double price, String categoryId) {
+        return newInstance(name, brand, barcode, price, categoryId, 1);
+    }
+
+    /**
+     * Creates a new instance of ProductDialogFragment for a product that was scanned several times.
+     *
+     * @param name       The initial product name (can be empty).
+     * @param brand      The initial brand name (can be empty).
+     * @param barcode    The barcode associated with the product.
+     * @param price      The initial price (0.0 if unknown).
+     * @param categoryId The ID of the tax category (can be null).
+     * @param quantity   How many times the product was scanned.
+     * @return A new instance of ProductDialogFragment.
+     */
+    public static ProductDialogFragment newInstance(String name, String brand, String barcode, double price,
+                                                    String categoryId, int quantity) {
         ProductDialogFragment fragment = new ProductDialogFragment();
         Bundle args = new Bundle();
         args.putString(ARG_NAME, name);
@@ -70,6 +99,7 @@ public class ProductDialogFragment extends DialogFragment {
         args.putString(ARG_BARCODE, barcode);
         args.putDouble(ARG_PRICE, price);
         args.putString(ARG_CATEGORY_ID, categoryId);
+        args.putInt(ARG_QUANTITY, quantity);
         fragment.setArguments(args);
         return fragment;
     }
@@ -94,6 +124,7 @@ public class ProductDialogFragment extends DialogFragment {
         String barcode = getArguments().getString(ARG_BARCODE, "");
         double price = getArguments().getDouble(ARG_PRICE, 0.0);
         String categoryId = getArguments().getString(ARG_CATEGORY_ID);
+        int quantity = Math.max(1, getArguments().getInt(ARG_QUANTITY, 1));
 
         EditText inputName = view.findViewById(R.id.inputName);
         EditText inputBrand = view.findViewById(R.id.inputBrand);
@@ -106,6 +137,7 @@ public class ProductDialogFragment extends DialogFragment {
         inputName.setText(name);
         inputBrand.setText(brand);
         if (price > 0) inputPrice.setText(String.valueOf(price));
+        if (quantity > 1) btnSave.setText(getString(R.string.save_quantity, quantity));
 
         String[] displayCategories = {
                 "Exempt (0%) - Milk, Bread",
@@ -163,7 +195,7 @@ public class ProductDialogFragment extends DialogFragment {
                 ProductItem newItem = new ProductItem(finalName, finalBrand, finalPrice, selectedCategory, barcode);
 
                 if (listener != null) {
-                    listener.onProductSaved(newItem);
+                    listener.onProductSaved(newItem, quantity);
                 }
                 dismiss();
             } else {
@@ -183,4 +215,17 @@ public class ProductDialogFragment extends DialogFragment {
 
         return dialog;
     }
-}
\ No newline at end of file
+
+    /**
+     * Notifies the listener that the dialog was closed.
+     *
+     * @param dialog The dialog that was dismissed.
+     */
+    @Override
+    public void onDismiss(@NonNull DialogInterface dialog) {
+        super.onDismiss(dialog);
+        if (listener != null) {
+            listener.onProductDialogClosed();
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.example.taxcalculator.fragments;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -17,6 +19,8 @@ import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ExperimentalGetImage;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
@@ -24,11 +28,22 @@ import androidx.fragment.app.Fragment;
 
 import com.example.taxcalculator.R;
 import com.example.taxcalculator.activities.MainActivity;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.models.ProductRepository;
+import com.example.taxcalculator.models.ScanBasket;
+import com.example.taxcalculator.utils.FrameGovernor;
+import com.example.taxcalculator.utils.LookupMetrics;
+import com.example.taxcalculator.utils.Money;
+import com.example.taxcalculator.utils.ScanQueue;
+import com.example.taxcalculator.utils.ScanSettings;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
 import com.google.mlkit.vision.barcode.BarcodeScanning;
 import com.google.mlkit.vision.barcode.common.Barcode;
 import com.google.mlkit.vision.common.InputImage;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,10 +51,15 @@ import java.util.concurrent.Executors;
 /**
  * Fragment responsible for the barcode scanning functionality.
  * Uses CameraX for the camera preview and ML Kit for barcode detection.
+ * In single mode it hands the first barcode to MainActivity and closes. In continuous mode the
+ * camera stays live: barcodes are de-duplicated and queued for background lookup, and the
+ * results accumulate into a running basket shown over the preview.
  */
 @ExperimentalGetImage
 public class ScanFragment extends Fragment {
 
+    private static final String ARG_CONTINUOUS = "continuous";
+
     /**
      * View for displaying the camera preview.
      */
@@ -50,11 +70,74 @@ public class ScanFragment extends Fragment {
      */
     private ExecutorService cameraExecutor;
 
+    /**
+     * ML Kit barcode scanner, created once per view and closed in onDestroyView.
+     */
+    private volatile BarcodeScanner scanner;
+
+    /**
+     * Camera provider and preview use case, kept so the analyzer can be rebound at a lower resolution.
+     */
+    private ProcessCameraProvider cameraProvider;
+    private Preview preview;
+
+    /**
+     * Decides which frames are analysed and at what resolution, and records per-frame timing.
+     */
+    private final FrameGovernor governor = FrameGovernor.getInstance();
+
+    /**
+     * Resolution the analyzer is currently bound at.
+     */
+    private int boundResolution;
+
     /**
      * Flag to prevent multiple scans from being processed simultaneously.
      */
     private boolean isScanning = true;
 
+    /**
+     * True if the camera stays live and every barcode is added to the basket.
+     */
+    private boolean continuous;
+
+    /**
+     * Lookup queue, basket and repository of a continuous scan session.
+     * The basket is null once it was handed to MainActivity; lookup callbacks check for that.
+     */
+    private ScanQueue scanQueue;
+    private volatile ScanBasket basket;
+    private ProductRepository repository;
+
+    /**
+     * Lookups this fragment started and still waits for, by callback, with their barcodes.
+     */
+    private final Map<ProductRepository.ScanCallback, String> lookups = new ConcurrentHashMap<>();
+
+    /**
+     * True once the user pressed Done and the fragment waits for the remaining lookups.
+     */
+    private boolean finishing;
+
+    /**
+     * Basket overlay views, only shown in continuous mode.
+     */
+    private TextView tvBasketSummary, tvBasketStatus;
+
+    /**
+     * Creates a scan fragment.
+     *
+     * @param continuous True to keep scanning and build a basket, false to scan a single item.
+     * @return A new instance of ScanFragment.
+     */
+    public static ScanFragment newInstance(boolean continuous) {
+        ScanFragment fragment = new ScanFragment();
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_CONTINUOUS, continuous);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
     /**
      * Launcher for requesting camera permission using the modern Activity Result API.
      * Replaces the deprecated onRequestPermissionsResult method.
@@ -97,8 +180,24 @@ public class ScanFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         viewFinder = view.findViewById(R.id.viewFinder);
+        scanner = BarcodeScanning.getClient(ScanSettings.buildScannerOptions(ScanSettings.isRetailOnly(requireContext())));
 
-        view.findViewById(R.id.btnClose).setOnClickListener(v -> closeFragment());
+        continuous = getArguments() != null && getArguments().getBoolean(ARG_CONTINUOUS, false);
+
+        view.findViewById(R.id.btnClose).setOnClickListener(v -> {
+            if (continuous) {
+                // Keep what was resolved so far, drop the rest
+                scanQueue.close();
+                cancelLookups();
+                finishBasket();
+            } else {
+                closeFragment();
+            }
+        });
+
+        if (continuous) {
+            setupBasket(view);
+        }
 
         // Check and Request Camera Permission
         if (ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.CAMERA)
@@ -113,61 +212,245 @@ public class ScanFragment extends Fragment {
     }
 
     /**
-     * Initializes and binds the CameraX use cases (Preview and ImageAnalysis).
-     * Sets up the ML Kit barcode scanner analyzer.
+     * Initializes the CameraX provider and binds the use cases at the configured resolution.
      */
-    @androidx.camera.core.ExperimentalGetImage
-    @OptIn(markerClass = ExperimentalGetImage.class)
     private void startCamera() {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture =
                 ProcessCameraProvider.getInstance(requireContext());
 
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                cameraProvider = cameraProviderFuture.get();
 
                 // 1. Preview (The visual feed)
-                Preview preview = new Preview.Builder().build();
+                preview = new Preview.Builder().build();
                 preview.setSurfaceProvider(viewFinder.getSurfaceProvider());
 
-                // 2. Image Analysis (The barcode reader)
-                ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
-
-                imageAnalysis.setAnalyzer(cameraExecutor, imageProxy -> {
-                    @androidx.camera.core.ExperimentalGetImage
-                    android.media.Image mediaImage = imageProxy.getImage();
-
-                    if (mediaImage != null && isScanning) {
-                        InputImage image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
-
-                        BarcodeScanning.getClient().process(image)
-                                .addOnSuccessListener(barcodes -> {
-                                    for (Barcode barcode : barcodes) {
-                                        // FOUND A BARCODE!
-                                        if (isScanning) {
-                                            isScanning = false; // Stop scanning more frames
-                                            String rawValue = barcode.getRawValue();
-                                            handleScanResult(rawValue);
-                                        }
-                                    }
-                                })
-                                .addOnCompleteListener(task -> imageProxy.close()); // Must close to get next frame
+                governor.startSession(ScanSettings.getResolution(requireContext()));
+                bindCamera(governor.getResolution());
+            } catch (ExecutionException | InterruptedException e) {
+                // Handle error
+            }
+        }, ContextCompat.getMainExecutor(requireContext()));
+    }
+
+    /**
+     * Binds the preview and a barcode analyzer at the given resolution to the view lifecycle.
+     * Called again by the frame governor when detection is too slow at the current resolution.
+     * Must run on the main thread.
+     *
+     * @param resolution The analysis resolution, one of the ScanSettings.RESOLUTION_* constants.
+     */
+    @androidx.camera.core.ExperimentalGetImage
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    private void bindCamera(int resolution) {
+        if (cameraProvider == null || getView() == null) return;
+        boundResolution = resolution;
+
+        // 2. Image Analysis (The barcode reader)
+        ResolutionSelector resolutionSelector = new ResolutionSelector.Builder()
+                .setResolutionStrategy(new ResolutionStrategy(
+                        ScanSettings.getAnalysisSize(resolution),
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                .build();
+        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(resolutionSelector)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
+
+        imageAnalysis.setAnalyzer(cameraExecutor, imageProxy -> {
+            long frameStartedAt = SystemClock.elapsedRealtimeNanos();
+            @androidx.camera.core.ExperimentalGetImage
+            android.media.Image mediaImage = imageProxy.getImage();
+
+            BarcodeScanner activeScanner = scanner;
+            if (mediaImage == null || !isScanning || activeScanner == null
+                    || !governor.onFrame(imageProxy.getImageInfo().getTimestamp())) {
+                imageProxy.close();
+                return;
+            }
+
+            InputImage image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
+            long detectStartedAt = SystemClock.elapsedRealtimeNanos();
+
+            activeScanner.process(image)
+                    .addOnSuccessListener(barcodes -> {
+                        if (!barcodes.isEmpty()) {
+                            LookupMetrics.getInstance().recordFrameToDetection(
+                                    (SystemClock.elapsedRealtimeNanos() - frameStartedAt) / 1000);
+                        }
+                        for (Barcode barcode : barcodes) {
+                            if (continuous) {
+                                scanQueue.offer(barcode.getRawValue());
+                                continue;
+                            }
+                            // FOUND A BARCODE!
+                            if (isScanning) {
+                                isScanning = false; // Stop scanning more frames
+                                String rawValue = barcode.getRawValue();
+                                handleScanResult(rawValue);
+                            }
+                        }
+                    })
+                    .addOnCompleteListener(task -> {
+                        long detectedAt = SystemClock.elapsedRealtimeNanos();
+                        imageProxy.close(); // Must close to get next frame
+                        governor.onFrameProcessed(
+                                (detectStartedAt - frameStartedAt) / 1000,
+                                (detectedAt - detectStartedAt) / 1000,
+                                (SystemClock.elapsedRealtimeNanos() - detectedAt) / 1000);
+                        // Listeners run on the main thread, so the camera can be rebound here
+                        if (governor.getResolution() != boundResolution) {
+                            bindCamera(governor.getResolution());
+                        }
+                    });
+        });
+
+        // 3. Bind to Lifecycle
+        CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
+        cameraProvider.unbindAll();
+        cameraProvider.bindToLifecycle(getViewLifecycleOwner(), cameraSelector, preview, imageAnalysis);
+    }
+
+    /**
+     * Sets up the basket overlay and the lookup queue for continuous mode.
+     *
+     * @param view The fragment's root view.
+     */
+    private void setupBasket(View view) {
+        view.findViewById(R.id.basketPanel).setVisibility(View.VISIBLE);
+        view.findViewById(R.id.tvAlignHint).setVisibility(View.GONE);
+        tvBasketSummary = view.findViewById(R.id.tvBasketSummary);
+        tvBasketStatus = view.findViewById(R.id.tvBasketStatus);
+        view.findViewById(R.id.btnBasketDone).setOnClickListener(v -> {
+            finishing = true;
+            isScanning = false;
+            scanQueue.close(); // Stop taking new barcodes; running lookups still finish
+            updateBasketOverlay();
+        });
+
+        basket = new ScanBasket();
+        repository = ProductRepository.getInstance(requireActivity().getApplication());
+        scanQueue = new ScanQueue(this::resolveBarcode);
+        scanQueue.setListener((queued, inFlight) -> {
+            if (getActivity() != null) getActivity().runOnUiThread(this::updateBasketOverlay);
+        });
+        updateBasketOverlay();
+    }
+
+    /**
+     * Looks up one queued barcode and adds the result to the basket.
+     * Priced items are saved to history right away; the rest wait for the user to add details.
+     *
+     * @param code The barcode to resolve.
+     * @param done Signals the queue that the lookup has finished.
+     */
+    private void resolveBarcode(String code, Runnable done) {
+        ProductRepository.ScanCallback callback = new ProductRepository.ScanCallback() {
+            @Override
+            public void onCloudFound(ProductItem item) {
+                ScanBasket current = finishLookup(this);
+                if (current != null) {
+                    if (item.getPrice() > 0 && item.getTaxCategory() != null) {
+                        ProductItem scanned = new ProductItem(item.getName(), item.getBrand(), item.getPrice(), item.getTaxCategory(), code);
+                        current.addPriced(scanned);
+                        repository.insertProduct(scanned, new ProductRepository.DataCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void data) { }
+
+                            @Override
+                            public void onFailure(String error) { }
+                        });
                     } else {
-                        imageProxy.close();
+                        current.addNeedsDetails(code, item.getName(), item.getBrand());
                     }
-                });
+                }
+                done.run();
+            }
 
-                // 3. Bind to Lifecycle
-                CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
-                cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(getViewLifecycleOwner(), cameraSelector, preview, imageAnalysis);
+            @Override
+            public void onApiFound(String name, String brand, String barcode) {
+                ScanBasket current = finishLookup(this);
+                if (current != null) current.addNeedsDetails(code, name, brand);
+                done.run();
+            }
 
-            } catch (ExecutionException | InterruptedException e) {
-                // Handle error
+            @Override
+            public void onManualEntryRequired(String barcode) {
+                ScanBasket current = finishLookup(this);
+                if (current != null) current.addNeedsDetails(code, "", "");
+                done.run();
             }
-        }, ContextCompat.getMainExecutor(requireContext()));
+
+            @Override
+            public void onBookDetected(String barcode) {
+                ScanBasket current = finishLookup(this);
+                if (current != null) current.addNeedsDetails(code, "", "");
+                done.run();
+            }
+
+            @Override
+            public void onSearchStatus(String status) {
+                // Per-item progress is summarised by the basket overlay instead
+            }
+        };
+        lookups.put(callback, code);
+        repository.searchProduct(code, callback);
+    }
+
+    /**
+     * Records that a lookup of this fragment delivered its result.
+     *
+     * @param callback The callback of the lookup.
+     * @return The basket to add the result to, or null if the basket was already handed over.
+     */
+    private ScanBasket finishLookup(ProductRepository.ScanCallback callback) {
+        lookups.remove(callback);
+        return basket;
+    }
+
+    /**
+     * Cancels the lookups this fragment started that are still running.
+     */
+    private void cancelLookups() {
+        for (Map.Entry<ProductRepository.ScanCallback, String> lookup : lookups.entrySet()) {
+            repository.cancelSearch(lookup.getValue(), lookup.getKey());
+        }
+        lookups.clear();
+    }
+
+    /**
+     * Refreshes the basket overlay and, once Done was pressed and the queue drained,
+     * hands the basket to MainActivity. Must run on the main thread.
+     */
+    private void updateBasketOverlay() {
+        if (tvBasketSummary == null || basket == null) return;
+        if (basket.getItemCount() == 0) {
+            tvBasketSummary.setText(R.string.basket_empty);
+        } else {
+            tvBasketSummary.setText(getString(R.string.basket_summary, basket.getItemCount(), Money.format(basket.getTotalPaise())));
+        }
+        if (finishing) {
+            tvBasketStatus.setText(R.string.basket_finishing);
+            if (scanQueue.isIdle()) finishBasket();
+        } else {
+            int lookingUp = scanQueue.getQueuedCount() + scanQueue.getInFlightCount();
+            tvBasketStatus.setText(getString(R.string.basket_status, lookingUp, basket.getPendingCount()));
+        }
+    }
+
+    /**
+     * Hands the basket to MainActivity and closes the scanner.
+     */
+    private void finishBasket() {
+        ScanBasket finished = basket;
+        if (finished == null) return;
+        basket = null;
+        tvBasketSummary = null;
+        if (getActivity() instanceof MainActivity) {
+            ((MainActivity) getActivity()).onBasketScanned(finished);
+        }
+        closeFragment();
     }
 
     /**
@@ -203,7 +486,7 @@ public class ScanFragment extends Fragment {
 
     /**
      * Cleans up resources when the view is destroyed.
-     * Shuts down the background camera executor.
+     * Shuts down the background camera executor and releases the barcode scanner.
      */
     @Override
     public void onDestroyView() {
@@ -211,5 +494,14 @@ public class ScanFragment extends Fragment {
         if (cameraExecutor != null) {
             cameraExecutor.shutdown();
         }
+        if (scanQueue != null) {
+            scanQueue.setListener(null);
+            scanQueue.close();
+            cancelLookups();
+        }
+        if (scanner != null) {
+            scanner.close();
+            scanner = null;
+        }
     }
 }
\ No newline at end of file
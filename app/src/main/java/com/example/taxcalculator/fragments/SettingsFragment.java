@@ -5,9 +5,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.text.InputType;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -15,16 +17,28 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 
 import com.example.taxcalculator.R;
+import com.example.taxcalculator.models.ProductRepository;
+import com.example.taxcalculator.utils.FrameGovernor;
+import com.example.taxcalculator.utils.LookupCache;
+import com.example.taxcalculator.utils.LookupMetrics;
+import com.example.taxcalculator.utils.ScanSettings;
+import com.example.taxcalculator.utils.TaxRateSync;
 import com.example.taxcalculator.utils.ThemeHelper;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 /**
  * BottomSheetDialogFragment responsible for application settings.
- * Allows the user to toggle dark mode and contact support via email.
+ * Allows the user to toggle dark mode, tune the barcode scanner, contact support via email
+ * and inspect lookup diagnostics.
  */
 public class SettingsFragment extends BottomSheetDialogFragment {
 
@@ -115,6 +129,108 @@ public class SettingsFragment extends BottomSheetDialogFragment {
                 Toast.makeText(getContext(), "No email app found", Toast.LENGTH_SHORT).show();
             }
         });
+
+        // Scanner settings, applied the next time the camera is opened
+        SwitchMaterial switchRetailOnly = view.findViewById(R.id.switchRetailOnly);
+        switchRetailOnly.setChecked(ScanSettings.isRetailOnly(requireContext()));
+        switchRetailOnly.setOnCheckedChangeListener((buttonView, isChecked) ->
+                ScanSettings.setRetailOnly(requireContext(), isChecked));
+
+        TextView txtScanResolution = view.findViewById(R.id.txtScanResolution);
+        txtScanResolution.setText(ScanSettings.RESOLUTION_LABELS[ScanSettings.getResolution(requireContext())]);
+        view.findViewById(R.id.llScanResolution).setOnClickListener(v -> new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.scan_resolution)
+                .setSingleChoiceItems(ScanSettings.RESOLUTION_LABELS, ScanSettings.getResolution(requireContext()), (dialog, which) -> {
+                    ScanSettings.setResolution(requireContext(), which);
+                    txtScanResolution.setText(ScanSettings.RESOLUTION_LABELS[which]);
+                    dialog.dismiss();
+                })
+                .show());
+
+        TextView txtCatalogPrefetch = view.findViewById(R.id.txtCatalogPrefetch);
+        showCatalogPrefixes(txtCatalogPrefetch);
+        view.findViewById(R.id.llCatalogPrefetch).setOnClickListener(v -> editCatalogPrefixes(txtCatalogPrefetch));
+
+        view.findViewById(R.id.llLookupDiagnostics).setOnClickListener(v -> showLookupDiagnostics());
+    }
+
+    /**
+     * Shows the barcode prefixes kept in the offline catalog, or that it is off.
+     *
+     * @param label The TextView to update.
+     */
+    private void showCatalogPrefixes(TextView label) {
+        List<String> prefixes = ScanSettings.getPrefetchPrefixes(requireContext());
+        label.setText(prefixes.isEmpty() ? getString(R.string.catalog_prefetch_off)
+                : getString(R.string.catalog_prefetch_prefixes, String.join(", ", prefixes)));
+    }
+
+    /**
+     * Lets the user edit the offline catalog prefixes and starts a prefetch with the new ones.
+     *
+     * @param label The TextView showing the current prefixes.
+     */
+    private void editCatalogPrefixes(TextView label) {
+        EditText input = new EditText(requireContext());
+        input.setHint(R.string.hint_catalog_prefixes);
+        input.setInputType(InputType.TYPE_CLASS_PHONE);
+        input.setText(String.join(", ", ScanSettings.getPrefetchPrefixes(requireContext())));
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.catalog_prefetch)
+                .setView(input)
+                .setPositiveButton(R.string.save, (dialog, which) -> {
+                    ScanSettings.setPrefetchPrefixes(requireContext(), input.getText().toString());
+                    showCatalogPrefixes(label);
+                    ProductRepository.getInstance(requireActivity().getApplication())
+                            .prefetchCatalog(ScanSettings.getPrefetchPrefixes(requireContext()));
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Shows the lookup pipeline metrics, cache counters and camera frame stats,
+     * with an option to export the lookup metrics to a file.
+     */
+    private void showLookupDiagnostics() {
+        String summary = LookupMetrics.getInstance().getSummary()
+                + "\nCache: " + LookupCache.getInstance(requireContext()).getStatsSummary()
+                + "\n\n" + FrameGovernor.getInstance().getSummary()
+                + "\n\n" + TaxRateSync.getInstance(requireContext()).getSummary()
+                + "\n\n" + getRepositorySummary();
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.lookup_diagnostics)
+                .setMessage(summary)
+                .setPositiveButton(R.string.close, null)
+                .setNeutralButton(R.string.export, (dialog, which) -> exportLookupDiagnostics())
+                .show();
+    }
+
+    /**
+     * @return The repository's search, queue, upload and prefetch metrics.
+     */
+    private String getRepositorySummary() {
+        ProductRepository repository = ProductRepository.getInstance(requireActivity().getApplication());
+        return repository.getSearchSummary()
+                + "\n" + repository.getExecutorSummary() + "\n" + repository.getUploadSummary()
+                + "\n\n" + repository.getPrefetchSummary();
+    }
+
+    /**
+     * Dumps the lookup metrics into the app's external files directory for offline analysis.
+     */
+    private void exportLookupDiagnostics() {
+        Context context = requireContext();
+        File dir = context.getExternalFilesDir(null);
+        File file = new File(dir != null ? dir : context.getFilesDir(), "lookup_metrics.txt");
+        try {
+            LookupMetrics.getInstance().dumpToFile(file);
+            Toast.makeText(context, "Saved to " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(context, "Export failed", Toast.LENGTH_SHORT).show();
+        }
     }
 
     /**
@@ -0,0 +1,379 @@
+package com.example.taxcalculator.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Incrementally loads the scan history, newest first, one page at a time.
+ * Pages are fetched with keyset pagination: each page asks for rows with an ID below the last ID
+ * of the page before it, so a page costs the same however deep into the history it lies.
+ * Only a bounded number of pages is kept in memory. Pages far from the one last read are
+ * dropped and reloaded by their key when scrolled back into view, so memory stays flat
+ * regardless of the history size. Each page keeps the IDs of its rows in a plain int array even
+ * while dropped, so every discovered position has a stable ID at 4 bytes per row.
+ * Row IDs only grow, so a refresh after the history changed asks for the rows newer than the
+ * newest one shown and inserts them at the top; listeners are told exactly which rows changed.
+ * All methods must be called on the thread behind the delivery executor (the main thread).
+ */
+public class HistoryPager {
+
+    /**
+     * Default number of rows per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Default number of pages kept in memory.
+     */
+    public static final int DEFAULT_MAX_PAGES = 6;
+
+    /**
+     * Key of the first page: every row ID is below it.
+     */
+    public static final int FIRST_PAGE_KEY = Integer.MAX_VALUE;
+
+    /**
+     * Loads pages of history.
+     */
+    public interface PageSource {
+        /**
+         * Loads rows with an ID strictly below the key, newest first. Runs on the load executor.
+         *
+         * @param beforeId The page key.
+         * @param limit    The maximum number of rows.
+         * @return The rows, never null.
+         */
+        List<ProductItem> loadPage(int beforeId, int limit);
+
+        /**
+         * Loads rows with an ID strictly above the given one, newest first. Runs on the load executor.
+         *
+         * @param afterId The newest ID already shown.
+         * @param limit   The maximum number of rows.
+         * @return The rows, never null.
+         */
+        List<ProductItem> loadNewer(int afterId, int limit);
+    }
+
+    /**
+     * Receives changes of the paged list, on the delivery executor.
+     */
+    public interface Listener {
+        /**
+         * Called when rows were added: a page appended at the end or new scans at the top.
+         *
+         * @param position The position of the first new row.
+         * @param count    The number of new rows.
+         */
+        void onItemsInserted(int position, int count);
+
+        /**
+         * Called when a dropped page was reloaded and its rows can be shown again.
+         *
+         * @param position The position of the first reloaded row.
+         * @param count    The number of reloaded rows.
+         */
+        void onItemsChanged(int position, int count);
+
+        /**
+         * Called when every row was removed and the list is being loaded again from the start.
+         *
+         * @param count The number of rows removed.
+         */
+        void onItemsRemoved(int count);
+    }
+
+    /**
+     * One page: the key that reloads exactly its rows, its row count, the IDs of its rows (kept
+     * when the page is dropped) and its rows (null once dropped).
+     */
+    private static final class Page {
+        final int key;
+        final int count;
+        final int[] ids;
+        List<ProductItem> rows;
+        boolean loading;
+
+        Page(List<ProductItem> rows) {
+            // Just above the newest row, so rows added later never shift a reloaded page
+            this.key = rows.get(0).id + 1;
+            this.count = rows.size();
+            this.ids = new int[count];
+            for (int i = 0; i < count; i++) ids[i] = rows.get(i).id;
+            this.rows = rows;
+        }
+
+        /**
+         * Checks whether reloaded rows are exactly the rows this page held.
+         *
+         * @param reloaded The reloaded rows.
+         * @return True if they have the same IDs in the same order.
+         */
+        boolean matches(List<ProductItem> reloaded) {
+            if (reloaded.size() != count) return false;
+            for (int i = 0; i < count; i++) {
+                if (reloaded.get(i).id != ids[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private final PageSource source;
+    private final Executor loadExecutor;
+    private final Executor deliveryExecutor;
+    private final int pageSize;
+    private final int maxPages;
+
+    private final List<Page> pages = new ArrayList<>();
+    /**
+     * Position of the first row of each page, binary searched by {@link #getItem(int)}.
+     */
+    private int[] starts = new int[0];
+    private int nextKey = FIRST_PAGE_KEY;
+    private int newestId;
+    private int itemCount;
+    private int loadedPages;
+    private int lastReadPage;
+    private boolean complete;
+    private boolean appending;
+    private boolean refreshing;
+    private boolean refreshAgain;
+    private int generation;
+    private Listener listener;
+
+    /**
+     * Creates a pager.
+     *
+     * @param source           The page source.
+     * @param loadExecutor     The executor pages are loaded on.
+     * @param deliveryExecutor The executor results are delivered on, usually the main thread.
+     * @param pageSize         The number of rows per page.
+     * @param maxPages         The number of pages kept in memory, at least 2.
+     */
+    public HistoryPager(PageSource source, Executor loadExecutor, Executor deliveryExecutor,
+                        int pageSize, int maxPages) {
+        this.source = source;
+        this.loadExecutor = loadExecutor;
+        this.deliveryExecutor = deliveryExecutor;
+        this.pageSize = pageSize;
+        this.maxPages = Math.max(2, maxPages);
+    }
+
+    /**
+     * Sets the listener for changes of the list.
+     *
+     * @param listener The listener, or null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Loads the first page if nothing was loaded yet.
+     */
+    public void start() {
+        if (pages.isEmpty() && !complete && !appending) appendPage();
+    }
+
+    /**
+     * Forgets everything loaded so far, e.g. after the history was cleared, and starts again.
+     * Loads still in flight are discarded when they complete.
+     */
+    public void reset() {
+        int removed = itemCount;
+        generation++;
+        pages.clear();
+        starts = new int[0];
+        nextKey = FIRST_PAGE_KEY;
+        newestId = 0;
+        itemCount = 0;
+        loadedPages = 0;
+        lastReadPage = 0;
+        complete = false;
+        appending = false;
+        refreshing = false;
+        refreshAgain = false;
+        if (listener != null && removed > 0) listener.onItemsRemoved(removed);
+        start();
+    }
+
+    /**
+     * Picks up rows saved since the newest row shown and inserts them at the top, leaving every
+     * other row untouched. If a whole page or more arrived, the list starts over instead.
+     * Calls made while a refresh is running are folded into one more refresh after it.
+     */
+    public void refresh() {
+        if (pages.isEmpty()) {
+            if (complete) {
+                // The history was empty when it was last loaded
+                complete = false;
+                start();
+            }
+            return;
+        }
+        if (refreshing) {
+            refreshAgain = true;
+            return;
+        }
+
+        refreshing = true;
+        int afterId = newestId;
+        int expected = generation;
+        loadExecutor.execute(() -> {
+            List<ProductItem> rows = source.loadNewer(afterId, pageSize);
+            deliveryExecutor.execute(() -> {
+                if (expected != generation) return;
+                refreshing = false;
+                if (rows.size() >= pageSize) {
+                    reset();
+                    return;
+                }
+                if (!rows.isEmpty()) prependPage(rows);
+                if (refreshAgain) {
+                    refreshAgain = false;
+                    refresh();
+                }
+            });
+        });
+    }
+
+    /**
+     * @return The number of rows discovered so far. Grows as pages are appended.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return True once the last page of the history has been loaded.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return The number of pages currently held in memory.
+     */
+    public int getLoadedPageCount() {
+        return loadedPages;
+    }
+
+    /**
+     * Returns the row at a position, loading pages around it as needed.
+     * Reading near the end of the list appends the next page.
+     *
+     * @param position The position, from 0 to {@link #getItemCount()} - 1.
+     * @return The row, or null if its page is being reloaded.
+     */
+    public ProductItem getItem(int position) {
+        int index = pageAt(position);
+        lastReadPage = index;
+        if (!complete && !appending && position >= itemCount - pageSize / 2) appendPage();
+
+        Page page = pages.get(index);
+        if (page.rows == null) {
+            reloadPage(page);
+            return null;
+        }
+        return page.rows.get(position - starts[index]);
+    }
+
+    /**
+     * Returns the ID of the row at a position, whether or not its page is in memory.
+     *
+     * @param position The position, from 0 to {@link #getItemCount()} - 1.
+     * @return The product ID.
+     */
+    public int getItemId(int position) {
+        int index = pageAt(position);
+        return pages.get(index).ids[position - starts[index]];
+    }
+
+    private int pageAt(int position) {
+        int index = Arrays.binarySearch(starts, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private void appendPage() {
+        int key = nextKey;
+        appending = true;
+        int expected = generation;
+        loadExecutor.execute(() -> {
+            List<ProductItem> rows = source.loadPage(key, pageSize);
+            deliveryExecutor.execute(() -> {
+                if (expected != generation) return;
+                appending = false;
+                if (rows.isEmpty()) {
+                    complete = true;
+                    return;
+                }
+                int position = itemCount;
+                if (pages.isEmpty()) newestId = rows.get(0).id;
+                pages.add(new Page(rows));
+                starts = Arrays.copyOf(starts, pages.size());
+                starts[pages.size() - 1] = position;
+                itemCount += rows.size();
+                nextKey = rows.get(rows.size() - 1).id;
+                loadedPages++;
+                if (rows.size() < pageSize) complete = true;
+                evictPages();
+                if (listener != null) listener.onItemsInserted(position, rows.size());
+            });
+        });
+    }
+
+    private void prependPage(List<ProductItem> rows) {
+        pages.add(0, new Page(rows));
+        int[] shifted = new int[pages.size()];
+        for (int i = 1; i < shifted.length; i++) shifted[i] = starts[i - 1] + rows.size();
+        starts = shifted;
+        newestId = rows.get(0).id;
+        itemCount += rows.size();
+        lastReadPage++;
+        loadedPages++;
+        evictPages();
+        if (listener != null) listener.onItemsInserted(0, rows.size());
+    }
+
+    private void reloadPage(Page page) {
+        if (page.loading) return;
+        page.loading = true;
+        int expected = generation;
+        loadExecutor.execute(() -> {
+            List<ProductItem> rows = source.loadPage(page.key, page.count);
+            deliveryExecutor.execute(() -> {
+                if (expected != generation) return;
+                page.loading = false;
+                if (!page.matches(rows)) {
+                    // Rows were deleted meanwhile, so positions have shifted
+                    reset();
+                    return;
+                }
+                page.rows = rows;
+                loadedPages++;
+                evictPages();
+                // Pages may have been prepended while this one loaded
+                if (listener != null) listener.onItemsChanged(starts[pages.indexOf(page)], page.count);
+            });
+        });
+    }
+
+    /**
+     * Drops the pages farthest from the last read page until the budget is met.
+     */
+    private void evictPages() {
+        while (loadedPages > maxPages) {
+            int farthest = -1;
+            for (int i = 0; i < pages.size(); i++) {
+                if (pages.get(i).rows == null) continue;
+                if (farthest < 0 || Math.abs(i - lastReadPage) > Math.abs(farthest - lastReadPage)) {
+                    farthest = i;
+                }
+            }
+            pages.get(farthest).rows = null;
+            loadedPages--;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.taxcalculator.models;
+
+/**
+ * Describes which part of the scan history to show: an optional tax category, a scan-time range
+ * and an anchor ID the list starts below. Navigation passes this small descriptor instead of the
+ * rows themselves; the history screen then pages the matching rows in from the database.
+ */
+public final class HistoryQuery {
+
+    /**
+     * The whole history, newest first.
+     */
+    public static final HistoryQuery ALL =
+            new HistoryQuery(null, 0, Long.MAX_VALUE, HistoryPager.FIRST_PAGE_KEY);
+
+    private final String category;
+    private final long scannedFrom;
+    private final long scannedTo;
+    private final int anchorId;
+
+    /**
+     * Creates a query.
+     *
+     * @param category    The tax category ID to show, or null for all categories.
+     * @param scannedFrom The start of the scan-time range in epoch millis, inclusive.
+     *                    Rows saved before scan times were recorded have a scan time of 0.
+     * @param scannedTo   The end of the scan-time range in epoch millis, exclusive.
+     * @param anchorId    Only rows with an ID below this one are shown;
+     *                    {@link HistoryPager#FIRST_PAGE_KEY} to start at the newest row.
+     */
+    public HistoryQuery(String category, long scannedFrom, long scannedTo, int anchorId) {
+        this.category = category;
+        this.scannedFrom = scannedFrom;
+        this.scannedTo = scannedTo;
+        this.anchorId = anchorId;
+    }
+
+    /**
+     * @return The tax category ID, or null for all categories.
+     */
+    public String getCategory() { return category; }
+
+    /**
+     * @return The start of the scan-time range in epoch millis, inclusive.
+     */
+    public long getScannedFrom() { return scannedFrom; }
+
+    /**
+     * @return The end of the scan-time range in epoch millis, exclusive.
+     */
+    public long getScannedTo() { return scannedTo; }
+
+    /**
+     * @return The ID the list starts below.
+     */
+    public int getAnchorId() { return anchorId; }
+
+    /**
+     * @return True if the query narrows the history by category or scan time.
+     */
+    public boolean isFiltered() {
+        return category != null || scannedFrom > 0 || scannedTo < Long.MAX_VALUE;
+    }
+}
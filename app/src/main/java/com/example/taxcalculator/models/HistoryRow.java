@@ -0,0 +1,64 @@
+package com.example.taxcalculator.models;
+
+/**
+ * Display model of one history row: the strings the list shows for a product, formatted once.
+ * Rows are stamped with the tax rate version they were computed with, so a rate update makes
+ * them stale instead of silently showing old figures. Amounts are written by Money, whose output
+ * does not depend on the locale, so a locale change needs no stamp.
+ */
+public final class HistoryRow {
+
+    private final int id;
+    private final String name;
+    private final String priceText;
+    private final String taxText;
+    private final int ratesVersion;
+
+    /**
+     * Creates a row.
+     *
+     * @param id           The product ID.
+     * @param name         The product name.
+     * @param priceText    The formatted net price.
+     * @param taxText      The formatted tax line.
+     * @param ratesVersion The tax rate version the figures were computed with.
+     */
+    public HistoryRow(int id, String name, String priceText, String taxText, int ratesVersion) {
+        this.id = id;
+        this.name = name;
+        this.priceText = priceText;
+        this.taxText = taxText;
+        this.ratesVersion = ratesVersion;
+    }
+
+    /**
+     * @return The product ID.
+     */
+    public int getId() { return id; }
+
+    /**
+     * @return The product name.
+     */
+    public String getName() { return name; }
+
+    /**
+     * @return The formatted net price, e.g. "₹ 84.75".
+     */
+    public String getPriceText() { return priceText; }
+
+    /**
+     * @return The formatted tax line, e.g. "GST ₹ 15.25".
+     */
+    public String getTaxText() { return taxText; }
+
+    /**
+     * Checks whether the row was formatted for a product under the given rates.
+     *
+     * @param productId    The product ID.
+     * @param ratesVersion The current tax rate version.
+     * @return True if the row can be shown as is.
+     */
+    public boolean isCurrent(int productId, int ratesVersion) {
+        return id == productId && this.ratesVersion == ratesVersion;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.taxcalculator.models;
+
+import com.example.taxcalculator.utils.Money;
+import com.example.taxcalculator.utils.TaxManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches the formatted display rows of the history list.
+ * Rows are formatted on the thread that loads a page, right after the query, so binding a row
+ * on the main thread is a lookup instead of a tax calculation plus formatting. The cache is
+ * direct-mapped on the product ID: a window of consecutive IDs, which is what the pager keeps
+ * in memory, fits without collisions, and a lookup neither locks nor allocates.
+ * Rows computed under other tax rates count as misses and are formatted again.
+ */
+public class HistoryRowCache {
+
+    /**
+     * Default number of slots: a power of two above the rows a pager keeps in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final AtomicReferenceArray<HistoryRow> slots;
+    private final int mask;
+    private final String taxLabel;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity The number of slots, rounded up to a power of two.
+     * @param taxLabel The text put before the tax amount, e.g. "GST".
+     */
+    public HistoryRowCache(int capacity, String taxLabel) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.taxLabel = taxLabel;
+    }
+
+    /**
+     * Formats the rows of a freshly loaded page, skipping those already current.
+     * Runs on the load executor.
+     *
+     * @param items The loaded products.
+     */
+    public void prepare(List<ProductItem> items) {
+        int version = TaxManager.getInstance().getRatesVersion();
+        char[] buffer = new char[taxLabel.length() + 1 + Money.MAX_FORMATTED_LENGTH];
+        for (int i = 0; i < items.size(); i++) {
+            ProductItem item = items.get(i);
+            HistoryRow row = slots.get(item.id & mask);
+            if (row == null || !row.isCurrent(item.id, version)) {
+                slots.set(item.id & mask, format(item, version, buffer));
+            }
+        }
+    }
+
+    /**
+     * Returns the display row of a product. Rows prepared with the page are returned as is;
+     * otherwise the row is formatted now and cached.
+     *
+     * @param item The product.
+     * @return The current display row.
+     */
+    public HistoryRow get(ProductItem item) {
+        int version = TaxManager.getInstance().getRatesVersion();
+        HistoryRow row = slots.get(item.id & mask);
+        if (row != null && row.isCurrent(item.id, version)) {
+            hits.incrementAndGet();
+            return row;
+        }
+        misses.incrementAndGet();
+        row = format(item, version, new char[taxLabel.length() + 1 + Money.MAX_FORMATTED_LENGTH]);
+        slots.set(item.id & mask, row);
+        return row;
+    }
+
+    /**
+     * Drops every cached row.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) slots.set(i, null);
+    }
+
+    /**
+     * @return The number of lookups answered from the cache.
+     */
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that had to format the row.
+     */
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Computes a product's tax once and formats its price and tax strings.
+     *
+     * @param item    The product.
+     * @param version The tax rate version in force.
+     * @param buffer  Scratch space for the formatter.
+     * @return The display row.
+     */
+    private HistoryRow format(ProductItem item, int version, char[] buffer) {
+        long pricePaise = item.getPricePaise();
+        long taxPaise = item.getTaxAmountPaise();
+        String priceText = new String(buffer, 0, Money.writeTo(buffer, 0, pricePaise - taxPaise));
+
+        taxLabel.getChars(0, taxLabel.length(), buffer, 0);
+        buffer[taxLabel.length()] = ' ';
+        String taxText = new String(buffer, 0, Money.writeTo(buffer, taxLabel.length() + 1, taxPaise));
+        return new HistoryRow(item.id, item.getName(), priceText, taxText, version);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.taxcalculator.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Represents a resolved barcode lookup in the local lookup cache.
+ * An entry either describes the product found for a barcode (a positive entry) or records
+ * that the barcode was not found in any source (a negative entry). Each entry carries an
+ * expiry time after which it must be looked up again.
+ */
+@Entity(tableName = "lookup_cache")
+public class LookupEntry {
+
+    /**
+     * Source name for products resolved from the crowdsourced cloud database.
+     */
+    public static final String SOURCE_CLOUD = "firestore";
+
+    /**
+     * Source name for products saved by the user on this device.
+     */
+    public static final String SOURCE_LOCAL = "local";
+
+    /**
+     * Source name for negative entries (barcode not found anywhere).
+     */
+    public static final String SOURCE_NONE = "none";
+
+    /**
+     * The barcode this entry belongs to. Serves as the primary key.
+     */
+    @PrimaryKey
+    @NonNull
+    private String barcode;
+
+    /**
+     * The product name, or null for negative entries.
+     */
+    private String name;
+
+    /**
+     * The brand name, or null for negative entries.
+     */
+    private String brand;
+
+    /**
+     * The known price, or 0 if the source did not provide one.
+     */
+    private double price;
+
+    /**
+     * The tax category ID, or null if the source did not provide one.
+     */
+    private String taxCategory;
+
+    /**
+     * The name of the source that resolved this barcode.
+     */
+    private String source;
+
+    /**
+     * True for positive entries, false for "not found anywhere" entries.
+     */
+    private boolean found;
+
+    /**
+     * Time (epoch millis) at which the lookup was resolved.
+     */
+    private long resolvedAt;
+
+    /**
+     * Time (epoch millis) after which this entry is stale.
+     */
+    private long expiresAt;
+
+    /**
+     * Constructs a new LookupEntry.
+     *
+     * @param barcode     The barcode string.
+     * @param name        The product name (null for negative entries).
+     * @param brand       The brand name (null for negative entries).
+     * @param price       The price, or 0 if unknown.
+     * @param taxCategory The tax category ID, or null if unknown.
+     * @param source      The source that resolved the barcode.
+     * @param found       True if the product was found.
+     * @param resolvedAt  The resolution time in epoch millis.
+     * @param expiresAt   The expiry time in epoch millis.
+     */
+    public LookupEntry(@NonNull String barcode, String name, String brand, double price, String taxCategory,
+                       String source, boolean found, long resolvedAt, long expiresAt) {
+        this.barcode = barcode;
+        this.name = name;
+        this.brand = brand;
+        this.price = price;
+        this.taxCategory = taxCategory;
+        this.source = source;
+        this.found = found;
+        this.resolvedAt = resolvedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Gets the barcode of this entry.
+     * @return The barcode string.
+     */
+    @NonNull
+    public String getBarcode() { return barcode; }
+
+    /**
+     * Gets the product name.
+     * @return The product name, or null for negative entries.
+     */
+    public String getName() { return name; }
+
+    /**
+     * Gets the brand name.
+     * @return The brand name, or null for negative entries.
+     */
+    public String getBrand() { return brand; }
+
+    /**
+     * Gets the cached price.
+     * @return The price, or 0 if unknown.
+     */
+    public double getPrice() { return price; }
+
+    /**
+     * Gets the cached tax category ID.
+     * @return The tax category ID, or null if unknown.
+     */
+    public String getTaxCategory() { return taxCategory; }
+
+    /**
+     * Gets the name of the source that resolved this barcode.
+     * @return The source name.
+     */
+    public String getSource() { return source; }
+
+    /**
+     * Indicates whether this is a positive entry.
+     * @return True if the product was found, false for a negative entry.
+     */
+    public boolean isFound() { return found; }
+
+    /**
+     * Gets the resolution time.
+     * @return The resolution time in epoch millis.
+     */
+    public long getResolvedAt() { return resolvedAt; }
+
+    /**
+     * Gets the expiry time.
+     * @return The expiry time in epoch millis.
+     */
+    public long getExpiresAt() { return expiresAt; }
+
+    /**
+     * Checks whether this entry is stale at the given time.
+     *
+     * @param now The current time in epoch millis.
+     * @return True if the entry has expired.
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * Checks whether this entry carries a complete product (price and tax category),
+     * as opposed to just a name and brand from a product-information API.
+     *
+     * @return True if the entry can be used without asking the user for a price.
+     */
+    public boolean isComplete() {
+        return found && price > 0 && taxCategory != null;
+    }
+
+    /**
+     * Converts this entry into a ProductItem.
+     *
+     * @return A new ProductItem with the cached details.
+     */
+    public ProductItem toProductItem() {
+        return new ProductItem(name, brand, price, taxCategory, barcode);
+    }
+}
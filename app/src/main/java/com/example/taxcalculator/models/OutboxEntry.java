@@ -0,0 +1,176 @@
+package com.example.taxcalculator.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A product contribution waiting to be uploaded to the crowdsourced cloud database.
+ * Entries are written in the same transaction as the saved product, so a contribution survives
+ * process death and going offline; the entry is deleted once the cloud has accepted it.
+ * There is at most one entry per barcode: queuing a barcode again replaces its entry, so only
+ * the last saved details are uploaded. Failed uploads are retried after a growing delay; an entry
+ * that keeps failing on its own is parked until the next app start or until it is saved again.
+ */
+@Entity(tableName = "upload_outbox", indices = {@Index(value = "barcode", unique = true)})
+public class OutboxEntry {
+
+    /**
+     * The next attempt time of a parked entry: it is never due and no retry is scheduled for it.
+     */
+    public static final long PARKED = Long.MAX_VALUE;
+
+    /**
+     * Unique identifier of the entry, auto-generated by the database. Orders entries by age.
+     */
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    /**
+     * The barcode of the product, used as the cloud document ID.
+     */
+    @NonNull
+    private String barcode;
+
+    /**
+     * The product name.
+     */
+    private String name;
+
+    /**
+     * The brand name.
+     */
+    private String brand;
+
+    /**
+     * The product price.
+     */
+    private double price;
+
+    /**
+     * The tax category ID.
+     */
+    private String taxCategory;
+
+    /**
+     * Time the entry was queued, in epoch millis.
+     */
+    private long createdAt;
+
+    /**
+     * Number of failed upload attempts.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private int attempts;
+
+    /**
+     * Earliest time of the next upload attempt, in epoch millis.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long nextAttemptAt;
+
+    /**
+     * The error of the last failed attempt, or null.
+     */
+    private String lastError;
+
+    /**
+     * Constructs a new outbox entry.
+     *
+     * @param barcode     The barcode of the product.
+     * @param name        The product name.
+     * @param brand       The brand name.
+     * @param price       The product price.
+     * @param taxCategory The tax category ID.
+     * @param createdAt   The time the entry was queued, in epoch millis.
+     */
+    @Ignore
+    public OutboxEntry(@NonNull String barcode, String name, String brand, double price, String taxCategory,
+                       long createdAt) {
+        this(barcode, name, brand, price, taxCategory, createdAt, 0, 0, null);
+    }
+
+    /**
+     * Constructs an outbox entry with its retry state, as read from the database.
+     *
+     * @param barcode       The barcode of the product.
+     * @param name          The product name.
+     * @param brand         The brand name.
+     * @param price         The product price.
+     * @param taxCategory   The tax category ID.
+     * @param createdAt     The time the entry was queued, in epoch millis.
+     * @param attempts      The number of failed upload attempts.
+     * @param nextAttemptAt The earliest time of the next attempt, in epoch millis.
+     * @param lastError     The error of the last failed attempt, or null.
+     */
+    public OutboxEntry(@NonNull String barcode, String name, String brand, double price, String taxCategory,
+                       long createdAt, int attempts, long nextAttemptAt, String lastError) {
+        this.barcode = barcode;
+        this.name = name;
+        this.brand = brand;
+        this.price = price;
+        this.taxCategory = taxCategory;
+        this.createdAt = createdAt;
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = lastError;
+    }
+
+    /**
+     * Gets the barcode of the product.
+     * @return The barcode string.
+     */
+    @NonNull
+    public String getBarcode() { return barcode; }
+
+    /**
+     * Gets the product name.
+     * @return The product name.
+     */
+    public String getName() { return name; }
+
+    /**
+     * Gets the brand name.
+     * @return The brand name.
+     */
+    public String getBrand() { return brand; }
+
+    /**
+     * Gets the product price.
+     * @return The price.
+     */
+    public double getPrice() { return price; }
+
+    /**
+     * Gets the tax category ID.
+     * @return The tax category ID.
+     */
+    public String getTaxCategory() { return taxCategory; }
+
+    /**
+     * Gets the time the entry was queued.
+     * @return The queue time in epoch millis.
+     */
+    public long getCreatedAt() { return createdAt; }
+
+    /**
+     * Gets the number of failed upload attempts.
+     * @return The attempt count.
+     */
+    public int getAttempts() { return attempts; }
+
+    /**
+     * Gets the earliest time of the next upload attempt.
+     * @return The time in epoch millis, 0 if the entry is due right away, {@link #PARKED} if it is parked.
+     */
+    public long getNextAttemptAt() { return nextAttemptAt; }
+
+    /**
+     * Gets the error of the last failed attempt.
+     * @return The error, or null if no attempt failed.
+     */
+    public String getLastError() { return lastError; }
+}
@@ -1,17 +1,22 @@
 package com.example.taxcalculator.models;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
+import com.example.taxcalculator.utils.Money;
 import com.example.taxcalculator.utils.TaxManager;
-import java.io.Serializable;
 
 /**
  * Represents a product item in the application.
  * This class serves as the data model for products, stored in the Room database.
  * It contains details like name, brand, price, tax category, and barcode.
+ * The barcode, scan time and tax category are indexed for lookups and history queries.
  */
-@Entity(tableName = "product_table")
-public class ProductItem implements Serializable {
+@Entity(tableName = "product_table",
+        indices = {@Index("barcode"), @Index("scannedAt"), @Index("taxCategory")})
+public class ProductItem {
 
     /**
      * Unique identifier for the product, auto-generated by the database.
@@ -45,6 +50,26 @@ public class ProductItem implements Serializable {
      */
     private String barcode;
 
+    /**
+     * Time the product was scanned, in milliseconds since the epoch, or 0 if not yet recorded.
+     * Saved records are taxed at the rate in force at this time.
+     */
+    @ColumnInfo(defaultValue = "0")
+    private long scannedAt;
+
+    /**
+     * The tax category resolved to its TaxManager code, cached on first use so rate lookups
+     * skip the string hash. Not persisted.
+     */
+    @Ignore
+    private int taxCode;
+
+    /**
+     * True once {@link #taxCode} holds the resolved code.
+     */
+    @Ignore
+    private boolean taxCodeResolved;
+
     /**
      * Constructs a new ProductItem.
      *
@@ -93,33 +118,99 @@ public class ProductItem implements Serializable {
     public String getTaxCategory() { return taxCategory; }
 
     /**
-     * Retrieves the current tax rate for the product's category.
-     * Queries the TaxManager for the rate associated with the stored category ID.
+     * Gets the time the product was scanned.
+     * @return Milliseconds since the epoch, or 0 if not yet recorded.
+     */
+    public long getScannedAt() { return scannedAt; }
+
+    /**
+     * Sets the time the product was scanned.
+     * @param scannedAt Milliseconds since the epoch.
+     */
+    public void setScannedAt(long scannedAt) { this.scannedAt = scannedAt; }
+
+    /**
+     * Checks whether the product carries a price and a tax category, as opposed to just a name
+     * and brand from a product-information API.
+     *
+     * @return True if the product can be taxed without asking the user for a price.
+     */
+    public boolean isComplete() {
+        return price > 0 && taxCategory != null;
+    }
+
+    /**
+     * Retrieves the tax rate for the product's category: the rate in force when it was scanned,
+     * or the current rate if no scan time is recorded.
+     * Queries the TaxManager with the cached category code, so no string lookup is repeated.
      *
      * @return The tax rate as a percentage (e.g., 18.0).
      */
     public double getTaxRate() {
-        return TaxManager.getInstance().getRate(taxCategory);
+        TaxManager taxManager = TaxManager.getInstance();
+        return scannedAt > 0 ? taxManager.getRateAt(getTaxCode(), scannedAt) : taxManager.getRate(getTaxCode());
+    }
+
+    /**
+     * Gets the TaxManager code of the product's tax category, resolving it on first call.
+     *
+     * @return The category code.
+     */
+    public int getTaxCode() {
+        if (!taxCodeResolved) {
+            taxCode = TaxManager.getInstance().getCategoryCode(taxCategory);
+            taxCodeResolved = true;
+        }
+        return taxCode;
+    }
+
+    /**
+     * Gets the price of the product in paise.
+     * @return The product price (MRP) in paise.
+     */
+    public long getPricePaise() {
+        return Money.toPaise(price);
+    }
+
+    /**
+     * Calculates the tax amount included in the price, in paise, rounded half-up to the paisa.
+     * Formula: (Price * TaxRate) / (100 + TaxRate)
+     *
+     * @return The calculated tax amount in paise.
+     */
+    public long getTaxAmountPaise() {
+        return Money.inclusiveTax(getPricePaise(), Money.toBasisPoints(getTaxRate()), Money.DEFAULT_ROUNDING);
+    }
+
+    /**
+     * Calculates the net price of the product before tax, in paise.
+     * Formula: Price - TaxAmount
+     *
+     * @return The net price in paise.
+     */
+    public long getNetPricePaise() {
+        long pricePaise = getPricePaise();
+        return pricePaise - Money.inclusiveTax(pricePaise, Money.toBasisPoints(getTaxRate()), Money.DEFAULT_ROUNDING);
     }
 
     /**
      * Calculates the tax amount included in the price.
      * Formula: (Price * TaxRate) / (100 + TaxRate)
      *
-     * @return The calculated tax amount.
+     * @return The calculated tax amount, rounded to the paisa.
      */
     public double getTaxAmount() {
-        return (price * getTaxRate()) / (100 + getTaxRate());
+        return Money.toRupees(getTaxAmountPaise());
     }
 
     /**
      * Calculates the net price of the product before tax.
      * Formula: Price - TaxAmount
      *
-     * @return The net price.
+     * @return The net price, rounded to the paisa.
      */
     public double getNetPrice() {
-        return price - getTaxAmount();
+        return Money.toRupees(getNetPricePaise());
     }
 
     /**
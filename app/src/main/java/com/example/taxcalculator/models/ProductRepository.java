@@ -1,38 +1,131 @@
 package com.example.taxcalculator.models;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
 
-import com.example.taxcalculator.api.ProductResponse;
-import com.example.taxcalculator.api.RetrofitClient;
-import com.example.taxcalculator.api.UpcItemResponse;
+import androidx.room.InvalidationTracker;
+
+import com.example.taxcalculator.api.OpenFactsLookupSource;
+import com.example.taxcalculator.api.UpcLookupSource;
 import com.example.taxcalculator.database.AppDatabase;
+import com.example.taxcalculator.database.OutboxDao;
 import com.example.taxcalculator.database.ProductDao;
 import com.example.taxcalculator.utils.BarcodeRouter;
+import com.example.taxcalculator.utils.CatalogPrefetcher;
+import com.example.taxcalculator.utils.FirestoreCatalogSource;
 import com.example.taxcalculator.utils.FirestoreHelper;
+import com.example.taxcalculator.utils.FirestoreLookupSource;
+import com.example.taxcalculator.utils.LookupCache;
+import com.example.taxcalculator.utils.LookupMetrics;
+import com.example.taxcalculator.utils.LookupScheduler;
+import com.example.taxcalculator.utils.LookupSource;
+import com.example.taxcalculator.utils.OutboxUploader;
+import com.example.taxcalculator.utils.RoutingTable;
+import com.example.taxcalculator.utils.SingleFlight;
+import com.example.taxcalculator.utils.WorkerPool;
+import com.example.taxcalculator.utils.WriteBehindBuffer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-
 /**
  * Repository class responsible for managing data operations.
  * It coordinates interactions between local database, cloud storage, and external APIs.
  * This class abstracts the data source implementation from the rest of the application.
+ * A single instance serves the whole app. Database work runs on two bounded pools: reads the user
+ * waits on (history pages, cached lookups) never queue behind writes (saved scans, cache updates),
+ * and writes go through one thread so they apply in the order they were made.
+ * Saved scans are written behind: they are buffered briefly and stored in one transaction per
+ * batch, together with their entries in the upload outbox, which is then drained to the cloud
+ * in batched commits and retried with backoff while the cloud is unreachable.
+ * Optionally the products of the store's barcode prefixes are prefetched from the cloud into the
+ * lookup cache, so their scans resolve locally and only misses go to the network.
  */
 public class ProductRepository {
 
+    /**
+     * Number of threads serving database reads. SQLite in WAL mode reads concurrently with a write.
+     */
+    private static final int READ_THREADS = 2;
+
+    /**
+     * Number of buffered scans that triggers a write.
+     */
+    private static final int INSERT_BATCH_SIZE = 20;
+
+    /**
+     * Longest a saved scan waits in the buffer before it is written.
+     */
+    private static final long INSERT_DELAY_MS = 300;
+
+    /**
+     * Overall time budget for one barcode lookup, across every source.
+     */
+    private static final long SEARCH_DEADLINE_MS = 8000;
+
+    /**
+     * Per-request timeout and initial hedge delay for the cloud database.
+     */
+    private static final long CLOUD_TIMEOUT_MS = 4000;
+    private static final long CLOUD_HEDGE_MS = 800;
+
+    /**
+     * Per-request timeout and initial hedge delay for the external product APIs.
+     */
+    private static final long API_TIMEOUT_MS = 5000;
+    private static final long API_HEDGE_MS = 1500;
+
+    /**
+     * SharedPreferences file holding the repository's learned state, kept apart from the user's settings.
+     */
+    private static final String PREFS_NAME = "product_repository_state";
+
+    /**
+     * SharedPreferences key under which the learned routing table is persisted.
+     */
+    private static final String KEY_ROUTING_TABLE = "routing_table";
+
+    /**
+     * Number of learned answers between two saves of the routing table.
+     */
+    private static final int ROUTING_SAVE_INTERVAL = 20;
+
+    /**
+     * Preference key under which the catalog prefetch checkpoint is saved.
+     */
+    private static final String KEY_CATALOG_STATE = "catalog_prefetch_state";
+
+    private static volatile ProductRepository instance;
+
+    private final AppDatabase db;
     private final ProductDao productDao;
-    private final ExecutorService executorService;
-    private final AtomicBoolean isSearchActive = new AtomicBoolean(false);
-    private final AtomicInteger failureCount = new AtomicInteger(0);
-    private final List<Call<ProductResponse>> activeCalls = new ArrayList<>();
+    private final OutboxDao outboxDao;
+    private final WriteBehindBuffer<ProductItem> insertBuffer;
+    private final OutboxUploader outboxUploader;
+    private final LookupCache lookupCache;
+    private final CatalogPrefetcher catalogPrefetcher;
+    private final WorkerPool reads = new WorkerPool("repo-read", READ_THREADS);
+    private final WorkerPool writes = new WorkerPool("repo-write", 1);
+    private final LookupScheduler scheduler = new LookupScheduler(
+            LookupScheduler.sharedTimer(), SEARCH_DEADLINE_MS, LookupMetrics.getInstance());
+    private final LookupSource cloudSource = new FirestoreLookupSource();
+    private final List<LookupSource> openFactsSources = Arrays.asList(
+            new OpenFactsLookupSource("food"),
+            new OpenFactsLookupSource("beauty"),
+            new OpenFactsLookupSource("product"));
+    private final LookupSource upcSource = new UpcLookupSource();
+    private final RoutingTable routingTable = new RoutingTable();
+    private final AtomicInteger unsavedRoutingAnswers = new AtomicInteger();
+    private final SharedPreferences prefs;
+    private final SingleFlight<String, ScanCallback> searches = new SingleFlight<>();
+    private final Map<Runnable, InvalidationTracker.Observer> historyObservers = new ConcurrentHashMap<>();
 
     /**
      * Interface for handling asynchronous data operations.
@@ -57,49 +150,270 @@ public class ProductRepository {
 
     /**
      * Initializes the repository with the application context.
-     * Sets up the database access object and the background executor service.
+     * Sets up the database access object and the lookup cache, and queues the cache purge and
+     * the routing table load as background work.
      *
      * @param application The application context.
      */
-    public ProductRepository(Application application) {
-        AppDatabase db = AppDatabase.getInstance(application);
+    private ProductRepository(Application application) {
+        db = AppDatabase.getInstance(application);
         productDao = db.productDao();
-        executorService = Executors.newSingleThreadExecutor();
+        outboxDao = db.outboxDao();
+        lookupCache = LookupCache.getInstance(application);
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        insertBuffer = new WriteBehindBuffer<>(new WriteBehindBuffer.Sink<ProductItem>() {
+            @Override
+            public void write(List<ProductItem> batch) {
+                writeProducts(batch);
+            }
+
+            @Override
+            public void afterWrite(List<ProductItem> stored) {
+                afterProductsWritten(stored);
+            }
+        }, writes.executor(WorkerPool.PRIORITY_NORMAL),
+                LookupScheduler.sharedTimer(), INSERT_BATCH_SIZE, INSERT_DELAY_MS);
+        outboxUploader = new OutboxUploader(outboxDao, writes.executor(WorkerPool.PRIORITY_BACKGROUND),
+                LookupScheduler.sharedTimer(), FirestoreHelper::uploadBatch, OutboxUploader.DEFAULT_BATCH_SIZE,
+                System::currentTimeMillis);
+        catalogPrefetcher = new CatalogPrefetcher(new FirestoreCatalogSource(), lookupCache,
+                writes.executor(WorkerPool.PRIORITY_BACKGROUND), CatalogPrefetcher.DEFAULT_PAGE_SIZE,
+                CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS, System::currentTimeMillis);
+        writes.execute(WorkerPool.PRIORITY_BACKGROUND, lookupCache::purgeExpired);
+        reads.execute(WorkerPool.PRIORITY_BACKGROUND, () -> routingTable.load(prefs.getString(KEY_ROUTING_TABLE, null)));
+        writes.execute(WorkerPool.PRIORITY_BACKGROUND, () -> catalogPrefetcher.loadState(prefs.getString(KEY_CATALOG_STATE, null)));
+        // Upload whatever an earlier process left in the outbox, giving parked entries another try
+        outboxUploader.retryParked();
     }
 
     /**
-     * Retrieves all products from the local database asynchronously.
+     * Retrieves the app-wide repository, creating it on first use.
      *
-     * @param callback Callback to handle the list of products or an error.
+     * @param application The application context.
+     * @return The single ProductRepository instance.
      */
-    public void getAllProducts(DataCallback<List<ProductItem>> callback) {
-        executorService.execute(() -> {
-            List<ProductItem> data = productDao.getAll();
-            callback.onSuccess(data);
-        });
+    public static ProductRepository getInstance(Application application) {
+        if (instance == null) {
+            synchronized (ProductRepository.class) {
+                if (instance == null) {
+                    instance = new ProductRepository(application);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the queue metrics of the read and write pools.
+     *
+     * @return A human-readable summary.
+     */
+    public String getExecutorSummary() {
+        return reads.getSummary() + "\n" + writes.getSummary();
+    }
+
+    /**
+     * Returns the metrics of the write-behind buffer and the outbox uploads.
+     *
+     * @return A human-readable summary.
+     */
+    public String getUploadSummary() {
+        return insertBuffer.getSummary() + "\n" + outboxUploader.getSummary();
+    }
+
+    /**
+     * Returns the metrics of the catalog prefetch.
+     *
+     * @return A human-readable summary.
+     */
+    public String getPrefetchSummary() {
+        return catalogPrefetcher.getSummary();
+    }
+
+    /**
+     * Prefetches the cloud products whose barcodes start with the given prefixes into the lookup
+     * cache, in paged bulk reads stored as background writes. After the first full run only
+     * products changed since the previous run are read. Does nothing if no prefixes are given or
+     * a prefetch is already running.
+     *
+     * @param prefixes The barcode prefixes, as returned by ScanSettings.getPrefetchPrefixes.
+     */
+    public void prefetchCatalog(List<String> prefixes) {
+        if (prefixes.isEmpty()) return;
+        // The single write thread runs this after the state load queued by the constructor
+        writes.execute(WorkerPool.PRIORITY_BACKGROUND, () -> catalogPrefetcher.prefetch(prefixes,
+                new CatalogPrefetcher.Callback() {
+                    @Override
+                    public void onFinished(int stored) {
+                        prefs.edit().putString(KEY_CATALOG_STATE, catalogPrefetcher.getState()).apply();
+                    }
+
+                    @Override
+                    public void onFailed(String error) {
+                        // Retried on the next start; pages stored so far stay cached
+                    }
+                }));
+    }
+
+    /**
+     * Returns the lookup cache used in front of the cloud and API lookups.
+     *
+     * @return The LookupCache instance.
+     */
+    public LookupCache getLookupCache() {
+        return lookupCache;
+    }
+
+    /**
+     * Creates a pager that loads the rows matching a query page by page as interactive reads.
+     * Each loaded page is formatted into the row cache on the same thread, before it is delivered.
+     *
+     * @param query            The part of the history to load.
+     * @param deliveryExecutor The executor results are delivered on, usually the main thread.
+     * @param rowCache         The cache the list binds its display rows from.
+     * @return A new HistoryPager; call {@link HistoryPager#start()} to load the first page.
+     */
+    public HistoryPager createHistoryPager(HistoryQuery query, Executor deliveryExecutor, HistoryRowCache rowCache) {
+        int anchor = query.getAnchorId();
+        HistoryPager.PageSource source = new HistoryPager.PageSource() {
+            @Override
+            public List<ProductItem> loadPage(int beforeId, int limit) {
+                int before = Math.min(beforeId, anchor);
+                List<ProductItem> rows;
+                if (!query.isFiltered()) {
+                    rows = productDao.getPageBefore(before, limit);
+                } else if (query.getCategory() != null) {
+                    rows = productDao.getCategoryPageBefore(before, query.getCategory(),
+                            query.getScannedFrom(), query.getScannedTo(), limit);
+                } else {
+                    rows = productDao.getRangePageBefore(before, query.getScannedFrom(), query.getScannedTo(), limit);
+                }
+                rowCache.prepare(rows);
+                return rows;
+            }
+
+            @Override
+            public List<ProductItem> loadNewer(int afterId, int limit) {
+                List<ProductItem> rows;
+                if (!query.isFiltered()) {
+                    rows = productDao.getPageAfter(afterId, anchor, limit);
+                } else if (query.getCategory() != null) {
+                    rows = productDao.getCategoryPageAfter(afterId, anchor, query.getCategory(),
+                            query.getScannedFrom(), query.getScannedTo(), limit);
+                } else {
+                    rows = productDao.getRangePageAfter(afterId, anchor, query.getScannedFrom(), query.getScannedTo(), limit);
+                }
+                rowCache.prepare(rows);
+                return rows;
+            }
+        };
+        return new HistoryPager(source, reads.executor(WorkerPool.PRIORITY_INTERACTIVE), deliveryExecutor,
+                HistoryPager.DEFAULT_PAGE_SIZE, HistoryPager.DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * Starts notifying a listener whenever the scan history changes, e.g. so an open history
+     * list can call {@link HistoryPager#refresh()}.
+     *
+     * @param onChanged Called on a background thread after each change to the history.
+     */
+    public void observeHistory(Runnable onChanged) {
+        InvalidationTracker.Observer observer = new InvalidationTracker.Observer("product_table") {
+            @Override
+            public void onInvalidated(Set<String> tables) {
+                onChanged.run();
+            }
+        };
+        if (historyObservers.putIfAbsent(onChanged, observer) == null) {
+            db.getInvalidationTracker().addObserver(observer);
+        }
+    }
+
+    /**
+     * Stops the notifications started by {@link #observeHistory(Runnable)}.
+     *
+     * @param onChanged The listener passed to observeHistory.
+     */
+    public void stopObservingHistory(Runnable onChanged) {
+        InvalidationTracker.Observer observer = historyObservers.remove(onChanged);
+        if (observer != null) db.getInvalidationTracker().removeObserver(observer);
     }
 
     /**
-     * Inserts a product into the local database and uploads it to the cloud.
+     * Saves a product to the local database and queues it for upload to the cloud.
+     * The write is buffered and stored with the other scans of its batch in one transaction;
+     * the callback fires once the product is stored. The saved details also become the cached
+     * lookup for the product's barcode.
      *
      * @param item     The product item to be inserted.
      * @param callback Callback to indicate completion.
      */
     public void insertProduct(ProductItem item, DataCallback<Void> callback) {
-        executorService.execute(() -> {
-            productDao.insert(item);
-            FirestoreHelper.uploadProduct(item);
-            callback.onSuccess(null);
+        if (item.getScannedAt() == 0) item.setScannedAt(System.currentTimeMillis());
+        insertBuffer.add(item, new WriteBehindBuffer.Callback() {
+            @Override
+            public void onWritten() {
+                callback.onSuccess(null);
+            }
+
+            @Override
+            public void onFailed(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    /**
+     * Writes the buffered scans now and starts uploading the outbox, e.g. when the app goes to
+     * the background and may be killed.
+     */
+    public void flushWrites() {
+        insertBuffer.flush();
+        outboxUploader.drain();
+    }
+
+    /**
+     * Stores a batch of saved scans and their outbox entries in one transaction. Runs on the
+     * write pool; throwing means none of them was stored.
+     *
+     * @param batch The products, in the order they were saved.
+     */
+    private void writeProducts(List<ProductItem> batch) {
+        List<OutboxEntry> entries = new ArrayList<>(batch.size());
+        for (ProductItem item : batch) {
+            // Saved locally either way, but only barcodes the cloud accepts as document IDs are uploaded
+            if (!FirestoreHelper.isValidDocumentId(item.getBarcode())) continue;
+            entries.add(new OutboxEntry(item.getBarcode(), item.getName(), item.getBrand(), item.getPrice(),
+                    item.getTaxCategory(), item.getScannedAt()));
+        }
+        db.runInTransaction(() -> {
+            productDao.insertAll(batch);
+            outboxDao.insertAll(entries);
         });
     }
 
     /**
-     * Deletes all products from the local database.
+     * Caches the lookups of stored scans and starts their upload. Runs on the write pool after
+     * the scans were committed, outside the write's failure path.
+     *
+     * @param stored The stored products.
+     */
+    private void afterProductsWritten(List<ProductItem> stored) {
+        for (ProductItem item : stored) lookupCache.putFound(item, LookupEntry.SOURCE_LOCAL);
+        outboxUploader.drain();
+    }
+
+    /**
+     * Deletes all products from the local database, including scans still waiting in the
+     * write-behind buffer.
      *
      * @param callback Callback to indicate completion.
      */
     public void deleteAllProducts(DataCallback<Void> callback) {
-        executorService.execute(() -> {
+        // The buffered scans are written first, on the same single-threaded pool and priority,
+        // so none of them reappears after the delete
+        insertBuffer.flush();
+        writes.execute(WorkerPool.PRIORITY_NORMAL, () -> {
             productDao.deleteAll();
             callback.onSuccess(null);
         });
@@ -107,159 +421,216 @@ public class ProductRepository {
 
     /**
      * Searches for a product using its barcode.
-     * First checks the cloud database, and if not found, initiates a search across external APIs.
+     * First checks the lookup cache (memory, then disk), then runs the cloud database and the
+     * external APIs through the lookup scheduler under a single deadline.
+     * Searches for a barcode that is already being looked up join that lookup and receive its
+     * status updates and result, instead of repeating the cache and network requests.
      *
      * @param barcodeValue The barcode of the product to search for.
      * @param callback     Callback to handle the search results.
      */
     public void searchProduct(String barcodeValue, ScanCallback callback) {
-        if (isSearchActive.getAndSet(true)) return;
+        if (barcodeValue == null) {
+            callback.onManualEntryRequired("");
+            return;
+        }
+        LookupMetrics.getInstance().recordSearch();
 
-        failureCount.set(0);
-        activeCalls.clear();
-        callback.onSearchStatus("Identifying product...");
+        // Phase 0: Memory cache, answered without leaving the calling thread
+        LookupEntry cached = lookupCache.getFromMemory(barcodeValue);
+        if (cached != null) {
+            deliverCached(cached, callback);
+            return;
+        }
 
-        // Phase 1: Cloud
-        FirestoreHelper.checkProduct(barcodeValue, new FirestoreHelper.FirestoreCallback() {
-            @Override
-            public void onSuccess(ProductItem item) {
-                isSearchActive.set(false);
-                callback.onCloudFound(item);
-            }
+        // Join the in-flight lookup for this barcode, or start a new one
+        SingleFlight<String, ScanCallback>.Flight flight = searches.join(barcodeValue, callback);
+        if (flight == null) return;
 
-            @Override
-            public void onFailure() {
-                startOpenApiRace(barcodeValue, callback);
+        ScanCallback session = new SearchSession(flight);
+        reads.execute(WorkerPool.PRIORITY_INTERACTIVE, () -> {
+            if (flight.isFinished()) return;
+            // Phase 0b: Persisted cache
+            LookupEntry stored = lookupCache.get(barcodeValue);
+            if (stored != null) {
+                deliverCached(stored, session);
+                return;
             }
+            startNetworkLookup(barcodeValue, flight, session);
         });
     }
 
     /**
-     * Initiates parallel API calls to external services if the product is not found in the cloud.
+     * Cancels one search: its callback receives no further events. Other searches joined to the
+     * same lookup still get the result; the lookup itself is only cancelled when none is left.
      *
-     * @param barcode  The barcode to search for.
-     * @param callback Callback to report search progress and results.
+     * @param barcode  The barcode passed to {@link #searchProduct(String, ScanCallback)}.
+     * @param callback The callback passed with it.
      */
-    private void startOpenApiRace(String barcode, ScanCallback callback) {
-        callback.onSearchStatus("Searching global databases...");
-
-        if (BarcodeRouter.getRoute(barcode) == BarcodeRouter.ProductType.BOOK) {
-            callback.onBookDetected(barcode);
-            isSearchActive.set(false);
-            return;
-        }
-
-        checkApi(barcode, "food", callback);
-        checkApi(barcode, "beauty", callback);
-        checkApi(barcode, "product", callback);
+    public void cancelSearch(String barcode, ScanCallback callback) {
+        if (barcode == null) return;
+        searches.leave(barcode, callback);
     }
 
     /**
-     * Helper method to call a specific API endpoint.
+     * Returns the number of searches currently in flight.
      *
-     * @param barcode  The barcode to search for.
-     * @param type     The category type for the API call.
-     * @param callback Callback to report findings.
+     * @return The number of active search sessions.
      */
-    private void checkApi(String barcode, String type, ScanCallback callback) {
-        Call<ProductResponse> call = RetrofitClient.getApi(type).getProduct(barcode);
-        activeCalls.add(call);
-
-        call.enqueue(new Callback<ProductResponse>() {
-            @Override
-            public void onResponse(Call<ProductResponse> call, Response<ProductResponse> response) {
-                if (!isSearchActive.get()) return;
-
-                if (response.isSuccessful() && response.body() != null && response.body().status == 1) {
-                    if (declareWinner()) {
-                        String name = response.body().product.getBestName();
-                        String brand = response.body().product.brands;
-                        callback.onApiFound(name, brand, barcode);
-                    }
-                } else {
-                    handleApiFailure(barcode, callback);
-                }
-            }
+    public int getActiveSearchCount() {
+        return searches.size();
+    }
 
-            @Override
-            public void onFailure(Call<ProductResponse> call, Throwable t) {
-                if (!call.isCanceled()) {
-                    handleApiFailure(barcode, callback);
-                }
-            }
-        });
+    /**
+     * Returns how many searches joined a lookup already in flight and the network requests
+     * that saved.
+     *
+     * @return A human-readable summary.
+     */
+    public String getSearchSummary() {
+        return "Searches: " + searches.getSummary();
     }
 
     /**
-     * Handles failed API attempts.
-     * If all primary APIs fail, triggers a backup database check.
+     * Reports a cached lookup through the same callbacks used by the network search.
      *
-     * @param barcode  The barcode being searched.
-     * @param callback Callback to report status.
+     * @param entry    The cached entry.
+     * @param callback Callback to handle the result.
      */
-    private void handleApiFailure(String barcode, ScanCallback callback) {
-        if (!isSearchActive.get()) return;
+    private void deliverCached(LookupEntry entry, ScanCallback callback) {
+        LookupMetrics.getInstance().recordCacheAnswer();
+        if (!entry.isFound()) {
+            callback.onManualEntryRequired(entry.getBarcode());
+        } else if (entry.isComplete()) {
+            callback.onCloudFound(entry.toProductItem());
+        } else {
+            callback.onApiFound(entry.getName(), entry.getBrand(), entry.getBarcode());
+        }
+    }
 
-        if (failureCount.incrementAndGet() == 3) {
-            callback.onSearchStatus("Performing deep lookup...");
-            checkBackupDatabase(barcode, callback);
+    /**
+     * Builds the lookup plan for a barcode: the cloud first, then the Open*Facts sources, then
+     * the UPCitemdb deep lookup. Books are only looked up in the cloud. The Open*Facts sources
+     * are ordered by the learned routing table; when one of them is clearly the most likely for
+     * the barcode's prefix it is queried alone, with the others as a separate fallback stage.
+     *
+     * @param barcode The barcode to plan for.
+     * @return The ordered stages to run.
+     */
+    private List<LookupScheduler.Stage> buildPlan(String barcode) {
+        List<LookupScheduler.Stage> plan = new ArrayList<>();
+        plan.add(new LookupScheduler.Stage("Identifying product...", CLOUD_TIMEOUT_MS, CLOUD_HEDGE_MS, cloudSource));
+        if (BarcodeRouter.getRoute(barcode) != BarcodeRouter.ProductType.BOOK) {
+            RoutingTable.Route route = routingTable.route(barcode, openFactsSources);
+            plan.add(new LookupScheduler.Stage("Searching global databases...", API_TIMEOUT_MS, API_HEDGE_MS, route.getPrimary()));
+            if (!route.getFallback().isEmpty()) {
+                plan.add(new LookupScheduler.Stage("Searching more databases...", API_TIMEOUT_MS, API_HEDGE_MS, route.getFallback()));
+            }
+            plan.add(new LookupScheduler.Stage("Performing deep lookup...", API_TIMEOUT_MS, API_HEDGE_MS, upcSource));
         }
+        return plan;
     }
 
     /**
-     * Checks the backup UPC database as a fallback mechanism.
+     * Runs the network lookup for a barcode through the scheduler and reports the outcome.
      *
-     * @param barcode  The barcode to search for.
-     * @param callback Callback to report findings.
+     * @param barcode  The barcode to look up.
+     * @param flight   The in-flight search, told how many requests were issued and how to cancel them.
+     * @param callback The callback delivering to every search joined to the flight.
      */
-    private void checkBackupDatabase(String barcode, ScanCallback callback) {
-        RetrofitClient.getUpcApi().getProduct(barcode).enqueue(new Callback<UpcItemResponse>() {
+    private void startNetworkLookup(String barcode, SingleFlight<String, ScanCallback>.Flight flight,
+                                    ScanCallback callback) {
+        AtomicInteger requests = new AtomicInteger();
+        LookupScheduler.Search search = scheduler.search(barcode, buildPlan(barcode), new LookupScheduler.Callback() {
             @Override
-            public void onResponse(Call<UpcItemResponse> call, Response<UpcItemResponse> response) {
-                if (!isSearchActive.get()) return;
+            public void onStageStarted(LookupScheduler.Stage stage) {
+                flight.setRequestCount(requests.addAndGet(stage.getSources().size()));
+                callback.onSearchStatus(stage.getStatus());
+            }
 
-                if (response.isSuccessful() && response.body() != null && response.body().total > 0) {
-                    isSearchActive.set(false);
-                    UpcItemResponse.UpcItem item = response.body().items.get(0);
-                    callback.onApiFound(item.title, item.brand, barcode);
+            @Override
+            public void onSourceAnswered(LookupSource source, boolean found) {
+                if (openFactsSources.contains(source)) {
+                    routingTable.recordAnswer(barcode, source.getName(), found);
+                    if (unsavedRoutingAnswers.incrementAndGet() >= ROUTING_SAVE_INTERVAL) {
+                        unsavedRoutingAnswers.set(0);
+                        writes.execute(WorkerPool.PRIORITY_BACKGROUND, () ->
+                                prefs.edit().putString(KEY_ROUTING_TABLE, routingTable.export()).apply());
+                    }
+                }
+            }
+
+            @Override
+            public void onFound(LookupSource source, ProductItem item) {
+                cacheFound(item, source.getName());
+                if (source == cloudSource) {
+                    callback.onCloudFound(item);
                 } else {
-                    triggerManualEntry(barcode, callback);
+                    callback.onApiFound(item.getName(), item.getBrand(), barcode);
                 }
             }
 
             @Override
-            public void onFailure(Call<UpcItemResponse> call, Throwable t) {
-                triggerManualEntry(barcode, callback);
+            public void onNotFound(boolean conclusive) {
+                LookupMetrics.getInstance().recordNotFound(conclusive);
+                if (BarcodeRouter.getRoute(barcode) == BarcodeRouter.ProductType.BOOK) {
+                    callback.onBookDetected(barcode);
+                    return;
+                }
+                // Only cache a negative result if every source actually answered "not found"
+                if (conclusive) {
+                    writes.execute(WorkerPool.PRIORITY_NORMAL, () -> lookupCache.putNotFound(barcode));
+                }
+                callback.onManualEntryRequired(barcode);
             }
         });
+        flight.setCanceller(search::cancel);
     }
 
     /**
-     * Signals that manual entry is required when all automated searches fail.
+     * Stores a positive lookup result in the cache on the write pool.
      *
-     * @param barcode  The barcode being processed.
-     * @param callback Callback to notify the UI.
+     * @param item   The resolved product.
+     * @param source The name of the source that resolved it.
      */
-    private void triggerManualEntry(String barcode, ScanCallback callback) {
-        if (isSearchActive.getAndSet(false)) {
-            callback.onManualEntryRequired(barcode);
-        }
+    private void cacheFound(ProductItem item, String source) {
+        writes.execute(WorkerPool.PRIORITY_NORMAL, () -> lookupCache.putFound(item, source));
     }
 
     /**
-     * Atomically determines if the current API response is the first successful one.
-     * Cancels other pending API calls if a winner is declared.
-     *
-     * @return True if this is the winning call, false otherwise.
+     * Delivers a lookup's events to every search joined to its flight. Only the first result
+     * is delivered; status updates stop once the flight finished.
      */
-    private boolean declareWinner() {
-        boolean won = isSearchActive.getAndSet(false);
-        if (won) {
-            for (Call<ProductResponse> call : activeCalls) {
-                if (!call.isExecuted() && !call.isCanceled()) call.cancel();
-            }
-            activeCalls.clear();
+    private static class SearchSession implements ScanCallback {
+        private final SingleFlight<String, ScanCallback>.Flight flight;
+
+        SearchSession(SingleFlight<String, ScanCallback>.Flight flight) {
+            this.flight = flight;
+        }
+
+        @Override
+        public void onCloudFound(ProductItem item) {
+            flight.complete(c -> c.onCloudFound(item));
+        }
+
+        @Override
+        public void onApiFound(String name, String brand, String code) {
+            flight.complete(c -> c.onApiFound(name, brand, code));
+        }
+
+        @Override
+        public void onManualEntryRequired(String code) {
+            flight.complete(c -> c.onManualEntryRequired(code));
+        }
+
+        @Override
+        public void onBookDetected(String code) {
+            flight.complete(c -> c.onBookDetected(code));
+        }
+
+        @Override
+        public void onSearchStatus(String status) {
+            flight.update(c -> c.onSearchStatus(status));
         }
-        return won;
     }
-}
\ No newline at end of file
+}
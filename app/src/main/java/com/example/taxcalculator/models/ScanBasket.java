@@ -0,0 +1,131 @@
+package com.example.taxcalculator.models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running basket built up during a continuous scan session.
+ * Lookups complete on background threads in any order, so all methods are synchronized.
+ * Items whose price and tax category are known are totalled straight away; the others are
+ * kept as pending lines that need the user to fill in their details once scanning is over.
+ */
+public class ScanBasket {
+
+    /**
+     * One basket line: a product and how many times it was scanned.
+     */
+    public static class Line {
+        private final String barcode;
+        private final String name;
+        private final String brand;
+        private final ProductItem item;
+        private int quantity = 1;
+
+        Line(String barcode, String name, String brand, ProductItem item) {
+            this.barcode = barcode;
+            this.name = name;
+            this.brand = brand;
+            this.item = item;
+        }
+
+        /**
+         * @return The scanned barcode.
+         */
+        public String getBarcode() { return barcode; }
+
+        /**
+         * @return The product name, possibly empty for pending lines.
+         */
+        public String getName() { return name; }
+
+        /**
+         * @return The brand name, possibly empty for pending lines.
+         */
+        public String getBrand() { return brand; }
+
+        /**
+         * @return The fully priced product, or null if the line still needs details.
+         */
+        public ProductItem getItem() { return item; }
+
+        /**
+         * @return How many times the product was scanned.
+         */
+        public int getQuantity() { return quantity; }
+    }
+
+    private final Map<String, Line> priced = new LinkedHashMap<>();
+    private final Map<String, Line> needsDetails = new LinkedHashMap<>();
+    private long totalPaise;
+    private long taxTotalPaise;
+    private int itemCount;
+
+    /**
+     * Adds a product whose price and tax category are known.
+     *
+     * @param item The priced product.
+     */
+    public synchronized void addPriced(ProductItem item) {
+        Line line = priced.get(item.getBarcode());
+        if (line == null) {
+            priced.put(item.getBarcode(), new Line(item.getBarcode(), item.getName(), item.getBrand(), item));
+        } else {
+            line.quantity++;
+        }
+        totalPaise += item.getPricePaise();
+        taxTotalPaise += item.getTaxAmountPaise();
+        itemCount++;
+    }
+
+    /**
+     * Adds a product that still needs its price or tax category entered.
+     *
+     * @param barcode The scanned barcode.
+     * @param name    The product name if known, otherwise empty.
+     * @param brand   The brand name if known, otherwise empty.
+     */
+    public synchronized void addNeedsDetails(String barcode, String name, String brand) {
+        Line line = needsDetails.get(barcode);
+        if (line == null) {
+            needsDetails.put(barcode, new Line(barcode, name == null ? "" : name, brand == null ? "" : brand, null));
+        } else {
+            line.quantity++;
+        }
+    }
+
+    /**
+     * @return Number of priced items, counting repeated scans.
+     */
+    public synchronized int getItemCount() { return itemCount; }
+
+    /**
+     * @return Sum of the MRP of all priced items, in paise.
+     */
+    public synchronized long getTotalPaise() { return totalPaise; }
+
+    /**
+     * @return Sum of the tax included in all priced items, in paise.
+     */
+    public synchronized long getTaxTotalPaise() { return taxTotalPaise; }
+
+    /**
+     * @return Number of distinct products still needing details.
+     */
+    public synchronized int getPendingCount() { return needsDetails.size(); }
+
+    /**
+     * @return A copy of the priced lines, in scan order.
+     */
+    public synchronized List<Line> getPricedLines() {
+        return new ArrayList<>(priced.values());
+    }
+
+    /**
+     * @return A copy of the lines needing details, in scan order.
+     */
+    public synchronized List<Line> getPendingLines() {
+        return new ArrayList<>(needsDetails.values());
+    }
+}
@@ -39,4 +39,22 @@ public class BarcodeRouter {
         if (barcode.startsWith("890")) return ProductType.INDIAN_RETAIL;
         return ProductType.GLOBAL_GENERAL;
     }
+
+    /**
+     * Extracts the 3-digit GS1 prefix of a barcode, used as the key of the learned routing table.
+     * 12-digit UPC-A codes are treated as EAN-13 codes with a leading zero, and 8-digit EAN-8
+     * codes get their own key space so they are not mixed with EAN-13 prefixes.
+     *
+     * @param barcode The scanned barcode string.
+     * @return The prefix key, or an empty string if the barcode is too short or not numeric.
+     */
+    public static String getPrefix(String barcode) {
+        if (barcode == null || barcode.length() < 3) return "";
+        for (int i = 0; i < 3; i++) {
+            if (!Character.isDigit(barcode.charAt(i))) return "";
+        }
+        if (barcode.length() == 12) return "0" + barcode.substring(0, 2);
+        if (barcode.length() == 8) return "8:" + barcode.substring(0, 3);
+        return barcode.substring(0, 3);
+    }
 }
\ No newline at end of file
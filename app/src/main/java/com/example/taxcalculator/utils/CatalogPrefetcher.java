@@ -0,0 +1,434 @@
+package com.example.taxcalculator.utils;
+
+import com.example.taxcalculator.models.LookupEntry;
+import com.example.taxcalculator.models.ProductItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Pulls the store's relevant part of the crowdsourced catalog into the lookup cache ahead of
+ * time, so scans of those products resolve from the persisted cache without a round trip and
+ * the cloud is only asked about misses.
+ * The relevant part is given as barcode prefixes (e.g. a country or manufacturer prefix).
+ * A full run reads every product in those prefix ranges page by page; later runs only read
+ * products contributed since the previous run and keep the ones matching a prefix. A full run
+ * is repeated before prefetched entries could expire, and whenever the prefixes change.
+ * Each page is stored in one transaction before the next page is requested, and a run reads at
+ * most {@code maxDocuments} documents. A full pass that runs out of budget saves the prefix and
+ * barcode it stopped at, and the next runs continue it from there until every range was read.
+ */
+public class CatalogPrefetcher {
+
+    /**
+     * Default number of documents requested per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * Default maximum number of documents read per run.
+     */
+    public static final int DEFAULT_MAX_DOCUMENTS = 5000;
+
+    /**
+     * Interval after which an incremental run is replaced by a full run. Shorter than the
+     * lookup cache TTL, so products that did not change are refreshed before they expire.
+     */
+    public static final long FULL_REFRESH_INTERVAL_MS = TimeUnit.DAYS.toMillis(3);
+
+    /**
+     * Overlap subtracted from the run start when it becomes the next checkpoint, covering skew
+     * between this device's clock and the server timestamps every upload is stamped with.
+     * Re-reading a few documents is harmless.
+     */
+    static final long CHECKPOINT_OVERLAP_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Separator of the prefixes and of the fields in the saved state.
+     */
+    private static final String SEPARATOR = ",";
+    private static final String STATE_SEPARATOR = "|";
+
+    /**
+     * Number of fields in the saved state. The last one, the barcode a pass stopped after, may
+     * itself contain the separator.
+     */
+    private static final int STATE_FIELDS = 7;
+
+    /**
+     * Paged queries against the catalog. Implemented by {@link FirestoreCatalogSource}.
+     */
+    public interface CatalogSource {
+        /**
+         * Reads one page of the products whose barcode starts with a prefix, in barcode order.
+         *
+         * @param prefix   The barcode prefix.
+         * @param after    The barcode (document ID) to continue after, or null for the first page.
+         * @param limit    The maximum number of documents to read.
+         * @param callback The callback receiving the page; its cursor is the barcode of the
+         *                 last document read, so a pass can be continued after a restart.
+         */
+        void fetchRange(String prefix, String after, int limit, PageCallback callback);
+
+        /**
+         * Reads one page of the products contributed after a point in time, oldest change first.
+         *
+         * @param sinceMillis Only products uploaded after this time (epoch millis) are read.
+         * @param after       The cursor of the previous page, or null for the first page.
+         * @param limit       The maximum number of documents to read.
+         * @param callback    The callback receiving the page.
+         */
+        void fetchUpdatedSince(long sinceMillis, Object after, int limit, PageCallback callback);
+    }
+
+    /**
+     * Receives one page of a catalog query.
+     */
+    public interface PageCallback {
+        /**
+         * Called with a page of results.
+         *
+         * @param items          The complete products of the page; incomplete documents are left out.
+         * @param documents      The number of documents read, including incomplete ones.
+         * @param cursor         The cursor to pass to request the next page.
+         * @param lastUploadedAt The upload time of the last document in epoch millis, or 0 if unknown.
+         */
+        void onPage(List<ProductItem> items, int documents, Object cursor, long lastUploadedAt);
+
+        /**
+         * Called when the page could not be read.
+         *
+         * @param error A description of the failure.
+         */
+        void onFailure(String error);
+    }
+
+    /**
+     * Told when a run ends.
+     */
+    public interface Callback {
+        /**
+         * Called when a run finished; the new state should be saved.
+         *
+         * @param stored The number of products stored by the run.
+         */
+        void onFinished(int stored);
+
+        /**
+         * Called when a run stopped on a failed page. Pages stored before it are kept.
+         *
+         * @param error A description of the failure.
+         */
+        void onFailed(String error);
+    }
+
+    private final CatalogSource source;
+    private final LookupCache cache;
+    private final Executor executor;
+    private final int pageSize;
+    private final int maxDocuments;
+    private final LongSupplier clock;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile String statePrefixes = "";
+    private volatile long lastFullAt;
+    private volatile long updatedSince;
+
+    /**
+     * The full pass cut short by the budget: its prefixes (empty if none is pending), its start,
+     * and the prefix and barcode to continue after.
+     */
+    private volatile String pendingPrefixes = "";
+    private volatile long pendingStartedAt;
+    private volatile int pendingIndex;
+    private volatile String pendingAfter;
+
+    private volatile int runs;
+    private volatile int lastRunPages;
+    private volatile int lastRunDocuments;
+    private volatile int lastRunStored;
+    private volatile boolean lastRunFull;
+    private volatile long lastRunMs = -1;
+    private volatile long lastFinishedAt;
+    private volatile String lastError;
+
+    /**
+     * Constructs a CatalogPrefetcher.
+     *
+     * @param source       The catalog to read.
+     * @param cache        The lookup cache to fill.
+     * @param executor     The executor storing pages; should run background database work.
+     * @param pageSize     The number of documents requested per page.
+     * @param maxDocuments The maximum number of documents read per run.
+     * @param clock        Supplier of the current time in epoch millis.
+     */
+    public CatalogPrefetcher(CatalogSource source, LookupCache cache, Executor executor,
+                             int pageSize, int maxDocuments, LongSupplier clock) {
+        this.source = source;
+        this.cache = cache;
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.maxDocuments = maxDocuments;
+        this.clock = clock;
+    }
+
+    /**
+     * Parses a comma separated list of barcode prefixes, ignoring blanks and anything but digits.
+     * Prefixes covered by a shorter one are dropped, so no range is read twice.
+     *
+     * @param text The list, e.g. "890, 4006381".
+     * @return The prefixes, sorted; empty if none are given.
+     */
+    public static List<String> parsePrefixes(String text) {
+        List<String> candidates = new ArrayList<>();
+        if (text == null) return candidates;
+        for (String part : text.split(SEPARATOR)) {
+            String prefix = part.trim();
+            if (!prefix.isEmpty() && prefix.chars().allMatch(Character::isDigit)) candidates.add(prefix);
+        }
+        // Sorted, a covering prefix comes right before the prefixes it covers
+        Collections.sort(candidates);
+        List<String> prefixes = new ArrayList<>(candidates.size());
+        for (String prefix : candidates) {
+            if (prefixes.isEmpty() || !prefix.startsWith(prefixes.get(prefixes.size() - 1))) prefixes.add(prefix);
+        }
+        return prefixes;
+    }
+
+    /**
+     * Restores the state saved by {@link #getState()}. Malformed state is ignored,
+     * which makes the next run a full one.
+     *
+     * @param state The saved state, or null.
+     */
+    public void loadState(String state) {
+        if (state == null) return;
+        String[] fields = state.split("\\" + STATE_SEPARATOR, STATE_FIELDS);
+        if (fields.length != STATE_FIELDS) return;
+        try {
+            long fullAt = Long.parseLong(fields[1]);
+            long since = Long.parseLong(fields[2]);
+            long startedAt = Long.parseLong(fields[4]);
+            int index = Integer.parseInt(fields[5]);
+            if (index < 0 || index >= fields[3].split(SEPARATOR).length) return;
+            statePrefixes = fields[0];
+            lastFullAt = fullAt;
+            updatedSince = since;
+            pendingPrefixes = fields[3];
+            pendingStartedAt = startedAt;
+            pendingIndex = index;
+            pendingAfter = fields[6].isEmpty() ? null : fields[6];
+        } catch (NumberFormatException ignored) {
+            // Keep the defaults
+        }
+    }
+
+    /**
+     * Returns the state to persist between app starts: the prefixes of the last full pass, its
+     * start and the checkpoint of the next incremental run, then where an unfinished full pass
+     * continues.
+     *
+     * @return The state string.
+     */
+    public String getState() {
+        return statePrefixes + STATE_SEPARATOR + lastFullAt + STATE_SEPARATOR + updatedSince
+                + STATE_SEPARATOR + pendingPrefixes + STATE_SEPARATOR + pendingStartedAt
+                + STATE_SEPARATOR + pendingIndex + STATE_SEPARATOR + (pendingAfter != null ? pendingAfter : "");
+    }
+
+    /**
+     * Starts a run in the background. Does nothing if no prefixes are given or a run is
+     * already in progress.
+     *
+     * @param prefixes The barcode prefixes to keep local, as returned by {@link #parsePrefixes(String)}.
+     * @param callback The callback told when the run ends.
+     * @return True if a run was started.
+     */
+    public boolean prefetch(List<String> prefixes, Callback callback) {
+        if (prefixes.isEmpty() || !running.compareAndSet(false, true)) return false;
+        long now = clock.getAsLong();
+        String key = String.join(SEPARATOR, prefixes);
+        runs++;
+        if (key.equals(pendingPrefixes)) {
+            new Run(prefixes, key, true, now, pendingStartedAt, pendingIndex, pendingAfter, callback).next();
+            return true;
+        }
+        boolean full = !key.equals(statePrefixes) || updatedSince == 0
+                || now - lastFullAt >= FULL_REFRESH_INTERVAL_MS;
+        new Run(prefixes, key, full, now, now, 0, null, callback).next();
+        return true;
+    }
+
+    /**
+     * @return True while a run is in progress.
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return The checkpoint of the next incremental run in epoch millis, or 0 before the first full run.
+     */
+    public long getUpdatedSince() {
+        return updatedSince;
+    }
+
+    /**
+     * @return The number of runs started.
+     */
+    public int getRunCount() {
+        return runs;
+    }
+
+    /**
+     * Returns a human readable summary of the last run, for the diagnostics dialog.
+     *
+     * @return The summary.
+     */
+    public String getSummary() {
+        if (runs == 0) return "Catalog prefetch: never run";
+        return String.format(Locale.US,
+                "Catalog prefetch: %d runs, last %s %s in %d ms\n%d pages, %d documents, %d stored%s",
+                runs, lastRunFull ? "full" : "incremental",
+                lastFinishedAt > 0 ? (clock.getAsLong() - lastFinishedAt) / 1000 + " s ago" : "running",
+                lastRunMs, lastRunPages, lastRunDocuments, lastRunStored,
+                lastError != null ? "\nLast error: " + lastError : "");
+    }
+
+    /**
+     * One run: pages through each prefix range (full) or through the recent changes
+     * (incremental), storing every page before requesting the next. A full run may continue a
+     * pass that earlier runs started.
+     */
+    private class Run implements PageCallback {
+        private final List<String> prefixes;
+        private final String key;
+        private final boolean full;
+        private final long startedAt;
+        private final long passStartedAt;
+        private final Callback callback;
+        private int prefixIndex;
+        private Object cursor;
+        private long lastUploadedAt;
+        private int requested;
+        private int pages;
+        private int documents;
+        private int stored;
+
+        Run(List<String> prefixes, String key, boolean full, long startedAt, long passStartedAt,
+            int prefixIndex, String after, Callback callback) {
+            this.prefixes = prefixes;
+            this.key = key;
+            this.full = full;
+            this.startedAt = startedAt;
+            this.passStartedAt = passStartedAt;
+            this.prefixIndex = prefixIndex;
+            this.cursor = after;
+            this.callback = callback;
+        }
+
+        void next() {
+            requested = Math.min(pageSize, maxDocuments - documents);
+            if (full) {
+                source.fetchRange(prefixes.get(prefixIndex), (String) cursor, requested, this);
+            } else {
+                source.fetchUpdatedSince(updatedSince, cursor, requested, this);
+            }
+        }
+
+        @Override
+        public void onPage(List<ProductItem> items, int count, Object nextCursor, long uploadedAt) {
+            executor.execute(() -> {
+                try {
+                    stored += cache.putAllFound(full ? items : matching(items), LookupEntry.SOURCE_CLOUD);
+                } catch (RuntimeException e) {
+                    fail(e.getMessage() != null ? e.getMessage() : "store failed");
+                    return;
+                }
+                pages++;
+                documents += count;
+                if (uploadedAt > 0) lastUploadedAt = uploadedAt;
+
+                // A short page is the end of the current range
+                boolean exhausted = count < requested;
+                if (exhausted && full && prefixIndex + 1 < prefixes.size()) {
+                    prefixIndex++;
+                    cursor = null;
+                    exhausted = false;
+                } else {
+                    cursor = nextCursor;
+                }
+                if (exhausted || documents >= maxDocuments) {
+                    finish(exhausted);
+                } else {
+                    next();
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(String error) {
+            fail(error);
+        }
+
+        private List<ProductItem> matching(List<ProductItem> items) {
+            List<ProductItem> kept = new ArrayList<>(items.size());
+            for (ProductItem item : items) {
+                for (String prefix : prefixes) {
+                    if (item.getBarcode().startsWith(prefix)) {
+                        kept.add(item);
+                        break;
+                    }
+                }
+            }
+            return kept;
+        }
+
+        private void finish(boolean exhausted) {
+            long checkpoint = startedAt - CHECKPOINT_OVERLAP_MS;
+            if (full && !exhausted) {
+                // Out of budget: the next run continues the pass where this one stopped
+                pendingPrefixes = key;
+                pendingStartedAt = passStartedAt;
+                pendingIndex = prefixIndex;
+                pendingAfter = (String) cursor;
+            } else if (full) {
+                // Changes made while the pass ran are read by the next incremental run
+                statePrefixes = key;
+                lastFullAt = passStartedAt;
+                updatedSince = Math.max(1, passStartedAt - CHECKPOINT_OVERLAP_MS);
+                pendingPrefixes = "";
+                pendingAfter = null;
+            } else if (exhausted) {
+                updatedSince = Math.max(updatedSince, checkpoint);
+            } else if (lastUploadedAt > 0) {
+                // Resume after the last change read; ties in the same millisecond are read again
+                updatedSince = Math.max(updatedSince, lastUploadedAt - 1);
+            }
+            record(null);
+            callback.onFinished(stored);
+        }
+
+        private void fail(String error) {
+            record(error);
+            callback.onFailed(error);
+        }
+
+        private void record(String error) {
+            lastRunFull = full;
+            lastRunPages = pages;
+            lastRunDocuments = documents;
+            lastRunStored = stored;
+            lastFinishedAt = clock.getAsLong();
+            lastRunMs = lastFinishedAt - startedAt;
+            lastError = error;
+            running.set(false);
+        }
+    }
+}
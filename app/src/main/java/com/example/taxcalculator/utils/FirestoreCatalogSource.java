@@ -0,0 +1,19 @@
+package com.example.taxcalculator.utils;
+
+/**
+ * Catalog source backed by the crowdsourced Firestore collection.
+ * Range pages continue after the barcode of the last document read; pages of recent changes
+ * continue after the last document snapshot.
+ */
+public class FirestoreCatalogSource implements CatalogPrefetcher.CatalogSource {
+
+    @Override
+    public void fetchRange(String prefix, String after, int limit, CatalogPrefetcher.PageCallback callback) {
+        FirestoreHelper.fetchCatalogRange(prefix, after, limit, callback);
+    }
+
+    @Override
+    public void fetchUpdatedSince(long sinceMillis, Object after, int limit, CatalogPrefetcher.PageCallback callback) {
+        FirestoreHelper.fetchCatalogUpdatedSince(sinceMillis, after, limit, callback);
+    }
+}
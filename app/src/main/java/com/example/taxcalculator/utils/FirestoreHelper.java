@@ -1,7 +1,23 @@
 package com.example.taxcalculator.utils;
 
+import com.example.taxcalculator.models.OutboxEntry;
 import com.example.taxcalculator.models.ProductItem;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Utility class for interacting with Firebase Firestore.
@@ -15,83 +31,188 @@ public class FirestoreHelper {
     private static final String COLLECTION_NAME = "crowdsourced_products";
 
     /**
-     * Interface for defining callbacks for Firestore operations.
-     * Mimics the asynchronous response pattern used in networking libraries like Retrofit.
+     * The document field holding the time of the last contribution.
      */
-    public interface FirestoreCallback {
+    private static final String FIELD_UPLOADED_AT = "uploaded_at";
+
+    /**
+     * Upper bound appended to a prefix so that a document ID range covers every ID starting with it.
+     */
+    private static final String PREFIX_END = "\uf8ff";
+
+    /**
+     * Callback for batched uploads.
+     */
+    public interface UploadCallback {
         /**
-         * Called when a product is successfully retrieved from Firestore.
-         * @param item The retrieved ProductItem.
+         * Called when the batch was committed.
          */
-        void onSuccess(ProductItem item);
+        void onSuccess();
 
         /**
-         * Called when the product is not found or an error occurs during retrieval.
+         * Called when the batch could not be committed.
+         *
+         * @param error A description of the failure.
          */
-        void onFailure();
+        void onFailure(String error);
+    }
+
+    /**
+     * Checks whether a barcode can be used as a document ID. Firestore rejects empty IDs,
+     * IDs containing a slash, "." and "..", and IDs longer than 1500 bytes.
+     *
+     * @param barcode The barcode string.
+     * @return True if the barcode can name a document.
+     */
+    public static boolean isValidDocumentId(String barcode) {
+        return barcode != null && !barcode.isEmpty() && barcode.indexOf('/') < 0
+                && !barcode.equals(".") && !barcode.equals("..")
+                && barcode.getBytes(StandardCharsets.UTF_8).length <= 1500;
     }
 
     /**
-     * Checks the cloud database for a product with the given barcode.
-     * This is the first step in the hybrid scanning process.
+     * Checks the cloud database for a product, distinguishing "not found" from a failed read.
+     * Used by the lookup scheduler, which only trusts conclusive misses for negative caching.
+     * A barcode that cannot name a document cannot be stored in the cloud either, so it is a
+     * conclusive miss without a read.
      *
      * @param barcode  The barcode string to search for.
-     * @param callback The callback to handle the result (success or failure).
+     * @param listener The listener to report the outcome to.
      */
-    public static void checkProduct(String barcode, FirestoreCallback callback) {
+    public static void checkProduct(String barcode, LookupSource.Listener listener) {
+        if (!isValidDocumentId(barcode)) {
+            listener.onMiss(LookupSource.MISS_NOT_FOUND);
+            return;
+        }
         FirebaseFirestore db = FirebaseFirestore.getInstance();
 
         db.collection(COLLECTION_NAME).document(barcode).get()
                 .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        // Found it! Convert Firestore document to ProductItem
-                        String name = documentSnapshot.getString("name");
-                        String brand = documentSnapshot.getString("brand");
-                        Double price = documentSnapshot.getDouble("price");
-                        String category = documentSnapshot.getString("tax_category");
-
-                        // Safety check to ensure essential fields are present
-                        if (name != null && price != null && category != null) {
-                            ProductItem item = new ProductItem(
-                                    name,
-                                    brand != null ? brand : "Generic",
-                                    price,
-                                    category,
-                                    barcode
-                            );
-                            callback.onSuccess(item);
-                        } else {
-                            callback.onFailure();
-                        }
+                    ProductItem item = toProductItem(documentSnapshot, barcode);
+                    if (item != null) {
+                        listener.onFound(item);
                     } else {
-                        callback.onFailure(); // Document does not exist
+                        listener.onMiss(LookupSource.MISS_NOT_FOUND);
                     }
                 })
-                .addOnFailureListener(e -> callback.onFailure());
+                .addOnFailureListener(e -> listener.onMiss(LookupSource.MISS_ERROR));
     }
 
     /**
-     * Uploads a valid product to the crowdsourced cloud database.
-     * This allows other users to benefit from the data entered by the current user.
-     * Uses the barcode as the document ID for easy lookup.
+     * Reads one page of the products whose barcode starts with a prefix, in barcode order.
+     * Used by the catalog prefetch; the range is served from the document ID index.
      *
-     * @param item The ProductItem to be uploaded.
+     * @param prefix   The barcode prefix.
+     * @param after    The barcode to continue after, or null for the first page.
+     * @param limit    The maximum number of documents to read.
+     * @param callback The callback receiving the page; its cursor is the last barcode read.
      */
-    public static void uploadProduct(ProductItem item) {
-        if (item == null || item.getBarcode() == null) return;
+    public static void fetchCatalogRange(String prefix, String after, int limit,
+                                         CatalogPrefetcher.PageCallback callback) {
+        Query query = FirebaseFirestore.getInstance().collection(COLLECTION_NAME)
+                .orderBy(FieldPath.documentId());
+        query = after != null ? query.startAfter(after) : query.startAt(prefix);
+        readCatalogPage(query.endAt(prefix + PREFIX_END).limit(limit), true, callback);
+    }
 
+    /**
+     * Reads one page of the products contributed after a point in time, oldest change first.
+     * Ties on the contribution time are broken by barcode, so paging never skips a document.
+     *
+     * @param sinceMillis Only documents uploaded after this time (epoch millis) are read.
+     * @param after       The cursor of the previous page, or null for the first page.
+     * @param limit       The maximum number of documents to read.
+     * @param callback    The callback receiving the page.
+     */
+    public static void fetchCatalogUpdatedSince(long sinceMillis, Object after, int limit,
+                                                CatalogPrefetcher.PageCallback callback) {
+        Query query = FirebaseFirestore.getInstance().collection(COLLECTION_NAME)
+                .whereGreaterThan(FIELD_UPLOADED_AT, new Timestamp(new Date(sinceMillis)))
+                .orderBy(FIELD_UPLOADED_AT)
+                .orderBy(FieldPath.documentId());
+        if (after != null) query = query.startAfter((DocumentSnapshot) after);
+        readCatalogPage(query.limit(limit), false, callback);
+    }
+
+    private static void readCatalogPage(Query query, boolean idCursor, CatalogPrefetcher.PageCallback callback) {
+        query.get()
+                .addOnSuccessListener(snapshot -> deliverCatalogPage(snapshot, idCursor, callback))
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage() != null ? e.getMessage() : "query failed"));
+    }
+
+    private static void deliverCatalogPage(QuerySnapshot snapshot, boolean idCursor,
+                                           CatalogPrefetcher.PageCallback callback) {
+        List<DocumentSnapshot> documents = snapshot.getDocuments();
+        List<ProductItem> items = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            ProductItem item = toProductItem(document, document.getId());
+            if (item != null) items.add(item);
+        }
+        // The last document is the cursor of the next page: its ID, or the snapshot when the
+        // query orders on other fields too
+        DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        long lastUploadedAt = 0;
+        if (last != null) {
+            Timestamp uploadedAt = last.getTimestamp(FIELD_UPLOADED_AT);
+            if (uploadedAt != null) lastUploadedAt = uploadedAt.toDate().getTime();
+        }
+        Object cursor = last == null || !idCursor ? last : last.getId();
+        callback.onPage(items, documents.size(), cursor, lastUploadedAt);
+    }
+
+    /**
+     * Converts a crowdsourced product document into a ProductItem.
+     *
+     * @param documentSnapshot The Firestore document.
+     * @param barcode          The barcode the document belongs to.
+     * @return The ProductItem, or null if the document does not exist or lacks essential fields.
+     */
+    static ProductItem toProductItem(DocumentSnapshot documentSnapshot, String barcode) {
+        if (!documentSnapshot.exists()) return null;
+
+        String name = documentSnapshot.getString("name");
+        String brand = documentSnapshot.getString("brand");
+        Double price = documentSnapshot.getDouble("price");
+        String category = documentSnapshot.getString("tax_category");
+
+        // Safety check to ensure essential fields are present
+        if (name == null || price == null || category == null) return null;
+
+        return new ProductItem(
+                name,
+                brand != null ? brand : "Generic",
+                price,
+                category,
+                barcode
+        );
+    }
+
+    /**
+     * Uploads queued product contributions to the crowdsourced cloud database in one batch.
+     * This allows other users to benefit from the data entered by the current user.
+     * Uses the barcode as the document ID for easy lookup; the batch is applied atomically,
+     * so on failure none of the entries were written and all of them can be retried.
+     *
+     * @param entries  The entries to upload, at most 500 (the Firestore batch limit).
+     * @param callback The callback told whether the batch was committed.
+     */
+    public static void uploadBatch(List<OutboxEntry> entries, UploadCallback callback) {
         FirebaseFirestore db = FirebaseFirestore.getInstance();
+        WriteBatch batch = db.batch();
+        for (OutboxEntry entry : entries) {
+            Map<String, Object> productMap = new HashMap<>();
+            productMap.put("name", entry.getName());
+            productMap.put("brand", entry.getBrand());
+            productMap.put("price", entry.getPrice());
+            productMap.put("tax_category", entry.getTaxCategory());
+            // Stamped by the server, so a contributor's clock cannot hide the change from incremental prefetches
+            productMap.put(FIELD_UPLOADED_AT, FieldValue.serverTimestamp());
 
-        // Create a map of data to store
-        java.util.Map<String, Object> productMap = new java.util.HashMap<>();
-        productMap.put("name", item.getName());
-        productMap.put("brand", item.getBrand());
-        productMap.put("price", item.getPrice());
-        productMap.put("tax_category", item.getTaxCategory());
-        productMap.put("uploaded_at", com.google.firebase.Timestamp.now());
-
-        // Upload using barcode as ID. SetOptions.merge() ensures we update existing records without overwriting blindly.
-        db.collection(COLLECTION_NAME).document(item.getBarcode())
-                .set(productMap, com.google.firebase.firestore.SetOptions.merge());
+            // SetOptions.merge() ensures we update existing records without overwriting blindly.
+            batch.set(db.collection(COLLECTION_NAME).document(entry.getBarcode()), productMap, SetOptions.merge());
+        }
+        batch.commit()
+                .addOnSuccessListener(unused -> callback.onSuccess())
+                .addOnFailureListener(e -> callback.onFailure(e.getMessage() != null ? e.getMessage() : "commit failed"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.taxcalculator.utils;
+
+import com.example.taxcalculator.models.LookupEntry;
+
+/**
+ * Lookup source backed by the crowdsourced Firestore collection.
+ * Firestore reads cannot be cancelled, so cancellation only means the scheduler ignores the answer.
+ */
+public class FirestoreLookupSource implements LookupSource {
+
+    @Override
+    public String getName() {
+        return LookupEntry.SOURCE_CLOUD;
+    }
+
+    @Override
+    public Cancellable lookup(String barcode, Listener listener) {
+        FirestoreHelper.checkProduct(barcode, listener);
+        return () -> { };
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.taxcalculator.utils;
+
+import java.util.Locale;
+
+/**
+ * Frame-processing instrumentation and adaptive load control for the barcode analyzer.
+ * Every camera frame is reported here. The governor counts frames the camera dropped (seen as
+ * gaps in the sensor timestamps), decides whether a frame is run through detection or skipped,
+ * and records how long acquiring, detecting and closing each processed frame took.
+ * While the smoothed detection time stays above the budget, more frames are skipped; once
+ * skipping is at its limit, it asks for a lower analysis resolution. Cheap frames let it
+ * skip less again. The resolution is never raised within a session, to avoid oscillating.
+ * All latencies are in microseconds.
+ */
+public class FrameGovernor {
+
+    /**
+     * Default per-frame detection budget. Above this the preview starts to stutter on slow devices.
+     */
+    public static final long DEFAULT_BUDGET_MICROS = 60_000;
+
+    /**
+     * Maximum number of frames skipped between two processed frames.
+     */
+    static final int MAX_SKIP = 3;
+
+    /**
+     * Number of processed frames between two adjustments, so each one can take effect.
+     */
+    static final int ADJUST_EVERY = 5;
+
+    /**
+     * Weight of the newest detection time in the smoothed average.
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * Gaps longer than this are treated as pauses (e.g. the camera rebinding), not dropped frames.
+     */
+    private static final long MAX_GAP_NANOS = 1_000_000_000L;
+
+    /**
+     * Shared instance, so what was learned on a slow device carries over to the next scan.
+     */
+    private static final FrameGovernor INSTANCE = new FrameGovernor(DEFAULT_BUDGET_MICROS);
+
+    private final long budgetMicros;
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LatencyHistogram detect = new LatencyHistogram();
+    private final LatencyHistogram close = new LatencyHistogram();
+    private long framesSeen;
+    private long framesProcessed;
+    private long framesSkipped;
+    private long framesDropped;
+    private long resolutionDowngrades;
+
+    private int resolution = ScanSettings.RESOLUTION_MEDIUM;
+    private int skip;
+    private int sinceSkipped;
+    private int sinceAdjusted;
+    private double smoothedDetect = -1;
+    private long lastTimestamp = -1;
+    private long frameInterval = -1;
+
+    /**
+     * Creates a governor.
+     *
+     * @param budgetMicros The per-frame detection budget in microseconds.
+     */
+    public FrameGovernor(long budgetMicros) {
+        this.budgetMicros = budgetMicros;
+    }
+
+    /**
+     * Retrieves the shared instance.
+     *
+     * @return The singleton FrameGovernor.
+     */
+    public static FrameGovernor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts a scan session at the given resolution. The skip level is kept from the previous
+     * session, the timestamp history is not.
+     *
+     * @param resolution The analysis resolution, one of the ScanSettings.RESOLUTION_* constants.
+     */
+    public synchronized void startSession(int resolution) {
+        this.resolution = resolution;
+        lastTimestamp = -1;
+        frameInterval = -1;
+        sinceSkipped = 0;
+        sinceAdjusted = 0;
+    }
+
+    /**
+     * Reports a frame arriving at the analyzer and decides whether to run detection on it.
+     *
+     * @param timestampNanos The frame's sensor timestamp in nanoseconds.
+     * @return True to process the frame, false to close it straight away.
+     */
+    public synchronized boolean onFrame(long timestampNanos) {
+        framesSeen++;
+        if (lastTimestamp >= 0) {
+            long gap = timestampNanos - lastTimestamp;
+            if (gap > 0 && gap < MAX_GAP_NANOS) {
+                // The shortest gap seen approximates the sensor's frame interval
+                if (frameInterval < 0 || gap < frameInterval) frameInterval = gap;
+                long missed = Math.round((double) gap / frameInterval) - 1;
+                if (missed > 0) framesDropped += missed;
+            }
+        }
+        lastTimestamp = timestampNanos;
+
+        if (sinceSkipped < skip) {
+            sinceSkipped++;
+            framesSkipped++;
+            return false;
+        }
+        sinceSkipped = 0;
+        return true;
+    }
+
+    /**
+     * Reports the timing of a processed frame and adapts the skip level and resolution.
+     *
+     * @param acquireMicros Time to get the image and prepare it for detection.
+     * @param detectMicros  Time ML Kit took to process the frame.
+     * @param closeMicros   Time to close the frame.
+     */
+    public synchronized void onFrameProcessed(long acquireMicros, long detectMicros, long closeMicros) {
+        framesProcessed++;
+        acquire.record(acquireMicros);
+        detect.record(detectMicros);
+        close.record(closeMicros);
+
+        smoothedDetect = smoothedDetect < 0 ? detectMicros : smoothedDetect + ALPHA * (detectMicros - smoothedDetect);
+        if (++sinceAdjusted < ADJUST_EVERY) return;
+
+        if (smoothedDetect > budgetMicros) {
+            if (skip < MAX_SKIP) {
+                skip++;
+                sinceAdjusted = 0;
+            } else if (resolution > ScanSettings.RESOLUTION_LOW) {
+                resolution--;
+                resolutionDowngrades++;
+                skip = 1;
+                smoothedDetect = -1; // Timings at the old resolution no longer apply
+                sinceAdjusted = 0;
+            }
+        } else if (smoothedDetect < budgetMicros / 2 && skip > 0) {
+            skip--;
+            sinceAdjusted = 0;
+        }
+    }
+
+    /**
+     * @return The analysis resolution the analyzer should use, one of the ScanSettings.RESOLUTION_* constants.
+     */
+    public synchronized int getResolution() { return resolution; }
+
+    /**
+     * @return The number of frames currently skipped between two processed frames.
+     */
+    public synchronized int getSkip() { return skip; }
+
+    /**
+     * @return The number of frames reported to the governor.
+     */
+    public synchronized long getFramesSeen() { return framesSeen; }
+
+    /**
+     * @return The number of frames run through detection.
+     */
+    public synchronized long getFramesProcessed() { return framesProcessed; }
+
+    /**
+     * @return The number of frames the governor skipped.
+     */
+    public synchronized long getFramesSkipped() { return framesSkipped; }
+
+    /**
+     * @return The number of frames the camera dropped before they reached the analyzer.
+     */
+    public synchronized long getFramesDropped() { return framesDropped; }
+
+    /**
+     * @return The number of times the analysis resolution was lowered.
+     */
+    public synchronized long getResolutionDowngrades() { return resolutionDowngrades; }
+
+    /**
+     * @return The detection-time histogram (microseconds).
+     */
+    public LatencyHistogram getDetectLatency() { return detect; }
+
+    /**
+     * Clears all counters, histograms and the learned skip level.
+     */
+    public synchronized void reset() {
+        acquire.reset();
+        detect.reset();
+        close.reset();
+        framesSeen = 0;
+        framesProcessed = 0;
+        framesSkipped = 0;
+        framesDropped = 0;
+        resolutionDowngrades = 0;
+        skip = 0;
+        smoothedDetect = -1;
+        startSession(resolution);
+    }
+
+    /**
+     * Builds a human readable summary suitable for showing in the app.
+     *
+     * @return The summary text.
+     */
+    public synchronized String getSummary() {
+        return String.format(Locale.US,
+                "Frames: %d seen, %d processed, %d skipped, %d dropped by camera\n"
+                        + "Skip level %d, resolution %s, %d downgrades\n"
+                        + "Acquire p50 %.1f ms, detect p50 %.1f ms / p90 %.1f ms, close p50 %.1f ms",
+                framesSeen, framesProcessed, framesSkipped, framesDropped,
+                skip, ScanSettings.RESOLUTION_LABELS[resolution], resolutionDowngrades,
+                acquire.getValueAtPercentile(50) / 1000.0,
+                detect.getValueAtPercentile(50) / 1000.0,
+                detect.getValueAtPercentile(90) / 1000.0,
+                close.getValueAtPercentile(50) / 1000.0);
+    }
+}
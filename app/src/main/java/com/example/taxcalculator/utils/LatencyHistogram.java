@@ -0,0 +1,169 @@
+package com.example.taxcalculator.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, log-linear latency histogram in the style of HdrHistogram.
+ * Values below 32 are counted exactly; larger values fall into one of 16 linear sub-buckets
+ * per power of two, which keeps the relative error under about 6%. Recording only touches
+ * pre-allocated atomic counters, so it is allocation-free and safe to call from any thread.
+ * Values are unit-agnostic; callers pick a unit (e.g. microseconds) and stick with it.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of exactly counted small values; also the start of the first log-linear bucket.
+     */
+    private static final int LINEAR_LIMIT = 32;
+
+    /**
+     * Number of sub-buckets per power of two above LINEAR_LIMIT.
+     */
+    private static final int SUB_BUCKETS = 16;
+
+    /**
+     * Largest power of two tracked; larger values are clamped into the top bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * Total number of buckets.
+     */
+    static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - 4) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Records one value. Negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) current = max.get();
+        current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) current = min.get();
+    }
+
+    /**
+     * Maps a value to its bucket index.
+     *
+     * @param value A non-negative value.
+     * @return The bucket index.
+     */
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+        int shift = exponent - 4;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (exponent - 5) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value that maps to a bucket index.
+     *
+     * @param index The bucket index.
+     * @return The inclusive upper bound of the bucket.
+     */
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_LIMIT) return index;
+        int offset = index - LINEAR_LIMIT;
+        int exponent = 5 + offset / SUB_BUCKETS;
+        long sub = SUB_BUCKETS + offset % SUB_BUCKETS;
+        int shift = exponent - 4;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns the value at the given percentile, as the upper bound of the bucket containing it.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The value at that percentile, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = total.get();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() { return total.get(); }
+
+    /**
+     * @return The largest recorded value, or 0 if nothing has been recorded.
+     */
+    public long getMax() { return max.get(); }
+
+    /**
+     * @return The smallest recorded value, or 0 if nothing has been recorded.
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * @return The arithmetic mean of recorded values, or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * Returns the raw count of one bucket, for exporting the full distribution.
+     *
+     * @param index The bucket index, between 0 and {@link #getBucketCount()} - 1.
+     * @return The number of values recorded in that bucket.
+     */
+    public long getBucketValueCount(int index) {
+        return counts.get(index);
+    }
+
+    /**
+     * Returns the inclusive upper bound of one bucket, for exporting the full distribution.
+     *
+     * @param index The bucket index.
+     * @return The highest value counted in that bucket.
+     */
+    public long getBucketUpperBound(int index) {
+        return upperBoundOf(index);
+    }
+
+    /**
+     * @return The number of buckets in this histogram.
+     */
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+        min.set(Long.MAX_VALUE);
+    }
+}
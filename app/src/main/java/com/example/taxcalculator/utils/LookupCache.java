@@ -0,0 +1,316 @@
+package com.example.taxcalculator.utils;
+
+import android.content.Context;
+
+import com.example.taxcalculator.database.AppDatabase;
+import com.example.taxcalculator.database.LookupDao;
+import com.example.taxcalculator.models.LookupEntry;
+import com.example.taxcalculator.models.ProductItem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache for barcode lookups, checked before any network source.
+ * The first tier is an in-memory LRU keyed by barcode; the second tier is the persisted
+ * lookup_cache table. Both positive results and "not found anywhere" results are cached,
+ * each with its own time-to-live.
+ */
+public class LookupCache {
+
+    /**
+     * Default number of entries kept in memory.
+     */
+    public static final int DEFAULT_MEMORY_CAPACITY = 512;
+
+    /**
+     * Default time-to-live for positive entries.
+     */
+    public static final long DEFAULT_FOUND_TTL_MS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Default time-to-live for negative ("not found anywhere") entries.
+     * Kept short so that products added to a source later are picked up quickly.
+     */
+    public static final long DEFAULT_NOT_FOUND_TTL_MS = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * Singleton instance backed by the application database.
+     */
+    private static volatile LookupCache instance;
+
+    private final LookupDao lookupDao;
+    private final LongSupplier clock;
+    private final long foundTtlMs;
+    private final long notFoundTtlMs;
+    private final LinkedHashMap<String, LookupEntry> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Constructs a LookupCache.
+     *
+     * @param lookupDao      The DAO for the persisted tier.
+     * @param memoryCapacity The maximum number of entries kept in memory.
+     * @param foundTtlMs     Time-to-live for positive entries in millis.
+     * @param notFoundTtlMs  Time-to-live for negative entries in millis.
+     * @param clock          Supplier of the current time in epoch millis.
+     */
+    public LookupCache(LookupDao lookupDao, int memoryCapacity, long foundTtlMs, long notFoundTtlMs, LongSupplier clock) {
+        this.lookupDao = lookupDao;
+        this.foundTtlMs = foundTtlMs;
+        this.notFoundTtlMs = notFoundTtlMs;
+        this.clock = clock;
+        this.memory = new LinkedHashMap<String, LookupEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LookupEntry> eldest) {
+                if (size() > memoryCapacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retrieves the singleton instance backed by the application database.
+     *
+     * @param context The context used to open the database.
+     * @return The shared LookupCache instance.
+     */
+    public static LookupCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (LookupCache.class) {
+                if (instance == null) {
+                    instance = new LookupCache(AppDatabase.getInstance(context).lookupDao(),
+                            DEFAULT_MEMORY_CAPACITY, DEFAULT_FOUND_TTL_MS, DEFAULT_NOT_FOUND_TTL_MS,
+                            System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Looks up a barcode in the in-memory tier only. Safe to call from the main thread.
+     * A memory miss is not counted, since callers are expected to follow up with {@link #get(String)}.
+     *
+     * @param barcode The barcode string.
+     * @return The fresh cached entry, or null if it is not in memory.
+     */
+    public LookupEntry getFromMemory(String barcode) {
+        if (barcode == null) return null;
+        LookupEntry entry;
+        synchronized (memory) {
+            entry = memory.get(barcode);
+            if (entry != null && entry.isExpired(clock.getAsLong())) {
+                memory.remove(barcode);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry != null) recordHit(entry, memoryHits);
+        return entry;
+    }
+
+    /**
+     * Looks up a barcode in memory and then in the persisted tier, promoting persisted hits
+     * into memory. Performs database I/O, so it must not be called on the main thread.
+     *
+     * @param barcode The barcode string.
+     * @return The fresh cached entry, or null on a miss.
+     */
+    public LookupEntry get(String barcode) {
+        if (barcode == null) return null;
+        LookupEntry entry = getFromMemory(barcode);
+        if (entry != null) return entry;
+
+        entry = lookupDao.find(barcode);
+        if (entry != null && entry.isExpired(clock.getAsLong())) {
+            lookupDao.delete(barcode);
+            expirations.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        synchronized (memory) {
+            memory.put(barcode, entry);
+        }
+        recordHit(entry, diskHits);
+        return entry;
+    }
+
+    /**
+     * Caches a positive lookup result in both tiers. Performs database I/O.
+     * An incomplete result (no price or tax category) is kept only as long as a negative one,
+     * so a complete record added to the cloud later is picked up just as quickly.
+     *
+     * @param item   The resolved product. Price and tax category may be unknown (0 / null).
+     * @param source The name of the source that resolved it.
+     */
+    public void putFound(ProductItem item, String source) {
+        if (item == null || item.getBarcode() == null) return;
+        put(foundEntry(item, source, clock.getAsLong()));
+    }
+
+    /**
+     * Caches a batch of positive results in one transaction. Performs database I/O.
+     * Entries go to the persisted tier; memory is only updated for barcodes it already holds,
+     * so a large prefetch does not push recently scanned products out of the LRU.
+     *
+     * @param items  The resolved products. Items without a barcode are skipped.
+     * @param source The name of the source that resolved them.
+     * @return The number of entries stored.
+     */
+    public int putAllFound(List<ProductItem> items, String source) {
+        long now = clock.getAsLong();
+        List<LookupEntry> entries = new ArrayList<>(items.size());
+        for (ProductItem item : items) {
+            if (item == null || item.getBarcode() == null) continue;
+            entries.add(foundEntry(item, source, now));
+        }
+        if (entries.isEmpty()) return 0;
+        synchronized (memory) {
+            for (LookupEntry entry : entries) {
+                if (memory.containsKey(entry.getBarcode())) memory.put(entry.getBarcode(), entry);
+            }
+        }
+        lookupDao.upsertAll(entries);
+        return entries.size();
+    }
+
+    private LookupEntry foundEntry(ProductItem item, String source, long now) {
+        long ttl = item.isComplete() ? foundTtlMs : notFoundTtlMs;
+        return new LookupEntry(item.getBarcode(), item.getName(), item.getBrand(), item.getPrice(),
+                item.getTaxCategory(), source, true, now, now + ttl);
+    }
+
+    /**
+     * Caches a "not found anywhere" result in both tiers. Performs database I/O.
+     *
+     * @param barcode The barcode that could not be resolved.
+     */
+    public void putNotFound(String barcode) {
+        if (barcode == null) return;
+        long now = clock.getAsLong();
+        put(new LookupEntry(barcode, null, null, 0, null, LookupEntry.SOURCE_NONE, false, now, now + notFoundTtlMs));
+    }
+
+    /**
+     * Stores an entry in both tiers. Performs database I/O.
+     *
+     * @param entry The entry to store.
+     */
+    public void put(LookupEntry entry) {
+        synchronized (memory) {
+            memory.put(entry.getBarcode(), entry);
+        }
+        lookupDao.upsert(entry);
+    }
+
+    /**
+     * Removes a barcode from both tiers. Performs database I/O.
+     *
+     * @param barcode The barcode to forget.
+     */
+    public void invalidate(String barcode) {
+        synchronized (memory) {
+            memory.remove(barcode);
+        }
+        lookupDao.delete(barcode);
+    }
+
+    /**
+     * Removes expired entries from the persisted tier. Performs database I/O.
+     *
+     * @return The number of entries removed.
+     */
+    public int purgeExpired() {
+        int removed = lookupDao.deleteExpired(clock.getAsLong());
+        expirations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * Clears both tiers. Performs database I/O.
+     */
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+        }
+        lookupDao.deleteAll();
+    }
+
+    /**
+     * Returns the number of entries currently held in memory.
+     *
+     * @return The in-memory entry count.
+     */
+    public int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private void recordHit(LookupEntry entry, AtomicLong tierCounter) {
+        tierCounter.incrementAndGet();
+        if (!entry.isFound()) negativeHits.incrementAndGet();
+    }
+
+    /**
+     * @return Number of lookups served from memory.
+     */
+    public long getMemoryHits() { return memoryHits.get(); }
+
+    /**
+     * @return Number of lookups served from the persisted tier.
+     */
+    public long getDiskHits() { return diskHits.get(); }
+
+    /**
+     * @return Number of hits (in either tier) that were negative entries.
+     */
+    public long getNegativeHits() { return negativeHits.get(); }
+
+    /**
+     * @return Number of lookups that found nothing in either tier.
+     */
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * @return Number of entries evicted from memory to respect the capacity.
+     */
+    public long getEvictions() { return evictions.get(); }
+
+    /**
+     * @return Number of entries dropped because their time-to-live elapsed.
+     */
+    public long getExpirations() { return expirations.get(); }
+
+    /**
+     * Builds a one-line, human readable summary of the cache counters.
+     *
+     * @return The summary string.
+     */
+    public String getStatsSummary() {
+        return "memory hits=" + getMemoryHits()
+                + ", disk hits=" + getDiskHits()
+                + ", negative hits=" + getNegativeHits()
+                + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions()
+                + ", expirations=" + getExpirations();
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.taxcalculator.utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for the barcode lookup pipeline.
+ * Tracks, per source, a latency histogram of answered requests, how often it was started,
+ * won the race, was cancelled, and why it failed; plus the end-to-end time from a scan to
+ * the product dialog. All latencies are recorded in microseconds.
+ */
+public class LookupMetrics {
+
+    /**
+     * Singleton instance shared by the repository and the UI.
+     */
+    private static final LookupMetrics INSTANCE = new LookupMetrics();
+
+    private final Map<String, SourceStats> sources = new ConcurrentHashMap<>();
+    private final LatencyHistogram scanToDialog = new LatencyHistogram();
+    private final LatencyHistogram frameToDetection = new LatencyHistogram();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong cacheAnswers = new AtomicLong();
+    private final AtomicLong notFoundConclusive = new AtomicLong();
+    private final AtomicLong notFoundInconclusive = new AtomicLong();
+
+    /**
+     * Retrieves the shared instance.
+     *
+     * @return The singleton LookupMetrics.
+     */
+    public static LookupMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Counters and latency histogram for one lookup source.
+     */
+    public static class SourceStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong started = new AtomicLong();
+        final AtomicLong wins = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final Map<String, AtomicLong> failures = new ConcurrentHashMap<>();
+
+        /**
+         * @return Latency histogram (microseconds) of requests that got an answer.
+         */
+        public LatencyHistogram getLatency() { return latency; }
+
+        /**
+         * @return Number of requests started.
+         */
+        public long getStarted() { return started.get(); }
+
+        /**
+         * @return Number of searches this source won.
+         */
+        public long getWins() { return wins.get(); }
+
+        /**
+         * @return Number of requests cancelled because another source won or the search ended.
+         */
+        public long getCancelled() { return cancelled.get(); }
+
+        /**
+         * @param reason A miss reason.
+         * @return Number of misses with that reason.
+         */
+        public long getFailures(String reason) {
+            AtomicLong counter = failures.get(reason);
+            return counter != null ? counter.get() : 0;
+        }
+    }
+
+    /**
+     * Returns the stats of a source, creating them on first use.
+     *
+     * @param source The source name.
+     * @return The SourceStats of that source.
+     */
+    public SourceStats getSourceStats(String source) {
+        SourceStats stats = sources.get(source);
+        if (stats == null) {
+            sources.putIfAbsent(source, new SourceStats());
+            stats = sources.get(source);
+        }
+        return stats;
+    }
+
+    /**
+     * Records that a request to a source was started.
+     *
+     * @param source The source name.
+     */
+    public void recordStarted(String source) {
+        getSourceStats(source).started.incrementAndGet();
+    }
+
+    /**
+     * Records the winning answer of a search.
+     *
+     * @param source        The source name.
+     * @param latencyMicros The response time in microseconds.
+     */
+    public void recordWin(String source, long latencyMicros) {
+        SourceStats stats = getSourceStats(source);
+        stats.latency.record(latencyMicros);
+        stats.wins.incrementAndGet();
+    }
+
+    /**
+     * Records a source miss. Timeouts have no meaningful latency and are passed as -1.
+     *
+     * @param source        The source name.
+     * @param reason        The miss reason.
+     * @param latencyMicros The response time in microseconds, or -1 if the source never answered.
+     */
+    public void recordMiss(String source, String reason, long latencyMicros) {
+        SourceStats stats = getSourceStats(source);
+        if (latencyMicros >= 0) stats.latency.record(latencyMicros);
+        AtomicLong counter = stats.failures.get(reason);
+        if (counter == null) {
+            stats.failures.putIfAbsent(reason, new AtomicLong());
+            counter = stats.failures.get(reason);
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Records that an in-flight request was cancelled.
+     *
+     * @param source The source name.
+     */
+    public void recordCancelled(String source) {
+        getSourceStats(source).cancelled.incrementAndGet();
+    }
+
+    /**
+     * Records the start of a search (after the scan, before any cache or network tier).
+     */
+    public void recordSearch() {
+        searches.incrementAndGet();
+    }
+
+    /**
+     * Records a search answered by the lookup cache.
+     */
+    public void recordCacheAnswer() {
+        cacheAnswers.incrementAndGet();
+    }
+
+    /**
+     * Records a search that ended without a product.
+     *
+     * @param conclusive True if every source answered "not found".
+     */
+    public void recordNotFound(boolean conclusive) {
+        (conclusive ? notFoundConclusive : notFoundInconclusive).incrementAndGet();
+    }
+
+    /**
+     * Records the time from a barcode being scanned to its product dialog being shown.
+     *
+     * @param micros The elapsed time in microseconds.
+     */
+    public void recordScanToDialog(long micros) {
+        scanToDialog.record(micros);
+    }
+
+    /**
+     * Records the time from a camera frame reaching the analyzer to ML Kit returning a barcode for it.
+     *
+     * @param micros The elapsed time in microseconds.
+     */
+    public void recordFrameToDetection(long micros) {
+        frameToDetection.record(micros);
+    }
+
+    /**
+     * @return The frame-to-detection histogram (microseconds).
+     */
+    public LatencyHistogram getFrameToDetection() {
+        return frameToDetection;
+    }
+
+    /**
+     * @return The end-to-end scan-to-dialog histogram (microseconds).
+     */
+    public LatencyHistogram getScanToDialog() {
+        return scanToDialog;
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public void reset() {
+        sources.clear();
+        scanToDialog.reset();
+        frameToDetection.reset();
+        searches.set(0);
+        cacheAnswers.set(0);
+        notFoundConclusive.set(0);
+        notFoundInconclusive.set(0);
+    }
+
+    /**
+     * Builds a human readable summary suitable for showing in the app.
+     *
+     * @return The summary text.
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Searches: ").append(searches.get())
+                .append(" (cache: ").append(cacheAnswers.get())
+                .append(", not found: ").append(notFoundConclusive.get())
+                .append(", gave up: ").append(notFoundInconclusive.get()).append(")\n");
+        appendLatency(sb.append("Frame to detection: "), frameToDetection).append('\n');
+        appendLatency(sb.append("Scan to dialog: "), scanToDialog).append('\n');
+
+        for (Map.Entry<String, SourceStats> e : new TreeMap<>(sources).entrySet()) {
+            SourceStats s = e.getValue();
+            sb.append('\n').append(e.getKey()).append('\n')
+                    .append("  started ").append(s.getStarted())
+                    .append(", wins ").append(s.getWins())
+                    .append(", cancelled ").append(s.getCancelled()).append('\n');
+            appendLatency(sb.append("  "), s.latency).append('\n');
+            if (!s.failures.isEmpty()) {
+                sb.append("  misses");
+                for (Map.Entry<String, AtomicLong> f : new TreeMap<>(s.failures).entrySet()) {
+                    sb.append(' ').append(f.getKey()).append('=').append(f.getValue().get());
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendLatency(StringBuilder sb, LatencyHistogram h) {
+        if (h.getCount() == 0) return sb.append("no samples");
+        return sb.append(String.format(Locale.US, "p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms (n=%d)",
+                h.getValueAtPercentile(50) / 1000.0,
+                h.getValueAtPercentile(90) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0,
+                h.getMax() / 1000.0,
+                h.getCount()));
+    }
+
+    /**
+     * Writes the summary followed by the raw, non-empty histogram buckets as CSV
+     * (histogram, bucket_upper_bound_us, count) for offline analysis.
+     *
+     * @param out The writer to dump to. It is flushed but not closed.
+     */
+    public void dump(Writer out) {
+        PrintWriter pw = new PrintWriter(out);
+        pw.println(getSummary());
+        pw.println("histogram,bucket_upper_bound_us,count");
+        dumpHistogram(pw, "frame_to_detection", frameToDetection);
+        dumpHistogram(pw, "scan_to_dialog", scanToDialog);
+        for (Map.Entry<String, SourceStats> e : new TreeMap<>(sources).entrySet()) {
+            dumpHistogram(pw, e.getKey(), e.getValue().latency);
+        }
+        pw.flush();
+    }
+
+    /**
+     * Dumps the metrics into a file, replacing any previous dump.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void dumpToFile(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            dump(writer);
+        }
+    }
+
+    private static void dumpHistogram(PrintWriter pw, String name, LatencyHistogram h) {
+        for (int i = 0; i < h.getBucketCount(); i++) {
+            long count = h.getBucketValueCount(i);
+            if (count > 0) {
+                pw.println(name + "," + h.getBucketUpperBound(i) + "," + count);
+            }
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.example.taxcalculator.utils;
+
+import com.example.taxcalculator.models.ProductItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a barcode lookup across ordered stages of {@link LookupSource}s under one overall deadline.
+ * Sources within a stage race each other. The next stage is started as soon as the current
+ * one has failed, or hedged in early if the current stage has not answered within its typical
+ * (median) response time. The first source to find the product wins and every other in-flight
+ * request is cancelled, so the slowest source no longer decides how long the user waits.
+ * An incomplete answer (a name without price or tax category) does not beat an earlier stage
+ * that is still running: it is held until those sources miss or time out, so a complete record
+ * from the cloud is never cancelled by a faster name-only hit from a product API.
+ */
+public class LookupScheduler {
+
+    /**
+     * Lower bound for hedge delays, so a few very fast answers do not make every scan fan out.
+     */
+    static final long MIN_HEDGE_DELAY_MS = 150;
+
+    /**
+     * Number of recent latencies kept per source to estimate its median.
+     */
+    private static final int LATENCY_WINDOW = 32;
+
+    /**
+     * Minimum number of samples before the measured median replaces the configured hedge delay.
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    /**
+     * Shared timer thread for deadlines, timeouts and hedges.
+     */
+    private static volatile ScheduledExecutorService sharedTimer;
+
+    private final ScheduledExecutorService timer;
+    private final long deadlineMs;
+    private final LookupMetrics metrics;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Receives the outcome of a scheduled search.
+     */
+    public interface Callback {
+        /**
+         * Called when a stage is started, in order, including hedged starts.
+         * @param stage The stage that was started.
+         */
+        void onStageStarted(Stage stage);
+
+        /**
+         * Called once when a source resolves the barcode.
+         * @param source The winning source.
+         * @param item   The resolved product.
+         */
+        void onFound(LookupSource source, ProductItem item);
+
+        /**
+         * Called once when no source resolved the barcode.
+         * @param conclusive True if every source answered "not found"; false if the result is
+         *                   due to errors, timeouts or the overall deadline.
+         */
+        void onNotFound(boolean conclusive);
+
+        /**
+         * Called whenever a source gives a definitive answer while the search is running: the
+         * winning hit, or a "not found". Errors, timeouts and cancellations are not reported.
+         * Used to learn which sources answer for which barcodes.
+         *
+         * @param source The source that answered.
+         * @param found  True if the source found the product.
+         */
+        default void onSourceAnswered(LookupSource source, boolean found) { }
+    }
+
+    /**
+     * A group of sources started together, with a per-source timeout and a default hedge delay.
+     */
+    public static class Stage {
+        final String status;
+        final List<LookupSource> sources;
+        final long timeoutMs;
+        final long hedgeDelayMs;
+
+        /**
+         * Constructs a Stage.
+         *
+         * @param status       Human readable status reported when the stage starts.
+         * @param timeoutMs    Per-source timeout; a source that exceeds it counts as a miss.
+         * @param hedgeDelayMs Delay before hedging into the next stage, used until enough latency samples exist.
+         * @param sources      The sources to race in this stage.
+         */
+        public Stage(String status, long timeoutMs, long hedgeDelayMs, LookupSource... sources) {
+            this(status, timeoutMs, hedgeDelayMs, Arrays.asList(sources));
+        }
+
+        /**
+         * Constructs a Stage.
+         *
+         * @param status       Human readable status reported when the stage starts.
+         * @param timeoutMs    Per-source timeout; a source that exceeds it counts as a miss.
+         * @param hedgeDelayMs Delay before hedging into the next stage, used until enough latency samples exist.
+         * @param sources      The sources to race in this stage.
+         */
+        public Stage(String status, long timeoutMs, long hedgeDelayMs, List<LookupSource> sources) {
+            this.status = status;
+            this.timeoutMs = timeoutMs;
+            this.hedgeDelayMs = hedgeDelayMs;
+            this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+        }
+
+        /**
+         * Gets the status message of this stage.
+         * @return The status message.
+         */
+        public String getStatus() { return status; }
+
+        /**
+         * Gets the sources raced in this stage.
+         * @return An unmodifiable list of sources.
+         */
+        public List<LookupSource> getSources() { return sources; }
+    }
+
+    /**
+     * Constructs a LookupScheduler.
+     *
+     * @param timer      Executor used for deadlines, timeouts and hedges.
+     * @param deadlineMs Overall time budget for one search.
+     */
+    public LookupScheduler(ScheduledExecutorService timer, long deadlineMs) {
+        this(timer, deadlineMs, new LookupMetrics());
+    }
+
+    /**
+     * Constructs a LookupScheduler that reports per-source metrics.
+     *
+     * @param timer      Executor used for deadlines, timeouts and hedges.
+     * @param deadlineMs Overall time budget for one search.
+     * @param metrics    Metrics that receive starts, wins, misses and cancellations.
+     */
+    public LookupScheduler(ScheduledExecutorService timer, long deadlineMs, LookupMetrics metrics) {
+        this.timer = timer;
+        this.deadlineMs = deadlineMs;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns a process wide single-thread timer suitable for schedulers.
+     *
+     * @return The shared ScheduledExecutorService.
+     */
+    public static ScheduledExecutorService sharedTimer() {
+        if (sharedTimer == null) {
+            synchronized (LookupScheduler.class) {
+                if (sharedTimer == null) {
+                    sharedTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread t = new Thread(r, "lookup-timer");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return sharedTimer;
+    }
+
+    /**
+     * Starts a search for a barcode.
+     *
+     * @param barcode  The barcode to search for.
+     * @param stages   The ordered stages to run.
+     * @param callback Callback that receives exactly one terminal result.
+     * @return The running search, which can be cancelled.
+     */
+    public Search search(String barcode, List<Stage> stages, Callback callback) {
+        Search search = new Search(barcode, stages, callback);
+        search.start();
+        return search;
+    }
+
+    /**
+     * Returns the delay after which a stage is hedged: the smallest median latency among its
+     * sources, falling back to the stage default, clamped to [MIN_HEDGE_DELAY_MS, timeout].
+     *
+     * @param stage The stage to compute the delay for.
+     * @return The hedge delay in millis.
+     */
+    long hedgeDelay(Stage stage) {
+        long best = Long.MAX_VALUE;
+        for (LookupSource source : stage.sources) {
+            LatencyWindow window = latencies.get(source.getName());
+            long median = window != null ? window.median() : -1;
+            if (median >= 0 && median < best) best = median;
+        }
+        long delay = best == Long.MAX_VALUE ? stage.hedgeDelayMs : best;
+        return Math.max(MIN_HEDGE_DELAY_MS, Math.min(delay, stage.timeoutMs));
+    }
+
+    /**
+     * Records how long a source took to answer (found or not found).
+     *
+     * @param source    The source name.
+     * @param latencyMs The response time in millis.
+     */
+    void recordLatency(String source, long latencyMs) {
+        LatencyWindow window = latencies.get(source);
+        if (window == null) {
+            latencies.putIfAbsent(source, new LatencyWindow());
+            window = latencies.get(source);
+        }
+        window.add(latencyMs);
+    }
+
+    /**
+     * Fixed size ring of recent latencies.
+     */
+    private static class LatencyWindow {
+        private final long[] samples = new long[LATENCY_WINDOW];
+        private int count;
+        private int next;
+
+        synchronized void add(long value) {
+            samples[next] = value;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+        }
+
+        synchronized long median() {
+            if (count < MIN_SAMPLES) return -1;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return sorted[count / 2];
+        }
+    }
+
+    /**
+     * State of one running search. All state changes happen while holding the search's lock;
+     * the callback is always invoked outside of it.
+     */
+    public class Search {
+        private final String barcode;
+        private final List<Stage> stages;
+        private final Callback callback;
+        private final List<Attempt> attempts = new ArrayList<>();
+        private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+        private int nextStage;
+        private int pending;
+        private Attempt held;
+        private ProductItem heldItem;
+        private long heldMicros;
+        private boolean conclusive = true;
+        private boolean finished;
+
+        Search(String barcode, List<Stage> stages, Callback callback) {
+            this.barcode = barcode;
+            this.stages = stages;
+            this.callback = callback;
+        }
+
+        void start() {
+            synchronized (this) {
+                timers.add(timer.schedule(() -> finishNotFound(false), deadlineMs, TimeUnit.MILLISECONDS));
+            }
+            if (!launchNextStage()) finishNotFound(true);
+        }
+
+        /**
+         * Starts the next stage, if there is one.
+         *
+         * @return True if a stage was started.
+         */
+        private boolean launchNextStage() {
+            Stage stage;
+            int index;
+            synchronized (this) {
+                while (nextStage < stages.size() && stages.get(nextStage).sources.isEmpty()) nextStage++;
+                // A held answer only waits for earlier stages; searching further would not improve on it
+                if (finished || held != null || nextStage >= stages.size()) return false;
+                index = nextStage++;
+                stage = stages.get(index);
+                pending += stage.sources.size();
+                if (index + 1 < stages.size()) {
+                    timers.add(timer.schedule(() -> hedge(index), hedgeDelay(stage), TimeUnit.MILLISECONDS));
+                }
+            }
+            callback.onStageStarted(stage);
+            for (LookupSource source : stage.sources) {
+                Attempt attempt = new Attempt(source, index);
+                synchronized (this) {
+                    if (finished) return true;
+                    attempts.add(attempt);
+                    metrics.recordStarted(source.getName());
+                    timers.add(timer.schedule(() -> onAttemptMiss(attempt, LookupSource.MISS_TIMEOUT),
+                            stage.timeoutMs, TimeUnit.MILLISECONDS));
+                }
+                LookupSource.Cancellable handle;
+                try {
+                    handle = source.lookup(barcode, attempt);
+                } catch (RuntimeException e) {
+                    // A source that fails to issue its request misses like one whose request failed
+                    onAttemptMiss(attempt, LookupSource.MISS_ERROR);
+                    continue;
+                }
+                boolean cancelNow;
+                synchronized (this) {
+                    attempt.handle = handle;
+                    // The search may have finished (or this attempt timed out) while the request was being issued
+                    cancelNow = attempt.done && !attempt.answered;
+                }
+                if (cancelNow && handle != null) handle.cancel();
+            }
+            return true;
+        }
+
+        /**
+         * Hedge timer: if the given stage is still the latest and nothing has answered, start the next one.
+         */
+        private void hedge(int stageIndex) {
+            synchronized (this) {
+                if (finished || nextStage != stageIndex + 1) return;
+            }
+            launchNextStage();
+        }
+
+        private void onAttemptFound(Attempt attempt, ProductItem item) {
+            boolean hold;
+            synchronized (this) {
+                attempt.answered = true;
+                if (finished || attempt.done) return;
+                attempt.done = true;
+                long elapsedMicros = attempt.elapsedMicros();
+                recordLatency(attempt.source.getName(), elapsedMicros / 1000);
+                hold = !item.isComplete() && earlierStagePending(attempt.stage);
+                if (hold) {
+                    pending--;
+                    if (held == null) {
+                        held = attempt;
+                        heldItem = item;
+                        heldMicros = elapsedMicros;
+                    }
+                } else {
+                    metrics.recordWin(attempt.source.getName(), elapsedMicros);
+                    finishLocked();
+                }
+            }
+            callback.onSourceAnswered(attempt.source, true);
+            if (!hold) callback.onFound(attempt.source, item);
+        }
+
+        /**
+         * Checks whether a source of a stage before the given one is still waiting for an answer.
+         */
+        private boolean earlierStagePending(int stage) {
+            for (Attempt other : attempts) {
+                if (other.stage < stage && !other.done) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Finishes with the held answer once no earlier stage can still answer.
+         *
+         * @return True if the search was finished with the held answer.
+         */
+        private boolean releaseHeld() {
+            synchronized (this) {
+                if (finished || held == null || earlierStagePending(held.stage)) return false;
+            }
+            finishNotFound(false);
+            return true;
+        }
+
+        private void onAttemptMiss(Attempt attempt, String reason) {
+            boolean exhausted;
+            boolean timedOut = LookupSource.MISS_TIMEOUT.equals(reason);
+            synchronized (this) {
+                if (!timedOut) attempt.answered = true;
+                if (finished || attempt.done) return;
+                attempt.done = true;
+                if (timedOut) {
+                    if (attempt.handle != null) attempt.handle.cancel();
+                    metrics.recordMiss(attempt.source.getName(), reason, -1);
+                } else {
+                    long elapsedMicros = attempt.elapsedMicros();
+                    recordLatency(attempt.source.getName(), elapsedMicros / 1000);
+                    metrics.recordMiss(attempt.source.getName(), reason, elapsedMicros);
+                }
+                if (!LookupSource.MISS_NOT_FOUND.equals(reason)) conclusive = false;
+                pending--;
+                exhausted = pending == 0;
+            }
+            if (LookupSource.MISS_NOT_FOUND.equals(reason)) callback.onSourceAnswered(attempt.source, false);
+            if (releaseHeld()) return;
+            if (exhausted && !launchNextStage()) {
+                boolean result;
+                synchronized (this) {
+                    result = conclusive;
+                }
+                finishNotFound(result);
+            }
+        }
+
+        /**
+         * Ends the search without a complete answer: with the held incomplete answer if there is
+         * one, otherwise as not found.
+         */
+        private void finishNotFound(boolean allConclusive) {
+            Attempt winner;
+            ProductItem item;
+            synchronized (this) {
+                if (finished) return;
+                winner = held;
+                item = heldItem;
+                if (winner != null) metrics.recordWin(winner.source.getName(), heldMicros);
+                finishLocked();
+            }
+            if (winner != null) {
+                callback.onFound(winner.source, item);
+            } else {
+                callback.onNotFound(allConclusive);
+            }
+        }
+
+        /**
+         * Marks the search finished and cancels every outstanding request and timer.
+         */
+        private void finishLocked() {
+            finished = true;
+            for (Attempt other : attempts) {
+                if (!other.done && !other.answered) {
+                    if (other.handle != null) other.handle.cancel();
+                    metrics.recordCancelled(other.source.getName());
+                }
+                other.done = true;
+            }
+            for (ScheduledFuture<?> future : timers) future.cancel(false);
+            timers.clear();
+        }
+
+        /**
+         * Cancels the search without reporting a result.
+         */
+        public void cancel() {
+            synchronized (this) {
+                if (!finished) finishLocked();
+            }
+        }
+
+        /**
+         * Indicates whether the search has reached a result or was cancelled.
+         * @return True if finished.
+         */
+        public synchronized boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * One request to one source, and the listener that receives its outcome.
+         */
+        private class Attempt implements LookupSource.Listener {
+            final LookupSource source;
+            final int stage;
+            final long startedAt = System.nanoTime();
+            LookupSource.Cancellable handle;
+            boolean answered;
+            boolean done;
+
+            Attempt(LookupSource source, int stage) {
+                this.source = source;
+                this.stage = stage;
+            }
+
+            long elapsedMicros() {
+                return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+            }
+
+            @Override
+            public void onFound(ProductItem item) {
+                onAttemptFound(this, item);
+            }
+
+            @Override
+            public void onMiss(String reason) {
+                onAttemptMiss(this, reason);
+            }
+        }
+    }
+}
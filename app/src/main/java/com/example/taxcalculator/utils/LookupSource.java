@@ -0,0 +1,65 @@
+package com.example.taxcalculator.utils;
+
+import com.example.taxcalculator.models.ProductItem;
+
+/**
+ * A single place a barcode can be resolved from (the cloud database or one of the
+ * external product APIs). Sources are combined into stages by the {@link LookupScheduler}.
+ */
+public interface LookupSource {
+
+    /**
+     * Miss reason reported when the source answered but does not know the barcode.
+     */
+    String MISS_NOT_FOUND = "not_found";
+
+    /**
+     * Miss reason reported when the request failed (network error, bad response).
+     */
+    String MISS_ERROR = "error";
+
+    /**
+     * Miss reason recorded by the scheduler when a source exceeds its timeout.
+     */
+    String MISS_TIMEOUT = "timeout";
+
+    /**
+     * Gets the stable name of this source, used for metrics and cached results.
+     * @return The source name.
+     */
+    String getName();
+
+    /**
+     * Starts an asynchronous lookup. Exactly one of the listener methods should be called,
+     * unless the lookup is cancelled first.
+     *
+     * @param barcode  The barcode to search for.
+     * @param listener The listener to report the outcome to.
+     * @return A handle that cancels the in-flight request.
+     */
+    Cancellable lookup(String barcode, Listener listener);
+
+    /**
+     * Receives the outcome of a single source lookup.
+     */
+    interface Listener {
+        /**
+         * Called when the source resolved the barcode.
+         * @param item The resolved product. Price and tax category may be unknown (0 / null).
+         */
+        void onFound(ProductItem item);
+
+        /**
+         * Called when the source could not resolve the barcode.
+         * @param reason One of the MISS_* reasons, or a source specific reason such as "http_429".
+         */
+        void onMiss(String reason);
+    }
+
+    /**
+     * Handle for cancelling an in-flight lookup.
+     */
+    interface Cancellable {
+        void cancel();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.taxcalculator.utils;
+
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic on long paise (1 rupee = 100 paise).
+ * Tax rates are handled in basis points (18% = 1800), so GST can be extracted from an
+ * inclusive price or added to an exclusive one with pure integer math and an explicit
+ * rounding rule, instead of accumulating double rounding errors. Formatting writes digits
+ * directly instead of going through String.format, and {@link #writeTo(char[], int, long)}
+ * writes them into a caller's buffer without allocating at all.
+ */
+public class Money {
+
+    /**
+     * Rounding used when no rule is given: half a paisa rounds away from zero.
+     */
+    public static final RoundingMode DEFAULT_ROUNDING = RoundingMode.HALF_UP;
+
+    /**
+     * Currency prefix used by the app's price labels.
+     */
+    public static final String CURRENCY_PREFIX = "₹ ";
+
+    /**
+     * Buffer size that fits any amount written by {@link #writeTo(char[], int, long)}:
+     * the prefix, a sign, 17 rupee digits, the point and two paise digits.
+     */
+    public static final int MAX_FORMATTED_LENGTH = 24;
+
+    /**
+     * Basis points in 100%.
+     */
+    private static final long FULL_BP = 10_000;
+
+    private Money() { }
+
+    /**
+     * Converts rupees to paise. Prices carry at most two decimals, so rounding the scaled value
+     * recovers the intended amount exactly.
+     *
+     * @param rupees The amount in rupees.
+     * @return The amount in paise.
+     */
+    public static long toPaise(double rupees) {
+        return Math.round(rupees * 100.0);
+    }
+
+    /**
+     * Converts paise to rupees, for callers that still work in double.
+     *
+     * @param paise The amount in paise.
+     * @return The amount in rupees.
+     */
+    public static double toRupees(long paise) {
+        return paise / 100.0;
+    }
+
+    /**
+     * Converts a percentage rate to basis points.
+     *
+     * @param percent The rate as a percentage, e.g. 18.0.
+     * @return The rate in basis points, e.g. 1800.
+     */
+    public static long toBasisPoints(double percent) {
+        return Math.round(percent * 100.0);
+    }
+
+    /**
+     * Extracts the tax contained in a tax-inclusive price: price * rate / (100% + rate).
+     *
+     * @param inclusivePaise The price including tax, in paise.
+     * @param rateBp         The tax rate in basis points.
+     * @param rounding       How to round to whole paise.
+     * @return The tax amount in paise.
+     */
+    public static long inclusiveTax(long inclusivePaise, long rateBp, RoundingMode rounding) {
+        return divide(inclusivePaise * rateBp, FULL_BP + rateBp, rounding);
+    }
+
+    /**
+     * Computes the tax to add on top of a tax-exclusive price: price * rate / 100%.
+     *
+     * @param exclusivePaise The price before tax, in paise.
+     * @param rateBp         The tax rate in basis points.
+     * @param rounding       How to round to whole paise.
+     * @return The tax amount in paise.
+     */
+    public static long exclusiveTax(long exclusivePaise, long rateBp, RoundingMode rounding) {
+        return divide(exclusivePaise * rateBp, FULL_BP, rounding);
+    }
+
+    /**
+     * Divides with the given rounding, using only integer arithmetic.
+     *
+     * @param numerator   The dividend.
+     * @param denominator The divisor; must be positive.
+     * @param rounding    How to round the quotient.
+     * @return The rounded quotient.
+     * @throws ArithmeticException If the rounding is UNNECESSARY and the division is inexact.
+     */
+    public static long divide(long numerator, long denominator, RoundingMode rounding) {
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+        if (remainder == 0) return quotient;
+
+        int sign = numerator < 0 ? -1 : 1;
+        long twice = Math.abs(remainder) * 2;
+        boolean awayFromZero;
+        switch (rounding) {
+            case UP:
+                awayFromZero = true;
+                break;
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case CEILING:
+                awayFromZero = sign > 0;
+                break;
+            case FLOOR:
+                awayFromZero = sign < 0;
+                break;
+            case HALF_UP:
+                awayFromZero = twice >= denominator;
+                break;
+            case HALF_DOWN:
+                awayFromZero = twice > denominator;
+                break;
+            case HALF_EVEN:
+                awayFromZero = twice > denominator || (twice == denominator && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return awayFromZero ? quotient + sign : quotient;
+    }
+
+    /**
+     * Appends an amount as "₹ 1234.50" to a builder, without intermediate strings.
+     *
+     * @param sb    The builder to append to.
+     * @param paise The amount in paise.
+     * @return The same builder.
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long paise) {
+        sb.append(CURRENCY_PREFIX);
+        if (paise < 0) {
+            sb.append('-');
+            paise = -paise;
+        }
+        long fraction = paise % 100;
+        sb.append(paise / 100).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction);
+    }
+
+    /**
+     * Writes an amount as "₹ 1234.50" into a buffer, without allocating.
+     *
+     * @param dest   The buffer; needs {@link #MAX_FORMATTED_LENGTH} chars from the offset.
+     * @param offset The position to start writing at.
+     * @param paise  The amount in paise.
+     * @return The position just after the last char written.
+     */
+    public static int writeTo(char[] dest, int offset, long paise) {
+        int pos = offset;
+        for (int i = 0; i < CURRENCY_PREFIX.length(); i++) dest[pos++] = CURRENCY_PREFIX.charAt(i);
+        // Work on the negative value so Long.MIN_VALUE needs no special case
+        long value = paise;
+        if (value < 0) {
+            dest[pos++] = '-';
+        } else {
+            value = -value;
+        }
+        long rupees = -(value / 100);
+        int fraction = (int) -(value % 100);
+
+        int digits = 1;
+        for (long r = rupees; r >= 10; r /= 10) digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dest[i] = (char) ('0' + rupees % 10);
+            rupees /= 10;
+        }
+        pos += digits;
+        dest[pos++] = '.';
+        dest[pos++] = (char) ('0' + fraction / 10);
+        dest[pos++] = (char) ('0' + fraction % 10);
+        return pos;
+    }
+
+    /**
+     * Formats an amount as "₹ 1234.50".
+     *
+     * @param paise The amount in paise.
+     * @return The formatted amount.
+     */
+    public static String format(long paise) {
+        char[] buffer = new char[MAX_FORMATTED_LENGTH];
+        return new String(buffer, 0, writeTo(buffer, 0, paise));
+    }
+}
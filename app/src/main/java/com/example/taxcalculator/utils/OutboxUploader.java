@@ -0,0 +1,348 @@
+package com.example.taxcalculator.utils;
+
+import com.example.taxcalculator.database.OutboxDao;
+import com.example.taxcalculator.models.OutboxEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Drains the upload outbox to the cloud in batches.
+ * Reads the oldest due entries, commits them as one batch and deletes them only once the commit
+ * succeeded, then continues with the next batch until nothing is due. The entries of a failed
+ * commit are marked with an exponentially growing delay, with jitter, and the drain moves on to
+ * the other due entries; a retry drain is scheduled for when the next entry becomes due.
+ * Every failure halves the batch its entries are retried in, so an entry the cloud rejects ends up
+ * alone and stops holding back the others; after {@link #MAX_ATTEMPTS} failures it is parked.
+ * Only one drain runs at a time; a drain requested meanwhile runs once the current one finishes.
+ * Records how long entries waited from being queued to being uploaded, and the commit throughput.
+ */
+public class OutboxUploader {
+
+    /**
+     * Default number of entries per committed batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Delay before the first retry of a failed entry; each further failure doubles it.
+     */
+    public static final long BASE_BACKOFF_MS = 5_000;
+
+    /**
+     * Longest delay between two attempts.
+     */
+    public static final long MAX_BACKOFF_MS = 30 * 60_000;
+
+    /**
+     * Number of failed attempts after which an entry is parked instead of retried.
+     * By then every batch it was part of has been halved down to the entry alone.
+     */
+    public static final int MAX_ATTEMPTS = 10;
+
+    /**
+     * Up to this fraction of the delay is added at random, so devices that went offline together
+     * do not all retry at once.
+     */
+    private static final double JITTER = 0.25;
+
+    /**
+     * Commits one batch of entries to the cloud.
+     */
+    public interface BatchWriter {
+        /**
+         * Commits the entries atomically.
+         *
+         * @param entries  The entries to upload.
+         * @param callback Told, on any thread, whether the batch was committed.
+         */
+        void commit(List<OutboxEntry> entries, FirestoreHelper.UploadCallback callback);
+    }
+
+    private final OutboxDao outboxDao;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final BatchWriter writer;
+    private final int batchSize;
+    private final LongSupplier clock;
+    private final Random random = new Random();
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean drainAgain = new AtomicBoolean();
+    private ScheduledFuture<?> retry;
+    private long retryAt;
+
+    private final LatencyHistogram uploadLag = new LatencyHistogram();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicLong retriedUploads = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong failedCommits = new AtomicLong();
+    private final AtomicLong commitMillis = new AtomicLong();
+    private volatile String lastError;
+    private volatile int pendingCount;
+    private volatile int parkedCount;
+    private volatile long oldestPendingAt;
+
+    /**
+     * Creates an uploader.
+     *
+     * @param outboxDao The outbox table.
+     * @param executor  The executor the outbox is read and updated on.
+     * @param timer     Schedules the retry drains.
+     * @param writer    Commits the batches.
+     * @param batchSize The maximum number of entries per batch.
+     * @param clock     Supplier of the current time in epoch millis.
+     */
+    public OutboxUploader(OutboxDao outboxDao, Executor executor, ScheduledExecutorService timer,
+                          BatchWriter writer, int batchSize, LongSupplier clock) {
+        this.outboxDao = outboxDao;
+        this.executor = executor;
+        this.timer = timer;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Uploads every due entry in the outbox, unless a drain is already running.
+     */
+    public void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            drainAgain.set(true);
+            return;
+        }
+        executor.execute(this::uploadNext);
+    }
+
+    /**
+     * Makes the parked entries due again and drains the outbox, e.g. at app start, so an entry
+     * that failed for a reason since fixed is still uploaded. Each parked entry is tried once,
+     * alone, and parked again if it fails.
+     */
+    public void retryParked() {
+        executor.execute(() -> {
+            try {
+                outboxDao.unpark(clock.getAsLong());
+            } catch (RuntimeException e) {
+                lastError = describe(e);
+            }
+            drain();
+        });
+    }
+
+    /**
+     * Computes the delay before the next attempt of an entry, without jitter.
+     *
+     * @param failedAttempts The number of failed attempts so far, including the latest one.
+     * @return The delay in milliseconds.
+     */
+    public static long backoffMs(int failedAttempts) {
+        int doublings = Math.max(0, Math.min(failedAttempts - 1, 20));
+        return Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << doublings);
+    }
+
+    /**
+     * @return The time a retry drain is scheduled for in epoch millis, or 0 if none is.
+     */
+    public synchronized long getRetryAt() {
+        return retry != null ? retryAt : 0;
+    }
+
+    /**
+     * @return The number of entries uploaded.
+     */
+    public long getUploadedCount() {
+        return uploaded.get();
+    }
+
+    /**
+     * @return The number of parked entries, as of the end of the last drain.
+     */
+    public int getParkedCount() {
+        return parkedCount;
+    }
+
+    /**
+     * @return The number of batches that failed to commit.
+     */
+    public long getFailedCommitCount() {
+        return failedCommits.get();
+    }
+
+    /**
+     * @return How long uploaded entries waited in the outbox, in milliseconds.
+     */
+    public LatencyHistogram getUploadLag() {
+        return uploadLag;
+    }
+
+    /**
+     * @return A human-readable summary of the uploads.
+     */
+    public String getSummary() {
+        long millis = commitMillis.get();
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "Outbox: %d uploaded (%d after a retry) in %d batches, %d failed; %.0f entries/s while committing",
+                uploaded.get(), retriedUploads.get(), commits.get(), failedCommits.get(),
+                millis == 0 ? 0.0 : uploaded.get() * 1000.0 / millis));
+        if (uploadLag.getCount() > 0) {
+            sb.append(String.format(Locale.US, "\n  lag: p50 %.1f s, p99 %.1f s",
+                    uploadLag.getValueAtPercentile(50) / 1000.0, uploadLag.getValueAtPercentile(99) / 1000.0));
+        }
+        if (pendingCount > 0) {
+            sb.append(String.format(Locale.US, "\n  %d waiting, oldest %.0f s", pendingCount,
+                    (clock.getAsLong() - oldestPendingAt) / 1000.0));
+        }
+        if (parkedCount > 0) sb.append(String.format(Locale.US, "\n  %d parked after %d failures", parkedCount, MAX_ATTEMPTS));
+        long next = getRetryAt();
+        if (next > 0) sb.append(String.format(Locale.US, ", retry in %.0f s", (next - clock.getAsLong()) / 1000.0));
+        if (lastError != null) sb.append("\n  last error: ").append(lastError);
+        return sb.toString();
+    }
+
+    private void uploadNext() {
+        List<Integer> ids = new ArrayList<>();
+        int attempts = 0;
+        try {
+            long now = clock.getAsLong();
+            List<OutboxEntry> due = outboxDao.getDue(now, batchSize);
+            if (due.isEmpty()) {
+                finish();
+                return;
+            }
+            List<OutboxEntry> entries = new ArrayList<>(due.size());
+            for (OutboxEntry entry : due) {
+                int batchAttempts = Math.max(attempts, entry.getAttempts());
+                if (!entries.isEmpty() && entries.size() >= retryBatchSize(batchAttempts)) break;
+                entries.add(entry);
+                ids.add(entry.id);
+                attempts = batchAttempts;
+            }
+            int previousAttempts = attempts;
+            writer.commit(entries, new FirestoreHelper.UploadCallback() {
+                @Override
+                public void onSuccess() {
+                    executor.execute(() -> {
+                        try {
+                            outboxDao.deleteByIds(ids);
+                        } catch (RuntimeException e) {
+                            // Uploaded but still queued; the retry writes the same values again
+                            fail(ids, previousAttempts, describe(e));
+                            return;
+                        }
+                        long done = clock.getAsLong();
+                        for (OutboxEntry entry : entries) {
+                            uploadLag.record(Math.max(0, done - entry.getCreatedAt()));
+                            if (entry.getAttempts() > 0) retriedUploads.incrementAndGet();
+                        }
+                        uploaded.addAndGet(entries.size());
+                        commits.incrementAndGet();
+                        commitMillis.addAndGet(done - now);
+                        uploadNext();
+                    });
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    executor.execute(() -> fail(ids, previousAttempts, error));
+                }
+            });
+        } catch (RuntimeException e) {
+            // E.g. a barcode the cloud rejects as a document ID, or a database error
+            fail(ids, attempts, describe(e));
+        }
+    }
+
+    /**
+     * Computes how many entries are committed together when the batch includes entries that
+     * failed before: each failure halves the batch.
+     *
+     * @param failedAttempts The highest number of failed attempts among the entries.
+     * @return The batch size, at least 1.
+     */
+    private int retryBatchSize(int failedAttempts) {
+        return Math.max(1, batchSize >> Math.min(failedAttempts, 30));
+    }
+
+    /**
+     * Handles a failed batch: marks its entries with the next backoff delay, or parks them after
+     * {@link #MAX_ATTEMPTS} failures, and moves on to the other due entries. Ends the drain if
+     * the batch was not read or could not be marked.
+     *
+     * @param ids              The IDs of the entries in the batch; empty if the batch was not read.
+     * @param previousAttempts The highest number of failed attempts among the entries before this one.
+     * @param error            A description of the failure.
+     */
+    private void fail(List<Integer> ids, int previousAttempts, String error) {
+        lastError = error;
+        if (ids.isEmpty()) {
+            finish();
+            return;
+        }
+        failedCommits.incrementAndGet();
+        try {
+            long nextAttemptAt;
+            if (previousAttempts + 1 >= MAX_ATTEMPTS) {
+                nextAttemptAt = OutboxEntry.PARKED;
+            } else {
+                long delay = backoffMs(previousAttempts + 1);
+                delay += (long) (delay * JITTER * random.nextDouble());
+                nextAttemptAt = clock.getAsLong() + delay;
+            }
+            outboxDao.markFailed(ids, nextAttemptAt, error);
+        } catch (RuntimeException e) {
+            lastError = describe(e);
+            finish();
+            return;
+        }
+        // The failed entries are no longer due, so this continues with the others
+        uploadNext();
+    }
+
+    /**
+     * Ends a drain: records the backlog, schedules a retry for the next entry to become due and
+     * runs a drain that was requested meanwhile. The drain ends even if the outbox cannot be read.
+     */
+    private void finish() {
+        try {
+            pendingCount = outboxDao.count();
+            parkedCount = outboxDao.countParked();
+            Long oldest = outboxDao.getOldestCreatedAt();
+            oldestPendingAt = oldest != null ? oldest : 0;
+            Long next = outboxDao.getNextAttemptAt();
+            if (next != null && next > clock.getAsLong()) scheduleRetry(next);
+        } catch (RuntimeException e) {
+            lastError = describe(e);
+        } finally {
+            draining.set(false);
+        }
+        if (drainAgain.getAndSet(false)) drain();
+    }
+
+    private static String describe(RuntimeException e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private synchronized void scheduleRetry(long at) {
+        if (retry != null && !retry.isDone()) {
+            if (retryAt <= at) return;
+            retry.cancel(false);
+        }
+        retryAt = at;
+        retry = timer.schedule(() -> {
+            synchronized (this) {
+                retry = null;
+            }
+            drain();
+        }, Math.max(0, at - clock.getAsLong()), TimeUnit.MILLISECONDS);
+    }
+}
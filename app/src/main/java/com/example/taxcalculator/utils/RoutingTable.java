@@ -0,0 +1,213 @@
+package com.example.taxcalculator.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learned routing table for the product-information APIs.
+ * For every GS1 prefix (see {@link BarcodeRouter#getPrefix(String)}) it counts how often each
+ * source was asked and how often it knew the barcode. Sources are then ranked by their smoothed
+ * hit rate, and once one source is clearly the most likely for a prefix it is queried on its own
+ * first, with the remaining sources kept as a fallback. Every few searches per prefix the full
+ * fan-out is used anyway, so the statistics of the other sources keep getting refreshed.
+ */
+public class RoutingTable {
+
+    /**
+     * Minimum number of answers from the top source before it may be queried alone.
+     */
+    static final int MIN_SAMPLES = 8;
+
+    /**
+     * Minimum smoothed hit rate of the top source before it may be queried alone.
+     */
+    static final double CONFIDENCE = 0.6;
+
+    /**
+     * Every n-th search for a prefix uses the full fan-out to keep learning.
+     */
+    static final int EXPLORE_EVERY = 10;
+
+    private final Map<String, PrefixStats> table = new ConcurrentHashMap<>();
+
+    /**
+     * Answer counts of every source for one prefix. Guarded by its own lock.
+     */
+    private static class PrefixStats {
+        final Map<String, int[]> counts = new HashMap<>(); // source -> {answers, hits}
+        int searches;
+    }
+
+    /**
+     * The sources to query for a barcode, split into a primary group and a fallback group.
+     */
+    public static class Route {
+        private final List<LookupSource> primary;
+        private final List<LookupSource> fallback;
+
+        Route(List<LookupSource> primary, List<LookupSource> fallback) {
+            this.primary = Collections.unmodifiableList(primary);
+            this.fallback = Collections.unmodifiableList(fallback);
+        }
+
+        /**
+         * Gets the sources to query first, most likely first.
+         * @return The primary sources.
+         */
+        public List<LookupSource> getPrimary() { return primary; }
+
+        /**
+         * Gets the sources to query if the primary group fails or is slow.
+         * @return The fallback sources; empty when the primary group is the full fan-out.
+         */
+        public List<LookupSource> getFallback() { return fallback; }
+    }
+
+    /**
+     * Decides which of the candidate sources to query for a barcode.
+     *
+     * @param barcode    The barcode being looked up.
+     * @param candidates The sources that could answer, in their default order.
+     * @return The route to take.
+     */
+    public Route route(String barcode, List<LookupSource> candidates) {
+        PrefixStats stats = statsFor(BarcodeRouter.getPrefix(barcode));
+        List<LookupSource> ranked = new ArrayList<>(candidates);
+        boolean explore;
+        double[] rates = new double[ranked.size()];
+        synchronized (stats) {
+            explore = stats.searches++ % EXPLORE_EVERY == EXPLORE_EVERY - 1;
+            for (int i = 0; i < ranked.size(); i++) rates[i] = rateLocked(stats, ranked.get(i).getName());
+        }
+
+        // Stable insertion sort by descending rate; the list is tiny
+        for (int i = 1; i < ranked.size(); i++) {
+            LookupSource source = ranked.get(i);
+            double rate = rates[i];
+            int j = i - 1;
+            while (j >= 0 && rates[j] < rate) {
+                ranked.set(j + 1, ranked.get(j));
+                rates[j + 1] = rates[j];
+                j--;
+            }
+            ranked.set(j + 1, source);
+            rates[j + 1] = rate;
+        }
+
+        if (explore || ranked.size() < 2 || !isConfident(stats, ranked.get(0).getName(), rates[0])) {
+            return new Route(ranked, new ArrayList<>());
+        }
+        return new Route(new ArrayList<>(ranked.subList(0, 1)), new ArrayList<>(ranked.subList(1, ranked.size())));
+    }
+
+    /**
+     * Records a definitive answer from a source.
+     *
+     * @param barcode The barcode that was looked up.
+     * @param source  The source name.
+     * @param found   True if the source knew the barcode.
+     */
+    public void recordAnswer(String barcode, String source, boolean found) {
+        PrefixStats stats = statsFor(BarcodeRouter.getPrefix(barcode));
+        synchronized (stats) {
+            int[] c = stats.counts.get(source);
+            if (c == null) {
+                c = new int[2];
+                stats.counts.put(source, c);
+            }
+            c[0]++;
+            if (found) c[1]++;
+        }
+    }
+
+    /**
+     * Returns the smoothed hit rate of a source for a barcode's prefix.
+     * Uses Laplace smoothing, so unknown sources start at 0.5.
+     *
+     * @param barcode The barcode (only its prefix matters).
+     * @param source  The source name.
+     * @return The estimated probability that the source knows barcodes with this prefix.
+     */
+    public double getHitRate(String barcode, String source) {
+        PrefixStats stats = statsFor(BarcodeRouter.getPrefix(barcode));
+        synchronized (stats) {
+            return rateLocked(stats, source);
+        }
+    }
+
+    private static double rateLocked(PrefixStats stats, String source) {
+        int[] c = stats.counts.get(source);
+        if (c == null) return 0.5;
+        return (c[1] + 1.0) / (c[0] + 2.0);
+    }
+
+    private static boolean isConfident(PrefixStats stats, String source, double rate) {
+        synchronized (stats) {
+            int[] c = stats.counts.get(source);
+            return c != null && c[0] >= MIN_SAMPLES && rate >= CONFIDENCE;
+        }
+    }
+
+    private PrefixStats statsFor(String prefix) {
+        PrefixStats stats = table.get(prefix);
+        if (stats == null) {
+            table.putIfAbsent(prefix, new PrefixStats());
+            stats = table.get(prefix);
+        }
+        return stats;
+    }
+
+    /**
+     * Serializes the learned counts as "prefix|source|answers|hits" records separated by ';'.
+     *
+     * @return The serialized table.
+     */
+    public String export() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, PrefixStats> e : table.entrySet()) {
+            PrefixStats stats = e.getValue();
+            synchronized (stats) {
+                for (Map.Entry<String, int[]> c : stats.counts.entrySet()) {
+                    if (sb.length() > 0) sb.append(';');
+                    sb.append(e.getKey()).append('|').append(c.getKey()).append('|')
+                            .append(c.getValue()[0]).append('|').append(c.getValue()[1]);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Loads counts produced by {@link #export()}, adding them to the current table.
+     * Malformed records are skipped.
+     *
+     * @param data The serialized table, may be null or empty.
+     */
+    public void load(String data) {
+        if (data == null || data.isEmpty()) return;
+        for (String record : data.split(";")) {
+            String[] parts = record.split("\\|");
+            if (parts.length != 4) continue;
+            try {
+                int answers = Integer.parseInt(parts[2]);
+                int hits = Integer.parseInt(parts[3]);
+                PrefixStats stats = statsFor(parts[0]);
+                synchronized (stats) {
+                    int[] c = stats.counts.get(parts[1]);
+                    if (c == null) {
+                        c = new int[2];
+                        stats.counts.put(parts[1], c);
+                    }
+                    c[0] += answers;
+                    c[1] += hits;
+                }
+            } catch (NumberFormatException ignored) {
+                // Skip corrupted record
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.taxcalculator.utils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, de-duplicating lookup queue for continuous scanning.
+ * The camera reports the same barcode on every frame while an item is in view, so a barcode is
+ * accepted only if it has not been seen for a short window; holding an item in front of the
+ * camera keeps refreshing that window. Accepted barcodes wait in a bounded FIFO and are handed
+ * to a {@link Resolver} with at most a fixed number of lookups in flight, so scanning never
+ * waits for a lookup and a burst of scans cannot flood the network.
+ */
+public class ScanQueue {
+
+    /**
+     * Default number of barcodes that may wait for a lookup.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Default number of lookups run at the same time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 3;
+
+    /**
+     * Default time a barcode must be out of view before it counts as a new scan.
+     */
+    public static final long DEFAULT_DEDUPE_WINDOW_MS = 1500;
+
+    /**
+     * Result of offering a barcode to the queue.
+     */
+    public enum Offer {
+        /**
+         * The barcode was queued for lookup.
+         */
+        ACCEPTED,
+
+        /**
+         * The barcode was seen within the de-duplication window and was ignored.
+         */
+        DUPLICATE,
+
+        /**
+         * The queue is full; the barcode was dropped and can be scanned again.
+         */
+        FULL
+    }
+
+    /**
+     * Performs the lookup of one barcode.
+     */
+    public interface Resolver {
+        /**
+         * Starts resolving a barcode. Called without any lock held.
+         *
+         * @param barcode The barcode to resolve.
+         * @param done    Must be run exactly once when the lookup has finished, on any thread.
+         */
+        void resolve(String barcode, Runnable done);
+    }
+
+    /**
+     * Receives queue state changes, e.g. to update an on-screen counter.
+     */
+    public interface Listener {
+        /**
+         * Called whenever a barcode is queued, started or finished.
+         *
+         * @param queued   Number of barcodes waiting for a lookup.
+         * @param inFlight Number of lookups running.
+         */
+        void onQueueChanged(int queued, int inFlight);
+    }
+
+    private final Resolver resolver;
+    private final int capacity;
+    private final int maxInFlight;
+    private final long dedupeWindowMs;
+    private final LongSupplier clock;
+
+    private final ArrayDeque<String> pending = new ArrayDeque<>();
+    private final LinkedHashMap<String, Long> lastSeen = new LinkedHashMap<>();
+    private int inFlight;
+    private boolean closed;
+    private Listener listener;
+
+    /**
+     * Creates a queue with the default limits.
+     *
+     * @param resolver Performs the lookups.
+     */
+    public ScanQueue(Resolver resolver) {
+        this(resolver, DEFAULT_CAPACITY, DEFAULT_MAX_IN_FLIGHT, DEFAULT_DEDUPE_WINDOW_MS, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a queue.
+     *
+     * @param resolver       Performs the lookups.
+     * @param capacity       Maximum number of barcodes waiting for a lookup.
+     * @param maxInFlight    Maximum number of lookups running at the same time.
+     * @param dedupeWindowMs Time a barcode must be out of view before it counts as a new scan.
+     * @param clock          Time source in milliseconds.
+     */
+    public ScanQueue(Resolver resolver, int capacity, int maxInFlight, long dedupeWindowMs, LongSupplier clock) {
+        this.resolver = resolver;
+        this.capacity = capacity;
+        this.maxInFlight = maxInFlight;
+        this.dedupeWindowMs = dedupeWindowMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the listener notified of queue changes.
+     *
+     * @param listener The listener, or null.
+     */
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Offers a detected barcode. Cheap enough to call for every detection on every frame.
+     *
+     * @param barcode The detected barcode.
+     * @return Whether the barcode was queued, ignored as a duplicate, or dropped.
+     */
+    public Offer offer(String barcode) {
+        if (barcode == null || barcode.isEmpty()) return Offer.DUPLICATE;
+        Offer result;
+        synchronized (this) {
+            if (closed) return Offer.FULL;
+            long now = clock.getAsLong();
+            pruneLocked(now);
+            Long seen = lastSeen.remove(barcode);
+            lastSeen.put(barcode, now); // Re-insert so the map stays ordered by last sighting
+            if (seen != null) {
+                return Offer.DUPLICATE;
+            }
+            if (pending.size() >= capacity) {
+                lastSeen.remove(barcode); // Let the next sighting try again
+                return Offer.FULL;
+            }
+            pending.add(barcode);
+            result = Offer.ACCEPTED;
+        }
+        pump();
+        return result;
+    }
+
+    /**
+     * Drops sightings older than the de-duplication window. The map is ordered by last
+     * sighting, so this stops at the first recent entry.
+     */
+    private void pruneLocked(long now) {
+        Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() < dedupeWindowMs) break;
+            it.remove();
+        }
+    }
+
+    /**
+     * Starts lookups while there is capacity, then reports the new state.
+     */
+    private void pump() {
+        while (true) {
+            String next;
+            Listener l;
+            int queued, running;
+            synchronized (this) {
+                next = !closed && inFlight < maxInFlight ? pending.poll() : null;
+                if (next != null) inFlight++;
+                l = listener;
+                queued = pending.size();
+                running = inFlight;
+            }
+            if (l != null) l.onQueueChanged(queued, running);
+            if (next == null) return;
+
+            AtomicBoolean finished = new AtomicBoolean();
+            resolver.resolve(next, () -> {
+                if (!finished.compareAndSet(false, true)) return;
+                synchronized (ScanQueue.this) {
+                    inFlight--;
+                }
+                pump();
+            });
+        }
+    }
+
+    /**
+     * @return Number of barcodes waiting for a lookup.
+     */
+    public synchronized int getQueuedCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return Number of lookups running.
+     */
+    public synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    /**
+     * @return True if nothing is queued or running.
+     */
+    public synchronized boolean isIdle() {
+        return pending.isEmpty() && inFlight == 0;
+    }
+
+    /**
+     * Stops the queue: waiting barcodes are dropped and no further lookups are started.
+     * Lookups already running still report completion.
+     */
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.taxcalculator.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Size;
+
+import java.util.List;
+
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.common.Barcode;
+
+/**
+ * Utility class for the barcode scanner settings.
+ * Persists the analysis resolution, the barcode format restriction and the barcode prefixes of
+ * the offline catalog in SharedPreferences.
+ * Restricting ML Kit to retail formats and analysing smaller frames both cut detection time,
+ * which matters most on low-end devices.
+ */
+public class ScanSettings {
+
+    /**
+     * Key used to store whether only retail barcode formats are detected.
+     */
+    public static final String KEY_RETAIL_ONLY = "scan_retail_only";
+
+    /**
+     * Key used to store the analysis resolution index.
+     */
+    public static final String KEY_RESOLUTION = "scan_resolution";
+
+    /**
+     * Key used to store the barcode prefixes kept in the offline catalog.
+     */
+    public static final String KEY_PREFETCH_PREFIXES = "scan_prefetch_prefixes";
+
+    /**
+     * Analysis resolution indices.
+     */
+    public static final int RESOLUTION_LOW = 0;
+    public static final int RESOLUTION_MEDIUM = 1;
+    public static final int RESOLUTION_HIGH = 2;
+
+    /**
+     * Target analysis sizes as {width, height}, indexed by resolution.
+     * CameraX picks the closest supported size.
+     */
+    private static final int[][] ANALYSIS_SIZES = {
+            {640, 480},
+            {1280, 720},
+            {1920, 1080}
+    };
+
+    /**
+     * Human readable names of the resolutions, indexed like {@link #ANALYSIS_SIZES}.
+     */
+    public static final String[] RESOLUTION_LABELS = {
+            "Low (640×480)",
+            "Medium (1280×720)",
+            "High (1920×1080)"
+    };
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(ThemeHelper.PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Checks whether detection is restricted to retail formats (EAN-13, EAN-8, UPC-A, UPC-E).
+     *
+     * @param context The context used to access SharedPreferences.
+     * @return True if only retail formats are detected. Defaults to true.
+     */
+    public static boolean isRetailOnly(Context context) {
+        return prefs(context).getBoolean(KEY_RETAIL_ONLY, true);
+    }
+
+    /**
+     * Saves whether detection is restricted to retail formats.
+     *
+     * @param context    The context used to access SharedPreferences.
+     * @param retailOnly True to detect only retail formats.
+     */
+    public static void setRetailOnly(Context context, boolean retailOnly) {
+        prefs(context).edit().putBoolean(KEY_RETAIL_ONLY, retailOnly).apply();
+    }
+
+    /**
+     * Gets the saved analysis resolution index.
+     *
+     * @param context The context used to access SharedPreferences.
+     * @return One of the RESOLUTION_* constants. Defaults to {@link #RESOLUTION_MEDIUM}.
+     */
+    public static int getResolution(Context context) {
+        int resolution = prefs(context).getInt(KEY_RESOLUTION, RESOLUTION_MEDIUM);
+        return resolution < RESOLUTION_LOW || resolution > RESOLUTION_HIGH ? RESOLUTION_MEDIUM : resolution;
+    }
+
+    /**
+     * Saves the analysis resolution index.
+     *
+     * @param context    The context used to access SharedPreferences.
+     * @param resolution One of the RESOLUTION_* constants.
+     */
+    public static void setResolution(Context context, int resolution) {
+        prefs(context).edit().putInt(KEY_RESOLUTION, resolution).apply();
+    }
+
+    /**
+     * Gets the barcode prefixes whose products are prefetched for offline lookups.
+     *
+     * @param context The context used to access SharedPreferences.
+     * @return The prefixes, sorted. Defaults to none, which turns the prefetch off.
+     */
+    public static List<String> getPrefetchPrefixes(Context context) {
+        return CatalogPrefetcher.parsePrefixes(prefs(context).getString(KEY_PREFETCH_PREFIXES, ""));
+    }
+
+    /**
+     * Saves the barcode prefixes whose products are prefetched for offline lookups.
+     *
+     * @param context  The context used to access SharedPreferences.
+     * @param prefixes A comma separated list of prefixes; empty to turn the prefetch off.
+     */
+    public static void setPrefetchPrefixes(Context context, String prefixes) {
+        prefs(context).edit()
+                .putString(KEY_PREFETCH_PREFIXES, String.join(", ", CatalogPrefetcher.parsePrefixes(prefixes)))
+                .apply();
+    }
+
+    /**
+     * Gets the target analysis size for a resolution index.
+     *
+     * @param resolution One of the RESOLUTION_* constants.
+     * @return The target frame size.
+     */
+    public static Size getAnalysisSize(int resolution) {
+        int[] size = ANALYSIS_SIZES[Math.max(RESOLUTION_LOW, Math.min(RESOLUTION_HIGH, resolution))];
+        return new Size(size[0], size[1]);
+    }
+
+    /**
+     * Builds the ML Kit scanner options.
+     *
+     * @param retailOnly True to restrict detection to EAN-13, EAN-8, UPC-A and UPC-E.
+     * @return The scanner options.
+     */
+    public static BarcodeScannerOptions buildScannerOptions(boolean retailOnly) {
+        BarcodeScannerOptions.Builder builder = new BarcodeScannerOptions.Builder();
+        if (retailOnly) {
+            builder.setBarcodeFormats(Barcode.FORMAT_EAN_13, Barcode.FORMAT_EAN_8,
+                    Barcode.FORMAT_UPC_A, Barcode.FORMAT_UPC_E);
+        } else {
+            builder.setBarcodeFormats(Barcode.FORMAT_ALL_FORMATS);
+        }
+        return builder.build();
+    }
+}
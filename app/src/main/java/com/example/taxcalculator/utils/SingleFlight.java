@@ -0,0 +1,227 @@
+package com.example.taxcalculator.utils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces identical concurrent requests: the first caller for a key starts the work, and
+ * callers arriving while it is in flight are attached to it instead of repeating it. The single
+ * result is then delivered to every attached listener. Once a flight finishes, the next caller
+ * for the key starts a new one, so results are never served from a finished flight.
+ * A listener that leaves receives nothing more, while the others keep waiting; the work is only
+ * cancelled when the last listener leaves.
+ * Counts how many callers were attached and how many network requests that saved.
+ *
+ * @param <K> The key type, e.g. a barcode.
+ * @param <L> The listener type receiving the result.
+ */
+public class SingleFlight<K, L> {
+
+    private final Map<K, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong savedRequests = new AtomicLong();
+
+    /**
+     * One in-flight piece of work and the listeners waiting for it.
+     */
+    public class Flight {
+        private final K key;
+        private final List<L> listeners = new CopyOnWriteArrayList<>();
+        private Runnable canceller;
+        private int requests;
+        private boolean finished;
+
+        Flight(K key, L first) {
+            this.key = key;
+            listeners.add(first);
+        }
+
+        /**
+         * @return The key of the flight.
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return True once a result was delivered or every listener left.
+         */
+        public synchronized boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * @return The number of listeners waiting for the result.
+         */
+        public int getListenerCount() {
+            return listeners.size();
+        }
+
+        /**
+         * Records the network requests the work issued, to count the requests attached
+         * callers did not have to make.
+         *
+         * @param count The number of requests issued so far.
+         */
+        public synchronized void setRequestCount(int count) {
+            requests = count;
+        }
+
+        /**
+         * Sets what cancels the underlying work. Runs it at once if every listener already left.
+         *
+         * @param canceller The action cancelling the work.
+         */
+        public void setCanceller(Runnable canceller) {
+            boolean cancelled;
+            synchronized (this) {
+                this.canceller = canceller;
+                cancelled = finished;
+            }
+            if (cancelled) canceller.run();
+        }
+
+        /**
+         * Delivers an intermediate update, such as a progress message, to every listener.
+         * Ignored once the flight finished.
+         *
+         * @param update The update to deliver to each listener.
+         */
+        public void update(Consumer<L> update) {
+            if (isFinished()) return;
+            for (L listener : listeners) update.accept(listener);
+        }
+
+        /**
+         * Finishes the flight and delivers its result to every listener. Later results are ignored.
+         *
+         * @param result The result to deliver to each listener.
+         * @return True if this call finished the flight.
+         */
+        public boolean complete(Consumer<L> result) {
+            int saved;
+            synchronized (this) {
+                if (finished) return false;
+                finished = true;
+                saved = requests * (listeners.size() - 1);
+            }
+            flights.remove(key, this);
+            savedRequests.addAndGet(saved);
+            for (L listener : listeners) result.accept(listener);
+            return true;
+        }
+
+        /**
+         * Detaches one listener, which then receives no further events. If it was the last one,
+         * the flight finishes without a result and the work is cancelled.
+         *
+         * @param listener The listener to detach.
+         * @return True if the listener was waiting on this flight.
+         */
+        public boolean leave(L listener) {
+            Runnable running;
+            synchronized (this) {
+                if (finished || !listeners.remove(listener)) return false;
+                if (!listeners.isEmpty()) return true;
+                finished = true;
+                running = canceller;
+            }
+            flights.remove(key, this);
+            if (running != null) running.run();
+            return true;
+        }
+
+        /**
+         * Adds a listener unless the flight already finished.
+         */
+        synchronized boolean attach(L listener) {
+            if (finished) return false;
+            listeners.add(listener);
+            return true;
+        }
+    }
+
+    /**
+     * Attaches a listener to the in-flight work for a key, or starts a new flight for it.
+     *
+     * @param key      The request key.
+     * @param listener The listener to receive the result.
+     * @return The new flight if the caller must do the work and finish it,
+     *         or null if the listener was attached to a flight in progress.
+     */
+    public Flight join(K key, L listener) {
+        while (true) {
+            Flight existing = flights.get(key);
+            if (existing != null) {
+                if (existing.attach(listener)) {
+                    joined.incrementAndGet();
+                    return null;
+                }
+                flights.remove(key, existing); // Finished while we looked; start over
+                continue;
+            }
+            Flight flight = new Flight(key, listener);
+            if (flights.putIfAbsent(key, flight) == null) {
+                started.incrementAndGet();
+                return flight;
+            }
+        }
+    }
+
+    /**
+     * Detaches a listener from the flight for a key, if it is waiting on one.
+     * See {@link Flight#leave(Object)}.
+     *
+     * @param key      The request key.
+     * @param listener The listener to detach.
+     * @return True if the listener was waiting on the flight.
+     */
+    public boolean leave(K key, L listener) {
+        Flight flight = flights.get(key);
+        return flight != null && flight.leave(listener);
+    }
+
+    /**
+     * @return The number of flights in progress.
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    /**
+     * @return The number of flights started.
+     */
+    public long getStartedCount() {
+        return started.get();
+    }
+
+    /**
+     * @return The number of callers attached to a flight already in progress.
+     */
+    public long getJoinedCount() {
+        return joined.get();
+    }
+
+    /**
+     * @return The number of network requests attached callers did not have to make.
+     */
+    public long getSavedRequests() {
+        return savedRequests.get();
+    }
+
+    /**
+     * Returns a one-line summary of the counters, for the diagnostics dialog.
+     *
+     * @return The summary.
+     */
+    public String getSummary() {
+        return String.format(Locale.US, "%d started, %d joined, %d network calls saved, %d in flight",
+                getStartedCount(), getJoinedCount(), getSavedRequests(), size());
+    }
+}
@@ -1,24 +1,98 @@
 package com.example.taxcalculator.utils;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Singleton manager class for handling tax rates and categories.
  * Provides access to standard tax rates (Exempt, Essential, Standard, Luxury)
  * and allows for dynamic updates of these rates from a remote source (e.g., Cloud).
+ * The rate table is an immutable snapshot behind an atomic reference: reads never lock, and an
+ * update builds a new table and publishes it in one step, so readers on any thread see either
+ * the old rates or the new ones, never a mix.
+ * Every category ID is interned to a small int code that never changes for the life of the
+ * process, and the snapshot stores rates in a primitive array indexed by that code, so callers
+ * that resolve the code once can look up rates without hashing, boxing or allocating.
+ * Alongside the current rates the snapshot carries a {@link TaxSchedule} of every rate change
+ * with the time it took effect, so a record can be taxed at the rate in force when it was scanned.
+ * A snapshot also records when the next scheduled change starts; the first read after that time
+ * publishes a new snapshot, so rates synced ahead of their start date take effect on time.
  */
 public class TaxManager {
 
     /**
-     * Singleton instance of the TaxManager.
+     * Holder for the lazily created singleton; class initialization makes it thread-safe without locking.
      */
-    private static TaxManager instance;
+    private static class Holder {
+        static final TaxManager INSTANCE = new TaxManager();
+    }
 
     /**
-     * Map storing the tax rates, where the key is the category ID and the value is the tax percentage.
+     * Rate returned for unknown or missing categories (Essentials).
      */
-    private Map<String, Double> taxRates;
+    public static final double DEFAULT_RATE = 5.0;
+
+    /**
+     * Category code for a null category ID; always resolves to {@link #DEFAULT_RATE}.
+     */
+    public static final int CODE_UNKNOWN = -1;
+
+    /**
+     * Fixed category codes of the built-in categories. Codes of other categories are assigned
+     * in the order they are first seen.
+     */
+    public static final int CODE_EXEMPT = 0;
+    public static final int CODE_ESSENTIAL = 1;
+    public static final int CODE_STANDARD = 2;
+    public static final int CODE_LUXURY = 3;
+
+    /**
+     * Batches at least this large are split across the fork-join pool when parallel mode is requested.
+     */
+    public static final int PARALLEL_THRESHOLD = 50_000;
+
+    /**
+     * Size of the chunks a parallel batch is split into.
+     */
+    private static final int PARALLEL_CHUNK = 16_384;
+
+    /**
+     * One immutable version of the rate table.
+     * A category that has a code but no rate yet holds NaN and resolves to {@link #DEFAULT_RATE}.
+     * The current rates are valid until the next scheduled change, in milliseconds since the epoch.
+     */
+    private static final class RateTable {
+        final Map<String, Integer> codes;
+        final double[] rates;
+        final TaxSchedule schedule;
+        final Map<String, Double> view;
+        final int version;
+        final long validUntil;
+
+        RateTable(Map<String, Integer> codes, double[] rates, TaxSchedule schedule, int version, long validUntil) {
+            this.codes = codes;
+            this.rates = rates;
+            this.schedule = schedule;
+            this.version = version;
+            this.validUntil = validUntil;
+            Map<String, Double> map = new HashMap<>();
+            for (Map.Entry<String, Integer> e : codes.entrySet()) {
+                double rate = rates[e.getValue()];
+                if (!Double.isNaN(rate)) map.put(e.getKey(), rate);
+            }
+            this.view = Collections.unmodifiableMap(map);
+        }
+    }
+
+    /**
+     * The current rate table.
+     */
+    private final AtomicReference<RateTable> taxRates = new AtomicReference<>();
 
     /**
      * Category ID for exempt items (0% tax).
@@ -49,11 +123,17 @@ public class TaxManager {
      * Initializes the default tax rates.
      */
     private TaxManager() {
-        taxRates = new HashMap<>();
-        taxRates.put(CAT_EXEMPT, 0.0);
-        taxRates.put(CAT_ESSENTIAL, 5.0);
-        taxRates.put(CAT_STANDARD, 18.0);
-        taxRates.put(CAT_LUXURY, 40.0);
+        Map<String, Integer> codes = new HashMap<>();
+        codes.put(CAT_EXEMPT, CODE_EXEMPT);
+        codes.put(CAT_ESSENTIAL, CODE_ESSENTIAL);
+        codes.put(CAT_STANDARD, CODE_STANDARD);
+        codes.put(CAT_LUXURY, CODE_LUXURY);
+        double[] rates = {0.0, 5.0, 18.0, 40.0};
+        TaxSchedule schedule = TaxSchedule.EMPTY;
+        for (int code = 0; code < rates.length; code++) {
+            schedule = schedule.with(code, TaxSchedule.SINCE_FOREVER, rates[code]);
+        }
+        taxRates.set(new RateTable(codes, rates, schedule, 0, Long.MAX_VALUE));
     }
 
     /**
@@ -61,11 +141,44 @@ public class TaxManager {
      *
      * @return The single instance of TaxManager.
      */
-    public static synchronized TaxManager getInstance() {
-        if (instance == null) {
-            instance = new TaxManager();
+    public static TaxManager getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the current rate table, first publishing the rates of any scheduled change that
+     * has started since it was built. Lock-free: a reader that loses the race to publish simply
+     * uses the table the winner published.
+     *
+     * @return The rate table in force now.
+     */
+    private RateTable current() {
+        while (true) {
+            RateTable table = taxRates.get();
+            long now = System.currentTimeMillis();
+            if (now < table.validUntil) return table;
+
+            double[] rates = ratesAt(table.schedule, table.rates, now);
+            RateTable next = new RateTable(table.codes, rates, table.schedule, table.version + 1,
+                    table.schedule.nextChangeAfter(now));
+            if (taxRates.compareAndSet(table, next)) return next;
+        }
+    }
+
+    /**
+     * Resolves the rate of every scheduled category at a given time.
+     *
+     * @param schedule The rate schedule.
+     * @param base     The current rates; categories without schedule entries keep theirs.
+     * @param now      The time in milliseconds since the epoch.
+     * @return A new rate array.
+     */
+    private static double[] ratesAt(TaxSchedule schedule, double[] base, long now) {
+        double[] rates = base.clone();
+        for (int code = 0; code < rates.length; code++) {
+            if (schedule.size(code) > 0) rates[code] = schedule.rateAt(code, now);
         }
-        return instance;
+        return rates;
     }
 
     /**
@@ -75,29 +188,373 @@ public class TaxManager {
      * @return The tax rate as a percentage. Returns 5.0 (Essential) if the category is unknown or null.
      */
     public double getRate(String categoryId) {
-        if (categoryId == null) return 5.0; // Default to Essentials
-        Double rate = taxRates.get(categoryId);
-        return rate != null ? rate : 5.0;
+        if (categoryId == null) return DEFAULT_RATE; // Default to Essentials
+        Integer code = taxRates.get().codes.get(categoryId);
+        return code != null ? getRate(code) : DEFAULT_RATE;
     }
 
     /**
-     * Updates the local tax rates with values fetched from a remote source (e.g., Firebase).
-     * Handles potential type mismatches (Double vs Long) from Firestore.
+     * Retrieves the tax rate for a category code obtained from {@link #getCategoryCode(String)}.
+     * Allocation-free and lock-free, for use in tight loops.
+     *
+     * @param code The category code.
+     * @return The tax rate as a percentage, or {@link #DEFAULT_RATE} if the category has no rate.
+     */
+    public double getRate(int code) {
+        double[] rates = current().rates;
+        if (code < 0 || code >= rates.length) return DEFAULT_RATE;
+        double rate = rates[code];
+        return Double.isNaN(rate) ? DEFAULT_RATE : rate;
+    }
+
+    /**
+     * Retrieves the tax rate that was in force for a category at a given time.
+     * A binary search over the category's rate changes; allocation-free and lock-free.
+     *
+     * @param code      The category code.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return The tax rate as a percentage, or {@link #DEFAULT_RATE} if the category had no rate then.
+     */
+    public double getRateAt(int code, long timestamp) {
+        double rate = taxRates.get().schedule.rateAt(code, timestamp);
+        return Double.isNaN(rate) ? DEFAULT_RATE : rate;
+    }
+
+    /**
+     * Retrieves the tax rate that was in force for a category ID at a given time.
+     *
+     * @param categoryId The ID of the category, may be null.
+     * @param timestamp  The time in milliseconds since the epoch.
+     * @return The tax rate as a percentage, or {@link #DEFAULT_RATE} if the category had no rate then.
+     */
+    public double getRateAt(String categoryId, long timestamp) {
+        if (categoryId == null) return DEFAULT_RATE;
+        Integer code = taxRates.get().codes.get(categoryId);
+        return code != null ? getRateAt(code, timestamp) : DEFAULT_RATE;
+    }
+
+    /**
+     * Resolves a category ID to its int code, assigning a new code on first sight.
+     * Codes are stable for the life of the process, so callers may cache them; a category that
+     * only later receives a rate from the cloud keeps the code it was given here.
+     *
+     * @param categoryId The ID of the category, may be null.
+     * @return The category code, or {@link #CODE_UNKNOWN} for null.
+     */
+    public int getCategoryCode(String categoryId) {
+        if (categoryId == null) return CODE_UNKNOWN;
+        while (true) {
+            RateTable current = taxRates.get();
+            Integer code = current.codes.get(categoryId);
+            if (code != null) return code;
+
+            Map<String, Integer> codes = new HashMap<>(current.codes);
+            int next = current.rates.length;
+            codes.put(categoryId, next);
+            double[] rates = Arrays.copyOf(current.rates, next + 1);
+            rates[next] = Double.NaN;
+            if (taxRates.compareAndSet(current, new RateTable(codes, rates, current.schedule, current.version,
+                    current.validUntil))) return next;
+        }
+    }
+
+    /**
+     * Returns the current rate table. The snapshot never changes; later updates publish a new one.
+     *
+     * @return An unmodifiable map of category ID to tax percentage.
+     */
+    public Map<String, Double> getRates() {
+        return current().view;
+    }
+
+    /**
+     * Returns a counter that grows with every published rate change, including a scheduled rate
+     * taking effect. Registering a new category
+     * code does not change any rate and keeps the version, so values derived from the rates,
+     * like formatted prices, stay valid while the version is unchanged.
+     *
+     * @return The version of the current rate table.
+     */
+    public int getRatesVersion() {
+        return current().version;
+    }
+
+    /**
+     * Updates the local tax rates with values fetched from a remote source (e.g., Firebase),
+     * effective from now.
      *
      * @param cloudData A map containing the new rates from the cloud.
+     * @see #updateRates(Map, long)
      */
     public void updateRates(Map<String, Object> cloudData) {
-        if (cloudData == null) return;
+        updateRates(cloudData, System.currentTimeMillis());
+    }
 
-        for (String key : cloudData.keySet()) {
-            Object val = cloudData.get(key);
+    /**
+     * Updates the local tax rates with values that take effect at a given time.
+     * Handles potential type mismatches (Double vs Long) from Firestore.
+     * Every changed rate is added to the schedule, so records scanned earlier keep the rate that
+     * applied to them. The new rates are published atomically through {@link #applyChanges}.
+     *
+     * @param cloudData     A map containing the new rates from the cloud.
+     * @param effectiveFrom The time from which the rates apply, in milliseconds since the epoch.
+     */
+    public void updateRates(Map<String, Object> cloudData, long effectiveFrom) {
+        if (cloudData == null) return;
 
+        String[] categories = new String[cloudData.size()];
+        long[] from = new long[categories.length];
+        double[] rates = new double[categories.length];
+        int n = 0;
+        for (Map.Entry<String, Object> entry : cloudData.entrySet()) {
+            Object val = entry.getValue();
             if (val instanceof Double) {
-                taxRates.put(key, (Double) val);
+                rates[n] = (Double) val;
             } else if (val instanceof Long) {
                 // Firestore sometimes sends Long instead of Double for integer-like numbers
-                taxRates.put(key, ((Long) val).doubleValue());
+                rates[n] = ((Long) val).doubleValue();
+            } else {
+                continue;
+            }
+            categories[n] = entry.getKey();
+            from[n] = effectiveFrom;
+            n++;
+        }
+        applyChanges(categories, from, rates, n);
+    }
+
+    /**
+     * Adds a set of dated rate changes and publishes them in a single atomic swap, so readers
+     * never see part of a set. Concurrent updates are retried so none of them is lost.
+     * Rates dated in the future are only scheduled; the current rates are those in force at the
+     * time of the update, and the first read after a scheduled change starts switches to it.
+     *
+     * @param categories The category ID of each change.
+     * @param from       The effective-from time of each change, in milliseconds since the epoch.
+     * @param rates      The rate of each change, as a percentage.
+     * @param count      The number of changes to apply from the start of the arrays.
+     */
+    public void applyChanges(String[] categories, long[] from, double[] rates, int count) {
+        if (count == 0) return;
+
+        while (true) {
+            RateTable current = taxRates.get();
+            Map<String, Integer> codes = new HashMap<>(current.codes);
+            double[] table = current.rates.clone();
+
+            int[] changed = new int[count];
+            for (int i = 0; i < count; i++) {
+                Integer code = codes.get(categories[i]);
+                if (code == null) {
+                    code = table.length;
+                    codes.put(categories[i], code);
+                    table = Arrays.copyOf(table, code + 1);
+                    table[code] = Double.NaN;
+                }
+                changed[i] = code;
+            }
+            TaxSchedule schedule = current.schedule.withAll(changed, from, rates, count);
+
+            long now = System.currentTimeMillis();
+            table = ratesAt(schedule, table, now);
+            if (taxRates.compareAndSet(current, new RateTable(codes, table, schedule, current.version + 1,
+                    schedule.nextChangeAfter(now)))) return;
+        }
+    }
+
+    /**
+     * Serializes the rate schedule as "category|effectiveFrom|rate" records separated by ';'.
+     *
+     * @return The serialized schedule.
+     */
+    public String exportSchedule() {
+        RateTable current = taxRates.get();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> e : current.codes.entrySet()) {
+            int code = e.getValue();
+            for (int i = 0; i < current.schedule.size(code); i++) {
+                if (sb.length() > 0) sb.append(';');
+                sb.append(e.getKey()).append('|').append(current.schedule.getEffectiveFrom(code, i))
+                        .append('|').append(current.schedule.getRate(code, i));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Loads a schedule produced by {@link #exportSchedule()}, merging it into the current one in
+     * a single atomic swap. Malformed records are skipped.
+     *
+     * @param data The serialized schedule, may be null or empty.
+     */
+    public void importSchedule(String data) {
+        if (data == null || data.isEmpty()) return;
+        String[] records = data.split(";");
+        String[] categories = new String[records.length];
+        long[] from = new long[records.length];
+        double[] rates = new double[records.length];
+        int n = 0;
+        for (String record : records) {
+            String[] parts = record.split("\\|");
+            if (parts.length != 3) continue;
+            try {
+                from[n] = Long.parseLong(parts[1]);
+                rates[n] = Double.parseDouble(parts[2]);
+                categories[n] = parts[0];
+                n++;
+            } catch (NumberFormatException ignored) {
+                // Skip corrupted record
+            }
+        }
+        applyChanges(categories, from, rates, n);
+    }
+
+    /**
+     * Computes inclusive GST for a whole batch of items in one pass over columnar arrays.
+     * Each item is taxed at the rate in force when it was scanned, exactly as
+     * {@link com.example.taxcalculator.models.ProductItem} taxes a saved record, so the totals of
+     * a history export agree with its rows. Items with no scan time are taxed at the current rate.
+     * Every item is taxed against the same rate snapshot, even if rates are updated meanwhile.
+     * Output arrays may be null if the caller does not need them.
+     *
+     * @param pricePaise Tax-inclusive prices, in paise.
+     * @param codes      Category codes from {@link #getCategoryCode(String)}, one per price.
+     * @param scannedAt  Scan time of each item in milliseconds since the epoch, 0 meaning now;
+     *                   null if every item is taxed at the current rate.
+     * @param taxOut     Receives the tax of each item, in paise; may be null.
+     * @param netOut     Receives the net price of each item, in paise; may be null.
+     * @param totalOut   Receives the total (tax-inclusive) price of each item, in paise; may be null.
+     * @param parallel   True to split batches of {@link #PARALLEL_THRESHOLD} items or more across
+     *                   the common fork-join pool.
+     * @return Totals per GST slab and overall.
+     * @throws IllegalArgumentException If the arrays have different lengths.
+     */
+    public TaxSummary computeBatch(long[] pricePaise, int[] codes, long[] scannedAt, long[] taxOut, long[] netOut,
+                                   long[] totalOut, boolean parallel) {
+        int n = pricePaise.length;
+        if (codes.length != n || (scannedAt != null && scannedAt.length != n) || (taxOut != null && taxOut.length != n)
+                || (netOut != null && netOut.length != n) || (totalOut != null && totalOut.length != n)) {
+            throw new IllegalArgumentException("Batch arrays must all have the same length");
+        }
+
+        // One basis-point rate per slot: the current rate of each code, then every schedule
+        // entry of each code in turn, then a trailing slot for unknown codes
+        RateTable table = current();
+        double[] rates = table.rates;
+        TaxSchedule schedule = table.schedule;
+        int[] entryOffsets = new int[Math.min(rates.length, schedule.getCodeCount())];
+        int slots = rates.length;
+        for (int code = 0; code < entryOffsets.length; code++) {
+            entryOffsets[code] = slots;
+            slots += schedule.size(code);
+        }
+        long[] rateBp = new long[slots + 1];
+        for (int code = 0; code < rates.length; code++) {
+            rateBp[code] = Money.toBasisPoints(Double.isNaN(rates[code]) ? DEFAULT_RATE : rates[code]);
+        }
+        for (int code = 0; code < entryOffsets.length; code++) {
+            for (int i = 0; i < schedule.size(code); i++) {
+                double rate = schedule.getRate(code, i);
+                rateBp[entryOffsets[code] + i] = Money.toBasisPoints(Double.isNaN(rate) ? DEFAULT_RATE : rate);
+            }
+        }
+        rateBp[slots] = Money.toBasisPoints(DEFAULT_RATE);
+
+        boolean split = parallel && n >= PARALLEL_THRESHOLD;
+        BatchTask task = new BatchTask(pricePaise, codes, scannedAt, taxOut, netOut, totalOut,
+                new Rates(rates.length, schedule, entryOffsets, rateBp), 0, n, split);
+        long[][] sums = split ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+        return new TaxSummary(rateBp, sums[0], sums[1], sums[2]);
+    }
+
+    /**
+     * The rates a batch is taxed with, flattened into slots so items can be accumulated per slot.
+     */
+    private static final class Rates {
+        final int codeCount;
+        final TaxSchedule schedule;
+        final int[] entryOffsets;
+        final long[] rateBp;
+        final int unknown;
+
+        Rates(int codeCount, TaxSchedule schedule, int[] entryOffsets, long[] rateBp) {
+            this.codeCount = codeCount;
+            this.schedule = schedule;
+            this.entryOffsets = entryOffsets;
+            this.rateBp = rateBp;
+            this.unknown = rateBp.length - 1;
+        }
+
+        /**
+         * Finds the slot of an item: its code's current rate, or the schedule entry in force
+         * when it was scanned.
+         */
+        int slot(int code, long scannedAt) {
+            if (code < 0 || code >= codeCount) return unknown;
+            if (scannedAt <= 0) return code;
+            int entry = code < entryOffsets.length ? schedule.indexAt(code, scannedAt) : -1;
+            return entry >= 0 ? entryOffsets[code] + entry : unknown;
+        }
+    }
+
+    /**
+     * Computes one range of a batch, splitting it in halves while it is larger than a chunk.
+     * Returns per-slot {count, gross, tax} accumulators.
+     */
+    private static final class BatchTask extends RecursiveTask<long[][]> {
+        private final long[] prices;
+        private final int[] codes;
+        private final long[] scannedAt;
+        private final long[] taxOut, netOut, totalOut;
+        private final Rates rates;
+        private final int from, to;
+        private final boolean split;
+
+        BatchTask(long[] prices, int[] codes, long[] scannedAt, long[] taxOut, long[] netOut, long[] totalOut,
+                  Rates rates, int from, int to, boolean split) {
+            this.prices = prices;
+            this.codes = codes;
+            this.scannedAt = scannedAt;
+            this.taxOut = taxOut;
+            this.netOut = netOut;
+            this.totalOut = totalOut;
+            this.rates = rates;
+            this.from = from;
+            this.to = to;
+            this.split = split;
+        }
+
+        @Override
+        protected long[][] compute() {
+            long[] rateBp = rates.rateBp;
+            if (split && to - from > PARALLEL_CHUNK) {
+                int mid = (from + to) >>> 1;
+                BatchTask left = new BatchTask(prices, codes, scannedAt, taxOut, netOut, totalOut, rates, from, mid, true);
+                BatchTask right = new BatchTask(prices, codes, scannedAt, taxOut, netOut, totalOut, rates, mid, to, true);
+                left.fork();
+                long[][] r = right.compute();
+                long[][] l = left.join();
+                for (int k = 0; k < 3; k++) {
+                    for (int slot = 0; slot < rateBp.length; slot++) l[k][slot] += r[k][slot];
+                }
+                return l;
+            }
+
+            long[] count = new long[rateBp.length];
+            long[] gross = new long[rateBp.length];
+            long[] tax = new long[rateBp.length];
+            for (int i = from; i < to; i++) {
+                int slot = rates.slot(codes[i], scannedAt != null ? scannedAt[i] : 0);
+                long price = prices[i];
+                long t = Money.inclusiveTax(price, rateBp[slot], Money.DEFAULT_ROUNDING);
+                if (taxOut != null) taxOut[i] = t;
+                if (netOut != null) netOut[i] = price - t;
+                if (totalOut != null) totalOut[i] = price;
+                count[slot]++;
+                gross[slot] += price;
+                tax[slot] += t;
             }
+            return new long[][]{count, gross, tax};
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.example.taxcalculator.utils;
+
+import android.content.Context;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the TaxManager rates in step with the cloud.
+ * At startup the last known schedule is loaded synchronously from local storage, so the very
+ * first tax calculation already uses it instead of the built-in defaults. A background sync then
+ * asks Firestore only for rate documents whose version stamp is newer than the newest one
+ * applied so far, applies them in one atomic swap and saves the result with the new stamp.
+ * Each document in the rates collection is named after its category ID and holds:
+ * "rate" (number), "version" (number, raised on every change) and optionally "effective_from"
+ * (timestamp or epoch milliseconds; the fetch time is used when it is missing).
+ */
+public class TaxRateSync {
+
+    /**
+     * The name of the Firestore collection where tax rates are stored.
+     */
+    private static final String COLLECTION_NAME = "tax_rates";
+
+    /**
+     * Document fields of a rate.
+     */
+    public static final String FIELD_RATE = "rate";
+    public static final String FIELD_VERSION = "version";
+    public static final String FIELD_EFFECTIVE_FROM = "effective_from";
+
+    private static volatile TaxRateSync instance;
+
+    private final Context context;
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    private volatile long version;
+    private volatile long loadMicros = -1;
+    private volatile long lastSyncAt;
+    private volatile int lastSyncChanges;
+    private volatile String lastError;
+
+    private TaxRateSync(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Retrieves the shared instance.
+     *
+     * @param context Any context; the application context is kept.
+     * @return The singleton TaxRateSync.
+     */
+    public static TaxRateSync getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TaxRateSync.class) {
+                if (instance == null) {
+                    instance = new TaxRateSync(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the last known schedule into the TaxManager. Safe to call more than once.
+     * Runs on the calling thread so rates are in place before any tax is computed.
+     */
+    public void loadLocal() {
+        long start = System.nanoTime();
+        TaxScheduleStore.load(context);
+        version = TaxScheduleStore.getVersion(context);
+        loadMicros = (System.nanoTime() - start) / 1000;
+    }
+
+    /**
+     * Fetches rate changes newer than the applied version in the background.
+     * Does nothing while a previous sync is still running. Failures keep the current rates.
+     */
+    public void sync() {
+        if (!syncing.compareAndSet(false, true)) return;
+        long since = version;
+
+        FirebaseFirestore.getInstance().collection(COLLECTION_NAME)
+                .whereGreaterThan(FIELD_VERSION, since)
+                .orderBy(FIELD_VERSION)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    List<String> ids = new ArrayList<>();
+                    List<Map<String, Object>> data = new ArrayList<>();
+                    for (DocumentSnapshot document : snapshot.getDocuments()) {
+                        ids.add(document.getId());
+                        data.add(document.getData());
+                    }
+                    long newest = applyDelta(TaxManager.getInstance(), ids, data, since, System.currentTimeMillis());
+                    if (newest > since) {
+                        version = newest;
+                        TaxScheduleStore.save(context, newest);
+                    }
+                    lastSyncAt = System.currentTimeMillis();
+                    lastSyncChanges = ids.size();
+                    lastError = null;
+                    syncing.set(false);
+                })
+                .addOnFailureListener(e -> {
+                    lastError = e.getMessage();
+                    syncing.set(false);
+                });
+    }
+
+    /**
+     * Applies fetched rate documents to a TaxManager in one atomic swap.
+     * Malformed documents are skipped.
+     *
+     * @param taxManager The manager to update.
+     * @param ids        The document IDs, i.e. the category IDs.
+     * @param data       The document contents, one map of field to value per ID (may be null).
+     * @param since      The version the documents were requested after.
+     * @param fetchedAt  The fetch time, used as the effective time of documents without one.
+     * @return The newest version among the applied documents, or {@code since} if none applied.
+     */
+    public static long applyDelta(TaxManager taxManager, List<String> ids, List<Map<String, Object>> data,
+                           long since, long fetchedAt) {
+        String[] categories = new String[ids.size()];
+        long[] from = new long[categories.length];
+        double[] rates = new double[categories.length];
+        int n = 0;
+        long newest = since;
+
+        for (int i = 0; i < categories.length; i++) {
+            Map<String, Object> fields = data.get(i);
+            if (fields == null) continue;
+            Object rate = fields.get(FIELD_RATE);
+            Object stamp = fields.get(FIELD_VERSION);
+            if (!(rate instanceof Number) || !(stamp instanceof Number)) continue;
+
+            Object effective = fields.get(FIELD_EFFECTIVE_FROM);
+            if (effective instanceof Timestamp) {
+                from[n] = ((Timestamp) effective).toDate().getTime();
+            } else if (effective instanceof Number) {
+                from[n] = ((Number) effective).longValue();
+            } else {
+                from[n] = fetchedAt;
+            }
+            categories[n] = ids.get(i);
+            rates[n] = ((Number) rate).doubleValue();
+            newest = Math.max(newest, ((Number) stamp).longValue());
+            n++;
+        }
+
+        taxManager.applyChanges(categories, from, rates, n);
+        return newest;
+    }
+
+    /**
+     * @return The version stamp of the newest applied cloud change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a human readable summary of the sync state, for the diagnostics dialog.
+     *
+     * @return The summary.
+     */
+    public String getSummary() {
+        return String.format(Locale.US,
+                "Tax rates: version %d, local load %d µs\nLast sync: %s, %d changes%s",
+                version, loadMicros,
+                lastSyncAt > 0 ? (System.currentTimeMillis() - lastSyncAt) / 1000 + " s ago" : "never",
+                lastSyncChanges,
+                lastError != null ? "\nLast error: " + lastError : "");
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.taxcalculator.utils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable history of tax rates with effective-from times, indexed by category code.
+ * Each category keeps its change times in a sorted long[] alongside the matching rates, so
+ * the rate in force at any moment is found with a binary search. Updates return a new schedule
+ * and leave this one untouched, which lets TaxManager publish it inside its rate snapshot.
+ */
+public final class TaxSchedule {
+
+    /**
+     * Effective-from time of a rate that applied before any recorded change.
+     */
+    public static final long SINCE_FOREVER = Long.MIN_VALUE;
+
+    /**
+     * A schedule with no entries.
+     */
+    public static final TaxSchedule EMPTY = new TaxSchedule(new long[0][], new double[0][]);
+
+    private final long[][] effectiveFrom;
+    private final double[][] rates;
+
+    private TaxSchedule(long[][] effectiveFrom, double[][] rates) {
+        this.effectiveFrom = effectiveFrom;
+        this.rates = rates;
+    }
+
+    /**
+     * Returns the rate in force for a category at a given time.
+     *
+     * @param code      The category code.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return The rate as a percentage, or NaN if the category had no rate at that time.
+     */
+    public double rateAt(int code, long timestamp) {
+        int index = indexAt(code, timestamp);
+        return index >= 0 ? rates[code][index] : Double.NaN;
+    }
+
+    /**
+     * Returns the index of the entry in force for a category at a given time.
+     *
+     * @param code      The category code.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return The entry index, in time order, or -1 if the category had no rate at that time.
+     */
+    public int indexAt(int code, long timestamp) {
+        if (code < 0 || code >= effectiveFrom.length || effectiveFrom[code] == null) return -1;
+        int index = Arrays.binarySearch(effectiveFrom[code], timestamp);
+        return index >= 0 ? index : -index - 2; // Last entry starting before the timestamp
+    }
+
+    /**
+     * Returns the earliest change of any category that takes effect after a given time.
+     *
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return The effective-from time of the next change, or Long.MAX_VALUE if none is scheduled.
+     */
+    public long nextChangeAfter(long timestamp) {
+        long next = Long.MAX_VALUE;
+        for (long[] times : effectiveFrom) {
+            if (times == null) continue;
+            int index = Arrays.binarySearch(times, timestamp);
+            index = index >= 0 ? index + 1 : -index - 1; // First entry starting after the timestamp
+            if (index < times.length) next = Math.min(next, times[index]);
+        }
+        return next;
+    }
+
+    /**
+     * Returns a schedule with one more entry. An entry with the same time is replaced.
+     *
+     * @param code      The category code.
+     * @param from      The time from which the rate applies, in milliseconds since the epoch.
+     * @param rate      The rate as a percentage.
+     * @return The new schedule.
+     */
+    public TaxSchedule with(int code, long from, double rate) {
+        int size = Math.max(effectiveFrom.length, code + 1);
+        long[][] times = Arrays.copyOf(effectiveFrom, size);
+        double[][] values = Arrays.copyOf(rates, size);
+
+        long[] oldTimes = times[code] != null ? times[code] : new long[0];
+        double[] oldValues = values[code] != null ? values[code] : new double[0];
+        int index = Arrays.binarySearch(oldTimes, from);
+        if (index >= 0) {
+            values[code] = oldValues.clone();
+            values[code][index] = rate;
+            return new TaxSchedule(times, values);
+        }
+
+        int insert = -index - 1;
+        long[] newTimes = new long[oldTimes.length + 1];
+        double[] newValues = new double[oldValues.length + 1];
+        System.arraycopy(oldTimes, 0, newTimes, 0, insert);
+        System.arraycopy(oldValues, 0, newValues, 0, insert);
+        newTimes[insert] = from;
+        newValues[insert] = rate;
+        System.arraycopy(oldTimes, insert, newTimes, insert + 1, oldTimes.length - insert);
+        System.arraycopy(oldValues, insert, newValues, insert + 1, oldValues.length - insert);
+        times[code] = newTimes;
+        values[code] = newValues;
+        return new TaxSchedule(times, values);
+    }
+
+    /**
+     * Returns a schedule with a set of entries added in one pass, copying each touched category
+     * once instead of once per entry. Entries with the same time replace earlier ones, and among
+     * the new entries the later one wins.
+     *
+     * @param codes The category code of each entry.
+     * @param from  The effective-from time of each entry, in milliseconds since the epoch.
+     * @param rates The rate of each entry, as a percentage.
+     * @param count The number of entries to add from the start of the arrays.
+     * @return The new schedule.
+     */
+    public TaxSchedule withAll(int[] codes, long[] from, double[] rates, int count) {
+        int size = effectiveFrom.length;
+        for (int i = 0; i < count; i++) size = Math.max(size, codes[i] + 1);
+        long[][] times = Arrays.copyOf(effectiveFrom, size);
+        double[][] values = Arrays.copyOf(this.rates, size);
+        boolean[] done = new boolean[size];
+
+        for (int i = 0; i < count; i++) {
+            int code = codes[i];
+            if (done[code]) continue;
+            done[code] = true;
+
+            // Old entries first, then the new ones in order, so a stable sort keeps the newest last
+            int old = times[code] != null ? times[code].length : 0;
+            int added = 0;
+            for (int j = i; j < count; j++) if (codes[j] == code) added++;
+            long[] t = new long[old + added];
+            double[] v = new double[old + added];
+            if (old > 0) {
+                System.arraycopy(times[code], 0, t, 0, old);
+                System.arraycopy(values[code], 0, v, 0, old);
+            }
+            for (int j = i, k = old; j < count; j++) {
+                if (codes[j] != code) continue;
+                t[k] = from[j];
+                v[k++] = rates[j];
+            }
+
+            // Stable insertion sort: linear for the already sorted input of a persisted schedule
+            int[] order = new int[t.length];
+            for (int k = 0; k < order.length; k++) {
+                int m = k;
+                while (m > 0 && t[order[m - 1]] > t[k]) {
+                    order[m] = order[m - 1];
+                    m--;
+                }
+                order[m] = k;
+            }
+
+            long[] mergedTimes = new long[t.length];
+            double[] mergedValues = new double[t.length];
+            int n = 0;
+            for (int index : order) {
+                if (n > 0 && mergedTimes[n - 1] == t[index]) n--; // Same time: the later entry replaces it
+                mergedTimes[n] = t[index];
+                mergedValues[n++] = v[index];
+            }
+            times[code] = Arrays.copyOf(mergedTimes, n);
+            values[code] = Arrays.copyOf(mergedValues, n);
+        }
+        return new TaxSchedule(times, values);
+    }
+
+    /**
+     * @param code The category code.
+     * @return The number of entries for the category.
+     */
+    public int size(int code) {
+        return code >= 0 && code < effectiveFrom.length && effectiveFrom[code] != null ? effectiveFrom[code].length : 0;
+    }
+
+    /**
+     * @param code  The category code.
+     * @param index The entry index, in time order.
+     * @return The effective-from time of the entry.
+     */
+    public long getEffectiveFrom(int code, int index) {
+        return effectiveFrom[code][index];
+    }
+
+    /**
+     * @param code  The category code.
+     * @param index The entry index, in time order.
+     * @return The rate of the entry.
+     */
+    public double getRate(int code, int index) {
+        return rates[code][index];
+    }
+
+    /**
+     * @return One more than the highest category code that may have entries.
+     */
+    public int getCodeCount() {
+        return effectiveFrom.length;
+    }
+}
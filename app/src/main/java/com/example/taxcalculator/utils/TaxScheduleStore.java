@@ -0,0 +1,60 @@
+package com.example.taxcalculator.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Utility class for persisting the TaxManager rate schedule in SharedPreferences.
+ * The schedule must outlive the process: without it, history recorded before a rate change
+ * would be taxed at today's rate after a restart. It is stored together with the version stamp
+ * of the newest cloud change it contains, so the next sync only asks for later changes.
+ */
+public class TaxScheduleStore {
+
+    /**
+     * Key used to store the serialized rate schedule.
+     */
+    public static final String KEY_SCHEDULE = "tax_schedule";
+
+    /**
+     * Key used to store the version stamp of the newest applied cloud change.
+     */
+    public static final String KEY_VERSION = "tax_schedule_version";
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(ThemeHelper.PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Merges the saved schedule into the TaxManager in one atomic swap.
+     * Cheap once the preferences file is in memory, so it can run on the main thread at startup.
+     *
+     * @param context The context used to access SharedPreferences.
+     */
+    public static void load(Context context) {
+        TaxManager.getInstance().importSchedule(prefs(context).getString(KEY_SCHEDULE, null));
+    }
+
+    /**
+     * Gets the version stamp saved with the schedule.
+     *
+     * @param context The context used to access SharedPreferences.
+     * @return The version of the newest applied cloud change, or 0 if none was applied.
+     */
+    public static long getVersion(Context context) {
+        return prefs(context).getLong(KEY_VERSION, 0);
+    }
+
+    /**
+     * Saves the current TaxManager schedule with its version stamp in a single edit.
+     *
+     * @param context The context used to access SharedPreferences.
+     * @param version The version of the newest cloud change in the schedule.
+     */
+    public static void save(Context context, long version) {
+        prefs(context).edit()
+                .putString(KEY_SCHEDULE, TaxManager.getInstance().exportSchedule())
+                .putLong(KEY_VERSION, version)
+                .apply();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.taxcalculator.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Totals of a batch tax computation, overall and per GST slab.
+ * A slab groups every item taxed at the same rate, whatever its category ID.
+ * All amounts are in paise and rates in basis points.
+ */
+public class TaxSummary {
+
+    /**
+     * Totals of one GST slab.
+     */
+    public static class Slab {
+        private final long rateBp;
+        private long count;
+        private long grossPaise;
+        private long taxPaise;
+
+        Slab(long rateBp) {
+            this.rateBp = rateBp;
+        }
+
+        /**
+         * @return The slab's tax rate in basis points.
+         */
+        public long getRateBp() { return rateBp; }
+
+        /**
+         * @return The number of items in the slab.
+         */
+        public long getCount() { return count; }
+
+        /**
+         * @return The sum of tax-inclusive prices, in paise.
+         */
+        public long getGrossPaise() { return grossPaise; }
+
+        /**
+         * @return The sum of tax, in paise.
+         */
+        public long getTaxPaise() { return taxPaise; }
+
+        /**
+         * @return The sum of net prices, in paise.
+         */
+        public long getNetPaise() { return grossPaise - taxPaise; }
+    }
+
+    private final List<Slab> slabs;
+    private final long count;
+    private final long grossPaise;
+    private final long taxPaise;
+
+    /**
+     * Builds the summary from per-slot accumulators; slots with the same rate share a slab.
+     *
+     * @param rateBp Rate of each slot, in basis points.
+     * @param count  Item count of each slot.
+     * @param gross  Gross total of each slot, in paise.
+     * @param tax    Tax total of each slot, in paise.
+     */
+    TaxSummary(long[] rateBp, long[] count, long[] gross, long[] tax) {
+        TreeMap<Long, Slab> byRate = new TreeMap<>();
+        long totalCount = 0, totalGross = 0, totalTax = 0;
+        for (int slot = 0; slot < rateBp.length; slot++) {
+            if (count[slot] == 0) continue;
+            Slab slab = byRate.get(rateBp[slot]);
+            if (slab == null) {
+                slab = new Slab(rateBp[slot]);
+                byRate.put(rateBp[slot], slab);
+            }
+            slab.count += count[slot];
+            slab.grossPaise += gross[slot];
+            slab.taxPaise += tax[slot];
+            totalCount += count[slot];
+            totalGross += gross[slot];
+            totalTax += tax[slot];
+        }
+        this.slabs = Collections.unmodifiableList(new ArrayList<>(byRate.values()));
+        this.count = totalCount;
+        this.grossPaise = totalGross;
+        this.taxPaise = totalTax;
+    }
+
+    /**
+     * @return The slabs that have items, ordered by rate.
+     */
+    public List<Slab> getSlabs() { return slabs; }
+
+    /**
+     * Finds the slab for a rate.
+     *
+     * @param rateBp The rate in basis points.
+     * @return The slab, or null if no item was taxed at that rate.
+     */
+    public Slab getSlab(long rateBp) {
+        for (Slab slab : slabs) {
+            if (slab.rateBp == rateBp) return slab;
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of items.
+     */
+    public long getCount() { return count; }
+
+    /**
+     * @return The sum of tax-inclusive prices, in paise.
+     */
+    public long getGrossPaise() { return grossPaise; }
+
+    /**
+     * @return The sum of tax, in paise.
+     */
+    public long getTaxPaise() { return taxPaise; }
+
+    /**
+     * @return The sum of net prices, in paise.
+     */
+    public long getNetPaise() { return grossPaise - taxPaise; }
+}
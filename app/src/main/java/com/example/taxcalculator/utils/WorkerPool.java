@@ -0,0 +1,174 @@
+package com.example.taxcalculator.utils;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed number of worker threads fed from a priority queue.
+ * Higher priority tasks run first and tasks of equal priority run in submission order, so a
+ * single-threaded pool still serializes its writes while interactive work overtakes background
+ * work. Records the queue depth and how long tasks waited, per priority, for diagnostics.
+ */
+public class WorkerPool {
+
+    /**
+     * Priority of work the user is waiting on, like a history page or a cached lookup.
+     */
+    public static final int PRIORITY_INTERACTIVE = 2;
+
+    /**
+     * Priority of regular work, like saving a scan.
+     */
+    public static final int PRIORITY_NORMAL = 1;
+
+    /**
+     * Priority of housekeeping nobody waits on, like purging expired cache entries.
+     */
+    public static final int PRIORITY_BACKGROUND = 0;
+
+    private static final int PRIORITY_COUNT = 3;
+    private static final String[] PRIORITY_NAMES = {"background", "normal", "interactive"};
+
+    /**
+     * A queued task, ordered by priority, then by submission.
+     */
+    private final class Task implements Runnable, Comparable<Task> {
+        final Runnable work;
+        final int priority;
+        final long sequence;
+        final long queuedAt = System.nanoTime();
+
+        Task(Runnable work, int priority, long sequence) {
+            this.work = work;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) return other.priority - priority;
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            queued.decrementAndGet();
+            waits[priority].record((System.nanoTime() - queuedAt) / 1000);
+            try {
+                work.run();
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    private final String name;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final LatencyHistogram[] waits = new LatencyHistogram[PRIORITY_COUNT];
+
+    /**
+     * Creates a pool and its threads.
+     *
+     * @param name    The name of the pool, used for its threads.
+     * @param threads The number of worker threads.
+     */
+    public WorkerPool(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+        for (int i = 0; i < PRIORITY_COUNT; i++) waits[i] = new LatencyHistogram();
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Queues a task.
+     *
+     * @param priority One of the PRIORITY_ constants.
+     * @param work     The task.
+     */
+    public void execute(int priority, Runnable work) {
+        int p = Math.max(PRIORITY_BACKGROUND, Math.min(PRIORITY_INTERACTIVE, priority));
+        int depth = queued.incrementAndGet();
+        maxQueued.accumulateAndGet(depth, Math::max);
+        executor.execute(new Task(work, p, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Returns an executor that queues its tasks at a fixed priority, for APIs that take an Executor.
+     *
+     * @param priority One of the PRIORITY_ constants.
+     * @return The executor.
+     */
+    public Executor executor(int priority) {
+        return work -> execute(priority, work);
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return The deepest the queue has been.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    /**
+     * @return The number of tasks that finished.
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Returns how long tasks of a priority waited in the queue.
+     *
+     * @param priority One of the PRIORITY_ constants.
+     * @return The wait histogram, in microseconds.
+     */
+    public LatencyHistogram getQueueWait(int priority) {
+        return waits[priority];
+    }
+
+    /**
+     * Stops the threads once the queued tasks are done. Later tasks are rejected.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return A human-readable summary of the queue metrics.
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%s (%d threads): queued %d, max %d, completed %d",
+                name, threads, getQueueDepth(), getMaxQueueDepth(), getCompletedCount()));
+        for (int p = PRIORITY_COUNT - 1; p >= 0; p--) {
+            LatencyHistogram wait = waits[p];
+            if (wait.getCount() == 0) continue;
+            sb.append(String.format(Locale.US, "\n  %s wait: p50 %.1f ms, p99 %.1f ms (n=%d)", PRIORITY_NAMES[p],
+                    wait.getValueAtPercentile(50) / 1000.0, wait.getValueAtPercentile(99) / 1000.0, wait.getCount()));
+        }
+        return sb.toString();
+    }
+}
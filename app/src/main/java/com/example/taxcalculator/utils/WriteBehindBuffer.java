@@ -0,0 +1,244 @@
+package com.example.taxcalculator.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects writes and hands them to a sink in batches, so a burst of scans costs one
+ * transaction instead of one per item. A batch is written once it reaches a size limit, once
+ * its oldest write has waited for a delay, or when {@link #flush()} is called, e.g. when the app
+ * goes to the background. A write's callback only fires after the sink stored its batch, so a
+ * write that was reported as saved is never lost. When a batch fails, its writes are retried one
+ * by one, so a single bad write does not fail the others with it.
+ *
+ * @param <T> The type of the buffered items.
+ */
+public class WriteBehindBuffer<T> {
+
+    /**
+     * Stores one batch. Runs on the write executor.
+     *
+     * @param <T> The type of the items.
+     */
+    public interface Sink<T> {
+        /**
+         * Stores the batch, e.g. in one database transaction. Throwing means nothing was stored.
+         *
+         * @param batch The items, in the order they were added.
+         */
+        void write(List<T> batch);
+
+        /**
+         * Follow-up work for items that were stored, e.g. updating caches. Runs after the write
+         * committed; throwing here does not fail any write.
+         *
+         * @param stored The stored items, in the order they were added.
+         */
+        default void afterWrite(List<T> stored) {
+        }
+    }
+
+    /**
+     * Receives the outcome of one buffered write.
+     */
+    public interface Callback {
+        /**
+         * Called on the write executor once the write's batch was stored.
+         */
+        void onWritten();
+
+        /**
+         * Called on the write executor if the write could not be stored, even on its own.
+         *
+         * @param error A description of the failure.
+         */
+        void onFailed(String error);
+    }
+
+    private final Sink<T> sink;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final int maxBatch;
+    private final long maxDelayMs;
+
+    private List<T> items = new ArrayList<>();
+    private List<Callback> callbacks = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong sizeFlushes = new AtomicLong();
+    private final AtomicLong timeFlushes = new AtomicLong();
+    private final AtomicLong explicitFlushes = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    /**
+     * Creates a buffer.
+     *
+     * @param sink       Stores the batches.
+     * @param executor   The executor batches are written on; a single thread keeps them in order.
+     * @param timer      Schedules the delayed flushes.
+     * @param maxBatch   The number of writes that triggers a flush.
+     * @param maxDelayMs The longest a write waits before its batch is flushed.
+     */
+    public WriteBehindBuffer(Sink<T> sink, Executor executor, ScheduledExecutorService timer,
+                             int maxBatch, long maxDelayMs) {
+        this.sink = sink;
+        this.executor = executor;
+        this.timer = timer;
+        this.maxBatch = maxBatch;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Buffers a write.
+     *
+     * @param item     The item to write.
+     * @param callback Told once the item's batch was written, may be null.
+     */
+    public void add(T item, Callback callback) {
+        boolean full;
+        synchronized (this) {
+            items.add(item);
+            callbacks.add(callback);
+            full = items.size() >= maxBatch;
+            if (!full && scheduledFlush == null) {
+                scheduledFlush = timer.schedule(() -> {
+                    timeFlushes.incrementAndGet();
+                    flushPending();
+                }, maxDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            sizeFlushes.incrementAndGet();
+            flushPending();
+        }
+    }
+
+    /**
+     * Writes whatever is buffered now, without waiting for the size or time limit.
+     */
+    public void flush() {
+        explicitFlushes.incrementAndGet();
+        flushPending();
+    }
+
+    /**
+     * @return The number of writes waiting in the buffer.
+     */
+    public synchronized int getPendingCount() {
+        return items.size();
+    }
+
+    /**
+     * @return The number of writes stored by the sink.
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * @return The number of batches stored by the sink.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return A human-readable summary of the batching.
+     */
+    public String getSummary() {
+        long count = batches.get();
+        return String.format(Locale.US,
+                "Write-behind: %d writes in %d batches (avg %.1f, max %d), %d batches retried one by one, "
+                        + "%d writes failed; flushed by size %d, time %d, request %d",
+                written.get(), count, count == 0 ? 0.0 : (double) written.get() / count, largestBatch.get(),
+                failedBatches.get(), failedWrites.get(), sizeFlushes.get(), timeFlushes.get(), explicitFlushes.get());
+    }
+
+    private void flushPending() {
+        List<T> batch;
+        List<Callback> batchCallbacks;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (items.isEmpty()) return;
+            batch = items;
+            batchCallbacks = callbacks;
+            items = new ArrayList<>();
+            callbacks = new ArrayList<>();
+        }
+        executor.execute(() -> writeBatch(batch, batchCallbacks));
+    }
+
+    private void writeBatch(List<T> batch, List<Callback> batchCallbacks) {
+        RuntimeException error = store(batch);
+        if (error == null) {
+            finish(batch, batchCallbacks);
+            return;
+        }
+        if (batch.size() == 1) {
+            fail(batchCallbacks.get(0), error);
+            return;
+        }
+
+        // Isolate the write that failed the batch: the others are stored on their own
+        failedBatches.incrementAndGet();
+        List<T> stored = new ArrayList<>(batch.size());
+        List<Callback> storedCallbacks = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            error = store(Collections.singletonList(batch.get(i)));
+            if (error != null) {
+                fail(batchCallbacks.get(i), error);
+            } else {
+                stored.add(batch.get(i));
+                storedCallbacks.add(batchCallbacks.get(i));
+            }
+        }
+        if (!stored.isEmpty()) finish(stored, storedCallbacks);
+    }
+
+    /**
+     * Hands items to the sink.
+     *
+     * @return The failure, or null if the items were stored.
+     */
+    private RuntimeException store(List<T> batch) {
+        try {
+            sink.write(batch);
+        } catch (RuntimeException e) {
+            return e;
+        }
+        written.addAndGet(batch.size());
+        batches.incrementAndGet();
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        return null;
+    }
+
+    private void finish(List<T> stored, List<Callback> storedCallbacks) {
+        try {
+            sink.afterWrite(stored);
+        } catch (RuntimeException ignored) {
+            // The items are stored; only the follow-up work was lost
+        }
+        for (Callback callback : storedCallbacks) {
+            if (callback != null) callback.onWritten();
+        }
+    }
+
+    private void fail(Callback callback, RuntimeException e) {
+        failedWrites.incrementAndGet();
+        if (callback != null) callback.onFailed(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    }
+}
@@ -148,4 +148,32 @@ public class BarcodeRouterTest {
         String longCode = "890" + new String(new char[100]).replace('\0', '1');
         assertEquals(BarcodeRouter.ProductType.INDIAN_RETAIL, BarcodeRouter.getRoute(longCode));
     }
-}
\ No newline at end of file
+
+    // --- GS1 Prefix Keys (5 Tests) ---
+
+    @Test
+    public void testPrefixEan13() {
+        assertEquals("890", BarcodeRouter.getPrefix("8901234567890"));
+    }
+
+    @Test
+    public void testPrefixUpcAIsNormalizedToEan13() {
+        assertEquals("001", BarcodeRouter.getPrefix("012345678905"));
+    }
+
+    @Test
+    public void testPrefixEan8HasOwnKeySpace() {
+        assertEquals("8:890", BarcodeRouter.getPrefix("89012345"));
+    }
+
+    @Test
+    public void testPrefixNullOrShort() {
+        assertEquals("", BarcodeRouter.getPrefix(null));
+        assertEquals("", BarcodeRouter.getPrefix("89"));
+    }
+
+    @Test
+    public void testPrefixNonNumeric() {
+        assertEquals("", BarcodeRouter.getPrefix("ABC123"));
+    }
+}
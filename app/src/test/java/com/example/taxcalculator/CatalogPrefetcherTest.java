@@ -0,0 +1,359 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.database.LookupDao;
+import com.example.taxcalculator.models.LookupEntry;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.CatalogPrefetcher;
+import com.example.taxcalculator.utils.LookupCache;
+import com.example.taxcalculator.utils.TaxManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch 20: CatalogPrefetcherTest
+ * Covers the catalog prefetch: paged full runs per barcode prefix, the document budget,
+ * incremental runs from the saved checkpoint, full refreshes and failure handling.
+ * Uses a map-backed fake catalog, a fake LookupDao and a manually advanced clock.
+ */
+public class CatalogPrefetcherTest {
+
+    private static final int PAGE_SIZE = 100;
+    private static final long START = 1_700_000_000_000L;
+
+    /**
+     * Catalog document: the product and its upload time.
+     */
+    private static class Document {
+        final ProductItem item;
+        final long uploadedAt;
+
+        Document(ProductItem item, long uploadedAt) {
+            this.item = item;
+            this.uploadedAt = uploadedAt;
+        }
+    }
+
+    /**
+     * In-memory catalog answering the paged queries inline, like Firestore would.
+     * Range cursors are the last barcode read, other cursors the last document of the previous page.
+     */
+    private class FakeCatalog implements CatalogPrefetcher.CatalogSource {
+        final TreeMap<String, Document> documents = new TreeMap<>();
+        final List<String> queries = new ArrayList<>();
+        int failOnQuery = -1;
+        boolean hold;
+        CatalogPrefetcher.PageCallback held;
+
+        @Override
+        public void fetchRange(String prefix, String after, int limit, CatalogPrefetcher.PageCallback callback) {
+            queries.add("range " + prefix);
+            List<Document> page = new ArrayList<>();
+            for (Document document : documents.tailMap(after != null ? after : prefix, after == null).values()) {
+                if (page.size() == limit || !document.item.getBarcode().startsWith(prefix)) break;
+                page.add(document);
+            }
+            answer(page, true, callback);
+        }
+
+        @Override
+        public void fetchUpdatedSince(long sinceMillis, Object after, int limit, CatalogPrefetcher.PageCallback callback) {
+            queries.add("since " + sinceMillis);
+            List<Document> changed = new ArrayList<>();
+            for (Document document : documents.values()) {
+                if (document.uploadedAt > sinceMillis) changed.add(document);
+            }
+            changed.sort((a, b) -> a.uploadedAt != b.uploadedAt ? Long.compare(a.uploadedAt, b.uploadedAt)
+                    : a.item.getBarcode().compareTo(b.item.getBarcode()));
+            int from = after != null ? changed.indexOf(after) + 1 : 0;
+            answer(changed.subList(from, Math.min(changed.size(), from + limit)), false, callback);
+        }
+
+        private void answer(List<Document> page, boolean idCursor, CatalogPrefetcher.PageCallback callback) {
+            if (queries.size() - 1 == failOnQuery) {
+                callback.onFailure("unavailable");
+                return;
+            }
+            if (hold) {
+                held = callback;
+                return;
+            }
+            List<ProductItem> items = new ArrayList<>();
+            for (Document document : page) {
+                if (document.item.getName() != null) items.add(document.item);
+            }
+            Document last = page.isEmpty() ? null : page.get(page.size() - 1);
+            Object cursor = last != null && idCursor ? last.item.getBarcode() : last;
+            callback.onPage(items, page.size(), cursor, last != null ? last.uploadedAt : 0);
+        }
+
+        void add(String barcode, long uploadedAt) {
+            documents.put(barcode, new Document(
+                    new ProductItem("Item " + barcode, "Brand", 50.0, TaxManager.CAT_STANDARD, barcode), uploadedAt));
+        }
+
+        void addRange(String prefix, int count, long uploadedAt) {
+            for (int i = 0; i < count; i++) add(prefix + String.format("%05d", i), uploadedAt);
+        }
+    }
+
+    /**
+     * Map-backed stand-in for the Room DAO that counts batch writes.
+     */
+    private static class FakeLookupDao implements LookupDao {
+        final Map<String, LookupEntry> rows = new HashMap<>();
+        int batches;
+
+        @Override
+        public void upsert(LookupEntry entry) { rows.put(entry.getBarcode(), entry); }
+
+        @Override
+        public void upsertAll(List<LookupEntry> entries) {
+            batches++;
+            for (LookupEntry entry : entries) upsert(entry);
+        }
+
+        @Override
+        public LookupEntry find(String barcode) { return rows.get(barcode); }
+
+        @Override
+        public void delete(String barcode) { rows.remove(barcode); }
+
+        @Override
+        public int deleteExpired(long now) { return 0; }
+
+        @Override
+        public void deleteAll() { rows.clear(); }
+    }
+
+    /**
+     * Records how runs ended.
+     */
+    private static class Outcome implements CatalogPrefetcher.Callback {
+        int stored = -1;
+        String error;
+
+        @Override
+        public void onFinished(int stored) { this.stored = stored; }
+
+        @Override
+        public void onFailed(String error) { this.error = error; }
+    }
+
+    private FakeCatalog catalog;
+    private FakeLookupDao dao;
+    private LookupCache cache;
+    private long now;
+
+    @Before
+    public void setUp() {
+        catalog = new FakeCatalog();
+        dao = new FakeLookupDao();
+        now = START;
+        cache = new LookupCache(dao, 16, LookupCache.DEFAULT_FOUND_TTL_MS, LookupCache.DEFAULT_NOT_FOUND_TTL_MS, () -> now);
+        catalog.addRange("890", 450, START - TimeUnit.DAYS.toMillis(1));
+        catalog.addRange("400", 30, START - TimeUnit.DAYS.toMillis(1));
+        catalog.addRange("500", 50, START - TimeUnit.DAYS.toMillis(1));
+    }
+
+    private CatalogPrefetcher prefetcher(int maxDocuments) {
+        return new CatalogPrefetcher(catalog, cache, Runnable::run, PAGE_SIZE, maxDocuments, () -> now);
+    }
+
+    private Outcome run(CatalogPrefetcher prefetcher, String... prefixes) {
+        Outcome outcome = new Outcome();
+        assertTrue(prefetcher.prefetch(Arrays.asList(prefixes), outcome));
+        return outcome;
+    }
+
+    // --- Full Run (5 Tests) ---
+
+    @Test
+    public void testFullRunPagesThroughEachPrefix() {
+        Outcome outcome = run(prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS), "400", "890");
+
+        assertEquals(480, outcome.stored);
+        // 400: one short page; 890: four full pages and a short one
+        assertEquals(6, catalog.queries.size());
+        assertEquals(6, dao.batches);
+        assertFalse(dao.rows.containsKey("50000000"));
+    }
+
+    @Test
+    public void testPrefetchedBarcodesResolveLocally() {
+        run(prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS), "890");
+
+        // Nothing was pushed into the memory LRU; the scan reads the persisted tier
+        assertEquals(0, cache.memorySize());
+        LookupEntry entry = cache.get("89000123");
+        assertNotNull(entry);
+        assertTrue(entry.isComplete());
+        assertEquals(LookupEntry.SOURCE_CLOUD, entry.getSource());
+        assertNull(cache.get("50000001"));
+    }
+
+    @Test
+    public void testBudgetStopsRun() {
+        Outcome outcome = run(prefetcher(150), "890");
+
+        assertEquals(150, outcome.stored);
+        assertEquals(2, catalog.queries.size());
+        assertEquals(150, dao.rows.size());
+    }
+
+    @Test
+    public void testPassOutOfBudgetContinuesInNextRuns() {
+        // The first range alone is larger than the budget
+        CatalogPrefetcher first = prefetcher(40);
+        Outcome outcome = run(first, "500", "890");
+        assertEquals(40, outcome.stored);
+        assertEquals(0, first.getUpdatedSince());
+
+        // Continues after the last barcode read, also after a restart
+        CatalogPrefetcher prefetcher = prefetcher(40);
+        prefetcher.loadState(first.getState());
+        catalog.queries.clear();
+        now += TimeUnit.MINUTES.toMillis(1);
+        assertEquals(40, run(prefetcher, "500", "890").stored);
+        assertEquals(Arrays.asList("range 500", "range 890"), catalog.queries);
+        assertNotNull(cache.get("89000029"));
+        assertNull(cache.get("89000030"));
+
+        int runs = 2;
+        while (prefetcher.getUpdatedSince() == 0) {
+            run(prefetcher, "500", "890");
+            assertTrue(++runs < 20);
+        }
+        assertEquals(500, dao.rows.size());
+        // The checkpoint is the start of the pass, so changes made during it are read later
+        assertEquals(START - TimeUnit.MINUTES.toMillis(10), prefetcher.getUpdatedSince());
+
+        catalog.queries.clear();
+        run(prefetcher, "500", "890");
+        assertTrue(catalog.queries.get(0).startsWith("since "));
+    }
+
+    @Test
+    public void testIncompleteDocumentsAreSkippedButPaged() {
+        catalog.documents.put("89000050", new Document(
+                new ProductItem(null, null, 0, null, "89000050"), START - 1000));
+        Outcome outcome = run(prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS), "890");
+
+        assertEquals(449, outcome.stored);
+        assertEquals(5, catalog.queries.size());
+        assertNull(cache.get("89000050"));
+    }
+
+    // --- Incremental Runs (3 Tests) ---
+
+    @Test
+    public void testSecondRunReadsOnlyChanges() {
+        CatalogPrefetcher prefetcher = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        run(prefetcher, "400", "890");
+        catalog.queries.clear();
+
+        now += TimeUnit.HOURS.toMillis(1);
+        catalog.add("89000001", now - 10);
+        catalog.add("40000002", now - 5);
+        catalog.add("50000003", now - 1); // Outside the store's prefixes
+        Outcome outcome = run(prefetcher, "400", "890");
+
+        assertEquals(2, outcome.stored);
+        assertEquals(Collections.singletonList("since " + (START - TimeUnit.MINUTES.toMillis(10))), catalog.queries);
+        assertNull(cache.get("50000003"));
+    }
+
+    @Test
+    public void testChangedPrefixesForceFullRun() {
+        CatalogPrefetcher prefetcher = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        run(prefetcher, "890");
+        catalog.queries.clear();
+        now += TimeUnit.HOURS.toMillis(1);
+
+        Outcome outcome = run(prefetcher, "400", "890");
+
+        assertEquals(480, outcome.stored);
+        assertEquals("range 400", catalog.queries.get(0));
+    }
+
+    @Test
+    public void testFullRefreshBeforeEntriesExpire() {
+        CatalogPrefetcher prefetcher = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        run(prefetcher, "400");
+        catalog.queries.clear();
+        now += CatalogPrefetcher.FULL_REFRESH_INTERVAL_MS;
+
+        run(prefetcher, "400");
+
+        assertEquals(Collections.singletonList("range 400"), catalog.queries);
+        assertTrue(CatalogPrefetcher.FULL_REFRESH_INTERVAL_MS < LookupCache.DEFAULT_FOUND_TTL_MS);
+    }
+
+    // --- State And Failures (4 Tests) ---
+
+    @Test
+    public void testSavedStateResumesIncrementally() {
+        CatalogPrefetcher first = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        run(first, "400");
+
+        CatalogPrefetcher restarted = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        restarted.loadState(first.getState());
+        catalog.queries.clear();
+        run(restarted, "400");
+
+        assertEquals(first.getUpdatedSince(), restarted.getUpdatedSince());
+        assertTrue(catalog.queries.get(0).startsWith("since "));
+
+        CatalogPrefetcher corrupt = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        corrupt.loadState("garbage");
+        assertEquals(0, corrupt.getUpdatedSince());
+    }
+
+    @Test
+    public void testFailureKeepsCheckpointAndStoredPages() {
+        catalog.failOnQuery = 2;
+        CatalogPrefetcher prefetcher = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        Outcome outcome = run(prefetcher, "890");
+
+        assertEquals("unavailable", outcome.error);
+        assertEquals(-1, outcome.stored);
+        assertEquals(2 * PAGE_SIZE, dao.rows.size());
+        assertEquals(0, prefetcher.getUpdatedSince());
+        assertFalse(prefetcher.isRunning());
+        assertTrue(prefetcher.getSummary().contains("unavailable"));
+
+        // The retry starts over with a full run
+        catalog.failOnQuery = -1;
+        catalog.queries.clear();
+        assertEquals(450, run(prefetcher, "890").stored);
+    }
+
+    @Test
+    public void testOnlyOneRunAtATime() {
+        catalog.hold = true;
+        CatalogPrefetcher prefetcher = prefetcher(CatalogPrefetcher.DEFAULT_MAX_DOCUMENTS);
+        run(prefetcher, "400");
+
+        assertTrue(prefetcher.isRunning());
+        assertFalse(prefetcher.prefetch(Collections.singletonList("400"), new Outcome()));
+        assertFalse(prefetcher.prefetch(Collections.emptyList(), new Outcome()));
+        assertEquals(1, prefetcher.getRunCount());
+    }
+
+    @Test
+    public void testParsePrefixes() {
+        assertEquals(Arrays.asList("400", "890"), CatalogPrefetcher.parsePrefixes(" 8901030, 890, abc, ,400,890"));
+        assertTrue(CatalogPrefetcher.parsePrefixes(null).isEmpty());
+        assertTrue(CatalogPrefetcher.parsePrefixes("").isEmpty());
+    }
+}
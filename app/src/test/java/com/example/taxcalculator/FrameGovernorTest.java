@@ -0,0 +1,88 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.FrameGovernor;
+import com.example.taxcalculator.utils.ScanSettings;
+
+/**
+ * Batch 11: FrameGovernorTest
+ * Covers dropped-frame counting, adaptive frame skipping and resolution lowering.
+ */
+public class FrameGovernorTest {
+
+    private static final long FRAME_NANOS = 33_000_000L;
+
+    private FrameGovernor governor;
+    private long timestamp;
+
+    @Before
+    public void setUp() {
+        governor = new FrameGovernor(50_000);
+        governor.startSession(ScanSettings.RESOLUTION_HIGH);
+        timestamp = 1_000_000_000L;
+    }
+
+    /**
+     * Feeds consecutive frames, reporting the given detection time for every processed one.
+     */
+    private int feed(int frames, long detectMicros) {
+        int processed = 0;
+        for (int i = 0; i < frames; i++) {
+            timestamp += FRAME_NANOS;
+            if (governor.onFrame(timestamp)) {
+                processed++;
+                governor.onFrameProcessed(100, detectMicros, 10);
+            }
+        }
+        return processed;
+    }
+
+    // --- Frame Accounting (2 Tests) ---
+
+    @Test
+    public void testFastFramesAreAllProcessed() {
+        assertEquals(20, feed(20, 10_000));
+        assertEquals(0, governor.getSkip());
+        assertEquals(0, governor.getFramesDropped());
+        assertEquals(20, governor.getDetectLatency().getCount());
+    }
+
+    @Test
+    public void testTimestampGapsCountAsDropped() {
+        governor.onFrame(0);
+        governor.onFrame(FRAME_NANOS);
+        governor.onFrame(4 * FRAME_NANOS); // Frames 2 and 3 never arrived
+        governor.onFrame(5 * FRAME_NANOS);
+        assertEquals(2, governor.getFramesDropped());
+        assertEquals(4, governor.getFramesSeen());
+    }
+
+    // --- Adaptation (3 Tests) ---
+
+    @Test
+    public void testSlowDetectionIncreasesSkip() {
+        feed(30, 120_000);
+        assertTrue(governor.getSkip() >= 1);
+        assertTrue(governor.getFramesSkipped() > 0);
+        assertEquals(ScanSettings.RESOLUTION_HIGH, governor.getResolution());
+    }
+
+    @Test
+    public void testPersistentSlownessLowersResolution() {
+        feed(400, 120_000);
+        assertTrue(governor.getResolution() < ScanSettings.RESOLUTION_HIGH);
+        assertTrue(governor.getResolutionDowngrades() >= 1);
+    }
+
+    @Test
+    public void testRecoveryReducesSkipButKeepsResolution() {
+        feed(400, 120_000);
+        int resolution = governor.getResolution();
+        feed(400, 5_000);
+        assertEquals(0, governor.getSkip());
+        assertEquals(resolution, governor.getResolution());
+    }
+}
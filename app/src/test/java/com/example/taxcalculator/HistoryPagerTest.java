@@ -0,0 +1,324 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.models.HistoryPager;
+import com.example.taxcalculator.models.HistoryQuery;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.TaxManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Batch 16: HistoryPagerTest
+ * Covers keyset paging of the scan history: page order, incremental appends,
+ * the in-memory page budget, reloading dropped pages, stable row IDs, incremental refreshes
+ * after new scans and history query descriptors.
+ */
+public class HistoryPagerTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_PAGES = 3;
+
+    /**
+     * Table of rows with IDs 1..n, queried like ProductDao.getPageBefore.
+     */
+    private final List<ProductItem> table = new ArrayList<>();
+    private final List<Integer> requestedKeys = new ArrayList<>();
+    private final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+    private final List<String> events = new ArrayList<>();
+    private HistoryPager pager;
+
+    @Before
+    public void setUp() {
+        fill(1000);
+        // Loads queue up until run, deliveries run inline
+        HistoryPager.PageSource source = new HistoryPager.PageSource() {
+            @Override
+            public List<ProductItem> loadPage(int beforeId, int limit) { return HistoryPagerTest.this.loadPage(beforeId, limit); }
+
+            @Override
+            public List<ProductItem> loadNewer(int afterId, int limit) { return HistoryPagerTest.this.loadNewer(afterId, limit); }
+        };
+        pager = new HistoryPager(source, pendingLoads::add, Runnable::run, PAGE_SIZE, MAX_PAGES);
+        pager.setListener(new HistoryPager.Listener() {
+            @Override
+            public void onItemsInserted(int position, int count) { events.add("insert " + position + "+" + count); }
+
+            @Override
+            public void onItemsChanged(int position, int count) { events.add("change " + position + "+" + count); }
+
+            @Override
+            public void onItemsRemoved(int count) { events.add("remove " + count); }
+        });
+    }
+
+    private void fill(int rows) {
+        table.clear();
+        for (int id = 1; id <= rows; id++) {
+            ProductItem item = new ProductItem("Item " + id, "Brand", 10.0, TaxManager.CAT_STANDARD, "b" + id);
+            item.id = id;
+            table.add(item);
+        }
+    }
+
+    private List<ProductItem> loadPage(int beforeId, int limit) {
+        requestedKeys.add(beforeId);
+        List<ProductItem> page = new ArrayList<>();
+        for (int i = table.size() - 1; i >= 0 && page.size() < limit; i--) {
+            if (table.get(i).id < beforeId) page.add(table.get(i));
+        }
+        return page;
+    }
+
+    private List<ProductItem> loadNewer(int afterId, int limit) {
+        List<ProductItem> page = new ArrayList<>();
+        for (int i = table.size() - 1; i >= 0 && page.size() < limit && table.get(i).id > afterId; i--) {
+            page.add(table.get(i));
+        }
+        return page;
+    }
+
+    private void addRows(int count) {
+        int next = table.get(table.size() - 1).id + 1;
+        for (int i = 0; i < count; i++) {
+            ProductItem item = new ProductItem("New " + i, "Brand", 10.0, TaxManager.CAT_STANDARD, "n" + i);
+            item.id = next + i;
+            table.add(item);
+        }
+    }
+
+    private void runLoads() {
+        while (!pendingLoads.isEmpty()) pendingLoads.poll().run();
+    }
+
+    // --- Paging (3 Tests) ---
+
+    @Test
+    public void testFirstPageIsNewestFirst() {
+        pager.start();
+        assertEquals(0, pager.getItemCount());
+        runLoads();
+
+        assertEquals(PAGE_SIZE, pager.getItemCount());
+        assertEquals(1000, pager.getItem(0).id);
+        assertEquals(1000 - PAGE_SIZE + 1, pager.getItem(PAGE_SIZE - 1).id);
+        assertEquals(Collections.singletonList("insert 0+" + PAGE_SIZE), events.subList(0, 1));
+    }
+
+    @Test
+    public void testReadingNearEndAppendsWithKeyset() {
+        pager.start();
+        runLoads();
+        pager.getItem(PAGE_SIZE - 1);
+        pager.getItem(PAGE_SIZE - 1); // A second read while loading starts no second load
+        assertEquals(1, pendingLoads.size());
+        runLoads();
+
+        assertEquals(2 * PAGE_SIZE, pager.getItemCount());
+        assertEquals(Integer.valueOf(1000 - PAGE_SIZE + 1), requestedKeys.get(1));
+        assertEquals(1000 - PAGE_SIZE, pager.getItem(PAGE_SIZE).id);
+    }
+
+    @Test
+    public void testShortHistoryCompletes() {
+        fill(PAGE_SIZE + 5);
+        pager.start();
+        runLoads();
+        pager.getItem(PAGE_SIZE - 1);
+        runLoads();
+
+        assertTrue(pager.isComplete());
+        assertEquals(PAGE_SIZE + 5, pager.getItemCount());
+        pager.getItem(PAGE_SIZE + 4);
+        assertTrue(pendingLoads.isEmpty());
+    }
+
+    // --- Memory Budget (3 Tests) ---
+
+    @Test
+    public void testScrollingWholeHistoryKeepsPagesBounded() {
+        fill(50_000);
+        pager.start();
+        runLoads();
+        // Each read near the end appends the next page, so the count grows while scrolling
+        for (int position = 0; position < pager.getItemCount(); position++) {
+            assertNotNull(pager.getItem(position));
+            runLoads();
+            assertTrue(pager.getLoadedPageCount() <= MAX_PAGES);
+        }
+        assertTrue(pager.isComplete());
+        assertEquals(50_000, pager.getItemCount());
+    }
+
+    @Test
+    public void testDroppedPageReloadsByKey() {
+        pager.start();
+        runLoads();
+        for (int position = 0; position < 6 * PAGE_SIZE; position++) {
+            pager.getItem(position);
+            runLoads();
+        }
+        assertNull(pager.getItem(0));
+        runLoads();
+
+        assertTrue(events.contains("change 0+" + PAGE_SIZE));
+        // Reloads seek just above the page's newest row, so later scans never leak in
+        assertEquals(Integer.valueOf(1001), requestedKeys.get(requestedKeys.size() - 1));
+        assertEquals(1000, pager.getItem(0).id);
+    }
+
+    @Test
+    public void testResetDiscardsLoadsInFlight() {
+        pager.start();
+        runLoads();
+        pager.getItem(PAGE_SIZE - 1); // Queues the second page
+        fill(3);
+        pager.reset();
+        runLoads();
+
+        assertTrue(events.contains("remove " + PAGE_SIZE));
+        assertEquals(3, pager.getItemCount());
+        assertEquals(3, pager.getItem(0).id);
+        assertTrue(pager.isComplete());
+    }
+
+    // --- Stable IDs (2 Tests) ---
+
+    @Test
+    public void testDroppedPageKeepsItsIds() {
+        pager.start();
+        runLoads();
+        for (int position = 0; position < 6 * PAGE_SIZE; position++) {
+            pager.getItem(position);
+            runLoads();
+        }
+        int requests = requestedKeys.size();
+
+        // Every discovered row has its ID, in memory or not, and asking loads nothing
+        for (int position = 0; position < pager.getItemCount(); position++) {
+            assertEquals(1000 - position, pager.getItemId(position));
+        }
+        assertEquals(requests, requestedKeys.size());
+        assertTrue(pendingLoads.isEmpty());
+    }
+
+    @Test
+    public void testReloadWithDifferentRowsStartsOver() {
+        pager.start();
+        runLoads();
+        for (int position = 0; position < 6 * PAGE_SIZE; position++) {
+            pager.getItem(position);
+            runLoads();
+        }
+        // A row of the dropped first page is deleted; the next page's newest row fills the gap
+        table.remove(table.size() - 5);
+        int shown = pager.getItemCount();
+        events.clear();
+        assertNull(pager.getItem(0));
+        runLoads();
+
+        assertEquals("remove " + shown, events.get(0));
+        assertEquals(1000, pager.getItemId(0));
+        assertEquals(995, pager.getItemId(4));
+    }
+
+    // --- Refresh (4 Tests) ---
+
+    @Test
+    public void testNewScanInLargeHistoryTouchesOneRow() {
+        fill(10_000);
+        pager.start();
+        runLoads();
+        for (int position = 0; position < PAGE_SIZE; position++) {
+            pager.getItem(position);
+            runLoads();
+        }
+        int before = pager.getItemCount();
+        events.clear();
+
+        addRows(1);
+        pager.refresh();
+        runLoads();
+
+        assertEquals(Collections.singletonList("insert 0+1"), events);
+        assertEquals(before + 1, pager.getItemCount());
+        assertEquals(10_001, pager.getItem(0).id);
+        assertEquals(10_000, pager.getItem(1).id);
+        assertEquals(10_000 - PAGE_SIZE, pager.getItem(PAGE_SIZE + 1).id);
+    }
+
+    @Test
+    public void testRefreshWithoutChangesIsSilent() {
+        pager.start();
+        runLoads();
+        events.clear();
+        pager.refresh();
+        runLoads();
+
+        assertTrue(events.isEmpty());
+        assertEquals(PAGE_SIZE, pager.getItemCount());
+    }
+
+    @Test
+    public void testBurstOfScansStartsOver() {
+        pager.start();
+        runLoads();
+        events.clear();
+        addRows(PAGE_SIZE);
+        pager.refresh();
+        pager.refresh(); // Folded into one more refresh, discarded by the reset
+        runLoads();
+
+        assertEquals("remove " + PAGE_SIZE, events.get(0));
+        assertEquals(1000 + PAGE_SIZE, pager.getItem(0).id);
+    }
+
+    @Test
+    public void testReloadAfterPrependUsesShiftedPositions() {
+        pager.start();
+        runLoads();
+        for (int position = 0; position < 6 * PAGE_SIZE; position++) {
+            pager.getItem(position);
+            runLoads();
+        }
+        addRows(2);
+        pager.refresh();
+        runLoads();
+        events.clear();
+
+        assertNull(pager.getItem(2)); // First row of the dropped original first page
+        runLoads();
+
+        assertEquals(Collections.singletonList("change 2+" + PAGE_SIZE), events);
+        assertEquals(1000, pager.getItem(2).id);
+        // The new rows were read deep in the list and dropped at once; they reload by key too
+        if (pager.getItem(0) == null) runLoads();
+        assertEquals(1002, pager.getItem(0).id);
+        assertEquals(1001, pager.getItem(1).id);
+    }
+
+    // --- History Query (2 Tests) ---
+
+    @Test
+    public void testAllIsUnfiltered() {
+        assertFalse(HistoryQuery.ALL.isFiltered());
+        assertNull(HistoryQuery.ALL.getCategory());
+        assertEquals(HistoryPager.FIRST_PAGE_KEY, HistoryQuery.ALL.getAnchorId());
+    }
+
+    @Test
+    public void testFilteredQueries() {
+        assertTrue(new HistoryQuery(TaxManager.CAT_LUXURY, 0, Long.MAX_VALUE, HistoryPager.FIRST_PAGE_KEY).isFiltered());
+        assertTrue(new HistoryQuery(null, 1000, Long.MAX_VALUE, HistoryPager.FIRST_PAGE_KEY).isFiltered());
+        assertTrue(new HistoryQuery(null, 0, 5000, HistoryPager.FIRST_PAGE_KEY).isFiltered());
+        // An anchor alone only moves the start of the list
+        assertFalse(new HistoryQuery(null, 0, Long.MAX_VALUE, 500).isFiltered());
+    }
+}
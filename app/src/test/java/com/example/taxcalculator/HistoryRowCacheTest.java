@@ -0,0 +1,138 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.models.HistoryRow;
+import com.example.taxcalculator.models.HistoryRowCache;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.Money;
+import com.example.taxcalculator.utils.TaxManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Batch 17: HistoryRowCacheTest
+ * Covers the history display rows: formatting, the allocation-free currency writer, invalidation
+ * on rate changes and rows staying current across locale changes.
+ */
+public class HistoryRowCacheTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Category used for rate changes, so the built-in rates other tests rely on stay untouched.
+     */
+    private static final String CAT_TEST = "row_cache_test";
+
+    private HistoryRowCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new HistoryRowCache(HistoryRowCache.DEFAULT_CAPACITY, "GST");
+    }
+
+    private static ProductItem item(int id, double price, String category) {
+        ProductItem item = new ProductItem("Item " + id, "Brand", price, category, "b" + id);
+        item.id = id;
+        return item;
+    }
+
+    // --- Formatting (3 Tests) ---
+
+    @Test
+    public void testRowStrings() {
+        HistoryRow row = cache.get(item(7, 118.0, TaxManager.CAT_STANDARD));
+
+        assertEquals(7, row.getId());
+        assertEquals("Item 7", row.getName());
+        assertEquals("₹ 100.00", row.getPriceText());
+        assertEquals("GST ₹ 18.00", row.getTaxText());
+    }
+
+    @Test
+    public void testWriteToMatchesFormat() {
+        long[] amounts = {0, 5, 10, 99, 100, 123450, -210, -5, Long.MAX_VALUE, Long.MIN_VALUE + 1};
+        char[] buffer = new char[3 + Money.MAX_FORMATTED_LENGTH];
+        for (long paise : amounts) {
+            String expected = Money.appendTo(new StringBuilder(), paise).toString();
+            int end = Money.writeTo(buffer, 3, paise);
+            assertEquals(expected, new String(buffer, 3, end - 3));
+            assertEquals(expected, Money.format(paise));
+        }
+        // The extreme negative has no positive counterpart, so it is written without negating it
+        assertEquals("₹ -92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testCapacityRoundsToPowerOfTwo() {
+        HistoryRowCache small = new HistoryRowCache(100, "GST");
+        List<ProductItem> items = new ArrayList<>();
+        for (int id = 1; id <= 128; id++) items.add(item(id, 10.0, TaxManager.CAT_STANDARD));
+        small.prepare(items);
+        for (ProductItem item : items) small.get(item);
+
+        assertEquals(128, small.getHitCount());
+        assertEquals(0, small.getMissCount());
+    }
+
+    // --- Invalidation (4 Tests) ---
+
+    @Test
+    public void testPreparedRowsAreHits() {
+        List<ProductItem> page = new ArrayList<>();
+        for (int id = 1; id <= PAGE_SIZE; id++) page.add(item(id, 10.0, TaxManager.CAT_STANDARD));
+        cache.prepare(page);
+        for (ProductItem item : page) assertSame(cache.get(item), cache.get(item));
+
+        assertEquals(2 * PAGE_SIZE, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testRateChangeInvalidates() {
+        TaxManager taxManager = TaxManager.getInstance();
+        taxManager.applyChanges(new String[]{CAT_TEST}, new long[]{0}, new double[]{10.0}, 1);
+        ProductItem item = item(1, 110.0, CAT_TEST);
+        cache.prepare(Collections.singletonList(item));
+        assertEquals("GST ₹ 10.00", cache.get(item).getTaxText());
+
+        int version = taxManager.getRatesVersion();
+        taxManager.applyChanges(new String[]{CAT_TEST}, new long[]{1}, new double[]{0.0}, 1);
+        assertTrue(taxManager.getRatesVersion() > version);
+
+        assertEquals("GST ₹ 0.00", cache.get(item).getTaxText());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLocaleChangeKeepsRows() {
+        Locale original = Locale.getDefault();
+        ProductItem item = item(1, 1234.5, TaxManager.CAT_STANDARD);
+        try {
+            HistoryRow first = cache.get(item);
+            Locale.setDefault(Locale.GERMANY.equals(original) ? Locale.FRANCE : Locale.GERMANY);
+            // Amounts are written the same way in every locale, so the row is still current
+            assertSame(first, cache.get(item));
+            assertEquals("₹ 1046.19", first.getPriceText());
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+
+    @Test
+    public void testCollidingIdIsMiss() {
+        ProductItem a = item(1, 10.0, TaxManager.CAT_STANDARD);
+        ProductItem b = item(1 + HistoryRowCache.DEFAULT_CAPACITY, 20.0, TaxManager.CAT_STANDARD);
+        cache.prepare(Collections.singletonList(a));
+
+        assertEquals(b.id, cache.get(b).getId());
+        assertEquals(a.id, cache.get(a).getId());
+        assertEquals(2, cache.getMissCount());
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.database.LookupDao;
+import com.example.taxcalculator.models.LookupEntry;
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.LookupCache;
+import com.example.taxcalculator.utils.TaxManager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch 6: LookupCacheTest
+ * Covers the memory LRU tier, the persisted tier, negative entries, TTL expiry and counters.
+ * Uses an in-memory fake of LookupDao and a manually advanced clock.
+ */
+public class LookupCacheTest {
+
+    private static final long FOUND_TTL = 1000;
+    private static final long NOT_FOUND_TTL = 100;
+
+    /**
+     * Map-backed stand-in for the Room DAO that counts reads.
+     */
+    private static class FakeLookupDao implements LookupDao {
+        final Map<String, LookupEntry> rows = new HashMap<>();
+        int reads;
+
+        @Override
+        public void upsert(LookupEntry entry) { rows.put(entry.getBarcode(), entry); }
+
+        @Override
+        public void upsertAll(List<LookupEntry> entries) {
+            for (LookupEntry entry : entries) upsert(entry);
+        }
+
+        @Override
+        public LookupEntry find(String barcode) {
+            reads++;
+            return rows.get(barcode);
+        }
+
+        @Override
+        public void delete(String barcode) { rows.remove(barcode); }
+
+        @Override
+        public int deleteExpired(long now) {
+            int removed = 0;
+            for (Iterator<LookupEntry> it = rows.values().iterator(); it.hasNext(); ) {
+                if (it.next().getExpiresAt() <= now) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        @Override
+        public void deleteAll() { rows.clear(); }
+    }
+
+    private FakeLookupDao dao;
+    private long now;
+    private LookupCache cache;
+
+    @Before
+    public void setUp() {
+        dao = new FakeLookupDao();
+        now = 10_000;
+        cache = new LookupCache(dao, 2, FOUND_TTL, NOT_FOUND_TTL, () -> now);
+    }
+
+    private ProductItem item(String barcode) {
+        return new ProductItem("Soap", "Lux", 105.0, TaxManager.CAT_ESSENTIAL, barcode);
+    }
+
+    // --- Read-Through Tiers (5 Tests) ---
+
+    @Test
+    public void testMissOnEmptyCache() {
+        assertNull(cache.get("111"));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testPutThenMemoryHit() {
+        cache.putFound(item("111"), LookupEntry.SOURCE_CLOUD);
+        LookupEntry entry = cache.getFromMemory("111");
+        assertNotNull(entry);
+        assertEquals("Soap", entry.getName());
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(0, dao.reads);
+    }
+
+    @Test
+    public void testMemoryMissIsNotCountedAsMiss() {
+        assertNull(cache.getFromMemory("111"));
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testDiskHitIsPromotedToMemory() {
+        dao.upsert(new LookupEntry("222", "Tea", "Tata", 50, TaxManager.CAT_ESSENTIAL, "firestore", true, now, now + FOUND_TTL));
+        assertNotNull(cache.get("222"));
+        assertEquals(1, cache.getDiskHits());
+        assertNotNull(cache.getFromMemory("222"));
+        assertEquals(1, dao.reads);
+    }
+
+    @Test
+    public void testPutWritesThroughToDisk() {
+        cache.putFound(item("333"), LookupEntry.SOURCE_LOCAL);
+        assertTrue(dao.rows.containsKey("333"));
+    }
+
+    // --- Negative Entries (3 Tests) ---
+
+    @Test
+    public void testNotFoundIsCachedAsNegative() {
+        cache.putNotFound("444");
+        LookupEntry entry = cache.get("444");
+        assertNotNull(entry);
+        assertFalse(entry.isFound());
+        assertEquals(1, cache.getNegativeHits());
+    }
+
+    @Test
+    public void testNegativeEntryExpiresSooner() {
+        cache.putNotFound("444");
+        cache.putFound(item("555"), LookupEntry.SOURCE_CLOUD);
+        now += NOT_FOUND_TTL;
+        assertNull(cache.get("444"));
+        assertNotNull(cache.get("555"));
+    }
+
+    @Test
+    public void testFoundReplacesNegative() {
+        cache.putNotFound("444");
+        cache.putFound(item("444"), LookupEntry.SOURCE_LOCAL);
+        assertTrue(cache.get("444").isFound());
+    }
+
+    // --- Completeness (3 Tests) ---
+
+    @Test
+    public void testCloudEntryIsComplete() {
+        cache.putFound(item("111"), LookupEntry.SOURCE_CLOUD);
+        assertTrue(cache.get("111").isComplete());
+    }
+
+    @Test
+    public void testApiEntryWithoutPriceIsIncomplete() {
+        cache.putFound(new ProductItem("Chips", "Lays", 0.0, null, "666"), "openfacts_food");
+        LookupEntry entry = cache.get("666");
+        assertTrue(entry.isFound());
+        assertFalse(entry.isComplete());
+    }
+
+    @Test
+    public void testIncompleteEntryExpiresLikeNegative() {
+        cache.putFound(new ProductItem("Chips", "Lays", 0.0, null, "666"), "openfacts_food");
+        cache.putFound(item("111"), LookupEntry.SOURCE_CLOUD);
+        now += NOT_FOUND_TTL;
+        // The name-only entry must not hide a complete cloud record for the full found TTL
+        assertNull(cache.get("666"));
+        assertNotNull(cache.get("111"));
+    }
+
+    // --- Expiry & Eviction (4 Tests) ---
+
+    @Test
+    public void testExpiredEntryIsDroppedFromBothTiers() {
+        cache.putFound(item("111"), LookupEntry.SOURCE_CLOUD);
+        now += FOUND_TTL;
+        assertNull(cache.get("111"));
+        assertFalse(dao.rows.containsKey("111"));
+        assertTrue(cache.getExpirations() >= 1);
+    }
+
+    @Test
+    public void testLruEvictsEldestEntry() {
+        cache.putFound(item("1"), LookupEntry.SOURCE_CLOUD);
+        cache.putFound(item("2"), LookupEntry.SOURCE_CLOUD);
+        cache.getFromMemory("1"); // touch 1 so 2 becomes eldest
+        cache.putFound(item("3"), LookupEntry.SOURCE_CLOUD);
+        assertEquals(2, cache.memorySize());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.getFromMemory("1"));
+        assertNull(cache.getFromMemory("2"));
+        // Evicted entries are still served from disk
+        assertNotNull(cache.get("2"));
+    }
+
+    @Test
+    public void testPurgeExpiredRemovesStaleRows() {
+        cache.putNotFound("1");
+        cache.putFound(item("2"), LookupEntry.SOURCE_CLOUD);
+        now += NOT_FOUND_TTL;
+        assertEquals(1, cache.purgeExpired());
+        assertEquals(1, dao.rows.size());
+    }
+
+    @Test
+    public void testInvalidateAndClear() {
+        cache.putFound(item("1"), LookupEntry.SOURCE_CLOUD);
+        cache.putFound(item("2"), LookupEntry.SOURCE_CLOUD);
+        cache.invalidate("1");
+        assertNull(cache.get("1"));
+        cache.clear();
+        assertEquals(0, cache.memorySize());
+        assertTrue(dao.rows.isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.taxcalculator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.LatencyHistogram;
+import com.example.taxcalculator.utils.LookupMetrics;
+import com.example.taxcalculator.utils.LookupSource;
+
+import java.io.StringWriter;
+
+/**
+ * Batch 8: LookupMetricsTest
+ * Covers the log-linear latency histogram and the per-source lookup counters.
+ */
+public class LookupMetricsTest {
+
+    // --- Histogram Accuracy (5 Tests) ---
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getValueAtPercentile(50));
+        assertEquals(0, h.getMin());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 9; i++) h.record(i);
+        assertEquals(5, h.getValueAtPercentile(50));
+        assertEquals(9, h.getValueAtPercentile(100));
+        assertEquals(1, h.getMin());
+    }
+
+    @Test
+    public void testLargeValuesWithinRelativeError() {
+        LatencyHistogram h = new LatencyHistogram();
+        long[] values = {1_000, 25_000, 123_456, 4_000_000, 60_000_000};
+        for (long v : values) {
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(v);
+            single.record(v);
+            long reported = single.getValueAtPercentile(50);
+            assertTrue("Reported " + reported + " for " + v, Math.abs(reported - v) <= v * 0.07);
+            h.record(v);
+        }
+        assertEquals(5, h.getCount());
+        assertEquals(60_000_000, h.getMax());
+    }
+
+    @Test
+    public void testPercentilesAreOrdered() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 10_000; i++) h.record(i * 10L);
+        long p50 = h.getValueAtPercentile(50);
+        long p90 = h.getValueAtPercentile(90);
+        long p99 = h.getValueAtPercentile(99);
+        assertTrue(p50 <= p90 && p90 <= p99);
+        assertEquals(50_000, p50, 50_000 * 0.07);
+        assertEquals(90_000, p90, 90_000 * 0.07);
+    }
+
+    @Test
+    public void testNegativeRecordedAsZeroAndReset() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        assertEquals(0, h.getMax());
+        assertEquals(1, h.getCount());
+        h.reset();
+        assertEquals(0, h.getCount());
+    }
+
+    // --- Lookup Metrics (4 Tests) ---
+
+    @Test
+    public void testSourceCounters() {
+        LookupMetrics m = new LookupMetrics();
+        m.recordStarted("firestore");
+        m.recordStarted("firestore");
+        m.recordWin("firestore", 120_000);
+        m.recordMiss("firestore", LookupSource.MISS_TIMEOUT, -1);
+        m.recordCancelled("openfacts_food");
+
+        LookupMetrics.SourceStats s = m.getSourceStats("firestore");
+        assertEquals(2, s.getStarted());
+        assertEquals(1, s.getWins());
+        assertEquals(1, s.getFailures(LookupSource.MISS_TIMEOUT));
+        assertEquals(1, s.getLatency().getCount());
+        assertEquals(1, m.getSourceStats("openfacts_food").getCancelled());
+    }
+
+    @Test
+    public void testSummaryMentionsSources() {
+        LookupMetrics m = new LookupMetrics();
+        m.recordWin("upcitemdb", 300_000);
+        m.recordScanToDialog(450_000);
+        String summary = m.getSummary();
+        assertTrue(summary.contains("upcitemdb"));
+        assertTrue(summary.contains("Scan to dialog: p50"));
+    }
+
+    @Test
+    public void testDumpContainsRawBuckets() {
+        LookupMetrics m = new LookupMetrics();
+        m.recordWin("firestore", 10);
+        StringWriter out = new StringWriter();
+        m.dump(out);
+        assertTrue(out.toString().contains("firestore,10,1"));
+    }
+
+    @Test
+    public void testFrameToDetectionIsReportedAndDumped() {
+        LookupMetrics m = new LookupMetrics();
+        m.recordFrameToDetection(20);
+        assertEquals(1, m.getFrameToDetection().getCount());
+        assertTrue(m.getSummary().contains("Frame to detection: p50"));
+        StringWriter out = new StringWriter();
+        m.dump(out);
+        assertTrue(out.toString().contains("frame_to_detection,20,1"));
+    }
+}
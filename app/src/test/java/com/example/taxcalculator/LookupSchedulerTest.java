@@ -0,0 +1,313 @@
+package com.example.taxcalculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.LookupScheduler;
+import com.example.taxcalculator.utils.LookupSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch 7: LookupSchedulerTest
+ * Covers stage ordering, hedging, per-source timeouts, the overall deadline, cancellation and
+ * holding incomplete answers while an earlier stage may still return a complete one.
+ * Uses fake sources that answer after a fixed delay on a real timer thread.
+ */
+public class LookupSchedulerTest {
+
+    private ScheduledExecutorService timer;
+    private ScheduledExecutorService sourceThreads;
+
+    @Before
+    public void setUp() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        sourceThreads = Executors.newScheduledThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+        sourceThreads.shutdownNow();
+    }
+
+    /**
+     * Source that answers after a delay, either with a product or a miss reason.
+     */
+    private class FakeSource implements LookupSource {
+        final String name;
+        final long delayMs;
+        final String missReason;
+        final boolean complete;
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+
+        FakeSource(String name, long delayMs, String missReason) {
+            this(name, delayMs, missReason, false);
+        }
+
+        FakeSource(String name, long delayMs, String missReason, boolean complete) {
+            this.name = name;
+            this.delayMs = delayMs;
+            this.missReason = missReason;
+            this.complete = complete;
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public Cancellable lookup(String barcode, Listener listener) {
+            started.incrementAndGet();
+            java.util.concurrent.Future<?> f = sourceThreads.schedule(() -> {
+                if (missReason == null) {
+                    listener.onFound(complete
+                            ? new ProductItem(name, "Brand", 99.0, "standard", barcode)
+                            : new ProductItem(name, "Brand", 0.0, null, barcode));
+                } else {
+                    listener.onMiss(missReason);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+            return () -> {
+                cancelled.incrementAndGet();
+                f.cancel(false);
+            };
+        }
+    }
+
+    /**
+     * Callback that records the outcome and releases a latch when the search ends.
+     */
+    private static class Result implements LookupScheduler.Callback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<String> stages = Collections.synchronizedList(new ArrayList<>());
+        volatile String winner;
+        volatile Boolean conclusive;
+        final AtomicInteger terminalCalls = new AtomicInteger();
+
+        @Override
+        public void onStageStarted(LookupScheduler.Stage stage) { stages.add(stage.getStatus()); }
+
+        @Override
+        public void onFound(LookupSource source, ProductItem item) {
+            winner = source.getName();
+            terminalCalls.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onNotFound(boolean conclusive) {
+            this.conclusive = conclusive;
+            terminalCalls.incrementAndGet();
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("Search did not finish", done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private Result run(long deadlineMs, LookupScheduler.Stage... stages) throws InterruptedException {
+        LookupScheduler scheduler = new LookupScheduler(timer, deadlineMs);
+        Result result = new Result();
+        scheduler.search("8901234567890", Arrays.asList(stages), result);
+        result.await();
+        return result;
+    }
+
+    // --- Ordering (3 Tests) ---
+
+    @Test
+    public void testFastFirstStageWinsWithoutStartingLaterStages() throws Exception {
+        FakeSource cloud = new FakeSource("cloud", 10, null);
+        FakeSource api = new FakeSource("api", 10, null);
+        Result r = run(2000,
+                new LookupScheduler.Stage("cloud", 1000, 500, cloud),
+                new LookupScheduler.Stage("api", 1000, 500, api));
+        assertEquals("cloud", r.winner);
+        assertEquals(0, api.started.get());
+        assertEquals(Collections.singletonList("cloud"), r.stages);
+    }
+
+    @Test
+    public void testMissMovesToNextStageImmediately() throws Exception {
+        FakeSource cloud = new FakeSource("cloud", 10, LookupSource.MISS_NOT_FOUND);
+        FakeSource api = new FakeSource("api", 10, null);
+        long start = System.nanoTime();
+        Result r = run(2000,
+                new LookupScheduler.Stage("cloud", 1000, 1000, cloud),
+                new LookupScheduler.Stage("api", 1000, 1000, api));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("api", r.winner);
+        assertTrue("Should not wait for the hedge delay, took " + elapsedMs, elapsedMs < 900);
+    }
+
+    @Test
+    public void testAllConclusiveMissesReportConclusiveNotFound() throws Exception {
+        Result r = run(2000,
+                new LookupScheduler.Stage("cloud", 1000, 500, new FakeSource("cloud", 5, LookupSource.MISS_NOT_FOUND)),
+                new LookupScheduler.Stage("api", 1000, 500,
+                        new FakeSource("a", 5, LookupSource.MISS_NOT_FOUND),
+                        new FakeSource("b", 5, LookupSource.MISS_NOT_FOUND)));
+        assertEquals(Boolean.TRUE, r.conclusive);
+        assertEquals(1, r.terminalCalls.get());
+    }
+
+    // --- Hedging & Cancellation (3 Tests) ---
+
+    @Test
+    public void testSlowStageIsHedgedAndLoserCancelled() throws Exception {
+        FakeSource slowCloud = new FakeSource("cloud", 1500, null, true);
+        FakeSource fastApi = new FakeSource("api", 20, null, true);
+        Result r = run(3000,
+                new LookupScheduler.Stage("cloud", 2000, 200, slowCloud),
+                new LookupScheduler.Stage("api", 2000, 200, fastApi));
+        assertEquals("api", r.winner);
+        assertEquals(1, slowCloud.cancelled.get());
+    }
+
+    @Test
+    public void testRaceWithinStageCancelsOtherSources() throws Exception {
+        FakeSource fast = new FakeSource("fast", 10, null);
+        FakeSource slow = new FakeSource("slow", 1000, null);
+        Result r = run(2000, new LookupScheduler.Stage("api", 1500, 500, fast, slow));
+        assertEquals("fast", r.winner);
+        assertEquals(1, slow.cancelled.get());
+        assertEquals(0, fast.cancelled.get());
+    }
+
+    @Test
+    public void testCancelSuppressesResult() throws Exception {
+        LookupScheduler scheduler = new LookupScheduler(timer, 2000);
+        Result r = new Result();
+        FakeSource cloud = new FakeSource("cloud", 200, null);
+        LookupScheduler.Search search = scheduler.search("1", Collections.singletonList(
+                new LookupScheduler.Stage("cloud", 1000, 500, cloud)), r);
+        search.cancel();
+        assertTrue(search.isFinished());
+        assertFalse(r.done.await(400, TimeUnit.MILLISECONDS));
+        assertEquals(1, cloud.cancelled.get());
+    }
+
+    // --- Timeouts & Deadline (5 Tests) ---
+
+    @Test
+    public void testPerSourceTimeoutCountsAsInconclusiveMiss() throws Exception {
+        FakeSource hung = new FakeSource("hung", 5000, null);
+        Result r = run(3000, new LookupScheduler.Stage("cloud", 100, 100, hung));
+        assertEquals(Boolean.FALSE, r.conclusive);
+        assertEquals(1, hung.cancelled.get());
+    }
+
+    @Test
+    public void testErrorMissIsInconclusive() throws Exception {
+        Result r = run(2000, new LookupScheduler.Stage("cloud", 1000, 500,
+                new FakeSource("cloud", 5, LookupSource.MISS_ERROR)));
+        assertEquals(Boolean.FALSE, r.conclusive);
+    }
+
+    @Test
+    public void testThrowingSourceIsInconclusiveMiss() throws Exception {
+        LookupSource broken = new LookupSource() {
+            @Override
+            public String getName() { return "broken"; }
+
+            @Override
+            public Cancellable lookup(String barcode, Listener listener) {
+                throw new IllegalArgumentException("Invalid document reference");
+            }
+        };
+        Result r = run(2000, new LookupScheduler.Stage("cloud", 1000, 500, broken));
+        assertEquals(Boolean.FALSE, r.conclusive);
+        assertEquals(1, r.terminalCalls.get());
+    }
+
+    @Test
+    public void testThrowingSourceDoesNotStopItsStage() throws Exception {
+        LookupSource broken = new LookupSource() {
+            @Override
+            public String getName() { return "broken"; }
+
+            @Override
+            public Cancellable lookup(String barcode, Listener listener) {
+                throw new IllegalStateException("Not initialised");
+            }
+        };
+        FakeSource api = new FakeSource("api", 20, null, true);
+        Result r = run(2000, new LookupScheduler.Stage("api", 1000, 500, broken, api));
+        assertEquals("api", r.winner);
+    }
+
+    @Test
+    public void testOverallDeadlineEndsSearch() throws Exception {
+        FakeSource slow = new FakeSource("slow", 3000, null);
+        long start = System.nanoTime();
+        Result r = run(200, new LookupScheduler.Stage("cloud", 2000, 1000, slow));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(Boolean.FALSE, r.conclusive);
+        assertTrue("Deadline should end the search early, took " + elapsedMs, elapsedMs < 1500);
+        assertEquals(1, slow.cancelled.get());
+    }
+
+    // --- Incomplete Answers (4 Tests) ---
+
+    @Test
+    public void testNameOnlyAnswerWaitsForPendingCloud() throws Exception {
+        FakeSource cloud = new FakeSource("cloud", 400, null, true);
+        FakeSource api = new FakeSource("api", 20, null);
+        Result r = run(3000,
+                new LookupScheduler.Stage("cloud", 2000, 150, cloud),
+                new LookupScheduler.Stage("api", 2000, 150, api));
+        assertEquals("cloud", r.winner);
+        assertEquals(1, api.started.get());
+        assertEquals(0, cloud.cancelled.get());
+    }
+
+    @Test
+    public void testNameOnlyAnswerWinsWhenCloudMisses() throws Exception {
+        FakeSource cloud = new FakeSource("cloud", 300, LookupSource.MISS_NOT_FOUND);
+        FakeSource api = new FakeSource("api", 20, null);
+        FakeSource deep = new FakeSource("deep", 20, null);
+        Result r = run(3000,
+                new LookupScheduler.Stage("cloud", 2000, 150, cloud),
+                new LookupScheduler.Stage("api", 2000, 150, api),
+                new LookupScheduler.Stage("deep", 2000, 150, deep));
+        assertEquals("api", r.winner);
+        assertEquals(1, r.terminalCalls.get());
+        // The held answer stops the search from fanning out further
+        assertEquals(0, deep.started.get());
+    }
+
+    @Test
+    public void testNameOnlyAnswerWinsWhenCloudTimesOut() throws Exception {
+        FakeSource cloud = new FakeSource("cloud", 5000, null, true);
+        FakeSource api = new FakeSource("api", 20, null);
+        Result r = run(3000,
+                new LookupScheduler.Stage("cloud", 300, 150, cloud),
+                new LookupScheduler.Stage("api", 2000, 150, api));
+        assertEquals("api", r.winner);
+        assertEquals(1, cloud.cancelled.get());
+    }
+
+    @Test
+    public void testDeadlineDeliversHeldAnswer() throws Exception {
+        FakeSource cloud = new FakeSource("cloud", 5000, null, true);
+        FakeSource api = new FakeSource("api", 20, null);
+        Result r = run(400,
+                new LookupScheduler.Stage("cloud", 3000, 150, cloud),
+                new LookupScheduler.Stage("api", 3000, 150, api));
+        assertEquals("api", r.winner);
+        assertNull(r.conclusive);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.taxcalculator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.Money;
+
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Batch 12: MoneyBenchmarkTest
+ * Covers exact GST extraction in paise, rounding rules and formatting, and checks that a large
+ * basket taxed in paise stays within rounding of the old double path.
+ */
+public class MoneyBenchmarkTest {
+
+    private static final int LINE_ITEMS = 2_000_000;
+
+    // --- GST Extraction (4 Tests) ---
+
+    @Test
+    public void testInclusiveTaxExact() {
+        // 118.00 at 18% contains exactly 18.00 of tax
+        assertEquals(1800, Money.inclusiveTax(11800, 1800, Money.DEFAULT_ROUNDING));
+        // 105.00 at 5% contains exactly 5.00
+        assertEquals(500, Money.inclusiveTax(10500, 500, Money.DEFAULT_ROUNDING));
+    }
+
+    @Test
+    public void testInclusiveTaxRoundsToPaisa() {
+        // 100.00 at 18% -> 15.2542... -> 15.25
+        assertEquals(1525, Money.inclusiveTax(10000, 1800, Money.DEFAULT_ROUNDING));
+        // 10.00 at 40% -> 2.857... -> 2.86
+        assertEquals(286, Money.inclusiveTax(1000, 4000, Money.DEFAULT_ROUNDING));
+    }
+
+    @Test
+    public void testExclusiveTax() {
+        assertEquals(1800, Money.exclusiveTax(10000, 1800, Money.DEFAULT_ROUNDING));
+        // 0.99 at 5% -> 0.0495 -> 0.05
+        assertEquals(5, Money.exclusiveTax(99, 500, Money.DEFAULT_ROUNDING));
+    }
+
+    @Test
+    public void testTaxNeverExceedsPriceAndRoundsPerLine() {
+        // 0.10 at 5% contains 0.00476 of tax: it rounds to 0 paise on every line instead of drifting
+        long total = 0;
+        for (int i = 0; i < 1000; i++) total += Money.inclusiveTax(10, 500, Money.DEFAULT_ROUNDING);
+        assertEquals(0, total);
+        for (long price = 0; price < 20_000; price += 13) {
+            long tax = Money.inclusiveTax(price, 4000, Money.DEFAULT_ROUNDING);
+            assertTrue(tax >= 0 && tax <= price);
+        }
+    }
+
+    // --- Rounding Rules (3 Tests) ---
+
+    @Test
+    public void testHalfRulesOnExactHalf() {
+        assertEquals(3, Money.divide(5, 2, RoundingMode.HALF_UP));
+        assertEquals(2, Money.divide(5, 2, RoundingMode.HALF_DOWN));
+        assertEquals(2, Money.divide(5, 2, RoundingMode.HALF_EVEN));
+        assertEquals(4, Money.divide(7, 2, RoundingMode.HALF_EVEN));
+    }
+
+    @Test
+    public void testDirectedRules() {
+        assertEquals(3, Money.divide(7, 3, RoundingMode.UP));
+        assertEquals(2, Money.divide(7, 3, RoundingMode.DOWN));
+        assertEquals(-2, Money.divide(-7, 3, RoundingMode.CEILING));
+        assertEquals(-3, Money.divide(-7, 3, RoundingMode.FLOOR));
+        assertEquals(-3, Money.divide(-5, 2, RoundingMode.HALF_UP));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testUnnecessaryThrowsWhenInexact() {
+        Money.divide(7, 2, RoundingMode.UNNECESSARY);
+    }
+
+    // --- Conversion & Formatting (3 Tests) ---
+
+    @Test
+    public void testConversions() {
+        assertEquals(1999, Money.toPaise(19.99));
+        assertEquals(29, Money.toPaise(0.29)); // 0.29 * 100 = 28.999999999999996
+        assertEquals(1800, Money.toBasisPoints(18.0));
+        assertEquals(1250, Money.toBasisPoints(12.5));
+        assertEquals(19.99, Money.toRupees(1999), 0.0);
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("₹ 1234.50", Money.format(123450));
+        assertEquals("₹ 0.05", Money.format(5));
+        assertEquals("₹ 0.00", Money.format(0));
+        assertEquals("₹ -2.10", Money.format(-210));
+    }
+
+    @Test
+    public void testFormatMatchesOldFormatter() {
+        for (long paise = 0; paise < 5000; paise += 7) {
+            assertEquals(String.format(Locale.US, "₹ %.2f", paise / 100.0), Money.format(paise));
+        }
+    }
+
+    // --- Totals (1 Test) ---
+
+    @Test
+    public void testPaiseTotalMatchesDoubleTotal() {
+        long[] ratesBp = {0, 500, 1800, 4000};
+        double[] ratesPercent = {0.0, 5.0, 18.0, 40.0};
+        double doubleSum = 0;
+        long paiseSum = 0;
+        for (int i = 0; i < LINE_ITEMS; i++) {
+            long price = 100 + (i * 7919L) % 500_000;
+            double rate = ratesPercent[i & 3];
+            doubleSum += (price / 100.0 * rate) / (100 + rate);
+            paiseSum += Money.inclusiveTax(price, ratesBp[i & 3], Money.DEFAULT_ROUNDING);
+        }
+
+        // Per-line rounding may differ from the rounded double total by at most half a paisa per line
+        assertEquals(doubleSum, paiseSum / 100.0, LINE_ITEMS * 0.005);
+    }
+}
@@ -243,4 +243,24 @@ public class ProductCalculationTest {
         ProductItem item = new ProductItem(null, "Brand", 100.0, "cat", "123");
         assertNull(item.getName());
     }
-}
\ No newline at end of file
+
+    // --- Cached Category Code (2 Tests) ---
+
+    @Test
+    public void testCachedCodeFollowsRateUpdates() {
+        ProductItem item = new ProductItem("TV", "Brand", 118.0, TaxManager.CAT_STANDARD, "123");
+        assertEquals(TaxManager.CODE_STANDARD, item.getTaxCode());
+        assertEquals(18.0, item.getTaxAmount(), 0.01);
+
+        Map<String, Object> cloudMap = new HashMap<>();
+        cloudMap.put(TaxManager.CAT_STANDARD, 28.0);
+        TaxManager.getInstance().updateRates(cloudMap);
+        assertEquals(28.0, item.getTaxRate(), 0.001);
+    }
+
+    @Test
+    public void testNullCategoryCodeIsUnknown() {
+        ProductItem item = new ProductItem("NullCat", "Brand", 105.0, null, "123");
+        assertEquals(TaxManager.CODE_UNKNOWN, item.getTaxCode());
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.taxcalculator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.api.OpenFoodFactsApi;
+import com.example.taxcalculator.api.RetrofitClient;
+import com.example.taxcalculator.api.UpcItemDbApi;
+
+/**
+ * Batch 5: RetrofitClientBenchmarkTest
+ * Covers the cached per-host registry: the same instance per host and shared hosts for unknown
+ * types. The setup time and allocations a cached lookup saves are measured on the device by
+ * RetrofitLookupBenchmark.
+ */
+public class RetrofitClientBenchmarkTest {
+
+    // --- Registry Behaviour (4 Tests) ---
+
+    @Test
+    public void testSameTypeReturnsCachedInstance() {
+        assertSame(RetrofitClient.getApi("food"), RetrofitClient.getApi("food"));
+    }
+
+    @Test
+    public void testDifferentHostsReturnDifferentInstances() {
+        assertNotSame(RetrofitClient.getApi("food"), RetrofitClient.getApi("beauty"));
+        assertNotSame(RetrofitClient.getApi("beauty"), RetrofitClient.getApi("product"));
+    }
+
+    @Test
+    public void testUnknownTypeSharesFoodHost() {
+        assertSame(RetrofitClient.getApi("food"), RetrofitClient.getApi("unknown"));
+        assertSame(RetrofitClient.getApi("food"), RetrofitClient.getApi(null));
+    }
+
+    @Test
+    public void testUpcApiIsCached() {
+        UpcItemDbApi first = RetrofitClient.getUpcApi();
+        assertNotNull(first);
+        assertSame(first, RetrofitClient.getUpcApi());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.LookupSource;
+import com.example.taxcalculator.utils.RoutingTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batch 9: RoutingTableTest
+ * Covers learned per-prefix source ranking, confident single-source routing,
+ * exploration and persistence of the routing table.
+ */
+public class RoutingTableTest {
+
+    private static final String INDIAN = "8901234567890";
+
+    private LookupSource food;
+    private LookupSource beauty;
+    private LookupSource product;
+    private List<LookupSource> candidates;
+    private RoutingTable table;
+
+    private static LookupSource source(String name) {
+        return new LookupSource() {
+            @Override
+            public String getName() { return name; }
+
+            @Override
+            public Cancellable lookup(String barcode, Listener listener) { return () -> { }; }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        food = source("openfacts_food");
+        beauty = source("openfacts_beauty");
+        product = source("openfacts_product");
+        candidates = Arrays.asList(food, beauty, product);
+        table = new RoutingTable();
+    }
+
+    private void teach(String barcode, int times) {
+        for (int i = 0; i < times; i++) {
+            table.recordAnswer(barcode, "openfacts_food", true);
+            table.recordAnswer(barcode, "openfacts_beauty", false);
+            table.recordAnswer(barcode, "openfacts_product", false);
+        }
+    }
+
+    // --- Cold Start (2 Tests) ---
+
+    @Test
+    public void testUnknownPrefixUsesFullFanOutInDefaultOrder() {
+        RoutingTable.Route route = table.route(INDIAN, candidates);
+        assertEquals(candidates, route.getPrimary());
+        assertTrue(route.getFallback().isEmpty());
+    }
+
+    @Test
+    public void testUnknownSourceRateIsHalf() {
+        assertEquals(0.5, table.getHitRate(INDIAN, "openfacts_food"), 0.0001);
+    }
+
+    // --- Learning (4 Tests) ---
+
+    @Test
+    public void testConfidentSourceIsQueriedAlone() {
+        teach(INDIAN, 10);
+        RoutingTable.Route route = table.route(INDIAN, candidates);
+        assertEquals(Arrays.asList(food), route.getPrimary());
+        assertEquals(2, route.getFallback().size());
+    }
+
+    @Test
+    public void testFewSamplesKeepFullFanOutButReorder() {
+        table.recordAnswer(INDIAN, "openfacts_product", true);
+        RoutingTable.Route route = table.route(INDIAN, candidates);
+        assertEquals(3, route.getPrimary().size());
+        assertSame(product, route.getPrimary().get(0));
+    }
+
+    @Test
+    public void testPrefixesAreLearnedIndependently() {
+        teach(INDIAN, 10);
+        RoutingTable.Route other = table.route("5012345678900", candidates);
+        assertEquals(3, other.getPrimary().size());
+    }
+
+    @Test
+    public void testExplorationPeriodicallyUsesFullFanOut() {
+        teach(INDIAN, 10);
+        int fullFanOuts = 0;
+        for (int i = 0; i < 20; i++) {
+            if (table.route(INDIAN, candidates).getFallback().isEmpty()) fullFanOuts++;
+        }
+        assertEquals(2, fullFanOuts);
+    }
+
+    // --- Persistence (2 Tests) ---
+
+    @Test
+    public void testExportAndLoadRoundTrip() {
+        teach(INDIAN, 10);
+        RoutingTable restored = new RoutingTable();
+        restored.load(table.export());
+        assertEquals(table.getHitRate(INDIAN, "openfacts_food"), restored.getHitRate(INDIAN, "openfacts_food"), 0.0001);
+        assertEquals(Arrays.asList(food), restored.route(INDIAN, candidates).getPrimary());
+    }
+
+    @Test
+    public void testLoadSkipsMalformedRecords() {
+        table.load("890|openfacts_food|x|1;garbage;890|openfacts_beauty|4|0");
+        assertEquals(0.5, table.getHitRate(INDIAN, "openfacts_food"), 0.0001);
+        assertEquals(1.0 / 6.0, table.getHitRate(INDIAN, "openfacts_beauty"), 0.0001);
+        table.load(null);
+    }
+}
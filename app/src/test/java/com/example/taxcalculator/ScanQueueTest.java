@@ -0,0 +1,144 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.models.ScanBasket;
+import com.example.taxcalculator.utils.ScanQueue;
+import com.example.taxcalculator.utils.TaxManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch 10: ScanQueueTest
+ * Covers de-duplication, bounding and concurrency of the continuous scan queue, and the basket totals.
+ */
+public class ScanQueueTest {
+
+    private long now;
+    private List<String> started;
+    private List<Runnable> running;
+    private ScanQueue queue;
+
+    @Before
+    public void setUp() {
+        now = 10_000;
+        started = new ArrayList<>();
+        running = new ArrayList<>();
+        queue = new ScanQueue((barcode, done) -> {
+            started.add(barcode);
+            running.add(done);
+        }, 3, 2, 1000, () -> now);
+
+        Map<String, Object> rates = new HashMap<>();
+        rates.put(TaxManager.CAT_STANDARD, 18.0);
+        rates.put(TaxManager.CAT_ESSENTIAL, 5.0);
+        TaxManager.getInstance().updateRates(rates);
+    }
+
+    // --- De-duplication (3 Tests) ---
+
+    @Test
+    public void testRepeatedFramesAreDuplicates() {
+        assertEquals(ScanQueue.Offer.ACCEPTED, queue.offer("8901234567890"));
+        now += 100;
+        assertEquals(ScanQueue.Offer.DUPLICATE, queue.offer("8901234567890"));
+        assertEquals(1, started.size());
+    }
+
+    @Test
+    public void testItemHeldInViewStaysDuplicate() {
+        queue.offer("111");
+        // Seen every 500ms for 3 seconds: the window keeps being refreshed
+        for (int i = 0; i < 6; i++) {
+            now += 500;
+            assertEquals(ScanQueue.Offer.DUPLICATE, queue.offer("111"));
+        }
+    }
+
+    @Test
+    public void testRescanAfterWindowIsAccepted() {
+        queue.offer("111");
+        now += 1500;
+        assertEquals(ScanQueue.Offer.ACCEPTED, queue.offer("111"));
+    }
+
+    // --- Bounding and Concurrency (4 Tests) ---
+
+    @Test
+    public void testInFlightIsLimited() {
+        queue.offer("1");
+        queue.offer("2");
+        queue.offer("3");
+        assertEquals(2, queue.getInFlightCount());
+        assertEquals(1, queue.getQueuedCount());
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void testCompletionStartsNext() {
+        queue.offer("1");
+        queue.offer("2");
+        queue.offer("3");
+        running.get(0).run();
+        running.get(0).run(); // Second call is ignored
+        assertEquals(3, started.size());
+        assertEquals("3", started.get(2));
+        assertEquals(2, queue.getInFlightCount());
+        assertEquals(0, queue.getQueuedCount());
+    }
+
+    @Test
+    public void testFullQueueDropsAndAllowsRetry() {
+        for (int i = 0; i < 5; i++) queue.offer("code" + i); // 2 running, 3 queued
+        assertEquals(ScanQueue.Offer.FULL, queue.offer("late"));
+        running.get(0).run();
+        assertEquals(ScanQueue.Offer.ACCEPTED, queue.offer("late"));
+    }
+
+    @Test
+    public void testCloseDropsPendingAndBecomesIdle() {
+        queue.offer("1");
+        queue.offer("2");
+        queue.offer("3");
+        queue.close();
+        assertEquals(ScanQueue.Offer.FULL, queue.offer("4"));
+        assertFalse(queue.isIdle());
+        running.get(0).run();
+        running.get(1).run();
+        assertTrue(queue.isIdle());
+        assertEquals(2, started.size());
+    }
+
+    // --- Basket (2 Tests) ---
+
+    @Test
+    public void testBasketTotalsCountRepeats() {
+        ScanBasket basket = new ScanBasket();
+        basket.addPriced(new ProductItem("Phone", "X", 118.0, TaxManager.CAT_STANDARD, "111"));
+        basket.addPriced(new ProductItem("Phone", "X", 118.0, TaxManager.CAT_STANDARD, "111"));
+        basket.addPriced(new ProductItem("Soap", "Y", 105.0, TaxManager.CAT_ESSENTIAL, "222"));
+
+        assertEquals(3, basket.getItemCount());
+        assertEquals(34100, basket.getTotalPaise());
+        assertEquals(4100, basket.getTaxTotalPaise());
+        assertEquals(2, basket.getPricedLines().size());
+        assertEquals(2, basket.getPricedLines().get(0).getQuantity());
+    }
+
+    @Test
+    public void testPendingLinesAreSeparate() {
+        ScanBasket basket = new ScanBasket();
+        basket.addNeedsDetails("333", "Juice", null);
+        basket.addNeedsDetails("333", "Juice", null);
+        assertEquals(0, basket.getItemCount());
+        assertEquals(1, basket.getPendingCount());
+        assertEquals("", basket.getPendingLines().get(0).getBrand());
+        assertEquals(2, basket.getPendingLines().get(0).getQuantity());
+    }
+}
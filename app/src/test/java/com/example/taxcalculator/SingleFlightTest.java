@@ -0,0 +1,230 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.SingleFlight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch 21: SingleFlightTest
+ * Covers request coalescing by key: attaching later callers to the flight in progress,
+ * fanning the result out, starting over after completion, listeners leaving and the counters
+ * of saved network requests.
+ */
+public class SingleFlightTest {
+
+    /**
+     * Listener that records what it received.
+     */
+    private static class Recorder {
+        final String name;
+        final List<String> events = new ArrayList<>();
+
+        Recorder(String name) {
+            this.name = name;
+        }
+
+        void receive(String event) {
+            events.add(event);
+        }
+    }
+
+    private SingleFlight<String, Recorder> flights;
+
+    @Before
+    public void setUp() {
+        flights = new SingleFlight<>();
+    }
+
+    // --- Coalescing (4 Tests) ---
+
+    @Test
+    public void testLaterCallersAttachToFlightInProgress() {
+        Recorder first = new Recorder("first");
+        Recorder second = new Recorder("second");
+        Recorder third = new Recorder("third");
+
+        SingleFlight<String, Recorder>.Flight flight = flights.join("8901030", first);
+        assertNotNull(flight);
+        assertNull(flights.join("8901030", second));
+        assertNull(flights.join("8901030", third));
+        assertEquals(3, flight.getListenerCount());
+        assertEquals(1, flights.size());
+
+        flight.update(r -> r.receive("status"));
+        assertTrue(flight.complete(r -> r.receive("found")));
+
+        for (Recorder recorder : Arrays.asList(first, second, third)) {
+            assertEquals(Arrays.asList("status", "found"), recorder.events);
+        }
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void testDifferentKeysFlyIndependently() {
+        assertNotNull(flights.join("111", new Recorder("a")));
+        assertNotNull(flights.join("222", new Recorder("b")));
+
+        assertEquals(2, flights.size());
+        assertEquals(2, flights.getStartedCount());
+        assertEquals(0, flights.getJoinedCount());
+    }
+
+    @Test
+    public void testOnlyFirstResultIsDelivered() {
+        Recorder recorder = new Recorder("r");
+        SingleFlight<String, Recorder>.Flight flight = flights.join("123", recorder);
+
+        assertTrue(flight.complete(r -> r.receive("found")));
+        assertFalse(flight.complete(r -> r.receive("not found")));
+        flight.update(r -> r.receive("late status"));
+
+        assertEquals(Collections.singletonList("found"), recorder.events);
+    }
+
+    @Test
+    public void testCallerAfterCompletionStartsNewFlight() {
+        SingleFlight<String, Recorder>.Flight first = flights.join("123", new Recorder("a"));
+        first.complete(r -> r.receive("found"));
+
+        Recorder late = new Recorder("late");
+        SingleFlight<String, Recorder>.Flight second = flights.join("123", late);
+
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertTrue(late.events.isEmpty());
+    }
+
+    // --- Leaving (3 Tests) ---
+
+    @Test
+    public void testLeavingListenerKeepsFlightForOthers() {
+        Recorder first = new Recorder("first");
+        Recorder second = new Recorder("second");
+        AtomicInteger cancelled = new AtomicInteger();
+        SingleFlight<String, Recorder>.Flight flight = flights.join("123", first);
+        flight.setCanceller(cancelled::incrementAndGet);
+        flights.join("123", second);
+
+        assertTrue(flights.leave("123", first));
+        assertFalse(flights.leave("123", first));
+        assertEquals(0, cancelled.get());
+        assertFalse(flight.isFinished());
+
+        assertTrue(flight.complete(r -> r.receive("found")));
+        assertTrue(first.events.isEmpty());
+        assertEquals(Collections.singletonList("found"), second.events);
+    }
+
+    @Test
+    public void testLastListenerLeavingCancelsWork() {
+        Recorder first = new Recorder("first");
+        Recorder second = new Recorder("second");
+        AtomicInteger cancelled = new AtomicInteger();
+        SingleFlight<String, Recorder>.Flight flight = flights.join("123", first);
+        flight.setCanceller(cancelled::incrementAndGet);
+        flights.join("123", second);
+
+        flights.leave("123", second);
+        flights.leave("123", first);
+
+        assertEquals(1, cancelled.get());
+        assertTrue(flight.isFinished());
+        assertFalse(flight.complete(r -> r.receive("found")));
+        assertTrue(first.events.isEmpty() && second.events.isEmpty());
+        assertEquals(0, flights.size());
+        assertNotNull(flights.join("123", first)); // The next caller starts over
+    }
+
+    @Test
+    public void testCancellerSetAfterLastLeaveRunsAtOnce() {
+        Recorder recorder = new Recorder("r");
+        SingleFlight<String, Recorder>.Flight flight = flights.join("123", recorder);
+        flight.leave(recorder);
+
+        AtomicInteger cancelled = new AtomicInteger();
+        flight.setCanceller(cancelled::incrementAndGet);
+
+        assertEquals(1, cancelled.get());
+    }
+
+    // --- Counters (3 Tests) ---
+
+    @Test
+    public void testSavedRequestsCountEveryAttachedCaller() {
+        SingleFlight<String, Recorder>.Flight flight = flights.join("123", new Recorder("a"));
+        flight.setRequestCount(1); // Cloud stage
+        flights.join("123", new Recorder("b"));
+        flight.setRequestCount(3); // Open*Facts stage started by the hedge
+        flights.join("123", new Recorder("c"));
+        flight.complete(r -> r.receive("found"));
+
+        // Each attached caller would have made all three requests itself
+        assertEquals(2, flights.getJoinedCount());
+        assertEquals(6, flights.getSavedRequests());
+        assertTrue(flights.getSummary().contains("6 network calls saved"));
+    }
+
+    @Test
+    public void testCacheAnsweredFlightSavesNoNetworkRequests() {
+        SingleFlight<String, Recorder>.Flight flight = flights.join("123", new Recorder("a"));
+        flights.join("123", new Recorder("b"));
+        flight.complete(r -> r.receive("cached"));
+
+        assertEquals(1, flights.getJoinedCount());
+        assertEquals(0, flights.getSavedRequests());
+    }
+
+    @Test
+    public void testConcurrentScansStartOneFlight() throws Exception {
+        int callers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger leaders = new AtomicInteger();
+        List<Recorder> recorders = Collections.synchronizedList(new ArrayList<>());
+        List<SingleFlight<String, Recorder>.Flight> started = Collections.synchronizedList(new ArrayList<>());
+        try {
+            for (int i = 0; i < callers; i++) {
+                Recorder recorder = new Recorder("r" + i);
+                recorders.add(recorder);
+                pool.execute(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    SingleFlight<String, Recorder>.Flight flight = flights.join("123", recorder);
+                    if (flight != null) {
+                        leaders.incrementAndGet();
+                        started.add(flight);
+                    }
+                });
+            }
+            go.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, leaders.get());
+        started.get(0).setRequestCount(2);
+        started.get(0).complete(r -> r.receive("found"));
+        for (Recorder recorder : recorders) {
+            assertEquals(Collections.singletonList("found"), recorder.events);
+        }
+        assertEquals(callers - 1, flights.getJoinedCount());
+        assertEquals(2L * (callers - 1), flights.getSavedRequests());
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.TaxManager;
+import com.example.taxcalculator.utils.TaxSummary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Batch 13: TaxBatchTest
+ * Covers the columnar batch tax API: agreement with per-item math, per-slab totals,
+ * taxing items at their scan-time rates, parallel execution and reconciling a shift-sized input.
+ */
+public class TaxBatchTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long BASE = 1_600_000_000_000L;
+
+    private TaxManager taxManager;
+
+    @Before
+    public void setUp() {
+        taxManager = TaxManager.getInstance();
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put(TaxManager.CAT_EXEMPT, 0.0);
+        defaults.put(TaxManager.CAT_ESSENTIAL, 5.0);
+        defaults.put(TaxManager.CAT_STANDARD, 18.0);
+        defaults.put(TaxManager.CAT_LUXURY, 40.0);
+        taxManager.updateRates(defaults);
+    }
+
+    private static long[] prices(int n) {
+        long[] prices = new long[n];
+        for (int i = 0; i < n; i++) prices[i] = 100 + (i * 7919L) % 250_000;
+        return prices;
+    }
+
+    private static int[] codes(int n) {
+        int[] codes = new int[n];
+        for (int i = 0; i < n; i++) codes[i] = i % 4;
+        return codes;
+    }
+
+    // --- Correctness (4 Tests) ---
+
+    @Test
+    public void testMatchesPerItemComputation() {
+        String[] categories = {TaxManager.CAT_EXEMPT, TaxManager.CAT_ESSENTIAL, TaxManager.CAT_STANDARD, TaxManager.CAT_LUXURY};
+        long[] prices = prices(200);
+        int[] codes = codes(200);
+        long[] tax = new long[200];
+        long[] net = new long[200];
+        long[] total = new long[200];
+        taxManager.computeBatch(prices, codes, null, tax, net, total, false);
+
+        for (int i = 0; i < 200; i++) {
+            ProductItem item = new ProductItem("Item", "Brand", prices[i] / 100.0, categories[codes[i]], "123");
+            assertEquals(item.getTaxAmountPaise(), tax[i]);
+            assertEquals(item.getNetPricePaise(), net[i]);
+            assertEquals(prices[i], total[i]);
+        }
+    }
+
+    @Test
+    public void testSlabTotals() {
+        long[] prices = {11800, 11800, 10500, 5000};
+        int[] codes = {TaxManager.CODE_STANDARD, TaxManager.CODE_STANDARD, TaxManager.CODE_ESSENTIAL, TaxManager.CODE_EXEMPT};
+        TaxSummary summary = taxManager.computeBatch(prices, codes, null, null, null, null, false);
+
+        assertEquals(4, summary.getCount());
+        assertEquals(39100, summary.getGrossPaise());
+        assertEquals(4100, summary.getTaxPaise());
+        assertEquals(3, summary.getSlabs().size());
+        assertEquals(0, summary.getSlabs().get(0).getRateBp());
+
+        TaxSummary.Slab standard = summary.getSlab(1800);
+        assertEquals(2, standard.getCount());
+        assertEquals(3600, standard.getTaxPaise());
+        assertEquals(20000, standard.getNetPaise());
+        assertNull(summary.getSlab(4000));
+    }
+
+    @Test
+    public void testUnknownCodesUseDefaultSlab() {
+        long[] prices = {10500, 10500};
+        int[] codes = {TaxManager.CODE_UNKNOWN, 9_999};
+        TaxSummary summary = taxManager.computeBatch(prices, codes, null, null, null, null, false);
+        // Both fall back to 5%, which merges them with the essential slab's rate
+        assertEquals(1, summary.getSlabs().size());
+        assertEquals(1000, summary.getSlab(500).getTaxPaise());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedLengthsRejected() {
+        taxManager.computeBatch(new long[3], new int[2], null, null, null, null, false);
+    }
+
+    // --- Scan Time (2 Tests) ---
+
+    @Test
+    public void testItemsTaxedAtRateInForceWhenScanned() {
+        String category = "batch_rate_change";
+        Map<String, Object> before = new HashMap<>();
+        before.put(category, 12.0);
+        taxManager.updateRates(before, BASE);
+        Map<String, Object> after = new HashMap<>();
+        after.put(category, 18.0);
+        taxManager.updateRates(after, BASE + DAY);
+        int code = taxManager.getCategoryCode(category);
+
+        long[] prices = {11200, 11200, 11800, 11800};
+        int[] codes = {code, code, code, code};
+        long[] scannedAt = {BASE, BASE + DAY - 1, BASE + DAY, 0};
+        long[] tax = new long[4];
+        TaxSummary summary = taxManager.computeBatch(prices, codes, scannedAt, tax, null, null, false);
+
+        assertArrayEquals(new long[]{1200, 1200, 1800, 1800}, tax);
+        assertEquals(2, summary.getSlab(1200).getCount());
+        assertEquals(2, summary.getSlab(1800).getCount());
+        // The batch agrees with the history rows, which tax saved records the same way
+        for (int i = 0; i < prices.length; i++) {
+            ProductItem item = new ProductItem("Item", "Brand", prices[i] / 100.0, category, "123");
+            item.setScannedAt(scannedAt[i]);
+            assertEquals(item.getTaxAmountPaise(), tax[i]);
+        }
+    }
+
+    @Test
+    public void testScanBeforeFirstRateUsesDefault() {
+        String category = "batch_late_category";
+        Map<String, Object> rate = new HashMap<>();
+        rate.put(category, 28.0);
+        taxManager.updateRates(rate, BASE);
+        int code = taxManager.getCategoryCode(category);
+
+        long[] tax = new long[1];
+        taxManager.computeBatch(new long[]{10500}, new int[]{code}, new long[]{BASE - 1}, tax, null, null, false);
+        assertEquals(500, tax[0]);
+    }
+
+    // --- Parallel (2 Tests) ---
+
+    @Test
+    public void testParallelMatchesSequential() {
+        int n = TaxManager.PARALLEL_THRESHOLD * 4 + 17;
+        long[] prices = prices(n);
+        int[] codes = codes(n);
+        long[] scannedAt = new long[n];
+        for (int i = 0; i < n; i++) scannedAt[i] = i % 3 == 0 ? 0 : BASE + i;
+        long[] taxSeq = new long[n];
+        long[] taxPar = new long[n];
+        TaxSummary seq = taxManager.computeBatch(prices, codes, scannedAt, taxSeq, null, null, false);
+        TaxSummary par = taxManager.computeBatch(prices, codes, scannedAt, taxPar, null, null, true);
+
+        assertArrayEquals(taxSeq, taxPar);
+        assertEquals(seq.getTaxPaise(), par.getTaxPaise());
+        assertEquals(seq.getGrossPaise(), par.getGrossPaise());
+        assertEquals(seq.getSlabs().size(), par.getSlabs().size());
+        assertEquals(Arrays.stream(taxSeq).sum(), par.getTaxPaise());
+    }
+
+    @Test
+    public void testShiftSizedBatchReconciles() {
+        int n = 1_000_000;
+        long[] prices = prices(n);
+        int[] codes = codes(n);
+        long[] tax = new long[n];
+        long[] net = new long[n];
+        TaxSummary summary = taxManager.computeBatch(prices, codes, null, tax, net, null, true);
+
+        for (int i = 0; i < n; i++) {
+            assertEquals(prices[i], tax[i] + net[i]);
+        }
+        assertEquals(Arrays.stream(prices).sum(), summary.getGrossPaise());
+        assertEquals(Arrays.stream(tax).sum(), summary.getTaxPaise());
+    }
+}
@@ -8,6 +8,8 @@ import static org.junit.Assert.*;
 import com.example.taxcalculator.utils.TaxManager;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Batch 1: TaxManagerTest
@@ -185,4 +187,91 @@ public class TaxManagerTest {
         // Check existing still there (Essential)
         assertEquals(5.0, taxManager.getRate(TaxManager.CAT_ESSENTIAL), 0.001);
     }
-}
\ No newline at end of file
+
+    // --- Snapshot Publication (3 Tests) ---
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        Map<String, Double> snapshot = taxManager.getRates();
+        try {
+            snapshot.put(TaxManager.CAT_STANDARD, 99.0);
+            fail("Snapshot should be unmodifiable");
+        } catch (UnsupportedOperationException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testOldSnapshotUnchangedByUpdate() {
+        Map<String, Double> before = taxManager.getRates();
+        Map<String, Object> cloudMap = new HashMap<>();
+        cloudMap.put(TaxManager.CAT_STANDARD, 28.0);
+        taxManager.updateRates(cloudMap);
+        assertEquals(18.0, before.get(TaxManager.CAT_STANDARD), 0.001);
+        assertEquals(28.0, taxManager.getRate(TaxManager.CAT_STANDARD), 0.001);
+    }
+
+    @Test
+    public void testReadersNeverSeeHalfAppliedUpdate() throws InterruptedException {
+        // Every update moves two rates together; a reader must always see a matching pair
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger mismatches = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                Map<String, Double> rates = taxManager.getRates();
+                double standard = rates.get(TaxManager.CAT_STANDARD);
+                double luxury = rates.get(TaxManager.CAT_LUXURY);
+                if (luxury != standard + 22.0) mismatches.incrementAndGet();
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) {
+            Map<String, Object> cloudMap = new HashMap<>();
+            cloudMap.put(TaxManager.CAT_STANDARD, (double) (i % 30));
+            cloudMap.put(TaxManager.CAT_LUXURY, (double) (i % 30) + 22.0);
+            taxManager.updateRates(cloudMap);
+        }
+        running.set(false);
+        reader.join();
+        assertEquals(0, mismatches.get());
+    }
+
+    // --- Category Codes (4 Tests) ---
+
+    @Test
+    public void testBuiltInCodesAreFixed() {
+        assertEquals(TaxManager.CODE_EXEMPT, taxManager.getCategoryCode(TaxManager.CAT_EXEMPT));
+        assertEquals(TaxManager.CODE_LUXURY, taxManager.getCategoryCode(TaxManager.CAT_LUXURY));
+        assertEquals(18.0, taxManager.getRate(TaxManager.CODE_STANDARD), 0.001);
+        assertEquals(TaxManager.CODE_UNKNOWN, taxManager.getCategoryCode(null));
+    }
+
+    @Test
+    public void testUnknownCodeUsesDefaultUntilRateArrives() {
+        int code = taxManager.getCategoryCode("code_test_pending");
+        assertEquals(code, taxManager.getCategoryCode("code_test_pending"));
+        assertEquals(TaxManager.DEFAULT_RATE, taxManager.getRate(code), 0.001);
+        assertFalse(taxManager.getRates().containsKey("code_test_pending"));
+
+        Map<String, Object> cloudMap = new HashMap<>();
+        cloudMap.put("code_test_pending", 12.0);
+        taxManager.updateRates(cloudMap);
+        assertEquals(code, taxManager.getCategoryCode("code_test_pending"));
+        assertEquals(12.0, taxManager.getRate(code), 0.001);
+    }
+
+    @Test
+    public void testOutOfRangeCodesUseDefault() {
+        assertEquals(TaxManager.DEFAULT_RATE, taxManager.getRate(TaxManager.CODE_UNKNOWN), 0.001);
+        assertEquals(TaxManager.DEFAULT_RATE, taxManager.getRate(Integer.MAX_VALUE), 0.001);
+    }
+
+    @Test
+    public void testCodeRateMatchesStringRate() {
+        Map<String, Object> cloudMap = new HashMap<>();
+        cloudMap.put(TaxManager.CAT_ESSENTIAL, 7L);
+        taxManager.updateRates(cloudMap);
+        assertEquals(taxManager.getRate(TaxManager.CAT_ESSENTIAL),
+                taxManager.getRate(taxManager.getCategoryCode(TaxManager.CAT_ESSENTIAL)), 0.0);
+    }
+}
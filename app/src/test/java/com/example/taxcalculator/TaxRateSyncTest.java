@@ -0,0 +1,122 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.TaxManager;
+import com.example.taxcalculator.utils.TaxRateSync;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch 15: TaxRateSyncTest
+ * Covers applying cloud rate deltas: version tracking, effective dates, skipping malformed
+ * documents, and loading a persisted schedule at startup.
+ */
+public class TaxRateSyncTest {
+
+    private static final long FETCHED_AT = 1_700_000_000_000L;
+
+    private TaxManager taxManager;
+
+    @Before
+    public void setUp() {
+        taxManager = TaxManager.getInstance();
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put(TaxManager.CAT_EXEMPT, 0.0);
+        defaults.put(TaxManager.CAT_ESSENTIAL, 5.0);
+        defaults.put(TaxManager.CAT_STANDARD, 18.0);
+        defaults.put(TaxManager.CAT_LUXURY, 40.0);
+        taxManager.updateRates(defaults);
+    }
+
+    private static Map<String, Object> doc(Object rate, Object version, Object effectiveFrom) {
+        Map<String, Object> fields = new HashMap<>();
+        if (rate != null) fields.put(TaxRateSync.FIELD_RATE, rate);
+        if (version != null) fields.put(TaxRateSync.FIELD_VERSION, version);
+        if (effectiveFrom != null) fields.put(TaxRateSync.FIELD_EFFECTIVE_FROM, effectiveFrom);
+        return fields;
+    }
+
+    // --- Delta Application (4 Tests) ---
+
+    @Test
+    public void testDeltaReturnsNewestVersion() {
+        long newest = TaxRateSync.applyDelta(taxManager,
+                Arrays.asList("sync_a", "sync_b"),
+                Arrays.asList(doc(12.0, 7L, 1000L), doc(28L, 9L, 1000L)),
+                5, FETCHED_AT);
+        assertEquals(9, newest);
+        assertEquals(12.0, taxManager.getRate("sync_a"), 0.0);
+        assertEquals(28.0, taxManager.getRate("sync_b"), 0.0);
+    }
+
+    @Test
+    public void testEffectiveFromTimestampAndFallback() {
+        long effective = FETCHED_AT - 10_000;
+        TaxRateSync.applyDelta(taxManager,
+                Arrays.asList("sync_dated", "sync_undated"),
+                Arrays.asList(doc(12.0, 1L, new Timestamp(new Date(effective))), doc(3.0, 2L, null)),
+                0, FETCHED_AT);
+
+        assertEquals(TaxManager.DEFAULT_RATE, taxManager.getRateAt("sync_dated", effective - 1), 0.0);
+        assertEquals(12.0, taxManager.getRateAt("sync_dated", effective), 0.0);
+        assertEquals(TaxManager.DEFAULT_RATE, taxManager.getRateAt("sync_undated", FETCHED_AT - 1), 0.0);
+        assertEquals(3.0, taxManager.getRateAt("sync_undated", FETCHED_AT), 0.0);
+    }
+
+    @Test
+    public void testMalformedDocumentsSkipped() {
+        List<Map<String, Object>> data = new ArrayList<>();
+        data.add(doc("twelve", 20L, null));
+        data.add(doc(12.0, null, null));
+        data.add(null);
+        long newest = TaxRateSync.applyDelta(taxManager,
+                Arrays.asList("sync_bad_rate", "sync_no_version", "sync_null"), data, 4, FETCHED_AT);
+
+        assertEquals(4, newest);
+        assertFalse(taxManager.getRates().containsKey("sync_bad_rate"));
+        assertFalse(taxManager.getRates().containsKey("sync_no_version"));
+    }
+
+    @Test
+    public void testDeltaPublishedAsOneSnapshot() {
+        Map<String, Double> before = taxManager.getRates();
+        TaxRateSync.applyDelta(taxManager,
+                Arrays.asList(TaxManager.CAT_STANDARD, TaxManager.CAT_LUXURY),
+                Arrays.asList(doc(12.0, 30L, null), doc(28.0, 31L, null)),
+                0, System.currentTimeMillis());
+        Map<String, Double> after = taxManager.getRates();
+
+        assertEquals(18.0, before.get(TaxManager.CAT_STANDARD), 0.0);
+        assertEquals(40.0, before.get(TaxManager.CAT_LUXURY), 0.0);
+        assertEquals(12.0, after.get(TaxManager.CAT_STANDARD), 0.0);
+        assertEquals(28.0, after.get(TaxManager.CAT_LUXURY), 0.0);
+    }
+
+    // --- Startup Load (1 Test) ---
+
+    @Test
+    public void testScheduleImportRestoresEveryChange() {
+        // A few years of monthly changes across the built-in categories
+        StringBuilder sb = new StringBuilder();
+        for (int month = 0; month < 48; month++) {
+            for (String category : new String[]{"load_a", "load_b", "load_c", "load_d"}) {
+                if (sb.length() > 0) sb.append(';');
+                sb.append(category).append('|').append(month * 2_592_000_000L).append('|').append(month % 28);
+            }
+        }
+        taxManager.importSchedule(sb.toString());
+
+        for (int month = 0; month < 48; month++) {
+            assertEquals(month % 28, taxManager.getRateAt("load_c", month * 2_592_000_000L + 1), 0.0);
+        }
+    }
+}
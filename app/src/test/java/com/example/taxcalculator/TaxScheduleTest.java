@@ -0,0 +1,174 @@
+package com.example.taxcalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.models.ProductItem;
+import com.example.taxcalculator.utils.TaxManager;
+import com.example.taxcalculator.utils.TaxSchedule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Batch 14: TaxScheduleTest
+ * Covers effective-dated tax rates: schedule lookups, rate history in TaxManager,
+ * persistence format and taxing saved products at their scan time.
+ */
+public class TaxScheduleTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long BASE = 1_600_000_000_000L;
+
+    private TaxManager taxManager;
+
+    @Before
+    public void setUp() {
+        taxManager = TaxManager.getInstance();
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put(TaxManager.CAT_EXEMPT, 0.0);
+        defaults.put(TaxManager.CAT_ESSENTIAL, 5.0);
+        defaults.put(TaxManager.CAT_STANDARD, 18.0);
+        defaults.put(TaxManager.CAT_LUXURY, 40.0);
+        taxManager.updateRates(defaults);
+    }
+
+    private static Map<String, Object> rate(String category, double rate) {
+        return Collections.<String, Object>singletonMap(category, rate);
+    }
+
+    // --- TaxSchedule (4 Tests) ---
+
+    @Test
+    public void testRateAtPicksLatestEntryNotAfterTimestamp() {
+        TaxSchedule schedule = TaxSchedule.EMPTY
+                .with(0, 300, 28.0)
+                .with(0, 100, 12.0)
+                .with(0, 200, 18.0);
+        assertTrue(Double.isNaN(schedule.rateAt(0, 99)));
+        assertEquals(12.0, schedule.rateAt(0, 100), 0.0);
+        assertEquals(12.0, schedule.rateAt(0, 199), 0.0);
+        assertEquals(18.0, schedule.rateAt(0, 200), 0.0);
+        assertEquals(28.0, schedule.rateAt(0, Long.MAX_VALUE), 0.0);
+        assertTrue(Double.isNaN(schedule.rateAt(5, 200)));
+    }
+
+    @Test
+    public void testWithIsCopyOnWrite() {
+        TaxSchedule first = TaxSchedule.EMPTY.with(1, 100, 12.0);
+        TaxSchedule second = first.with(1, 100, 18.0).with(1, 200, 28.0);
+        assertEquals(1, first.size(1));
+        assertEquals(12.0, first.rateAt(1, 500), 0.0);
+        assertEquals(2, second.size(1));
+        assertEquals(18.0, second.rateAt(1, 150), 0.0);
+    }
+
+    @Test
+    public void testNextChangeAfterSpansCategories() {
+        TaxSchedule schedule = TaxSchedule.EMPTY
+                .with(0, TaxSchedule.SINCE_FOREVER, 5.0)
+                .with(0, 300, 12.0)
+                .with(2, 200, 18.0);
+        assertEquals(200, schedule.nextChangeAfter(100));
+        assertEquals(300, schedule.nextChangeAfter(200));
+        assertEquals(Long.MAX_VALUE, schedule.nextChangeAfter(300));
+    }
+
+    @Test
+    public void testBinarySearchMatchesLinearScan() {
+        TaxSchedule schedule = TaxSchedule.EMPTY;
+        for (int i = 0; i < 2000; i++) schedule = schedule.with(0, i * 10L, i);
+        for (long t = -5; t < 20_010; t += 3) {
+            double expected = Double.NaN;
+            for (int i = 0; i < schedule.size(0); i++) {
+                if (schedule.getEffectiveFrom(0, i) <= t) expected = schedule.getRate(0, i);
+            }
+            assertEquals(expected, schedule.rateAt(0, t), 0.0);
+        }
+    }
+
+    // --- Rate History (5 Tests) ---
+
+    @Test
+    public void testBuiltInRatesApplySinceForever() {
+        assertEquals(18.0, taxManager.getRateAt(TaxManager.CODE_STANDARD, 0L), 0.0);
+        assertEquals(0.0, taxManager.getRateAt(TaxManager.CAT_EXEMPT, 0L), 0.0);
+    }
+
+    @Test
+    public void testUpdatesKeepEarlierRates() {
+        String category = "schedule_history";
+        taxManager.updateRates(rate(category, 12.0), BASE);
+        taxManager.updateRates(rate(category, 18.0), BASE + DAY);
+        int code = taxManager.getCategoryCode(category);
+
+        assertEquals(TaxManager.DEFAULT_RATE, taxManager.getRateAt(code, BASE - 1), 0.0);
+        assertEquals(12.0, taxManager.getRateAt(code, BASE + DAY / 2), 0.0);
+        assertEquals(18.0, taxManager.getRateAt(code, BASE + DAY), 0.0);
+        assertEquals(18.0, taxManager.getRate(code), 0.0);
+    }
+
+    @Test
+    public void testFutureRateIsOnlyScheduled() {
+        String category = "schedule_future";
+        long now = System.currentTimeMillis();
+        taxManager.updateRates(rate(category, 12.0), now - DAY);
+        taxManager.updateRates(rate(category, 28.0), now + DAY);
+
+        assertEquals(12.0, taxManager.getRate(category), 0.0);
+        assertEquals(28.0, taxManager.getRateAt(category, now + 2 * DAY), 0.0);
+    }
+
+    @Test
+    public void testScheduledRateTakesEffectWhenItStarts() {
+        String category = "schedule_due";
+        long now = System.currentTimeMillis();
+        taxManager.updateRates(rate(category, 12.0), now - DAY);
+        long start = now + 1;
+        taxManager.updateRates(rate(category, 28.0), start);
+        int code = taxManager.getCategoryCode(category);
+        int version = taxManager.getRatesVersion();
+
+        while (System.currentTimeMillis() < start) Thread.onSpinWait();
+        // No further update: the first read after the start switches the current rates
+        assertEquals(28.0, taxManager.getRate(code), 0.0);
+        assertEquals(28.0, taxManager.getRates().get(category), 0.0);
+        assertTrue(taxManager.getRatesVersion() > version);
+        assertEquals(12.0, taxManager.getRateAt(code, start - 1), 0.0);
+    }
+
+    @Test
+    public void testImportSchedule() {
+        taxManager.importSchedule("schedule_import|1000|12.0;broken|x|y;schedule_import|5000|18.0;junk");
+        assertEquals(12.0, taxManager.getRateAt("schedule_import", 3000), 0.0);
+        assertEquals(18.0, taxManager.getRateAt("schedule_import", 6000), 0.0);
+
+        String exported = taxManager.exportSchedule();
+        assertTrue(exported.contains("schedule_import|1000|12.0"));
+        assertTrue(exported.contains("schedule_import|5000|18.0"));
+        assertFalse(exported.contains("broken"));
+    }
+
+    // --- Scan Time (2 Tests) ---
+
+    @Test
+    public void testSavedProductKeepsRateAtScanTime() {
+        String category = "schedule_product";
+        taxManager.updateRates(rate(category, 12.0), BASE);
+        taxManager.updateRates(rate(category, 18.0), BASE + DAY);
+
+        ProductItem item = new ProductItem("Item", "Brand", 112.0, category, "123");
+        item.setScannedAt(BASE + 1);
+        assertEquals(12.0, item.getTaxRate(), 0.0);
+        assertEquals(1200, item.getTaxAmountPaise());
+    }
+
+    @Test
+    public void testUnsavedProductUsesCurrentRate() {
+        ProductItem item = new ProductItem("Item", "Brand", 118.0, TaxManager.CAT_STANDARD, "123");
+        assertEquals(0, item.getScannedAt());
+        assertEquals(18.0, item.getTaxRate(), 0.0);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.taxcalculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.utils.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch 18: WorkerPoolTest
+ * Covers the repository's worker pools: priority order, submission order within a priority,
+ * the thread bound and the queue metrics.
+ */
+public class WorkerPoolTest {
+
+    private WorkerPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new WorkerPool("test", 1);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Occupies the single worker until the returned latch is released.
+     */
+    private CountDownLatch block() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(WorkerPool.PRIORITY_NORMAL, () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private void drain() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        pool.execute(WorkerPool.PRIORITY_BACKGROUND, done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    // --- Ordering (2 Tests) ---
+
+    @Test
+    public void testInteractiveOvertakesBackground() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block();
+        pool.execute(WorkerPool.PRIORITY_BACKGROUND, () -> order.add("purge"));
+        pool.execute(WorkerPool.PRIORITY_NORMAL, () -> order.add("insert"));
+        pool.execute(WorkerPool.PRIORITY_INTERACTIVE, () -> order.add("page"));
+        release.countDown();
+        drain();
+
+        assertEquals(Arrays.asList("page", "insert", "purge"), order);
+    }
+
+    @Test
+    public void testEqualPriorityKeepsSubmissionOrder() throws InterruptedException {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block();
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            pool.execute(WorkerPool.PRIORITY_NORMAL, () -> order.add(n));
+        }
+        release.countDown();
+        drain();
+
+        for (int i = 0; i < 100; i++) assertEquals(Integer.valueOf(i), order.get(i));
+    }
+
+    // --- Bounds and Metrics (3 Tests) ---
+
+    @Test
+    public void testThreadCountIsBounded() throws InterruptedException {
+        WorkerPool wide = new WorkerPool("wide", 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            wide.execute(WorkerPool.PRIORITY_INTERACTIVE, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        wide.shutdown();
+
+        assertTrue(peak.get() <= 2);
+    }
+
+    @Test
+    public void testQueueDepthMetrics() throws InterruptedException {
+        CountDownLatch release = block();
+        for (int i = 0; i < 10; i++) pool.execute(WorkerPool.PRIORITY_BACKGROUND, () -> { });
+        assertEquals(10, pool.getQueueDepth());
+        release.countDown();
+        drain();
+
+        assertEquals(0, pool.getQueueDepth());
+        assertTrue(pool.getMaxQueueDepth() >= 10);
+        assertEquals(12, pool.getCompletedCount());
+        assertEquals(11, pool.getQueueWait(WorkerPool.PRIORITY_BACKGROUND).getCount());
+        assertTrue(pool.getSummary().contains("background wait"));
+    }
+
+    @Test
+    public void testExecutorViewUsesItsPriority() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block();
+        pool.executor(WorkerPool.PRIORITY_BACKGROUND).execute(() -> order.add("low"));
+        pool.executor(WorkerPool.PRIORITY_INTERACTIVE).execute(() -> order.add("high"));
+        release.countDown();
+        drain();
+
+        assertEquals(Arrays.asList("high", "low"), order);
+        assertEquals(1, pool.getQueueWait(WorkerPool.PRIORITY_INTERACTIVE).getCount());
+    }
+}
@@ -0,0 +1,480 @@
+package com.example.taxcalculator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.example.taxcalculator.database.OutboxDao;
+import com.example.taxcalculator.models.OutboxEntry;
+import com.example.taxcalculator.utils.FirestoreHelper;
+import com.example.taxcalculator.utils.OutboxUploader;
+import com.example.taxcalculator.utils.WriteBehindBuffer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch 19: WriteBehindTest
+ * Covers the write-behind buffer (flushing by size, time and request, callbacks after the write,
+ * retrying the writes of a failed batch one by one)
+ * and draining the upload outbox in batched commits against a fake outbox table and cloud:
+ * retries with exponential backoff, isolating and parking an entry the cloud keeps rejecting,
+ * last-write-wins per barcode and the lag metrics.
+ */
+public class WriteBehindTest {
+
+    private final List<List<String>> writtenBatches = new ArrayList<>();
+    private ScheduledExecutorService timer;
+    private WriteBehindBuffer<String> buffer;
+
+    /**
+     * In-memory outbox table with OutboxDao's semantics: one entry per barcode, replaced on insert.
+     */
+    private final List<OutboxEntry> outbox = new ArrayList<>();
+    private int nextId = 1;
+    private long now = 1_000_000;
+    private final OutboxDao fakeDao = new OutboxDao() {
+        @Override
+        public void insertAll(List<OutboxEntry> entries) {
+            for (OutboxEntry entry : entries) {
+                outbox.removeIf(e -> e.getBarcode().equals(entry.getBarcode()));
+                entry.id = nextId++;
+                outbox.add(entry);
+            }
+        }
+
+        @Override
+        public List<OutboxEntry> getDue(long time, int limit) {
+            List<OutboxEntry> due = new ArrayList<>();
+            for (OutboxEntry e : outbox) if (e.getNextAttemptAt() <= time && due.size() < limit) due.add(e);
+            return due;
+        }
+
+        @Override
+        public void markFailed(List<Integer> ids, long nextAttemptAt, String error) {
+            for (int i = 0; i < outbox.size(); i++) {
+                OutboxEntry e = outbox.get(i);
+                if (!ids.contains(e.id)) continue;
+                OutboxEntry failed = new OutboxEntry(e.getBarcode(), e.getName(), e.getBrand(), e.getPrice(),
+                        e.getTaxCategory(), e.getCreatedAt(), e.getAttempts() + 1, nextAttemptAt, error);
+                failed.id = e.id;
+                outbox.set(i, failed);
+            }
+        }
+
+        @Override
+        public Long getNextAttemptAt() {
+            Long next = null;
+            for (OutboxEntry e : outbox) {
+                if (e.getNextAttemptAt() == OutboxEntry.PARKED) continue;
+                if (next == null || e.getNextAttemptAt() < next) next = e.getNextAttemptAt();
+            }
+            return next;
+        }
+
+        @Override
+        public void unpark(long time) {
+            for (int i = 0; i < outbox.size(); i++) {
+                OutboxEntry e = outbox.get(i);
+                if (e.getNextAttemptAt() != OutboxEntry.PARKED) continue;
+                OutboxEntry due = new OutboxEntry(e.getBarcode(), e.getName(), e.getBrand(), e.getPrice(),
+                        e.getTaxCategory(), e.getCreatedAt(), e.getAttempts(), time, e.getLastError());
+                due.id = e.id;
+                outbox.set(i, due);
+            }
+        }
+
+        @Override
+        public int countParked() {
+            int parked = 0;
+            for (OutboxEntry e : outbox) if (e.getNextAttemptAt() == OutboxEntry.PARKED) parked++;
+            return parked;
+        }
+
+        @Override
+        public Long getOldestCreatedAt() {
+            Long oldest = null;
+            for (OutboxEntry e : outbox) if (oldest == null || e.getCreatedAt() < oldest) oldest = e.getCreatedAt();
+            return oldest;
+        }
+
+        @Override
+        public void deleteByIds(List<Integer> ids) { outbox.removeIf(e -> ids.contains(e.id)); }
+
+        @Override
+        public int count() { return outbox.size(); }
+    };
+    private final Queue<FirestoreHelper.UploadCallback> pendingCommits = new ArrayDeque<>();
+    private final List<Integer> commitSizes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        // Batches are written inline on the flushing thread
+        buffer = new WriteBehindBuffer<>(batch -> {
+            synchronized (writtenBatches) {
+                writtenBatches.add(new ArrayList<>(batch));
+            }
+        }, Runnable::run, timer, 5, 50);
+    }
+
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+
+    private static WriteBehindBuffer.Callback counting(AtomicInteger written, AtomicInteger failed) {
+        return new WriteBehindBuffer.Callback() {
+            @Override
+            public void onWritten() { written.incrementAndGet(); }
+
+            @Override
+            public void onFailed(String error) { failed.incrementAndGet(); }
+        };
+    }
+
+    private void queue(int count) {
+        List<OutboxEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new OutboxEntry("b" + (nextId + i), "Item", "Brand", 10.0, "standard", now));
+        }
+        fakeDao.insertAll(entries);
+    }
+
+    private OutboxUploader uploader(int batchSize) {
+        return new OutboxUploader(fakeDao, Runnable::run, timer, (entries, callback) -> {
+            commitSizes.add(entries.size());
+            pendingCommits.add(callback);
+        }, batchSize, () -> now);
+    }
+
+    // --- Write-Behind Buffer (6 Tests) ---
+
+    @Test
+    public void testFullBatchFlushesAtOnce() {
+        AtomicInteger written = new AtomicInteger(), failed = new AtomicInteger();
+        for (int i = 0; i < 12; i++) buffer.add("scan" + i, counting(written, failed));
+
+        assertEquals(2, writtenBatches.size());
+        assertEquals(Arrays.asList("scan0", "scan1", "scan2", "scan3", "scan4"), writtenBatches.get(0));
+        assertEquals(10, written.get());
+        assertEquals(2, buffer.getPendingCount());
+    }
+
+    @Test
+    public void testDelayFlushesPartialBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        WriteBehindBuffer.Callback callback = new WriteBehindBuffer.Callback() {
+            @Override
+            public void onWritten() { done.countDown(); }
+
+            @Override
+            public void onFailed(String error) { }
+        };
+        buffer.add("a", callback);
+        buffer.add("b", callback);
+        assertTrue(writtenBatches.isEmpty());
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        synchronized (writtenBatches) {
+            assertEquals(1, writtenBatches.size());
+            assertEquals(Arrays.asList("a", "b"), writtenBatches.get(0));
+        }
+    }
+
+    @Test
+    public void testExplicitFlush() {
+        buffer.add("a", null);
+        buffer.flush();
+        buffer.flush(); // Nothing left to write
+
+        assertEquals(1, writtenBatches.size());
+        assertEquals(0, buffer.getPendingCount());
+        assertTrue(buffer.getSummary().contains("request 2"));
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryWrite() {
+        WriteBehindBuffer<String> failing = new WriteBehindBuffer<>(batch -> {
+            throw new IllegalStateException("disk full");
+        }, Runnable::run, timer, 2, 50);
+        AtomicInteger written = new AtomicInteger(), failed = new AtomicInteger();
+        failing.add("a", counting(written, failed));
+        failing.add("b", counting(written, failed));
+
+        assertEquals(0, written.get());
+        assertEquals(2, failed.get());
+        assertEquals(0, failing.getWrittenCount());
+    }
+
+    @Test
+    public void testBadWriteDoesNotFailItsBatch() {
+        List<String> stored = new ArrayList<>();
+        List<String> followedUp = new ArrayList<>();
+        WriteBehindBuffer<String> sink = new WriteBehindBuffer<>(new WriteBehindBuffer.Sink<String>() {
+            @Override
+            public void write(List<String> batch) {
+                if (batch.contains("bad")) throw new IllegalStateException("constraint failed");
+                stored.addAll(batch);
+            }
+
+            @Override
+            public void afterWrite(List<String> batch) { followedUp.addAll(batch); }
+        }, Runnable::run, timer, 4, 50);
+        AtomicInteger written = new AtomicInteger(), failed = new AtomicInteger();
+        for (String item : Arrays.asList("a", "bad", "b", "c")) sink.add(item, counting(written, failed));
+
+        assertEquals(Arrays.asList("a", "b", "c"), stored);
+        assertEquals(Arrays.asList("a", "b", "c"), followedUp);
+        assertEquals(3, written.get());
+        assertEquals(1, failed.get());
+        assertTrue(sink.getSummary().contains("1 batches retried one by one, 1 writes failed"));
+    }
+
+    @Test
+    public void testFollowUpErrorDoesNotFailStoredWrites() {
+        WriteBehindBuffer<String> sink = new WriteBehindBuffer<>(new WriteBehindBuffer.Sink<String>() {
+            @Override
+            public void write(List<String> batch) { }
+
+            @Override
+            public void afterWrite(List<String> batch) { throw new IllegalStateException("cache closed"); }
+        }, Runnable::run, timer, 2, 50);
+        AtomicInteger written = new AtomicInteger(), failed = new AtomicInteger();
+        sink.add("a", counting(written, failed));
+        sink.add("b", counting(written, failed));
+
+        assertEquals(2, written.get());
+        assertEquals(0, failed.get());
+        assertEquals(2, sink.getWrittenCount());
+    }
+
+    // --- Outbox Upload (5 Tests) ---
+
+    @Test
+    public void testDrainCommitsInBatches() {
+        queue(250);
+        OutboxUploader uploader = uploader(100);
+        uploader.drain();
+        while (!pendingCommits.isEmpty()) pendingCommits.poll().onSuccess();
+
+        assertEquals(Arrays.asList(100, 100, 50), commitSizes);
+        assertTrue(outbox.isEmpty());
+        assertEquals(250, uploader.getUploadedCount());
+    }
+
+    @Test
+    public void testFailedCommitKeepsEntries() {
+        queue(10);
+        OutboxUploader uploader = uploader(100);
+        uploader.drain();
+        pendingCommits.poll().onFailure("offline");
+
+        assertEquals(10, outbox.size());
+        assertEquals(1, uploader.getFailedCommitCount());
+        assertEquals(1, outbox.get(0).getAttempts());
+        assertEquals("offline", outbox.get(0).getLastError());
+
+        now += OutboxUploader.MAX_BACKOFF_MS;
+        uploader.drain(); // Due again, the same entries are retried
+        pendingCommits.poll().onSuccess();
+        assertTrue(outbox.isEmpty());
+        assertTrue(uploader.getSummary().contains("10 after a retry"));
+    }
+
+    @Test
+    public void testDrainDuringDrainRunsOnceMore() {
+        queue(3);
+        OutboxUploader uploader = uploader(100);
+        uploader.drain();
+        queue(2); // Saved while the first batch is in flight
+        uploader.drain();
+        assertEquals(1, pendingCommits.size());
+
+        pendingCommits.poll().onSuccess();
+        pendingCommits.poll().onSuccess();
+        assertEquals(Arrays.asList(3, 2), commitSizes);
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    public void testCommitThatThrowsEndsDrain() {
+        queue(3);
+        OutboxUploader uploader = new OutboxUploader(fakeDao, Runnable::run, timer, (entries, callback) -> {
+            throw new IllegalArgumentException("Invalid document reference");
+        }, 100, () -> now);
+        uploader.drain();
+
+        assertEquals(3, outbox.size());
+        assertEquals(1, outbox.get(0).getAttempts());
+        assertEquals("Invalid document reference", outbox.get(0).getLastError());
+        assertTrue(uploader.getRetryAt() > now);
+
+        // The drain ended, so the next one runs
+        now = uploader.getRetryAt();
+        uploader.drain();
+        assertEquals(2, outbox.get(0).getAttempts());
+    }
+
+    @Test
+    public void testDocumentIdValidation() {
+        assertTrue(FirestoreHelper.isValidDocumentId("8901030865278"));
+        assertFalse(FirestoreHelper.isValidDocumentId(null));
+        assertFalse(FirestoreHelper.isValidDocumentId(""));
+        assertFalse(FirestoreHelper.isValidDocumentId("890/103"));
+        assertFalse(FirestoreHelper.isValidDocumentId(".."));
+    }
+
+    /**
+     * Creates an uploader whose cloud commits at once, rejecting every batch that contains the barcode.
+     */
+    private OutboxUploader rejecting(String barcode, int batchSize) {
+        return new OutboxUploader(fakeDao, Runnable::run, timer, (entries, callback) -> {
+            commitSizes.add(entries.size());
+            for (OutboxEntry entry : entries) {
+                if (entry.getBarcode().equals(barcode)) {
+                    callback.onFailure("invalid data");
+                    return;
+                }
+            }
+            callback.onSuccess();
+        }, batchSize, () -> now);
+    }
+
+    // --- Poison Entries (3 Tests) ---
+
+    @Test
+    public void testBadEntryDoesNotBlockTheRest() {
+        queue(100); // b1 to b100
+        OutboxUploader uploader = rejecting("b1", 100);
+        uploader.drain();
+        assertEquals(100, outbox.size());
+
+        // The first retry halves the batch: the half without the bad entry goes through
+        now += OutboxUploader.MAX_BACKOFF_MS;
+        uploader.drain();
+        assertEquals(Arrays.asList(100, 50, 50), commitSizes);
+        assertEquals(50, outbox.size());
+
+        for (int i = 0; i < 2 * OutboxUploader.MAX_ATTEMPTS; i++) {
+            now += OutboxUploader.MAX_BACKOFF_MS;
+            uploader.drain();
+        }
+        assertEquals(99, uploader.getUploadedCount());
+        assertEquals(1, outbox.size());
+        assertEquals("b1", outbox.get(0).getBarcode());
+        assertEquals(OutboxUploader.MAX_ATTEMPTS, outbox.get(0).getAttempts());
+    }
+
+    @Test
+    public void testParkedEntryIsNotRetried() {
+        queue(1);
+        OutboxUploader uploader = rejecting("b1", 100);
+        for (int i = 0; i < OutboxUploader.MAX_ATTEMPTS; i++) {
+            uploader.drain();
+            now += OutboxUploader.MAX_BACKOFF_MS;
+        }
+        assertEquals(OutboxEntry.PARKED, outbox.get(0).getNextAttemptAt());
+        assertEquals(1, uploader.getParkedCount());
+        assertTrue(uploader.getSummary().contains("1 parked"));
+        assertNull(fakeDao.getNextAttemptAt());
+
+        int commitsBefore = commitSizes.size();
+        now += OutboxUploader.MAX_BACKOFF_MS;
+        uploader.drain();
+        assertEquals(commitsBefore, commitSizes.size());
+    }
+
+    @Test
+    public void testRetryParkedTriesOnceMore() {
+        queue(1);
+        OutboxUploader uploader = rejecting("b1", 100);
+        for (int i = 0; i < OutboxUploader.MAX_ATTEMPTS; i++) {
+            uploader.drain();
+            now += OutboxUploader.MAX_BACKOFF_MS;
+        }
+        int commitsBefore = commitSizes.size();
+
+        uploader.retryParked();
+        assertEquals(commitsBefore + 1, commitSizes.size());
+        assertEquals(OutboxEntry.PARKED, outbox.get(0).getNextAttemptAt()); // Parked again at once
+
+        // Saving the product again replaces the parked entry with a fresh one
+        fakeDao.insertAll(Arrays.asList(new OutboxEntry("b1", "Fixed", "Brand", 10.0, "standard", now)));
+        assertEquals(0, fakeDao.countParked());
+        assertEquals(0, outbox.get(0).getAttempts());
+    }
+
+    // --- Retry and Backoff (4 Tests) ---
+
+    @Test
+    public void testBackoffDoublesUpToCap() {
+        assertEquals(OutboxUploader.BASE_BACKOFF_MS, OutboxUploader.backoffMs(1));
+        assertEquals(2 * OutboxUploader.BASE_BACKOFF_MS, OutboxUploader.backoffMs(2));
+        assertEquals(8 * OutboxUploader.BASE_BACKOFF_MS, OutboxUploader.backoffMs(4));
+        assertEquals(OutboxUploader.MAX_BACKOFF_MS, OutboxUploader.backoffMs(50));
+    }
+
+    @Test
+    public void testFailedEntriesWaitForTheirBackoff() {
+        queue(5);
+        OutboxUploader uploader = uploader(100);
+        uploader.drain();
+        pendingCommits.poll().onFailure("unavailable");
+
+        long next = outbox.get(0).getNextAttemptAt();
+        assertTrue(next >= now + OutboxUploader.BASE_BACKOFF_MS);
+        assertTrue(next <= now + OutboxUploader.BASE_BACKOFF_MS * 5 / 4);
+        assertEquals(next, uploader.getRetryAt());
+
+        uploader.drain(); // Nothing is due yet
+        assertTrue(pendingCommits.isEmpty());
+
+        now = next;
+        uploader.drain();
+        pendingCommits.poll().onFailure("unavailable");
+        // The second failure waits twice as long
+        assertTrue(outbox.get(0).getNextAttemptAt() >= now + 2 * OutboxUploader.BASE_BACKOFF_MS);
+        assertEquals(2, outbox.get(0).getAttempts());
+    }
+
+    @Test
+    public void testRequeuedBarcodeUploadsLastWrite() {
+        fakeDao.insertAll(Arrays.asList(new OutboxEntry("890", "Old name", "Brand", 10.0, "standard", now)));
+        OutboxUploader uploader = uploader(100);
+        uploader.drain();
+        // Saved again while the first upload is in flight
+        fakeDao.insertAll(Arrays.asList(new OutboxEntry("890", "New name", "Brand", 12.0, "standard", now)));
+        assertEquals(1, outbox.size());
+
+        pendingCommits.poll().onSuccess();
+        assertEquals(1, outbox.size()); // Only the uploaded version was removed
+        assertEquals("New name", outbox.get(0).getName());
+
+        uploader.drain();
+        pendingCommits.poll().onSuccess();
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    public void testLagIsMeasuredFromQueueTime() {
+        queue(4);
+        now += 3_000;
+        OutboxUploader uploader = uploader(100);
+        uploader.drain();
+        pendingCommits.poll().onSuccess();
+
+        assertEquals(4, uploader.getUploadLag().getCount());
+        assertEquals(3_000, uploader.getUploadLag().getMax());
+        assertTrue(uploader.getSummary().contains("lag"));
+    }
+}